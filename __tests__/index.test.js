@@ -98,6 +98,335 @@ describe('React Native Inbox', () => {
 
         await expect(Inbox.getEmails(options)).rejects.toThrow('Download failed');
       });
+
+      it('should pass body mode options through to native getEmails', async () => {
+        const options = {
+          folder: 'INBOX',
+          limit: 50,
+          includeBody: 'preview',
+          previewBytes: 256,
+        };
+
+        const mockEmails = [
+          {
+            subject: 'Test Email',
+            from: 'sender@example.com',
+            to: ['recipient@example.com'],
+            date: '2024-03-20T10:00:00Z',
+            body: '',
+            preview: 'Test content',
+            messageId: 'test-message-id',
+          },
+        ];
+
+        RNInbox.getEmails.mockResolvedValue(mockEmails);
+
+        const result = await Inbox.getEmails(options);
+
+        expect(RNInbox.getEmails).toHaveBeenCalledWith(options);
+        expect(result[0].preview).toBe('Test content');
+      });
+    });
+
+    describe('getEmailsPage', () => {
+      it('should call native getEmailsPage method and return the page', async () => {
+        const options = {
+          folder: 'INBOX',
+          limit: 50,
+          beforeUid: 1200,
+        };
+
+        const mockPage = {
+          emails: [
+            {
+              subject: 'Test Email',
+              from: 'sender@example.com',
+              body: 'Test content',
+              messageId: 'test-message-id',
+              uid: 1150,
+            },
+          ],
+          total: 1500,
+          nextCursor: 1150,
+        };
+
+        RNInbox.getEmailsPage.mockResolvedValue(mockPage);
+
+        const result = await Inbox.getEmailsPage(options);
+
+        expect(RNInbox.getEmailsPage).toHaveBeenCalledWith(options);
+        expect(result).toEqual(mockPage);
+      });
+
+      it('should return a null cursor on the last page', async () => {
+        RNInbox.getEmailsPage.mockResolvedValue({ emails: [], total: 0, nextCursor: null });
+
+        const result = await Inbox.getEmailsPage({ folder: 'INBOX', limit: 50 });
+
+        expect(result.nextCursor).toBeNull();
+      });
+
+      it('should throw error when native getEmailsPage fails', async () => {
+        const error = new Error('Page failed');
+        RNInbox.getEmailsPage.mockRejectedValue(error);
+
+        await expect(Inbox.getEmailsPage({ folder: 'INBOX', limit: 50 })).rejects.toThrow('Page failed');
+      });
+    });
+
+    describe('getCachedEmails', () => {
+      it('should call native getCachedEmails method and return emails', async () => {
+        const options = { account: 'test@imap.example.com', folder: 'INBOX', limit: 20 };
+        const mockEmails = [
+          {
+            subject: 'Cached Email',
+            from: 'sender@example.com',
+            to: ['recipient@example.com'],
+            date: '2024-03-20T10:00:00Z',
+            body: '',
+            preview: 'Cached content',
+            messageId: 'cached-message-id',
+            uid: 42,
+          },
+        ];
+        RNInbox.getCachedEmails.mockResolvedValue(mockEmails);
+
+        const result = await Inbox.getCachedEmails(options);
+
+        expect(RNInbox.getCachedEmails).toHaveBeenCalledWith(options);
+        expect(result).toEqual(mockEmails);
+      });
+
+      it('should throw error when native getCachedEmails fails', async () => {
+        const error = new Error('Cache read failed');
+        RNInbox.getCachedEmails.mockRejectedValue(error);
+
+        await expect(Inbox.getCachedEmails({ folder: 'INBOX', limit: 20 })).rejects.toThrow('Cache read failed');
+      });
+    });
+
+    describe('syncFolder', () => {
+      it('should call native syncFolder method and return the delta', async () => {
+        const options = { sinceModSeq: 1200, uidValidity: 7, knownUids: ['1:40'] };
+        const mockResult = {
+          mode: 'qresync',
+          uidValidity: 7,
+          uidNext: 42,
+          highestModSeq: 1250,
+          reset: false,
+          changed: [{ uid: 12, flags: { seen: true, answered: false, flagged: false, deleted: false, draft: false } }],
+          vanished: [3, 4],
+        };
+        RNInbox.syncFolder.mockResolvedValue(mockResult);
+
+        const result = await Inbox.syncFolder('INBOX', options);
+
+        expect(RNInbox.syncFolder).toHaveBeenCalledWith('INBOX', options);
+        expect(result).toEqual(mockResult);
+      });
+
+      it('should pass empty options when none are given', async () => {
+        RNInbox.syncFolder.mockResolvedValue({ mode: 'full', changed: [], vanished: [] });
+
+        await Inbox.syncFolder('INBOX');
+
+        expect(RNInbox.syncFolder).toHaveBeenCalledWith('INBOX', {});
+      });
+
+      it('should throw error when native syncFolder fails', async () => {
+        const error = new Error('Sync failed');
+        RNInbox.syncFolder.mockRejectedValue(error);
+
+        await expect(Inbox.syncFolder('INBOX', {})).rejects.toThrow('Sync failed');
+      });
+    });
+
+    describe('startIdle', () => {
+      it('should call native startIdle method with folder and options', async () => {
+        RNInbox.startIdle.mockResolvedValue(true);
+
+        const result = await Inbox.startIdle('INBOX', { pollInterval: 30000 });
+
+        expect(RNInbox.startIdle).toHaveBeenCalledWith('INBOX', { pollInterval: 30000 });
+        expect(result).toBe(true);
+      });
+
+      it('should throw error when native startIdle fails', async () => {
+        const error = new Error('Not connected');
+        RNInbox.startIdle.mockRejectedValue(error);
+
+        await expect(Inbox.startIdle('INBOX')).rejects.toThrow('Not connected');
+      });
+    });
+
+    describe('stopIdle', () => {
+      it('should call native stopIdle method', async () => {
+        RNInbox.stopIdle.mockResolvedValue(true);
+
+        const result = await Inbox.stopIdle('INBOX');
+
+        expect(RNInbox.stopIdle).toHaveBeenCalledWith('INBOX', null);
+        expect(result).toBe(true);
+      });
+    });
+
+    describe('streamEmails', () => {
+      it('should call native getEmails in stream mode with a request ID', async () => {
+        const summary = { requestId: 'feed', count: 0, chunks: 1, cancelled: false };
+        RNInbox.getEmails.mockResolvedValue(summary);
+
+        const result = await Inbox.streamEmails({ folder: 'INBOX', limit: 100, chunkSize: 25, requestId: 'feed' }, jest.fn());
+
+        expect(RNInbox.getEmails).toHaveBeenCalledWith({
+          folder: 'INBOX',
+          limit: 100,
+          chunkSize: 25,
+          requestId: 'feed',
+          stream: true,
+        });
+        expect(result).toEqual(summary);
+      });
+
+      it('should generate a request ID when none is given', async () => {
+        RNInbox.getEmails.mockResolvedValue({});
+
+        await Inbox.streamEmails({ folder: 'INBOX', limit: 10 }, jest.fn());
+
+        expect(RNInbox.getEmails.mock.calls[0][0].requestId).toEqual(expect.any(String));
+      });
+
+      it('should throw error when native getEmails fails', async () => {
+        RNInbox.getEmails.mockRejectedValue(new Error('Stream failed'));
+
+        await expect(Inbox.streamEmails({ folder: 'INBOX', limit: 10 }, jest.fn())).rejects.toThrow('Stream failed');
+      });
+    });
+
+    describe('cancelStream', () => {
+      it('should call native cancelStream method', async () => {
+        RNInbox.cancelStream.mockResolvedValue(true);
+
+        const result = await Inbox.cancelStream('feed');
+
+        expect(RNInbox.cancelStream).toHaveBeenCalledWith('feed');
+        expect(result).toBe(true);
+      });
+    });
+
+    describe('getTransferStats', () => {
+      it('should return the byte counters from native', async () => {
+        const stats = { bytesRead: 48213, bytesWritten: 1904, connections: 2, compressed: true };
+        RNInbox.getTransferStats.mockResolvedValue(stats);
+
+        const result = await Inbox.getTransferStats();
+
+        expect(RNInbox.getTransferStats).toHaveBeenCalled();
+        expect(result).toEqual(stats);
+      });
+    });
+
+    describe('getBodyCacheStats', () => {
+      it('should return the body cache counters from native', async () => {
+        const stats = {
+          memoryHits: 40, diskHits: 5, misses: 15, hitRate: 0.75, evictions: 12,
+          memoryBytes: 3900000, memoryEntries: 220, maxMemoryBytes: 4194304,
+          diskBytes: 120000, diskEntries: 12, maxDiskBytes: 33554432,
+        };
+        RNInbox.getBodyCacheStats.mockResolvedValue(stats);
+
+        const result = await Inbox.getBodyCacheStats();
+
+        expect(RNInbox.getBodyCacheStats).toHaveBeenCalled();
+        expect(result).toEqual(stats);
+      });
+
+      it('should clear the body cache', async () => {
+        RNInbox.clearBodyCache.mockResolvedValue(true);
+
+        const result = await Inbox.clearBodyCache();
+
+        expect(RNInbox.clearBodyCache).toHaveBeenCalled();
+        expect(result).toBe(true);
+      });
+    });
+
+    describe('accounts', () => {
+      it('should pass accountId as the last argument of positional methods', async () => {
+        RNInbox.markAsRead.mockResolvedValue(true);
+        RNInbox.disconnect.mockResolvedValue(true);
+
+        await Inbox.markAsRead(123, 'INBOX', 'work');
+        await Inbox.disconnect('work');
+
+        expect(RNInbox.markAsRead).toHaveBeenCalledWith(123, 'INBOX', 'work');
+        expect(RNInbox.disconnect).toHaveBeenCalledWith('work');
+      });
+
+      it('should list the registered accounts', async () => {
+        const accounts = [
+          { accountId: 'default', account: null, connected: false, smtpConnected: false },
+          { accountId: 'work', account: 'me@imap.example.com', connected: true, smtpConnected: false },
+        ];
+        RNInbox.getAccounts.mockResolvedValue(accounts);
+
+        const result = await Inbox.getAccounts();
+
+        expect(RNInbox.getAccounts).toHaveBeenCalled();
+        expect(result).toEqual(accounts);
+      });
+
+      it('should merge inboxes across accounts', async () => {
+        const inbox = {
+          emails: [
+            { uid: 7, subject: 'Lunch', accountId: 'home' },
+            { uid: 42, subject: 'Report', accountId: 'work' },
+          ],
+          failed: [{ accountId: 'spare', error: 'Not connected' }],
+        };
+        RNInbox.getUnifiedInbox.mockResolvedValue(inbox);
+
+        const result = await Inbox.getUnifiedInbox({ limit: 100, includeBody: 'preview' });
+
+        expect(RNInbox.getUnifiedInbox).toHaveBeenCalledWith({ limit: 100, includeBody: 'preview' });
+        expect(result).toEqual(inbox);
+      });
+
+      it('should default the unified inbox options', async () => {
+        RNInbox.getUnifiedInbox.mockResolvedValue({ emails: [], failed: [] });
+
+        await Inbox.getUnifiedInbox();
+
+        expect(RNInbox.getUnifiedInbox).toHaveBeenCalledWith({});
+      });
+    });
+
+    describe('getMetrics', () => {
+      it('should return the latency histograms from native', async () => {
+        const latency = { count: 2, errors: 0, meanMs: 12.5, maxMs: 20, p50Ms: 8.192, p90Ms: 16.384, p99Ms: 20 };
+        const metrics = {
+          since: 1760000000000,
+          methods: { getEmails: latency },
+          commands: { 'UID FETCH': latency },
+          stages: { load: latency, convert: latency },
+          bytesRead: 48213,
+          bytesWritten: 1904,
+        };
+        RNInbox.getMetrics.mockResolvedValue(metrics);
+
+        const result = await Inbox.getMetrics();
+
+        expect(RNInbox.getMetrics).toHaveBeenCalled();
+        expect(result).toEqual(metrics);
+      });
+
+      it('should pass the event interval to native', async () => {
+        RNInbox.setMetricsInterval.mockResolvedValue(true);
+
+        const result = await Inbox.setMetricsInterval(60000);
+
+        expect(RNInbox.setMetricsInterval).toHaveBeenCalledWith(60000);
+        expect(result).toBe(true);
+      });
     });
 
     describe('getFolders', () => {
@@ -119,6 +448,36 @@ describe('React Native Inbox', () => {
       });
     });
 
+    describe('getFolderTree', () => {
+      it('should pass options to native and return the tree', async () => {
+        const tree = [{
+          path: 'Work',
+          name: 'Work',
+          delimiter: '/',
+          attributes: ['\\HasChildren'],
+          specialUse: null,
+          selectable: true,
+          messages: 4,
+          unseen: 1,
+          children: [],
+        }];
+        RNInbox.getFolderTree.mockResolvedValue(tree);
+
+        const result = await Inbox.getFolderTree({ withCounts: true });
+
+        expect(RNInbox.getFolderTree).toHaveBeenCalledWith({ withCounts: true });
+        expect(result).toEqual(tree);
+      });
+
+      it('should default to an empty options object', async () => {
+        RNInbox.getFolderTree.mockResolvedValue([]);
+
+        await Inbox.getFolderTree();
+
+        expect(RNInbox.getFolderTree).toHaveBeenCalledWith({});
+      });
+    });
+
     describe('searchEmails', () => {
       it('should call native searchEmails method with correct parameters', async () => {
         const options = {
@@ -146,6 +505,15 @@ describe('React Native Inbox', () => {
         expect(result).toEqual(mockEmails);
       });
 
+      it('should pass the search source through to native', async () => {
+        const options = { folder: 'INBOX', query: 'quarterly inv', source: 'local', limit: 50 };
+        RNInbox.searchEmails.mockResolvedValue([]);
+
+        await Inbox.searchEmails(options);
+
+        expect(RNInbox.searchEmails).toHaveBeenCalledWith(options);
+      });
+
       it('should throw error when native searchEmails fails', async () => {
         const options = {
           folder: 'INBOX',
@@ -159,6 +527,43 @@ describe('React Native Inbox', () => {
       });
     });
 
+    describe('searchUids', () => {
+      it('should return the match count and UIDs from native', async () => {
+        const options = {
+          folder: 'INBOX',
+          or: [{ from: 'boss@company.com' }, { keyword: '$Important' }],
+          not: { seen: true },
+          sort: 'date',
+          limit: 2,
+        };
+        RNInbox.searchUids.mockResolvedValue({ total: 17, uids: [21, 28] });
+
+        const result = await Inbox.searchUids(options);
+
+        expect(RNInbox.searchUids).toHaveBeenCalledWith(options);
+        expect(result).toEqual({ total: 17, uids: [21, 28] });
+      });
+    });
+
+    describe('getThreads', () => {
+      it('should return conversations from native', async () => {
+        const threads = [{
+          uids: [3, 7],
+          roots: [{ uid: 3, children: [{ uid: 7, children: [] }] }],
+          count: 2,
+          unread: 1,
+          newestUid: 7,
+          latestDate: 1760700000000,
+        }];
+        RNInbox.getThreads.mockResolvedValue(threads);
+
+        const result = await Inbox.getThreads({ folder: 'INBOX', limit: 30 });
+
+        expect(RNInbox.getThreads).toHaveBeenCalledWith({ folder: 'INBOX', limit: 30 });
+        expect(result).toEqual(threads);
+      });
+    });
+
     describe('moveEmail', () => {
       it('should call native moveEmail method with correct parameters', async () => {
         const options = {
@@ -194,7 +599,7 @@ describe('React Native Inbox', () => {
 
         await Inbox.deleteEmail(123, 'INBOX');
 
-        expect(RNInbox.deleteEmail).toHaveBeenCalledWith(123, 'INBOX');
+        expect(RNInbox.deleteEmail).toHaveBeenCalledWith(123, 'INBOX', null);
       });
 
       it('should throw error when native deleteEmail fails', async () => {
@@ -205,6 +610,50 @@ describe('React Native Inbox', () => {
       });
     });
 
+    describe('moveEmails', () => {
+      it('should call native moveEmails method with correct parameters', async () => {
+        const options = {
+          uids: ['1:50', 72],
+          fromFolder: 'INBOX',
+          toFolder: 'Archive',
+        };
+        const mockResult = { moved: 51, failed: [] };
+        RNInbox.moveEmails.mockResolvedValue(mockResult);
+
+        const result = await Inbox.moveEmails(options);
+
+        expect(RNInbox.moveEmails).toHaveBeenCalledWith(options);
+        expect(result).toEqual(mockResult);
+      });
+
+      it('should throw error when native moveEmails fails', async () => {
+        const error = new Error('Move failed');
+        RNInbox.moveEmails.mockRejectedValue(error);
+
+        await expect(Inbox.moveEmails({ uids: [1], fromFolder: 'INBOX', toFolder: 'Archive' })).rejects.toThrow('Move failed');
+      });
+    });
+
+    describe('deleteEmails', () => {
+      it('should call native deleteEmails method and return result', async () => {
+        const options = { uids: [1, 2, 3], folder: 'INBOX' };
+        const mockResult = { deleted: 3, failed: [], expunged: true };
+        RNInbox.deleteEmails.mockResolvedValue(mockResult);
+
+        const result = await Inbox.deleteEmails(options);
+
+        expect(RNInbox.deleteEmails).toHaveBeenCalledWith(options);
+        expect(result).toEqual(mockResult);
+      });
+
+      it('should throw error when native deleteEmails fails', async () => {
+        const error = new Error('Delete failed');
+        RNInbox.deleteEmails.mockRejectedValue(error);
+
+        await expect(Inbox.deleteEmails({ uids: [1], folder: 'INBOX' })).rejects.toThrow('Delete failed');
+      });
+    });
+
     describe('updateEmailFlags', () => {
       it('should call native updateEmailFlags method with correct parameters', async () => {
         const options = {
@@ -249,7 +698,7 @@ describe('React Native Inbox', () => {
 
         const result = await Inbox.getEmailByUid(123, 'INBOX');
 
-        expect(RNInbox.getEmailByUid).toHaveBeenCalledWith(123, 'INBOX');
+        expect(RNInbox.getEmailByUid).toHaveBeenCalledWith(123, 'INBOX', null);
         expect(result).toEqual(mockEmail);
       });
 
@@ -269,13 +718,60 @@ describe('React Native Inbox', () => {
       });
     });
 
+    describe('downloadAttachment', () => {
+      it('should call native downloadAttachment method and return the file', async () => {
+        const options = { uid: 7, folder: 'INBOX', section: '2', destPath: '/data/files/report.pdf' };
+        RNInbox.downloadAttachment.mockResolvedValue({ path: '/data/files/report.pdf', size: 26214400 });
+
+        const result = await Inbox.downloadAttachment(options);
+
+        expect(RNInbox.downloadAttachment).toHaveBeenCalledWith(options);
+        expect(result).toEqual({ path: '/data/files/report.pdf', size: 26214400 });
+      });
+
+      it('should throw error when native downloadAttachment fails', async () => {
+        RNInbox.downloadAttachment.mockRejectedValue(new Error('Message has no part 4'));
+
+        await expect(Inbox.downloadAttachment({ uid: 7, folder: 'INBOX', section: '4', destPath: '/tmp/x' }))
+          .rejects.toThrow('Message has no part 4');
+      });
+    });
+
+    describe('getEmailBody', () => {
+      it('should call native getEmailBody method and return body', async () => {
+        const mockBody = { uid: 123, body: 'Full content', isHtml: false };
+
+        RNInbox.getEmailBody.mockResolvedValue(mockBody);
+
+        const result = await Inbox.getEmailBody(123, 'INBOX');
+
+        expect(RNInbox.getEmailBody).toHaveBeenCalledWith(123, 'INBOX', null);
+        expect(result).toEqual(mockBody);
+      });
+
+      it('should return null when email not found', async () => {
+        RNInbox.getEmailBody.mockResolvedValue(null);
+
+        const result = await Inbox.getEmailBody(999, 'INBOX');
+
+        expect(result).toBeNull();
+      });
+
+      it('should throw error when native getEmailBody fails', async () => {
+        const error = new Error('Get body failed');
+        RNInbox.getEmailBody.mockRejectedValue(error);
+
+        await expect(Inbox.getEmailBody(123, 'INBOX')).rejects.toThrow('Get body failed');
+      });
+    });
+
     describe('markAsRead', () => {
       it('should call native markAsRead method', async () => {
         RNInbox.markAsRead.mockResolvedValue(true);
 
         await Inbox.markAsRead(123, 'INBOX');
 
-        expect(RNInbox.markAsRead).toHaveBeenCalledWith(123, 'INBOX');
+        expect(RNInbox.markAsRead).toHaveBeenCalledWith(123, 'INBOX', null);
       });
 
       it('should throw error when native markAsRead fails', async () => {
@@ -292,7 +788,7 @@ describe('React Native Inbox', () => {
 
         await Inbox.markAsUnread(123, 'INBOX');
 
-        expect(RNInbox.markAsUnread).toHaveBeenCalledWith(123, 'INBOX');
+        expect(RNInbox.markAsUnread).toHaveBeenCalledWith(123, 'INBOX', null);
       });
 
       it('should throw error when native markAsUnread fails', async () => {
@@ -310,7 +806,7 @@ describe('React Native Inbox', () => {
 
         await Inbox.addFlags(123, 'INBOX', flags);
 
-        expect(RNInbox.addFlags).toHaveBeenCalledWith(123, 'INBOX', flags);
+        expect(RNInbox.addFlags).toHaveBeenCalledWith(123, 'INBOX', flags, null);
       });
 
       it('should throw error when native addFlags fails', async () => {
@@ -329,7 +825,7 @@ describe('React Native Inbox', () => {
 
         await Inbox.removeFlags(123, 'INBOX', flags);
 
-        expect(RNInbox.removeFlags).toHaveBeenCalledWith(123, 'INBOX', flags);
+        expect(RNInbox.removeFlags).toHaveBeenCalledWith(123, 'INBOX', flags, null);
       });
 
       it('should throw error when native removeFlags fails', async () => {
@@ -341,13 +837,62 @@ describe('React Native Inbox', () => {
       });
     });
 
+    describe('markAsReadBulk', () => {
+      it('should call native markAsReadBulk method with UIDs and ranges', async () => {
+        const uids = ['1:50', 72, '90:120'];
+        const mockResult = { updated: 82, failed: [{ uid: 72, error: 'Message not found' }] };
+        RNInbox.markAsReadBulk.mockResolvedValue(mockResult);
+
+        const result = await Inbox.markAsReadBulk(uids, 'INBOX');
+
+        expect(RNInbox.markAsReadBulk).toHaveBeenCalledWith(uids, 'INBOX', null);
+        expect(result).toEqual(mockResult);
+      });
+
+      it('should throw error when native markAsReadBulk fails', async () => {
+        const error = new Error('Bulk update failed');
+        RNInbox.markAsReadBulk.mockRejectedValue(error);
+
+        await expect(Inbox.markAsReadBulk([1, 2], 'INBOX')).rejects.toThrow('Bulk update failed');
+      });
+    });
+
+    describe('addFlagsBulk', () => {
+      it('should call native addFlagsBulk method with correct parameters', async () => {
+        const flags = ['FLAGGED', '$Important'];
+        RNInbox.addFlagsBulk.mockResolvedValue({ updated: 2, failed: [] });
+
+        await Inbox.addFlagsBulk([1, 2], 'INBOX', flags);
+
+        expect(RNInbox.addFlagsBulk).toHaveBeenCalledWith([1, 2], 'INBOX', flags, null);
+      });
+
+      it('should throw error when native addFlagsBulk fails', async () => {
+        const error = new Error('Bulk update failed');
+        RNInbox.addFlagsBulk.mockRejectedValue(error);
+
+        await expect(Inbox.addFlagsBulk([1], 'INBOX', ['SEEN'])).rejects.toThrow('Bulk update failed');
+      });
+    });
+
+    describe('removeFlagsBulk', () => {
+      it('should call native removeFlagsBulk method with correct parameters', async () => {
+        const flags = ['FLAGGED'];
+        RNInbox.removeFlagsBulk.mockResolvedValue({ updated: 1, failed: [] });
+
+        await Inbox.removeFlagsBulk(['10:12'], 'INBOX', flags);
+
+        expect(RNInbox.removeFlagsBulk).toHaveBeenCalledWith(['10:12'], 'INBOX', flags, null);
+      });
+    });
+
     describe('getEmailSize', () => {
       it('should call native getEmailSize method and return size', async () => {
         RNInbox.getEmailSize.mockResolvedValue(1024);
 
         const result = await Inbox.getEmailSize(123, 'INBOX');
 
-        expect(RNInbox.getEmailSize).toHaveBeenCalledWith(123, 'INBOX');
+        expect(RNInbox.getEmailSize).toHaveBeenCalledWith(123, 'INBOX', null);
         expect(result).toBe(1024);
       });
 
@@ -384,7 +929,7 @@ describe('React Native Inbox', () => {
 
         await Inbox.expunge('INBOX');
 
-        expect(RNInbox.expunge).toHaveBeenCalledWith('INBOX');
+        expect(RNInbox.expunge).toHaveBeenCalledWith('INBOX', null);
       });
 
       it('should throw error when native expunge fails', async () => {
@@ -467,6 +1012,24 @@ describe('React Native Inbox', () => {
         expect(RNInbox.sendEmail).toHaveBeenCalledWith(options);
       });
 
+      it('should pass file attachments through to native', async () => {
+        const options = {
+          to: ['recipient@example.com'],
+          subject: 'Report',
+          body: 'See attached',
+          attachments: [
+            { path: '/data/user/0/app/files/report.pdf', contentType: 'application/pdf' },
+            { uri: 'content://media/external/images/42', filename: 'photo.jpg' },
+          ],
+        };
+
+        RNInbox.sendEmail.mockResolvedValue(true);
+
+        await Inbox.sendEmail(options);
+
+        expect(RNInbox.sendEmail).toHaveBeenCalledWith(options);
+      });
+
       it('should throw error when native sendEmail fails', async () => {
         const options = {
           to: ['recipient@example.com'],
@@ -481,6 +1044,41 @@ describe('React Native Inbox', () => {
       });
     });
 
+    describe('queueEmails', () => {
+      it('should queue emails in the native outbox and return their ids', async () => {
+        const emails = [
+          { to: ['a@example.com'], subject: 'Summary', body: 'Hello A' },
+          { to: ['b@example.com'], subject: 'Summary', body: 'Hello B' },
+        ];
+
+        RNInbox.queueEmails.mockResolvedValue(['1760700000000-000001', '1760700000000-000002']);
+
+        const ids = await Inbox.queueEmails(emails);
+
+        expect(RNInbox.queueEmails).toHaveBeenCalledWith(emails, null);
+        expect(ids).toHaveLength(2);
+      });
+
+      it('should throw error when native queueEmail fails', async () => {
+        RNInbox.queueEmail.mockRejectedValue(new Error('Cannot create outbox'));
+
+        await expect(Inbox.queueEmail({ to: ['a@example.com'], subject: 'S', body: 'B' }))
+          .rejects.toThrow('Cannot create outbox');
+      });
+    });
+
+    describe('getOutbox', () => {
+      it('should return queued and failed entries', async () => {
+        const entries = [
+          { id: '1760700000000-000001', status: 'queued', attempts: 2 },
+          { id: '1760700000000-000002', status: 'failed', attempts: 1 },
+        ];
+        RNInbox.getOutbox.mockResolvedValue(entries);
+
+        await expect(Inbox.getOutbox()).resolves.toEqual(entries);
+      });
+    });
+
     describe('saveDraft', () => {
       it('should call native saveDraft method with correct parameters', async () => {
         const options = {
@@ -550,7 +1148,7 @@ describe('React Native Inbox', () => {
 
         const result = await Inbox.getDrafts();
 
-        expect(RNInbox.getDrafts).toHaveBeenCalled();
+        expect(RNInbox.getDrafts).toHaveBeenCalledWith({ accountId: null });
         expect(result).toEqual(mockDrafts);
       });
 
@@ -0,0 +1,92 @@
+package com.reactnativeinbox;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Benchmark results as "benchmark.size.metric = value" properties, and the
+ * comparison of a run against a stored baseline. Throughput may fall and
+ * allocation may grow by the tolerance before counting as a regression;
+ * any extra IMAP round trip is one.
+ */
+final class Baseline {
+    static final String OPS = "opsPerSec";
+    static final String ALLOC = "allocBytesPerOp";
+    static final String ROUND_TRIPS = "roundTrips";
+
+    private Baseline() {
+    }
+
+    static String key(String benchmark, int size, String metric) {
+        return benchmark + "." + size + "." + metric;
+    }
+
+    static Map<String, Double> load(File file) throws IOException {
+        Map<String, Double> values = new TreeMap<>();
+        if (!file.exists()) {
+            return values;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(file)) {
+            properties.load(reader);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            values.put(name, Double.parseDouble(properties.getProperty(name)));
+        }
+        return values;
+    }
+
+    static void save(Map<String, Double> values, File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        try (Writer writer = new FileWriter(file)) {
+            for (Map.Entry<String, Double> entry : new TreeMap<>(values).entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        }
+    }
+
+    /**
+     * One line per metric in current that is worse than in baseline by more
+     * than tolerance (0.1 for 10%); metrics missing from either are skipped.
+     */
+    static List<String> regressions(Map<String, Double> current, Map<String, Double> baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : new TreeMap<>(current).entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            double now = entry.getValue();
+            String key = entry.getKey();
+            boolean worse;
+            if (key.endsWith("." + OPS)) {
+                worse = now < before * (1 - tolerance);
+            } else if (key.endsWith("." + ALLOC)) {
+                worse = now > before * (1 + tolerance);
+            } else {
+                worse = now > before;
+            }
+            if (worse) {
+                regressions.add(String.format("%s: %.1f -> %.1f (%+.1f%%)",
+                    key, before, now, change(before, now)));
+            }
+        }
+        return regressions;
+    }
+
+    static double change(double before, double now) {
+        return before == 0 ? 0 : (now - before) / before * 100;
+    }
+}
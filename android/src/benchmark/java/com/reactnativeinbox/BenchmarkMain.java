@@ -0,0 +1,133 @@
+package com.reactnativeinbox;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Runs ImapBenchmarks with the GC profiler, counts each benchmark's IMAP
+ * round trips, prints throughput, allocation and round trips next to the
+ * stored baseline and writes the results to build/benchmarks.
+ *
+ * Options, mixed freely with JMH's own (e.g. "-p size=1000" or a benchmark
+ * regex):
+ *   --baseline FILE     baseline to compare with (benchmarks/baseline.properties)
+ *   --save-baseline     store this run as the new baseline
+ *   --tolerance 0.1     relative change allowed before a metric regresses
+ *
+ * Exits with status 1 when a metric regressed against the baseline.
+ */
+public final class BenchmarkMain {
+    private static final String DEFAULT_BASELINE = "benchmarks/baseline.properties";
+    private static final String RESULTS = "build/benchmarks/results.properties";
+    private static final double DEFAULT_TOLERANCE = 0.1;
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        File baselineFile = new File(DEFAULT_BASELINE);
+        boolean saveBaseline = false;
+        double tolerance = DEFAULT_TOLERANCE;
+        List<String> jmhArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--baseline":
+                    baselineFile = new File(args[++i]);
+                    break;
+                case "--save-baseline":
+                    saveBaseline = true;
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    jmhArgs.add(args[i]);
+                    break;
+            }
+        }
+
+        CommandLineOptions commandLine = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(ImapBenchmarks.class.getSimpleName());
+        }
+        Collection<RunResult> runs = new Runner(options.build()).run();
+
+        Map<String, Double> current = new TreeMap<>();
+        TreeSet<Integer> sizes = new TreeSet<>();
+        for (RunResult run : runs) {
+            String benchmark = shortName(run.getParams().getBenchmark());
+            int size = Integer.parseInt(run.getParams().getParam("size"));
+            sizes.add(size);
+            current.put(Baseline.key(benchmark, size, Baseline.OPS), run.getPrimaryResult().getScore());
+            Result<?> alloc = allocation(run);
+            if (alloc != null) {
+                current.put(Baseline.key(benchmark, size, Baseline.ALLOC), alloc.getScore());
+            }
+        }
+        for (int size : sizes) {
+            for (Map.Entry<String, Long> entry : ImapBenchmarks.roundTrips(size).entrySet()) {
+                String opsKey = Baseline.key(entry.getKey(), size, Baseline.OPS);
+                if (current.containsKey(opsKey)) {
+                    current.put(Baseline.key(entry.getKey(), size, Baseline.ROUND_TRIPS), (double) entry.getValue());
+                }
+            }
+        }
+
+        Map<String, Double> baseline = Baseline.load(baselineFile);
+        print(current, baseline);
+        Baseline.save(current, new File(RESULTS));
+        System.out.println("Results written to " + RESULTS);
+        if (saveBaseline) {
+            Baseline.save(current, baselineFile);
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+        if (baseline.isEmpty()) {
+            System.out.println("No baseline at " + baselineFile + "; store one with --save-baseline");
+            return;
+        }
+        List<String> regressions = Baseline.regressions(current, baseline, tolerance);
+        if (!regressions.isEmpty()) {
+            System.out.println("Regressions against " + baselineFile + ":");
+            for (String regression : regressions) {
+                System.out.println("  " + regression);
+            }
+            System.exit(1);
+        }
+    }
+
+    private static void print(Map<String, Double> current, Map<String, Double> baseline) {
+        System.out.println();
+        System.out.println(String.format("%-40s %14s %14s %10s", "Metric", "Baseline", "Current", "Change"));
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            System.out.println(String.format("%-40s %14s %14.1f %10s", entry.getKey(),
+                before != null ? String.format("%.1f", before) : "-", entry.getValue(),
+                before != null ? String.format("%+.1f%%", Baseline.change(before, entry.getValue())) : "-"));
+        }
+    }
+
+    // JMH 1.36 dropped the leading "·" from profiler result names
+    private static Result<?> allocation(RunResult run) {
+        Result<?> result = run.getSecondaryResults().get("gc.alloc.rate.norm");
+        return result != null ? result : run.getSecondaryResults().get("·gc.alloc.rate.norm");
+    }
+
+    private static String shortName(String benchmark) {
+        return benchmark.substring(benchmark.lastIndexOf('.') + 1);
+    }
+}
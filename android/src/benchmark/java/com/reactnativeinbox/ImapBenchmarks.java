@@ -0,0 +1,193 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The module's hot paths against a seeded GreenMail server, called the way
+ * InboxModule calls them: a getEmails page in each body mode, a subject
+ * search, a bulk flag change and an SMTP send over a reused connection.
+ * Bridge marshalling (Arguments maps) needs the React Native runtime and is
+ * left out; the load benchmarks cover everything up to the MessageRecords
+ * it converts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ImapBenchmarks {
+    static final int PAGE_SIZE = 50;
+    static final int FLAG_BATCH = 500;
+    static final int SEARCH_LIMIT = 50;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    Mailbox mailbox;
+    Metrics metrics;
+    MeteredStore store;
+    IMAPFolder inbox;
+    Transport transport;
+    MimeMessage outgoing;
+    long[] flagUids;
+    boolean flagSet;
+
+    /**
+     * Reopens INBOX before each call, outside the measured time, so pages
+     * are fetched from the server rather than JavaMail's message cache.
+     */
+    @State(Scope.Thread)
+    public static class FreshFolder {
+        @Setup(Level.Invocation)
+        public void reopen(ImapBenchmarks state) throws MessagingException {
+            state.reopen();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws MessagingException {
+        mailbox = Mailbox.start(size);
+        metrics = new Metrics();
+        store = mailbox.connect(metrics);
+        inbox = (IMAPFolder) store.getFolder("INBOX");
+        inbox.open(Folder.READ_WRITE);
+
+        Message[] newest = UidPager.pageBefore(inbox, 0, FLAG_BATCH);
+        flagUids = new long[newest.length];
+        for (int i = 0; i < newest.length; i++) {
+            flagUids[i] = inbox.getUID(newest[i]);
+        }
+
+        transport = mailbox.smtpSession().getTransport("smtp");
+        transport.connect("localhost", "sink", Mailbox.PASSWORD);
+        outgoing = MessageComposer.compose(mailbox.smtpSession(), Mailbox.USER, new String[]{Mailbox.SINK},
+            null, null, "Benchmark", "Sent by the benchmark suite", false, null);
+        outgoing.saveChanges();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws MessagingException {
+        transport.close();
+        if (inbox.isOpen()) {
+            inbox.close(false);
+        }
+        store.close();
+        mailbox.stop();
+    }
+
+    void reopen() throws MessagingException {
+        if (inbox.isOpen()) {
+            inbox.close(false);
+        }
+        inbox.open(Folder.READ_WRITE);
+    }
+
+    @Benchmark
+    public List<MessageRecord> pageEnvelopes(FreshFolder fresh) throws MessagingException {
+        return load(MessageRecord.BODY_NONE);
+    }
+
+    @Benchmark
+    public List<MessageRecord> pagePreviews(FreshFolder fresh) throws MessagingException {
+        return load(MessageRecord.BODY_PREVIEW);
+    }
+
+    @Benchmark
+    public List<MessageRecord> pageFull(FreshFolder fresh) throws MessagingException {
+        return load(MessageRecord.BODY_FULL);
+    }
+
+    @Benchmark
+    public SearchPlanner.Result searchSubject() throws MessagingException, ParseException {
+        return SearchPlanner.run(inbox, SearchPlanner.build(Collections.singletonMap("subject", "invoice")),
+            null, SEARCH_LIMIT);
+    }
+
+    @Benchmark
+    public BatchResult bulkFlags() throws MessagingException {
+        flagSet = !flagSet;
+        return FlagUpdater.store(inbox, UidSet.of(flagUids), new Flags(Flags.Flag.SEEN), flagSet);
+    }
+
+    @Benchmark
+    public void sendEmail() throws MessagingException {
+        transport.sendMessage(outgoing, new InternetAddress[]{new InternetAddress(Mailbox.SINK)});
+    }
+
+    private List<MessageRecord> load(int bodyLevel) throws MessagingException {
+        Message[] page = UidPager.pageBefore(inbox, 0, PAGE_SIZE);
+        return MessageLoader.load(inbox, page, bodyLevel, BodyFetcher.DEFAULT_PREVIEW_BYTES, null);
+    }
+
+    /**
+     * IMAP commands each benchmark sends per call on a mailbox of the given
+     * size, counted once outside JMH; SMTP sends count no IMAP commands.
+     */
+    static Map<String, Long> roundTrips(int size) throws Exception {
+        ImapBenchmarks state = new ImapBenchmarks();
+        state.size = size;
+        state.setUp();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try {
+            FreshFolder fresh = new FreshFolder();
+            fresh.reopen(state);
+            counts.put("pageEnvelopes", count(state, () -> state.pageEnvelopes(fresh)));
+            fresh.reopen(state);
+            counts.put("pagePreviews", count(state, () -> state.pagePreviews(fresh)));
+            fresh.reopen(state);
+            counts.put("pageFull", count(state, () -> state.pageFull(fresh)));
+            counts.put("searchSubject", count(state, state::searchSubject));
+            counts.put("bulkFlags", count(state, state::bulkFlags));
+            counts.put("sendEmail", count(state, () -> {
+                state.sendEmail();
+                return null;
+            }));
+        } finally {
+            state.tearDown();
+        }
+        return counts;
+    }
+
+    private interface Call {
+        Object run() throws Exception;
+    }
+
+    private static long count(ImapBenchmarks state, Call call) throws Exception {
+        state.metrics.reset();
+        call.run();
+        long commands = 0;
+        for (int i = 0; i <= Metrics.COMMANDS.length; i++) {
+            commands += state.metrics.command(i).count();
+        }
+        return commands;
+    }
+}
@@ -0,0 +1,135 @@
+package com.reactnativeinbox;
+
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import javax.activation.DataHandler;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.URLName;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.util.ByteArrayDataSource;
+import java.util.Date;
+import java.util.Properties;
+
+/**
+ * An embedded GreenMail IMAP and SMTP server whose INBOX is seeded with size
+ * synthetic messages cycling through the shapes real mailboxes hold: plain
+ * text, text with an HTML alternative, HTML only, and an alternative nested
+ * in multipart/mixed with a small attachment. Every tenth subject contains
+ * "invoice", so searches have a known hit rate.
+ */
+final class Mailbox {
+    static final String USER = "bench@localhost";
+    static final String LOGIN = "bench";
+    static final String PASSWORD = "secret";
+    // Outgoing benchmark mail goes here, so it never grows the seeded INBOX
+    static final String SINK = "sink@localhost";
+
+    private static final int SHAPES = 4;
+    private static final byte[] ATTACHMENT = new byte[2048];
+
+    final GreenMail server;
+    final int size;
+
+    private Mailbox(GreenMail server, int size) {
+        this.server = server;
+        this.size = size;
+    }
+
+    static Mailbox start(int size) throws MessagingException {
+        GreenMail server = new GreenMail(new ServerSetup[]{ServerSetupTest.IMAP, ServerSetupTest.SMTP});
+        server.start();
+        GreenMailUser user = server.setUser(USER, LOGIN, PASSWORD);
+        server.setUser(SINK, "sink", PASSWORD);
+
+        Session session = Session.getInstance(new Properties());
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            user.deliver(message(session, i, new Date(now - (size - i) * 60000L)));
+        }
+        return new Mailbox(server, size);
+    }
+
+    /**
+     * A new store on the seeded account whose commands are timed into
+     * metrics, configured as InboxModule configures its own.
+     */
+    MeteredStore connect(Metrics metrics) throws MessagingException {
+        Properties props = new Properties();
+        props.put("mail.imap.peek", "true");
+        Session session = Session.getInstance(props);
+        int port = ServerSetupTest.IMAP.getPort();
+        MeteredStore store = new MeteredStore(session, new URLName("imap", "localhost", port, null, null, null), metrics);
+        store.connect("localhost", port, LOGIN, PASSWORD);
+        return store;
+    }
+
+    Session smtpSession() {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", String.valueOf(ServerSetupTest.SMTP.getPort()));
+        props.put("mail.smtp.auth", "true");
+        props.put("mail.smtp.from", USER);
+        return Session.getInstance(props);
+    }
+
+    void stop() {
+        server.stop();
+    }
+
+    private static MimeMessage message(Session session, int i, Date date) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("sender" + (i % 97) + "@example.com"));
+        message.setRecipients(Message.RecipientType.TO, USER);
+        if (i % 3 == 0) {
+            message.setRecipients(Message.RecipientType.CC, "cc" + (i % 13) + "@example.com");
+        }
+        message.setSubject((i % 10 == 0 ? "Invoice " : "Update ") + i);
+        message.setSentDate(date);
+
+        String text = "Message " + i + ". Quarterly numbers, meeting notes and a reply to the thread above. ";
+        String html = "<html><body><p>" + text + "</p><p><b>Regards</b></p></body></html>";
+        switch (i % SHAPES) {
+            case 0:
+                message.setText(text);
+                break;
+            case 1:
+                message.setContent(alternative(text, html));
+                break;
+            case 2:
+                message.setContent(html, "text/html; charset=utf-8");
+                break;
+            default:
+                MimeMultipart mixed = new MimeMultipart("mixed");
+                MimeBodyPart body = new MimeBodyPart();
+                body.setContent(alternative(text, html));
+                mixed.addBodyPart(body);
+                MimeBodyPart attachment = new MimeBodyPart();
+                attachment.setDataHandler(new DataHandler(new ByteArrayDataSource(ATTACHMENT, "application/octet-stream")));
+                attachment.setFileName("report-" + i + ".bin");
+                mixed.addBodyPart(attachment);
+                message.setContent(mixed);
+                break;
+        }
+        message.saveChanges();
+        return message;
+    }
+
+    private static MimeMultipart alternative(String text, String html) throws MessagingException {
+        MimeMultipart alternative = new MimeMultipart("alternative");
+        MimeBodyPart plain = new MimeBodyPart();
+        plain.setText(text, "utf-8");
+        alternative.addBodyPart(plain);
+        MimeBodyPart rich = new MimeBodyPart();
+        rich.setContent(html, "text/html; charset=utf-8");
+        alternative.addBodyPart(rich);
+        return alternative;
+    }
+}
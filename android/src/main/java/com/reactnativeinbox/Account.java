@@ -0,0 +1,78 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPStore;
+
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The connections of one email account and the settings it was connected
+ * with. Each account has its own IMAP store, and so its own connection pool
+ * and folder cache, and its own SMTP transport and outbox; the executor
+ * lanes, body cache, message store and search index are shared by all
+ * accounts. Calls without an accountId use the default account.
+ */
+final class Account {
+    static final String DEFAULT_ID = "default";
+
+    final String id;
+    // Read by the executor lanes, written by connect on the modules thread
+    volatile IMAPStore imapStore;
+    // Set by connect and cleared by disconnect; IMAPStore.isConnected sends a NOOP
+    volatile boolean connected;
+    volatile FolderCache folderCache;
+    // username@host, which names the account's cache and index files
+    volatile String name;
+    volatile boolean cacheEnabled;
+    volatile boolean indexEnabled;
+    volatile FolderTree folderTree;
+    volatile MeteredSocketFactory socketFactory;
+    volatile int fetchSize;
+    volatile boolean compressEnabled;
+    volatile ReadAhead readAhead;
+    final Map<String, IdleWatcher> idleWatchers = new HashMap<>();
+    volatile Session smtpSession;
+    Transport smtpTransport;
+    String smtpHost;
+    String smtpUsername;
+    String smtpPassword;
+    volatile Outbox outbox;
+
+    Account(String id) {
+        this.id = id;
+    }
+
+    static String id(String accountId) {
+        return accountId != null ? accountId : DEFAULT_ID;
+    }
+
+    /**
+     * The executor key for calls on key (a folder name or a StripedExecutor
+     * key) of the given account, so each account's folders keep their own
+     * order on the shared lanes.
+     */
+    static String laneKey(String accountId, String key) {
+        return id(accountId) + "\u0000" + key;
+    }
+
+    boolean isConnected() {
+        return connected && imapStore != null;
+    }
+
+    boolean isSmtpConnected() {
+        Transport transport = smtpTransport;
+        return transport != null && transport.isConnected();
+    }
+
+    /**
+     * The default account keeps the directory name it had before accounts
+     * existed; others get their own, named by a hash since ids may contain
+     * any character.
+     */
+    File dir(File parent, String name) {
+        return DEFAULT_ID.equals(id) ? new File(parent, name) : new File(parent, name + "-" + MessageStore.key(id, name));
+    }
+}
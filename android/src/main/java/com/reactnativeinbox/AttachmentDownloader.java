@@ -0,0 +1,188 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.iap.ByteArray;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPMessage;
+import com.sun.mail.imap.protocol.BODY;
+import com.sun.mail.imap.protocol.BODYSTRUCTURE;
+
+import javax.mail.Message;
+import javax.mail.MessageRemovedException;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeUtility;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Downloads one MIME part straight to a file. The part is fetched in
+ * fixed-size partial FETCHes into a single reused buffer, decoded as it
+ * streams and written through a FileChannel, so the heap used is a few
+ * buffers whatever the attachment's size.
+ */
+final class AttachmentDownloader {
+    static final int DEFAULT_CHUNK_BYTES = 64 * 1024;
+    // Room in the fetch buffer for the FETCH response around the literal
+    private static final int RESPONSE_SLOP = 128;
+
+    interface Progress {
+        /**
+         * received and total count transfer-encoded bytes, as the server
+         * reports the part's size; total is -1 when unknown.
+         */
+        void onProgress(long received, long total);
+    }
+
+    private AttachmentDownloader() {
+    }
+
+    /**
+     * Writes the decoded bytes of the part at section to dest and returns how
+     * many were written. The file appears only once complete: it is written
+     * next to dest and renamed.
+     */
+    static long download(IMAPFolder folder, long uid, String section, File dest, int chunkBytes,
+                         Progress progress) throws MessagingException, IOException {
+        Message message = folder.getMessageByUID(uid);
+        if (message == null) {
+            throw new MessagingException("Message not found");
+        }
+        BODYSTRUCTURE root = BodyFetcher.fetchStructures(folder, new Message[]{message}).get(message.getMessageNumber());
+        MimeStructure.Part part = root != null ? MimeStructure.find(root, section) : null;
+        if (part == null) {
+            throw new MessagingException("Message has no part " + section);
+        }
+        if (part.structure.isMulti()) {
+            throw new MessagingException("Part " + section + " is a multipart, not an attachment");
+        }
+
+        File parent = dest.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        File temp = new File(dest.getPath() + ".part");
+        String encoding = part.structure.encoding != null ? part.structure.encoding : "7bit";
+        SectionInputStream raw = new SectionInputStream(folder, (IMAPMessage) message, section,
+            Math.max(1024, chunkBytes), part.structure.size, progress);
+
+        long written = 0;
+        try (InputStream in = MimeUtility.decode(raw, encoding);
+             FileOutputStream out = new FileOutputStream(temp);
+             FileChannel channel = out.getChannel()) {
+            byte[] buffer = new byte[Math.max(1024, chunkBytes)];
+            ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                wrapped.clear();
+                wrapped.limit(read);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+                written += read;
+            }
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            // Fetch errors reach us wrapped by the stream
+            if (e.getCause() instanceof MessagingException) {
+                throw (MessagingException) e.getCause();
+            }
+            throw e;
+        }
+
+        if (!temp.renameTo(dest)) {
+            dest.delete();
+            if (!temp.renameTo(dest)) {
+                temp.delete();
+                throw new IOException("Cannot write " + dest);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * The transfer-encoded bytes of one section, read with
+     * BODY.PEEK[section]<offset.chunk> into the same buffer each time.
+     */
+    private static final class SectionInputStream extends InputStream {
+        private final IMAPFolder folder;
+        private final IMAPMessage message;
+        private final String section;
+        private final int chunk;
+        private final long total;
+        private final Progress progress;
+        private final ByteArray fetchBuffer;
+
+        private byte[] bytes;
+        private int pos;
+        private int limit;
+        private int offset;
+        private boolean eof;
+
+        SectionInputStream(IMAPFolder folder, IMAPMessage message, String section, int chunk,
+                           long total, Progress progress) {
+            this.folder = folder;
+            this.message = message;
+            this.section = section;
+            this.chunk = chunk;
+            this.total = total;
+            this.progress = progress;
+            this.fetchBuffer = new ByteArray(chunk + RESPONSE_SLOP);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= limit && !fill()) {
+                return -1;
+            }
+            return bytes[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pos >= limit && !fill()) {
+                return -1;
+            }
+            int count = Math.min(len, limit - pos);
+            System.arraycopy(bytes, pos, b, off, count);
+            pos += count;
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            if (eof) {
+                return false;
+            }
+            BODY body;
+            try {
+                if (message.isExpunged()) {
+                    throw new MessageRemovedException("Message was deleted during download");
+                }
+                // Message numbers shift on EXPUNGE, so it is read per chunk
+                body = (BODY) folder.doCommand(protocol ->
+                    protocol.peekBody(message.getMessageNumber(), section, offset, chunk, fetchBuffer));
+            } catch (MessagingException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+
+            ByteArray data = body != null ? body.getByteArray() : null;
+            if (data == null || data.getCount() == 0) {
+                eof = true;
+                return false;
+            }
+            bytes = data.getBytes();
+            pos = data.getStart();
+            limit = pos + data.getCount();
+            offset += data.getCount();
+            if (data.getCount() < chunk || (total >= 0 && offset >= total)) {
+                eof = true;
+            }
+            if (progress != null) {
+                progress.onProgress(offset, total);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.reactnativeinbox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of an operation on many UIDs: how many messages it applied to, and
+ * the UIDs it could not apply to with the reason for each.
+ */
+final class BatchResult {
+    static final String NOT_FOUND = "Message not found";
+
+    int succeeded;
+    final List<Long> failedUids = new ArrayList<>();
+    final List<String> failedErrors = new ArrayList<>();
+
+    void fail(long uid, String error) {
+        failedUids.add(uid);
+        failedErrors.add(error);
+    }
+}
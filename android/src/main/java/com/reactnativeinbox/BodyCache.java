@@ -0,0 +1,326 @@
+package com.reactnativeinbox;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Decoded message texts keyed by folder URL (which names the account),
+ * UIDVALIDITY, UID and section, in two tiers: an LRU in memory bounded by bytes, and gzipped files
+ * in the app's cache directory that entries spill to when the memory tier
+ * evicts them. Disk entries are bounded by total file size and dropped
+ * oldest first. A changed UIDVALIDITY changes the key, so stale texts are
+ * never returned, only left to age out. One cache serves every account, so
+ * its limits bound them all together.
+ */
+final class BodyCache {
+    private static final String TAG = "InboxModule";
+    private static final int FORMAT_VERSION = 2;
+    static final long DEFAULT_MEMORY_BYTES = 4 * 1024 * 1024;
+    static final long DEFAULT_DISK_BYTES = 32 * 1024 * 1024;
+    // Map entry, key and String headers, roughly
+    private static final int ENTRY_OVERHEAD = 96;
+
+    static final class Stats {
+        long memoryHits;
+        long diskHits;
+        long misses;
+        long evictions;
+        long memoryBytes;
+        int memoryEntries;
+        long diskBytes;
+        int diskEntries;
+        long maxMemoryBytes;
+        long maxDiskBytes;
+
+        double hitRate() {
+            long lookups = memoryHits + diskHits + misses;
+            return lookups == 0 ? 0 : (double) (memoryHits + diskHits) / lookups;
+        }
+    }
+
+    private final File dir;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    // Access-ordered, so iteration starts at the least recently used
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(64, 0.75f, true);
+    // File name to size, oldest first
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+    private long memoryHits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * A maxDiskBytes of 0 turns the disk tier off; evicted texts are then
+     * dropped.
+     */
+    BodyCache(File dir, long maxMemoryBytes, long maxDiskBytes) {
+        this.dir = dir;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        indexDisk();
+    }
+
+    static String key(String folder, long uidValidity, long uid, String section, int maxBytes) {
+        return folder + "\n" + uidValidity + "\n" + uid + "\n" + section + (maxBytes > 0 ? "<" + maxBytes + ">" : "");
+    }
+
+    /**
+     * The cached text for key, from memory or else from disk, in which case
+     * it moves back into memory; null when neither tier has it.
+     */
+    String get(String key) {
+        synchronized (this) {
+            String text = memory.get(key);
+            if (text != null) {
+                memoryHits++;
+                return text;
+            }
+        }
+        String text = maxDiskBytes > 0 ? readDisk(key) : null;
+        synchronized (this) {
+            if (text == null) {
+                misses++;
+                return null;
+            }
+            diskHits++;
+        }
+        put(key, text);
+        return text;
+    }
+
+    void put(String key, String text) {
+        long size = size(key, text);
+        if (size > maxMemoryBytes) {
+            spill(Arrays.asList(new String[]{key, text}));
+            return;
+        }
+        List<String> evicted;
+        synchronized (this) {
+            String previous = memory.put(key, text);
+            if (previous != null) {
+                memoryBytes -= size(key, previous);
+            }
+            memoryBytes += size;
+            evicted = evict(maxMemoryBytes);
+        }
+        spill(evicted);
+    }
+
+    /**
+     * Spills least recently used texts to disk until the memory tier holds
+     * at most targetBytes, e.g. when the system asks the app to trim memory.
+     */
+    void trim(long targetBytes) {
+        List<String> evicted;
+        synchronized (this) {
+            evicted = evict(targetBytes);
+        }
+        spill(evicted);
+    }
+
+    long maxMemoryBytes() {
+        return maxMemoryBytes;
+    }
+
+    synchronized void clear() {
+        memory.clear();
+        memoryBytes = 0;
+        for (String name : disk.keySet()) {
+            new File(dir, name).delete();
+        }
+        disk.clear();
+        diskBytes = 0;
+        memoryHits = 0;
+        diskHits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    synchronized Stats stats() {
+        Stats stats = new Stats();
+        stats.memoryHits = memoryHits;
+        stats.diskHits = diskHits;
+        stats.misses = misses;
+        stats.evictions = evictions;
+        stats.memoryBytes = memoryBytes;
+        stats.memoryEntries = memory.size();
+        stats.diskBytes = diskBytes;
+        stats.diskEntries = disk.size();
+        stats.maxMemoryBytes = maxMemoryBytes;
+        stats.maxDiskBytes = maxDiskBytes;
+        return stats;
+    }
+
+    // Removes least recently used entries until memoryBytes <= target and
+    // returns them as key, text pairs
+    private List<String> evict(long target) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, String>> iterator = memory.entrySet().iterator();
+        while (memoryBytes > target && iterator.hasNext()) {
+            Map.Entry<String, String> entry = iterator.next();
+            memoryBytes -= size(entry.getKey(), entry.getValue());
+            evicted.add(entry.getKey());
+            evicted.add(entry.getValue());
+            iterator.remove();
+            evictions++;
+        }
+        return evicted;
+    }
+
+    // Writes outside the lock, so lookups never wait on the disk
+    private void spill(List<String> evicted) {
+        if (maxDiskBytes <= 0 || evicted.isEmpty()) {
+            return;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create body cache directory " + dir);
+            return;
+        }
+        for (int i = 0; i < evicted.size(); i += 2) {
+            writeDisk(evicted.get(i), evicted.get(i + 1));
+        }
+    }
+
+    private void writeDisk(String key, String text) {
+        String name = fileName(key);
+        File file = new File(dir, name);
+        File temp = new File(dir, name + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, key);
+            writeString(out, text);
+        } catch (IOException e) {
+            Log.w(TAG, "Error writing body cache: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.w(TAG, "Error replacing body cache file " + file);
+            temp.delete();
+            return;
+        }
+
+        List<String> dropped = new ArrayList<>();
+        synchronized (this) {
+            Long previous = disk.put(name, file.length());
+            diskBytes += file.length() - (previous != null ? previous : 0);
+            Iterator<Map.Entry<String, Long>> iterator = disk.entrySet().iterator();
+            while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+                Map.Entry<String, Long> oldest = iterator.next();
+                diskBytes -= oldest.getValue();
+                dropped.add(oldest.getKey());
+                iterator.remove();
+            }
+        }
+        for (String old : dropped) {
+            new File(dir, old).delete();
+        }
+    }
+
+    private String readDisk(String key) {
+        String name = fileName(key);
+        synchronized (this) {
+            // Also marks the file as recently used
+            if (disk.get(name) == null) {
+                return null;
+            }
+        }
+        File file = new File(dir, name);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != FORMAT_VERSION || !key.equals(readString(in))) {
+                return null;
+            }
+            return readString(in);
+        } catch (IOException e) {
+            // A corrupt entry is only a cache miss
+            Log.w(TAG, "Error reading body cache: " + e.getMessage());
+            synchronized (this) {
+                Long size = disk.remove(name);
+                diskBytes -= size != null ? size : 0;
+            }
+            file.delete();
+            return null;
+        }
+    }
+
+    // Picks up files from earlier sessions, oldest first, and drops any over
+    // the size limit
+    private void indexDisk() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+                continue;
+            }
+            disk.put(file.getName(), file.length());
+            diskBytes += file.length();
+        }
+        Iterator<Map.Entry<String, Long>> iterator = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> oldest = iterator.next();
+            diskBytes -= oldest.getValue();
+            new File(dir, oldest.getKey()).delete();
+            iterator.remove();
+        }
+    }
+
+    private static long size(String key, String text) {
+        return ENTRY_OVERHEAD + 2L * (key.length() + text.length());
+    }
+
+    // writeUTF stops at 64 KB, and bodies can be longer
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Folder names may contain any character, so files are named by a hash
+    private static String fileName(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2 + 3);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.append(".gz").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
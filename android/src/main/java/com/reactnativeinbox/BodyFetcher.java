@@ -0,0 +1,291 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.iap.ByteArray;
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.iap.Response;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.protocol.BODY;
+import com.sun.mail.imap.protocol.BODYSTRUCTURE;
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.IMAPProtocol;
+import com.sun.mail.imap.protocol.MessageSet;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeUtility;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches message text by section with BODY.PEEK, so reading a body never
+ * downloads attachments or the rest of the message.
+ */
+final class BodyFetcher {
+    static final int DEFAULT_PREVIEW_BYTES = 512;
+
+    private BodyFetcher() {
+    }
+
+    /**
+     * Returns the BODYSTRUCTURE of every message, keyed by message number,
+     * using a single FETCH for the whole array.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<Integer, BODYSTRUCTURE> fetchStructures(IMAPFolder folder, Message[] messages) throws MessagingException {
+        if (messages.length == 0) {
+            return Collections.emptyMap();
+        }
+        final MessageSet[] sets = MessageSet.createMessageSets(messageNumbers(messages));
+        return (Map<Integer, BODYSTRUCTURE>) folder.doCommand(protocol -> {
+            Response[] responses = protocol.fetch(sets, "BODYSTRUCTURE");
+            Map<Integer, BODYSTRUCTURE> structures = new HashMap<>();
+            for (int i = 0; i < responses.length; i++) {
+                if (responses[i] instanceof FetchResponse) {
+                    FetchResponse fetchResponse = (FetchResponse) responses[i];
+                    BODYSTRUCTURE structure = fetchResponse.getItem(BODYSTRUCTURE.class);
+                    if (structure != null) {
+                        structures.put(fetchResponse.getNumber(), structure);
+                        responses[i] = null;
+                    }
+                }
+            }
+            dispatch(protocol, responses);
+            return structures;
+        });
+    }
+
+    /**
+     * Fetches the given text part of each message, keyed by message number.
+     * Messages whose part has the same section number are fetched together,
+     * so a page usually costs one FETCH per distinct section. With a positive
+     * maxBytes only the first maxBytes of each part are fetched. Texts found
+     * in cache are not fetched, and fetched ones are added to it.
+     */
+    static Map<Integer, String> fetchTexts(IMAPFolder folder, Map<Integer, MimeStructure.Part> parts, int maxBytes,
+                                           BodyCache cache) throws MessagingException {
+        Map<Integer, String> texts = new HashMap<>();
+        Map<Integer, String> keys = new HashMap<>();
+        Map<String, List<Integer>> bySection = new LinkedHashMap<>();
+        long uidValidity = cache != null ? folder.getUIDValidity() : -1;
+        // The folder's URL names the account too, so accounts never share entries
+        String folderUrl = cache != null ? folder.getURLName().toString() : null;
+        for (Map.Entry<Integer, MimeStructure.Part> entry : parts.entrySet()) {
+            String section = entry.getValue().section;
+            if (cache != null) {
+                long uid = folder.getUID(folder.getMessage(entry.getKey()));
+                String key = BodyCache.key(folderUrl, uidValidity, uid, section, maxBytes);
+                String cached = cache.get(key);
+                if (cached != null) {
+                    texts.put(entry.getKey(), cached);
+                    continue;
+                }
+                keys.put(entry.getKey(), key);
+            }
+            bySection.computeIfAbsent(section, key -> new ArrayList<>()).add(entry.getKey());
+        }
+
+        for (Map.Entry<String, List<Integer>> group : bySection.entrySet()) {
+            Map<Integer, byte[]> raw = fetchSection(folder, group.getValue(), group.getKey(), maxBytes);
+            for (Map.Entry<Integer, byte[]> entry : raw.entrySet()) {
+                MimeStructure.Part part = parts.get(entry.getKey());
+                BODYSTRUCTURE structure = part.structure;
+                boolean truncated = maxBytes > 0 && (structure.size < 0 || structure.size > maxBytes);
+                String text = decodeText(entry.getValue(), structure.encoding, part.charset(), truncated);
+                texts.put(entry.getKey(), text);
+                if (cache != null) {
+                    cache.put(keys.get(entry.getKey()), text);
+                }
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Fetches and joins the body parts of each message, keyed by message
+     * number, one fetchTexts round per part: the first round fetches every
+     * message's first part, the next the second part of those that have one.
+     * With a positive maxBytes a message gets no further parts once its text
+     * is that long.
+     */
+    static Map<Integer, String> fetchBodies(IMAPFolder folder, Map<Integer, List<MimeStructure.Part>> parts, int maxBytes,
+                                            BodyCache cache) throws MessagingException {
+        Map<Integer, StringBuilder> joined = new HashMap<>();
+        for (int round = 0; ; round++) {
+            Map<Integer, MimeStructure.Part> next = new HashMap<>();
+            for (Map.Entry<Integer, List<MimeStructure.Part>> entry : parts.entrySet()) {
+                StringBuilder text = joined.get(entry.getKey());
+                boolean full = maxBytes > 0 && text != null && text.length() >= maxBytes;
+                if (entry.getValue().size() > round && !full) {
+                    next.put(entry.getKey(), entry.getValue().get(round));
+                }
+            }
+            if (next.isEmpty()) {
+                break;
+            }
+            for (Map.Entry<Integer, String> text : fetchTexts(folder, next, maxBytes, cache).entrySet()) {
+                append(joined.computeIfAbsent(text.getKey(), key -> new StringBuilder()), text.getValue());
+            }
+        }
+        Map<Integer, String> texts = new HashMap<>();
+        for (Map.Entry<Integer, StringBuilder> entry : joined.entrySet()) {
+            texts.put(entry.getKey(), entry.getValue().toString());
+        }
+        return texts;
+    }
+
+    // Parts are joined on a line break, which decoding may have trimmed
+    static void append(StringBuilder body, String part) {
+        if (body.length() > 0 && body.charAt(body.length() - 1) != '\n') {
+            body.append('\n');
+        }
+        body.append(part);
+    }
+
+    /**
+     * Returns a whitespace-collapsed plain-text preview of about maxBytes of
+     * each message's body parts, keyed by message number.
+     */
+    static Map<Integer, String> fetchPreviews(IMAPFolder folder, Map<Integer, List<MimeStructure.Part>> parts, int maxBytes,
+                                              BodyCache cache) throws MessagingException {
+        Map<Integer, String> previews = fetchBodies(folder, parts, maxBytes, cache);
+        for (Map.Entry<Integer, String> entry : previews.entrySet()) {
+            entry.setValue(toPreview(entry.getValue(), parts.get(entry.getKey()).get(0).isHtml()));
+        }
+        return previews;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, byte[]> fetchSection(IMAPFolder folder, List<Integer> messageNumbers,
+                                                     String section, int maxBytes) throws MessagingException {
+        int[] numbers = new int[messageNumbers.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = messageNumbers.get(i);
+        }
+        Arrays.sort(numbers);
+        final MessageSet[] sets = MessageSet.createMessageSets(numbers);
+        final String item = "BODY.PEEK[" + section + "]" + (maxBytes > 0 ? "<0." + maxBytes + ">" : "");
+        return (Map<Integer, byte[]>) folder.doCommand(protocol -> {
+            Response[] responses = protocol.fetch(sets, item);
+            Map<Integer, byte[]> bodies = new HashMap<>();
+            for (int i = 0; i < responses.length; i++) {
+                if (responses[i] instanceof FetchResponse) {
+                    FetchResponse fetchResponse = (FetchResponse) responses[i];
+                    BODY body = fetchResponse.getItem(BODY.class);
+                    if (body != null) {
+                        ByteArray bytes = body.getByteArray();
+                        bodies.put(fetchResponse.getNumber(), bytes != null ? bytes.getNewBytes() : new byte[0]);
+                        responses[i] = null;
+                    }
+                }
+            }
+            dispatch(protocol, responses);
+            return bodies;
+        });
+    }
+
+    /**
+     * Undoes the transfer encoding and charset of a text part. When the bytes
+     * were cut off by a partial fetch, a broken trailing base64 group or
+     * multi-byte character is dropped instead of failing the whole preview.
+     */
+    static String decodeText(byte[] raw, String encoding, String charset, boolean truncated) {
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(raw.length);
+        int length = truncated ? completeLength(raw, encoding) : raw.length;
+        try {
+            InputStream in = MimeUtility.decode(new ByteArrayInputStream(raw, 0, length), encoding != null ? encoding : "7bit");
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                decoded.write(buffer, 0, read);
+            }
+        } catch (IOException | MessagingException e) {
+            if (!truncated) {
+                decoded.reset();
+                decoded.write(raw, 0, raw.length);
+            }
+        }
+
+        String text = new String(decoded.toByteArray(), resolveCharset(charset));
+        if (truncated) {
+            int end = text.length();
+            while (end > 0 && text.charAt(end - 1) == '\uFFFD') {
+                end--;
+            }
+            text = text.substring(0, end);
+        }
+        return text;
+    }
+
+    // Length of the prefix of a cut-off part that still decodes cleanly: whole
+    // base64 quanta, or quoted-printable without a dangling =XX escape
+    private static int completeLength(byte[] raw, String encoding) {
+        if ("base64".equalsIgnoreCase(encoding)) {
+            int significant = 0;
+            int end = 0;
+            for (int i = 0; i < raw.length; i++) {
+                if (raw[i] > ' ') {
+                    significant++;
+                    if (significant % 4 == 0) {
+                        end = i + 1;
+                    }
+                }
+            }
+            return end;
+        }
+        if ("quoted-printable".equalsIgnoreCase(encoding)) {
+            for (int i = Math.max(0, raw.length - 2); i < raw.length; i++) {
+                if (raw[i] == '=') {
+                    return i;
+                }
+            }
+        }
+        return raw.length;
+    }
+
+    private static Charset resolveCharset(String charset) {
+        if (charset == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(MimeUtility.javaCharset(charset));
+        } catch (Exception e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    static String toPreview(String text, boolean isHtml) {
+        if (isHtml) {
+            text = text.replaceAll("(?is)<(style|script)[^>]*>.*?(</\\1>|$)", " ")
+                .replaceAll("<[^>]*>?", " ")
+                .replace("&nbsp;", " ");
+        }
+        return text.replaceAll("\\s+", " ").trim();
+    }
+
+    private static int[] messageNumbers(Message[] messages) {
+        int[] numbers = new int[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            numbers[i] = messages[i].getMessageNumber();
+        }
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    // Hands unsolicited responses (EXISTS, EXPUNGE, ...) back to the folder
+    // and turns a NO/BAD completion into an exception
+    private static void dispatch(IMAPProtocol protocol, Response[] responses) throws ProtocolException {
+        protocol.notifyResponseHandlers(responses);
+        protocol.handleResult(responses[responses.length - 1]);
+    }
+}
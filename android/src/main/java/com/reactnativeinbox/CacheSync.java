@@ -0,0 +1,106 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+
+import javax.mail.FetchProfile;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.UIDFolder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves a page of messages from the MessageStore, fetching from the server
+ * only what the cache lacks. The page's UIDs and flags are read in one small
+ * FETCH; envelopes and bodies are fetched only for UIDs not yet cached, which
+ * after the first sync means the messages that arrived since the last
+ * UIDNEXT.
+ */
+final class CacheSync {
+    private static final FetchProfile UID_AND_FLAGS = new FetchProfile();
+
+    static {
+        UID_AND_FLAGS.add(UIDFolder.FetchProfileItem.UID);
+        UID_AND_FLAGS.add(FetchProfile.Item.FLAGS);
+    }
+
+    private CacheSync() {
+    }
+
+    /**
+     * Returns records for page in page order. A contiguous page (a run of
+     * message numbers, as getEmails and getEmailsPage load) also proves which
+     * cached UIDs in its range are gone, and those records are dropped.
+     */
+    static List<MessageRecord> resolve(IMAPFolder folder, MessageStore.FolderSnapshot snapshot, Message[] page,
+                                       boolean contiguous, int bodyLevel, int previewBytes,
+                                       BodyCache bodies) throws MessagingException {
+        snapshot.validate(folder.getUIDValidity());
+        if (page.length == 0) {
+            return new ArrayList<>();
+        }
+
+        folder.fetch(page, UID_AND_FLAGS);
+
+        List<Message> missing = new ArrayList<>();
+        for (Message message : page) {
+            MessageRecord cached = snapshot.records.get(folder.getUID(message));
+            if (cached == null || cached.bodyLevel < bodyLevel) {
+                missing.add(message);
+            } else {
+                // Flags are the one part of a cached message that changes
+                int flags = MessageRecord.flagBits(message.getFlags());
+                if (cached.flags != flags) {
+                    cached.flags = flags;
+                    snapshot.unsaved++;
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (MessageRecord record : MessageLoader.load(folder, missing.toArray(new Message[0]), bodyLevel, previewBytes, bodies)) {
+                snapshot.records.put(record.uid, record);
+                snapshot.unsaved++;
+            }
+        }
+
+        if (contiguous) {
+            pruneExpunged(folder, snapshot, page);
+        }
+
+        long uidNext = folder.getUIDNext();
+        if (uidNext > snapshot.uidNext) {
+            snapshot.uidNext = uidNext;
+            snapshot.unsaved++;
+        }
+
+        List<MessageRecord> records = new ArrayList<>(page.length);
+        for (Message message : page) {
+            MessageRecord record = snapshot.records.get(folder.getUID(message));
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static void pruneExpunged(IMAPFolder folder, MessageStore.FolderSnapshot snapshot, Message[] page) throws MessagingException {
+        Set<Long> present = new HashSet<>();
+        for (Message message : page) {
+            present.add(folder.getUID(message));
+        }
+        long first = folder.getUID(page[0]);
+        long last = folder.getUID(page[page.length - 1]);
+        boolean endsAtNewest = page[page.length - 1].getMessageNumber() == folder.getMessageCount();
+
+        Map<Long, MessageRecord> range = endsAtNewest
+            ? snapshot.records.tailMap(first, true)
+            : snapshot.records.subMap(first, true, last, true);
+        int size = range.size();
+        range.keySet().retainAll(present);
+        snapshot.unsaved += size - range.size();
+    }
+}
@@ -0,0 +1,92 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+
+import javax.mail.Flags;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+
+/**
+ * Sets or clears flags on many messages at once: the UIDs are resolved with
+ * one UID FETCH per range and the flags changed with one STORE over a
+ * compressed sequence set, however many messages are involved.
+ */
+final class FlagUpdater {
+    private FlagUpdater() {
+    }
+
+    /**
+     * Maps flag names to Flags. The system flags are matched case-insensitively
+     * with or without their backslash ("seen", "\\Seen"); any other name is
+     * stored as a user keyword such as "$Important".
+     */
+    static Flags parse(String[] names) {
+        Flags flags = new Flags();
+        for (String name : names) {
+            if (name == null || name.trim().isEmpty()) {
+                continue;
+            }
+            String trimmed = name.trim();
+            boolean system = trimmed.startsWith("\\");
+            String bare = system ? trimmed.substring(1) : trimmed;
+            switch (bare.toUpperCase()) {
+                case "SEEN":
+                    flags.add(Flags.Flag.SEEN);
+                    break;
+                case "ANSWERED":
+                    flags.add(Flags.Flag.ANSWERED);
+                    break;
+                case "FLAGGED":
+                    flags.add(Flags.Flag.FLAGGED);
+                    break;
+                case "DELETED":
+                    flags.add(Flags.Flag.DELETED);
+                    break;
+                case "DRAFT":
+                    flags.add(Flags.Flag.DRAFT);
+                    break;
+                default:
+                    if (system) {
+                        throw new IllegalArgumentException("Unsupported system flag: " + trimmed);
+                    }
+                    flags.add(bare);
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Adds (set = true) or removes the flags on every message in uids. UIDs
+     * that no longer exist are reported as failures rather than failing the
+     * whole batch.
+     */
+    static BatchResult store(IMAPFolder folder, UidSet uids, Flags flags, boolean set) throws MessagingException {
+        return set ? store(folder, uids, flags, new Flags()) : store(folder, uids, new Flags(), flags);
+    }
+
+    /**
+     * Adds one set of flags and removes another with at most two STOREs,
+     * resolving the UIDs once so the result counts each message once.
+     */
+    static BatchResult store(IMAPFolder folder, UidSet uids, Flags add, Flags remove) throws MessagingException {
+        BatchResult result = new BatchResult();
+        if (isEmpty(add) && isEmpty(remove)) {
+            return result;
+        }
+        Message[] found = uids.resolve(folder, result);
+        if (found.length > 0) {
+            if (!isEmpty(add)) {
+                folder.setFlags(found, add, true);
+            }
+            if (!isEmpty(remove)) {
+                folder.setFlags(found, remove, false);
+            }
+            result.succeeded = found.length;
+        }
+        return result;
+    }
+
+    private static boolean isEmpty(Flags flags) {
+        return flags.getSystemFlags().length == 0 && flags.getUserFlags().length == 0;
+    }
+}
@@ -0,0 +1,200 @@
+package com.reactnativeinbox;
+
+import android.util.Log;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+import com.sun.mail.imap.ResyncData;
+
+import javax.mail.Folder;
+import javax.mail.MessagingException;
+import javax.mail.event.MailEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the most recently used folders open, so back-to-back operations on a
+ * folder cost their own command instead of a SELECT and CLOSE around each one.
+ * Folders are closed when they fall out of the LRU or on closeAll().
+ *
+ * The LRU is split into stripes matching the StripedExecutor lanes: a folder
+ * is only ever opened from its own lane, so evicting the eldest folder of a
+ * stripe can never close a folder another lane is using. With several
+ * accounts on the same lanes, folder names are prefixed as in the account's
+ * lane keys.
+ */
+final class FolderCache {
+    private static final String TAG = "InboxModule";
+    static final int DEFAULT_SIZE = 4;
+
+    private final IMAPStore store;
+    private final int maxOpenPerStripe;
+    private final List<LinkedHashMap<String, IMAPFolder>> stripes;
+    private final String lanePrefix;
+    // Folders whose current SELECT enabled CONDSTORE
+    private final Set<String> condstore = ConcurrentHashMap.newKeySet();
+
+    FolderCache(IMAPStore store, int maxOpen) {
+        this(store, maxOpen, 1, "");
+    }
+
+    /**
+     * maxOpen is shared evenly between the stripes, rounding up so every
+     * stripe can keep at least one folder open. lanePrefix is prepended to
+     * folder names to find their lane.
+     */
+    FolderCache(IMAPStore store, int maxOpen, int stripes, String lanePrefix) {
+        this.store = store;
+        this.lanePrefix = lanePrefix;
+        int count = Math.max(1, stripes);
+        this.maxOpenPerStripe = Math.max(1, (maxOpen + count - 1) / count);
+        this.stripes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            this.stripes.add(new LinkedHashMap<>(16, 0.75f, true));
+        }
+    }
+
+    /**
+     * Returns the named folder open in at least the given mode. A folder open
+     * READ_ONLY is reopened READ_WRITE when a write needs it, since IMAP has
+     * no way to upgrade an EXAMINE in place; a READ_WRITE folder also serves
+     * reads.
+     */
+    IMAPFolder open(String name, int mode) throws MessagingException {
+        LinkedHashMap<String, IMAPFolder> folders = stripeFor(name);
+        synchronized (folders) {
+            IMAPFolder folder = folders.get(name);
+            if (folder != null && folder.isOpen()) {
+                if (mode == Folder.READ_ONLY || folder.getMode() == Folder.READ_WRITE) {
+                    return folder;
+                }
+                folder.close(false);
+            }
+
+            if (folder == null) {
+                folder = (IMAPFolder) store.getFolder(name);
+            }
+            condstore.remove(name);
+            folder.open(mode);
+            folders.put(name, folder);
+            evict(folders);
+            return folder;
+        }
+    }
+
+    /**
+     * Opens the named folder afresh with CONDSTORE or QRESYNC resync data and
+     * returns the events the SELECT produced. A folder already open
+     * READ_WRITE stays READ_WRITE. Plain CONDSTORE is a no-op for a folder
+     * already open with it; its HIGHESTMODSEQ is then that of the earlier
+     * SELECT, so callers also track the MODSEQ of what they fetch.
+     */
+    List<MailEvent> reopen(String name, int mode, ResyncData resync) throws MessagingException {
+        LinkedHashMap<String, IMAPFolder> folders = stripeFor(name);
+        synchronized (folders) {
+            IMAPFolder folder = folders.get(name);
+            if (folder != null && folder.isOpen()) {
+                boolean modeFits = mode == Folder.READ_ONLY || folder.getMode() == Folder.READ_WRITE;
+                if (resync == ResyncData.CONDSTORE && modeFits && condstore.contains(name)) {
+                    return Collections.emptyList();
+                }
+                if (folder.getMode() == Folder.READ_WRITE) {
+                    mode = Folder.READ_WRITE;
+                }
+                folder.close(false);
+            }
+
+            if (folder == null) {
+                folder = (IMAPFolder) store.getFolder(name);
+            }
+            List<MailEvent> events = folder.open(mode, resync);
+            // QRESYNC enables CONDSTORE too
+            condstore.add(name);
+            folders.put(name, folder);
+            evict(folders);
+            return events;
+        }
+    }
+
+    /**
+     * Whether the server advertises capability. Asked of a folder already
+     * open in the named folder's stripe when there is one, otherwise of the
+     * store, so no folder has to be opened to ask.
+     */
+    boolean hasCapability(String name, String capability) throws MessagingException {
+        LinkedHashMap<String, IMAPFolder> folders = stripeFor(name);
+        synchronized (folders) {
+            for (IMAPFolder folder : folders.values()) {
+                if (folder.isOpen()) {
+                    return hasCapability(folder, capability);
+                }
+            }
+        }
+        return store.hasCapability(capability);
+    }
+
+    // Asks the open folder's own connection; IMAPStore.hasCapability would
+    // check out a second pooled connection while folders hold the first
+    static boolean hasCapability(IMAPFolder folder, String capability) throws MessagingException {
+        return (Boolean) folder.doCommand(protocol -> protocol.hasCapability(capability));
+    }
+
+    /**
+     * Closes and forgets the named folder, e.g. before it is renamed or when
+     * its connection is known to be broken.
+     */
+    void close(String name) {
+        LinkedHashMap<String, IMAPFolder> folders = stripeFor(name);
+        IMAPFolder folder;
+        synchronized (folders) {
+            folder = folders.remove(name);
+            condstore.remove(name);
+        }
+        if (folder != null) {
+            closeQuietly(folder);
+        }
+    }
+
+    void closeAll() {
+        List<IMAPFolder> open = new ArrayList<>();
+        for (LinkedHashMap<String, IMAPFolder> folders : stripes) {
+            synchronized (folders) {
+                open.addAll(folders.values());
+                condstore.removeAll(folders.keySet());
+                folders.clear();
+            }
+        }
+        for (IMAPFolder folder : open) {
+            closeQuietly(folder);
+        }
+    }
+
+    private LinkedHashMap<String, IMAPFolder> stripeFor(String name) {
+        return stripes.get(StripedExecutor.lane(lanePrefix + name, stripes.size()));
+    }
+
+    private void evict(LinkedHashMap<String, IMAPFolder> folders) {
+        Iterator<Map.Entry<String, IMAPFolder>> iterator = folders.entrySet().iterator();
+        while (folders.size() > maxOpenPerStripe && iterator.hasNext()) {
+            Map.Entry<String, IMAPFolder> eldest = iterator.next();
+            iterator.remove();
+            condstore.remove(eldest.getKey());
+            closeQuietly(eldest.getValue());
+        }
+    }
+
+    private static void closeQuietly(IMAPFolder folder) {
+        try {
+            if (folder.isOpen()) {
+                folder.close(false);
+            }
+        } catch (MessagingException e) {
+            Log.w(TAG, "Error closing folder " + folder.getFullName() + ": " + e.getMessage());
+        }
+    }
+}
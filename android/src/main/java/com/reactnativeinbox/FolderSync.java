@@ -0,0 +1,182 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.iap.Response;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.MessageVanishedEvent;
+import com.sun.mail.imap.ResyncData;
+import com.sun.mail.imap.protocol.FLAGS;
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.MODSEQ;
+import com.sun.mail.imap.protocol.UID;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.event.MailEvent;
+import javax.mail.event.MessageChangedEvent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds what changed in a folder since a known HIGHESTMODSEQ: flag changes and
+ * vanished UIDs. QRESYNC gets both from the SELECT itself; CONDSTORE fetches
+ * only the messages whose MODSEQ moved; servers with neither get a UID and
+ * FLAGS listing of the whole folder.
+ */
+final class FolderSync {
+    static final String MODE_QRESYNC = "qresync";
+    static final String MODE_CONDSTORE = "condstore";
+    static final String MODE_FULL = "full";
+
+    private FolderSync() {
+    }
+
+    static final class Result {
+        String mode;
+        long uidValidity;
+        long uidNext;
+        long highestModSeq = -1;
+        // True when UIDVALIDITY changed: every cached UID is meaningless
+        boolean reset;
+        final Map<Long, Integer> changed = new LinkedHashMap<>();
+        final List<Long> vanished = new ArrayList<>();
+    }
+
+    /**
+     * Syncs the named folder against the state the caller last saw. With no
+     * sinceModSeq (or a different uidValidity) the result lists the flags of
+     * every message, which is the baseline for the next delta. knownUids,
+     * sorted, lets the CONDSTORE and full modes report vanished messages;
+     * QRESYNC reports them without it.
+     */
+    static Result sync(FolderCache folders, String name, int mode, long uidValidity, long sinceModSeq,
+                       long[] knownUids) throws MessagingException {
+        // Asked before opening, so the folder is opened once, with the resync
+        // data the mode needs
+        boolean qresync = folders.hasCapability(name, "QRESYNC");
+        boolean condstore = qresync || folders.hasCapability(name, "CONDSTORE");
+        boolean delta = sinceModSeq > 0 && uidValidity > 0;
+
+        Result result = new Result();
+        IMAPFolder folder;
+        if (delta && qresync) {
+            result.mode = MODE_QRESYNC;
+            List<MailEvent> events = folders.reopen(name, mode, new ResyncData(uidValidity, sinceModSeq));
+            folder = folders.open(name, mode);
+            if (folder.getUIDValidity() == uidValidity) {
+                collectResyncEvents(folder, events, result);
+            }
+        } else if (delta && condstore) {
+            result.mode = MODE_CONDSTORE;
+            folders.reopen(name, mode, ResyncData.CONDSTORE);
+            folder = folders.open(name, mode);
+            if (folder.getUIDValidity() == uidValidity) {
+                fetchFlags(folder, sinceModSeq, true, result);
+                collectVanished(folder, knownUids, result);
+            }
+        } else {
+            result.mode = MODE_FULL;
+            if (condstore) {
+                // Open with CONDSTORE, unless already, so the FETCH can ask
+                // for the MODSEQ the next call syncs from
+                folders.reopen(name, mode, ResyncData.CONDSTORE);
+            }
+            folder = folders.open(name, mode);
+            fetchFlags(folder, -1, condstore, result);
+            if (!delta || folder.getUIDValidity() == uidValidity) {
+                Set<Long> present = result.changed.keySet();
+                for (long uid : knownUids) {
+                    if (!present.contains(uid)) {
+                        result.vanished.add(uid);
+                    }
+                }
+            }
+        }
+
+        result.uidValidity = folder.getUIDValidity();
+        result.uidNext = folder.getUIDNext();
+        result.reset = uidValidity > 0 && result.uidValidity != uidValidity;
+        if (result.reset) {
+            result.changed.clear();
+            result.vanished.clear();
+        }
+        if (condstore) {
+            // A folder kept open since an earlier SELECT still holds that
+            // SELECT's HIGHESTMODSEQ, so the MODSEQ of every change fetched
+            // and the caller's own starting point raise it
+            long since = delta && !result.reset ? sinceModSeq : -1;
+            result.highestModSeq = Math.max(folder.getHighestModSeq(), Math.max(result.highestModSeq, since));
+        }
+        return result;
+    }
+
+    private static void collectResyncEvents(IMAPFolder folder, List<MailEvent> events, Result result) throws MessagingException {
+        if (events == null) {
+            return;
+        }
+        for (MailEvent event : events) {
+            if (event instanceof MessageVanishedEvent) {
+                for (long uid : ((MessageVanishedEvent) event).getUIDs()) {
+                    result.vanished.add(uid);
+                }
+            } else if (event instanceof MessageChangedEvent) {
+                Message message = ((MessageChangedEvent) event).getMessage();
+                result.changed.put(folder.getUID(message), MessageRecord.flagBits(message.getFlags()));
+            }
+        }
+    }
+
+    // Without QRESYNC the server never says what vanished, so the caller's
+    // UIDs are checked with one UID FETCH
+    private static void collectVanished(IMAPFolder folder, long[] knownUids, Result result) throws MessagingException {
+        if (knownUids.length == 0) {
+            return;
+        }
+        Message[] resolved = folder.getMessagesByUID(knownUids);
+        for (int i = 0; i < resolved.length; i++) {
+            if (resolved[i] == null || resolved[i].isExpunged()) {
+                result.vanished.add(knownUids[i]);
+            }
+        }
+    }
+
+    // A raw FETCH rather than Folder.fetch, which skips messages whose flags
+    // JavaMail already holds and would report them as they were. With a
+    // positive changedSince only messages whose MODSEQ moved are fetched;
+    // with modSeq the highest MODSEQ seen is kept in result.highestModSeq
+    private static void fetchFlags(IMAPFolder folder, long changedSince, boolean modSeq,
+                                   Result result) throws MessagingException {
+        int count = folder.getMessageCount();
+        if (count == 0) {
+            return;
+        }
+        String items = modSeq ? "(UID FLAGS MODSEQ)" : "(UID FLAGS)";
+        String command = changedSince > 0
+            ? "UID FETCH 1:* " + items + " (CHANGEDSINCE " + changedSince + ")"
+            : "FETCH 1:" + count + " " + items;
+        folder.doCommand(protocol -> {
+            Response[] responses = protocol.command(command, null);
+            for (int i = 0; i < responses.length; i++) {
+                if (responses[i] instanceof FetchResponse) {
+                    FetchResponse fetchResponse = (FetchResponse) responses[i];
+                    UID uid = fetchResponse.getItem(UID.class);
+                    FLAGS flags = fetchResponse.getItem(FLAGS.class);
+                    if (uid != null && flags != null) {
+                        result.changed.put(uid.uid, MessageRecord.flagBits(flags));
+                    }
+                    MODSEQ modseq = fetchResponse.getItem(MODSEQ.class);
+                    if (modseq != null) {
+                        result.highestModSeq = Math.max(result.highestModSeq, modseq.modseq);
+                    }
+                }
+            }
+            // Pass everything on, so the folder's own copies of the flags are
+            // refreshed too
+            protocol.notifyResponseHandlers(responses);
+            protocol.handleResult(responses[responses.length - 1]);
+            return null;
+        });
+    }
+}
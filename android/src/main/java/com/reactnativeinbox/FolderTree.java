@@ -0,0 +1,294 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.iap.Argument;
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.iap.Response;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
+import com.sun.mail.imap.protocol.IMAPProtocol;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.ListInfo;
+import com.sun.mail.imap.protocol.Status;
+
+import javax.mail.MessagingException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lists every folder with LIST "" "*" and, when counts are wanted, gets them
+ * in the same round trip with LIST-STATUS or in one more with STATUS
+ * commands pipelined back to back, instead of selecting each folder. The
+ * listing is kept for a while; folders whose counts are known to have
+ * changed are re-queried alone on the next call.
+ */
+final class FolderTree {
+    static final long DEFAULT_MAX_AGE_MS = 60000;
+
+    // STATUS commands written before reading any answers
+    private static final int PIPELINE_DEPTH = 64;
+    private static final String[] SPECIAL_USE = {
+        "\\All", "\\Archive", "\\Drafts", "\\Flagged", "\\Junk", "\\Sent", "\\Trash",
+    };
+
+    static final class Entry {
+        final String path;
+        final char delimiter;
+        final String[] attributes;
+        final boolean selectable;
+        final String specialUse;
+        int messages = -1;
+        int unseen = -1;
+        long uidNext = -1;
+        long uidValidity = -1;
+        long highestModSeq = -1;
+
+        Entry(ListInfo info) {
+            path = info.name;
+            delimiter = info.separator;
+            attributes = info.attrs;
+            selectable = info.canOpen;
+            specialUse = specialUse(info.attrs);
+        }
+
+        // Stands in for a parent the server didn't list
+        Entry(String path, char delimiter) {
+            this.path = path;
+            this.delimiter = delimiter;
+            attributes = new String[]{"\\NonExistent"};
+            selectable = false;
+            specialUse = null;
+        }
+
+        String name() {
+            int last = delimiter != '\0' ? path.lastIndexOf(delimiter) : -1;
+            return last >= 0 ? path.substring(last + 1) : path;
+        }
+
+        String parent() {
+            int last = delimiter != '\0' ? path.lastIndexOf(delimiter) : -1;
+            return last > 0 ? path.substring(0, last) : null;
+        }
+
+        void apply(Status status) {
+            messages = status.total;
+            unseen = status.unseen;
+            uidNext = status.uidnext;
+            uidValidity = status.uidvalidity;
+            highestModSeq = status.highestmodseq;
+        }
+    }
+
+    private final IMAPStore store;
+    private final Set<String> stale = ConcurrentHashMap.newKeySet();
+    private volatile List<Entry> entries;
+    private volatile long listedAt;
+    private volatile boolean counted;
+
+    FolderTree(IMAPStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Every folder, parents before their children, listed afresh when the
+     * last listing is older than maxAge or lacked the counts now wanted.
+     */
+    List<Entry> get(boolean withCounts, long maxAge) throws MessagingException {
+        List<Entry> current = entries;
+        if (current == null || System.currentTimeMillis() - listedAt > maxAge || (withCounts && !counted)) {
+            // Cleared first, so changes made while listing are fetched next time
+            stale.clear();
+            current = list(withCounts);
+            entries = current;
+            listedAt = System.currentTimeMillis();
+            counted = withCounts;
+        } else if (counted && !stale.isEmpty()) {
+            List<Entry> changed = new ArrayList<>();
+            for (Entry entry : current) {
+                if (stale.remove(entry.path) && entry.selectable) {
+                    changed.add(entry);
+                }
+            }
+            if (!changed.isEmpty()) {
+                root().doCommand(protocol -> {
+                    status(protocol, changed, protocol.hasCapability("CONDSTORE"));
+                    return null;
+                });
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Marks the named folder's counts as out of date, e.g. after its flags
+     * changed or new mail arrived.
+     */
+    void invalidate(String path) {
+        stale.add(path);
+    }
+
+    void invalidateAll() {
+        listedAt = 0;
+    }
+
+    private List<Entry> list(boolean withCounts) throws MessagingException {
+        @SuppressWarnings("unchecked")
+        List<Entry> listed = (List<Entry>) root().doCommand(protocol -> {
+            boolean modSeq = protocol.hasCapability("CONDSTORE");
+            boolean listStatus = withCounts && protocol.hasCapability("LIST-STATUS");
+
+            Argument args = new Argument().writeString("").writeString("*");
+            if (listStatus) {
+                Argument returns = new Argument();
+                if (protocol.hasCapability("SPECIAL-USE")) {
+                    returns.writeAtom("SPECIAL-USE");
+                }
+                returns.writeAtom("STATUS").writeArgument(statusItems(modSeq));
+                args.writeAtom("RETURN").writeArgument(returns);
+            }
+            Response[] responses = protocol.command("LIST", args);
+
+            Map<String, Entry> byPath = new LinkedHashMap<>();
+            List<Status> statuses = new ArrayList<>();
+            for (int i = 0; i < responses.length; i++) {
+                if (!(responses[i] instanceof IMAPResponse)) {
+                    continue;
+                }
+                IMAPResponse response = (IMAPResponse) responses[i];
+                if (response.keyEquals("LIST")) {
+                    Entry entry = new Entry(new ListInfo(response));
+                    byPath.put(entry.path, entry);
+                    responses[i] = null;
+                } else if (response.keyEquals("STATUS")) {
+                    statuses.add(new Status(response));
+                    responses[i] = null;
+                }
+            }
+            protocol.notifyResponseHandlers(responses);
+            protocol.handleResult(responses[responses.length - 1]);
+
+            for (Status status : statuses) {
+                Entry entry = byPath.get(status.mbox);
+                if (entry != null) {
+                    entry.apply(status);
+                }
+            }
+            List<Entry> sorted = withParents(byPath);
+            if (withCounts && !listStatus) {
+                List<Entry> selectable = new ArrayList<>();
+                for (Entry entry : sorted) {
+                    if (entry.selectable) {
+                        selectable.add(entry);
+                    }
+                }
+                status(protocol, selectable, modSeq);
+            }
+            return sorted;
+        });
+        return listed;
+    }
+
+    // Adds placeholders for unlisted parents and puts INBOX first, then
+    // each parent before its children
+    private static List<Entry> withParents(Map<String, Entry> byPath) {
+        for (Entry entry : new ArrayList<>(byPath.values())) {
+            String parent = entry.parent();
+            while (parent != null && !byPath.containsKey(parent)) {
+                Entry placeholder = new Entry(parent, entry.delimiter);
+                byPath.put(parent, placeholder);
+                parent = placeholder.parent();
+            }
+        }
+        List<Entry> sorted = new ArrayList<>(byPath.values());
+        sorted.sort((a, b) -> {
+            boolean aInbox = a.path.equalsIgnoreCase("INBOX");
+            boolean bInbox = b.path.equalsIgnoreCase("INBOX");
+            if (aInbox != bInbox) {
+                return aInbox ? -1 : 1;
+            }
+            return a.path.compareToIgnoreCase(b.path);
+        });
+        return sorted;
+    }
+
+    /**
+     * Writes a STATUS command per folder without waiting, then reads the
+     * answers. A folder the server refuses keeps its counts at -1.
+     */
+    private static void status(IMAPProtocol protocol, List<Entry> entries, boolean modSeq) throws ProtocolException {
+        Map<String, Entry> byName = new HashMap<>();
+        for (Entry entry : entries) {
+            byName.put(entry.path, entry);
+        }
+        synchronized (protocol) {
+            for (int start = 0; start < entries.size(); start += PIPELINE_DEPTH) {
+                int end = Math.min(entries.size(), start + PIPELINE_DEPTH);
+                List<String> tags = new ArrayList<>(end - start);
+                List<Response> other = new ArrayList<>();
+                try {
+                    for (int i = start; i < end; i++) {
+                        Argument args = new Argument();
+                        String path = entries.get(i).path;
+                        if (protocol.supportsUtf8()) {
+                            args.writeString(path, StandardCharsets.UTF_8);
+                        } else {
+                            args.writeString(BASE64MailboxEncoder.encode(path));
+                        }
+                        args.writeArgument(statusItems(modSeq));
+                        tags.add(protocol.writeCommand("STATUS", args));
+                    }
+                    while (!tags.isEmpty()) {
+                        Response response = protocol.readResponse();
+                        if (response.isTagged()) {
+                            tags.remove(response.getTag());
+                        } else if (response.isBYE()) {
+                            protocol.handleResult(response);
+                        } else if (response instanceof IMAPResponse && ((IMAPResponse) response).keyEquals("STATUS")) {
+                            Status status = new Status(response);
+                            Entry entry = byName.get(status.mbox);
+                            if (entry != null) {
+                                entry.apply(status);
+                            }
+                        } else {
+                            other.add(response);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new ProtocolException(e.getMessage(), e);
+                }
+                protocol.notifyResponseHandlers(other.toArray(new Response[0]));
+            }
+        }
+    }
+
+    private static Argument statusItems(boolean modSeq) {
+        Argument items = new Argument()
+            .writeAtom("MESSAGES").writeAtom("UNSEEN").writeAtom("UIDNEXT").writeAtom("UIDVALIDITY");
+        if (modSeq) {
+            items.writeAtom("HIGHESTMODSEQ");
+        }
+        return items;
+    }
+
+    private static String specialUse(String[] attributes) {
+        for (String attribute : attributes) {
+            for (String use : SPECIAL_USE) {
+                if (use.equalsIgnoreCase(attribute)) {
+                    return use;
+                }
+            }
+        }
+        return null;
+    }
+
+    private IMAPFolder root() throws MessagingException {
+        return (IMAPFolder) store.getDefaultFolder();
+    }
+}
@@ -0,0 +1,362 @@
+package com.reactnativeinbox;
+
+import android.util.Log;
+import com.sun.mail.iap.Response;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+import com.sun.mail.imap.MessageVanishedEvent;
+import com.sun.mail.imap.ResyncData;
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.UID;
+
+import javax.mail.FetchProfile;
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.UIDFolder;
+import javax.mail.event.MailEvent;
+import javax.mail.event.MessageChangedEvent;
+import javax.mail.event.MessageChangedListener;
+import javax.mail.event.MessageCountEvent;
+import javax.mail.event.MessageCountListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches one folder on a connection of its own and reports new, expunged and
+ * re-flagged messages by UID. The folder sits in IDLE, which is re-issued
+ * every IDLE_REISSUE_MS so servers that drop IDLE after 30 minutes never do;
+ * servers without IDLE are polled with NOOP instead.
+ *
+ * On servers with QRESYNC the folder is opened with it, so expunges arrive as
+ * VANISHED UIDs and a reconnect reports what changed while the connection was
+ * down. Elsewhere an EXPUNGE names only a message number, so the UID of every
+ * message is fetched on open into a compact array indexed by message number;
+ * UIDVALIDITY and UIDNEXT are recorded, so a reconnect reports the messages
+ * that arrived meanwhile.
+ */
+final class IdleWatcher implements MessageCountListener, MessageChangedListener {
+    private static final String TAG = "InboxModule";
+    static final String EVENT_NEW_MESSAGES = "inbox:newMessages";
+    static final String EVENT_EXPUNGED = "inbox:expunged";
+    static final String EVENT_FLAGS_CHANGED = "inbox:flagsChanged";
+    static final long IDLE_REISSUE_MS = 25 * 60 * 1000L;
+    static final long DEFAULT_POLL_INTERVAL_MS = 60 * 1000L;
+    private static final long MAX_RETRY_DELAY_MS = 60 * 1000L;
+
+    private static final FetchProfile UID_PROFILE = new FetchProfile();
+
+    static {
+        UID_PROFILE.add(UIDFolder.FetchProfileItem.UID);
+    }
+
+    interface Listener {
+        /**
+         * resync is set when some of the messages could not be named, so uids
+         * is incomplete and the folder has to be synced to find the rest.
+         */
+        void onEvent(String event, String folder, List<Long> uids, boolean resync);
+    }
+
+    private final IMAPStore store;
+    private final String name;
+    private final long pollIntervalMs;
+    private final long reissueMs;
+    private final Listener listener;
+    private final Thread thread;
+    private final ScheduledExecutorService timer;
+    private volatile boolean running = true;
+    private volatile IMAPFolder folder;
+    // Folder state as of the last event, for the next reopen
+    private volatile long uidValidity = -1;
+    private volatile long uidNext = -1;
+    private volatile long highestModSeq = -1;
+    // UID by message number - 1, without QRESYNC. JavaMail keeps the number of
+    // an expunged message until the folder is closed, so nothing shifts; 0 is
+    // a message whose UID is unknown
+    private long[] uidsByNumber = new long[0];
+
+    IdleWatcher(IMAPStore store, String name, long pollIntervalMs, long reissueMs, Listener listener) {
+        this.store = store;
+        this.name = name;
+        this.pollIntervalMs = pollIntervalMs;
+        this.reissueMs = reissueMs;
+        this.listener = listener;
+        this.thread = new Thread(this::run, "inbox-idle-" + name);
+        this.thread.setDaemon(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread timerThread = new Thread(task, "inbox-idle-timer-" + name);
+            timerThread.setDaemon(true);
+            return timerThread;
+        });
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops watching and closes the watcher's connection. Closing the folder
+     * also ends an IDLE in progress.
+     */
+    void stop() {
+        running = false;
+        thread.interrupt();
+        timer.shutdownNow();
+        IMAPFolder open = folder;
+        if (open != null) {
+            try {
+                if (open.isOpen()) {
+                    open.close(false);
+                }
+            } catch (MessagingException e) {
+                Log.w(TAG, "Error closing idle folder " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void run() {
+        int failures = 0;
+        while (running) {
+            try {
+                IMAPFolder watched = open();
+                boolean idle = (Boolean) watched.doCommand(protocol -> protocol.hasCapability("IDLE"));
+                failures = 0;
+                while (running && watched.isOpen()) {
+                    if (idle) {
+                        idleOnce(watched);
+                    } else {
+                        Thread.sleep(pollIntervalMs);
+                        // Untagged EXISTS, EXPUNGE and FETCH responses to the
+                        // NOOP reach the listeners like those sent during IDLE
+                        watched.doCommand(protocol -> {
+                            protocol.noop();
+                            return null;
+                        });
+                    }
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                long delay = Math.min(MAX_RETRY_DELAY_MS, 1000L << Math.min(failures++, 6));
+                Log.w(TAG, "Idle error on " + name + ", retrying in " + delay + "ms: " + e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        }
+        timer.shutdownNow();
+        IMAPFolder open = folder;
+        if (open != null && open.isOpen()) {
+            try {
+                open.close(false);
+            } catch (MessagingException e) {
+                Log.w(TAG, "Error closing idle folder " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private IMAPFolder open() throws MessagingException {
+        IMAPFolder watched = folder;
+        if (watched == null) {
+            // A folder object of its own, so IDLE never blocks the folder
+            // FolderCache keeps open for other calls
+            watched = (IMAPFolder) store.getFolder(name);
+            watched.addMessageCountListener(this);
+            watched.addMessageChangedListener(this);
+            folder = watched;
+        }
+        if (!watched.isOpen()) {
+            List<MailEvent> missed = null;
+            boolean qresync = store.hasCapability("QRESYNC");
+            if (qresync) {
+                // The first open asks for changes since now; a reopen for
+                // those since the last event
+                long validity = uidValidity > 0 ? uidValidity : watched.getUIDValidity();
+                long modSeq = uidValidity > 0 && highestModSeq > 0 ? highestModSeq : watched.getHighestModSeq();
+                missed = watched.open(Folder.READ_ONLY, new ResyncData(validity, modSeq));
+            } else {
+                watched.open(Folder.READ_ONLY);
+            }
+            long validity = watched.getUIDValidity();
+            if (uidNext > 0 && validity == uidValidity) {
+                reportSince(watched, uidNext);
+            }
+            uidValidity = validity;
+            uidNext = watched.getUIDNext();
+            highestModSeq = qresync ? watched.getHighestModSeq() : -1;
+            if (!qresync) {
+                fetchUids(watched);
+            }
+            if (missed != null) {
+                for (MailEvent event : missed) {
+                    if (event instanceof MessageVanishedEvent) {
+                        messagesRemoved((MessageVanishedEvent) event);
+                    } else if (event instanceof MessageChangedEvent) {
+                        messageChanged((MessageChangedEvent) event);
+                    }
+                }
+            }
+        }
+        return watched;
+    }
+
+    // One FETCH of every UID, without a Message object per message
+    private void fetchUids(IMAPFolder watched) throws MessagingException {
+        int count = watched.getMessageCount();
+        long[] uids = new long[count];
+        if (count > 0) {
+            watched.doCommand(protocol -> {
+                Response[] responses = protocol.command("FETCH 1:" + count + " (UID)", null);
+                for (int i = 0; i < responses.length; i++) {
+                    if (responses[i] instanceof FetchResponse) {
+                        FetchResponse fetchResponse = (FetchResponse) responses[i];
+                        UID uid = fetchResponse.getItem(UID.class);
+                        int number = fetchResponse.getNumber();
+                        if (uid != null && number <= count) {
+                            uids[number - 1] = uid.uid;
+                            // Handled here; the folder would report it as a
+                            // flag change
+                            responses[i] = null;
+                        }
+                    }
+                }
+                protocol.notifyResponseHandlers(responses);
+                protocol.handleResult(responses[responses.length - 1]);
+                return null;
+            });
+        }
+        synchronized (this) {
+            uidsByNumber = uids;
+        }
+    }
+
+    private synchronized void rememberUid(int number, long uid) {
+        if (number > uidsByNumber.length) {
+            uidsByNumber = Arrays.copyOf(uidsByNumber, Math.max(number, uidsByNumber.length * 2));
+        }
+        uidsByNumber[number - 1] = uid;
+    }
+
+    private synchronized long knownUid(int number) {
+        return number <= uidsByNumber.length ? uidsByNumber[number - 1] : 0;
+    }
+
+    // Messages that arrived while the connection was down
+    private void reportSince(IMAPFolder watched, long since) throws MessagingException {
+        List<Long> uids = new ArrayList<>();
+        for (Message message : watched.getMessagesByUID(since, UIDFolder.LASTUID)) {
+            long uid = message != null ? watched.getUID(message) : -1;
+            // "n:*" also matches the highest UID when it is below n
+            if (uid >= since) {
+                uids.add(uid);
+            }
+        }
+        if (!uids.isEmpty()) {
+            listener.onEvent(EVENT_NEW_MESSAGES, name, uids, false);
+        }
+    }
+
+    // The folder's cached HIGHESTMODSEQ follows the MODSEQ of each update
+    private void recordModSeq(IMAPFolder watched) {
+        if (highestModSeq > 0) {
+            try {
+                highestModSeq = Math.max(highestModSeq, watched.getHighestModSeq());
+            } catch (MessagingException e) {
+                Log.w(TAG, "Error reading modseq of " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // IDLE returns when the server sends something or another thread uses the
+    // folder; the timer ends it with a NOOP so it is re-issued in time
+    private void idleOnce(IMAPFolder watched) throws MessagingException {
+        ScheduledFuture<?> reissue = timer.schedule(() -> {
+            try {
+                watched.doCommand(protocol -> {
+                    protocol.noop();
+                    return null;
+                });
+            } catch (MessagingException e) {
+                Log.w(TAG, "Error re-issuing idle on " + name + ": " + e.getMessage());
+            }
+        }, reissueMs, TimeUnit.MILLISECONDS);
+        try {
+            watched.idle(false);
+        } finally {
+            // IDLE ended first
+            reissue.cancel(false);
+        }
+    }
+
+    @Override
+    public void messagesAdded(MessageCountEvent event) {
+        IMAPFolder watched = folder;
+        try {
+            Message[] messages = event.getMessages();
+            watched.fetch(messages, UID_PROFILE);
+            List<Long> uids = new ArrayList<>(messages.length);
+            for (Message message : messages) {
+                long uid = watched.getUID(message);
+                uids.add(uid);
+                rememberUid(message.getMessageNumber(), uid);
+                uidNext = Math.max(uidNext, uid + 1);
+            }
+            recordModSeq(watched);
+            listener.onEvent(EVENT_NEW_MESSAGES, name, uids, false);
+        } catch (MessagingException e) {
+            Log.w(TAG, "Error reading new messages in " + name + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void messagesRemoved(MessageCountEvent event) {
+        List<Long> uids = new ArrayList<>();
+        if (event instanceof MessageVanishedEvent) {
+            for (long uid : ((MessageVanishedEvent) event).getUIDs()) {
+                uids.add(uid);
+            }
+            recordModSeq(folder);
+            if (!uids.isEmpty()) {
+                listener.onEvent(EVENT_EXPUNGED, name, uids, false);
+            }
+        } else {
+            boolean resync = false;
+            for (Message message : event.getMessages()) {
+                long uid = knownUid(message.getMessageNumber());
+                if (uid > 0) {
+                    uids.add(uid);
+                } else {
+                    Log.d(TAG, "Unknown UID for expunged message in " + name);
+                    resync = true;
+                }
+            }
+            listener.onEvent(EVENT_EXPUNGED, name, uids, resync);
+        }
+    }
+
+    @Override
+    public void messageChanged(MessageChangedEvent event) {
+        if (event.getMessageChangeType() != MessageChangedEvent.FLAGS_CHANGED) {
+            return;
+        }
+        try {
+            List<Long> uids = new ArrayList<>(1);
+            uids.add(folder.getUID(event.getMessage()));
+            recordModSeq(folder);
+            listener.onEvent(EVENT_FLAGS_CHANGED, name, uids, false);
+        } catch (MessagingException e) {
+            Log.w(TAG, "Error reading changed message in " + name + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.reactnativeinbox;
 
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.net.ConnectivityManager;
 import android.util.Log;
 import com.facebook.react.bridge.*;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
@@ -11,10 +15,18 @@ import javax.mail.internet.*;
 import javax.mail.search.*;
 import java.util.Properties;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.Date;
 import java.util.Enumeration;
-import java.text.SimpleDateFormat;
+import java.io.File;
 import java.io.IOException;
 import java.io.ByteArrayOutputStream;
 import javax.activation.DataHandler;
@@ -23,13 +35,91 @@ import javax.activation.FileDataSource;
 
 public class InboxModule extends ReactContextBaseJavaModule {
     private static final String TAG = "InboxModule";
-    private IMAPStore imapStore;
-    private IMAPFolder currentFolder;
-    private Session smtpSession;
-    private javax.mail.Transport smtpTransport;
+    private static final String BODY_PREVIEW = "preview";
+    private static final String BODY_FULL = "full";
+    private static final String SOURCE_LOCAL = "local";
+    private static final String SOURCE_AUTO = "auto";
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final long DISCONNECT_TIMEOUT_MS = 30000;
+    private static final String UNIFIED_FOLDER = "INBOX";
+    // By accountId; the default account always exists
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private volatile MessageStore messageStore;
+    private volatile SearchIndex searchIndex;
+    // Shared by all accounts and sized by the first to connect
+    private volatile BodyCache bodyCache;
+    private final Metrics metrics = new Metrics();
+    private ScheduledExecutorService metricsTimer;
+    private StripedExecutor executor;
+    private final Map<String, ResultStream> streams = new ConcurrentHashMap<>();
+    private final Map<String, Threader> threaders = new ConcurrentHashMap<>();
+
+    // Spills cached bodies to disk when the system runs low on memory
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            BodyCache cache = bodyCache;
+            if (cache == null) {
+                return;
+            }
+            if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                trimBodyCache(cache, 0);
+            } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                trimBodyCache(cache, cache.maxMemoryBytes() / 2);
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            onTrimMemory(TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration configuration) {
+        }
+    };
 
     public InboxModule(ReactApplicationContext reactContext) {
         super(reactContext);
+        accounts.put(Account.DEFAULT_ID, new Account(Account.DEFAULT_ID));
+        reactContext.registerComponentCallbacks(memoryCallbacks);
+    }
+
+    @Override
+    public void invalidate() {
+        getReactApplicationContext().unregisterComponentCallbacks(memoryCallbacks);
+        // A reload builds a new module; nothing of this one may keep running
+        // or holding connections
+        synchronized (metrics) {
+            stopMetricsTimer();
+        }
+        List<Account> closing = new ArrayList<>(accounts.values());
+        for (Account account : closing) {
+            account.connected = false;
+            stopAllIdle(account);
+        }
+        // Outbox workers may take a while to leave a send, and lanes to drain
+        Thread thread = new Thread(() -> {
+            for (Account account : closing) {
+                if (account.outbox != null) {
+                    account.outbox.stop();
+                }
+            }
+            shutdownExecutor();
+            for (Account account : closing) {
+                try {
+                    closeStore(account.folderCache, account.imapStore);
+                    if (account.smtpTransport != null && account.smtpTransport.isConnected()) {
+                        account.smtpTransport.close();
+                    }
+                } catch (MessagingException e) {
+                    Log.w(TAG, "Error closing account " + account.id + ": " + e.getMessage());
+                }
+            }
+        }, "inbox-invalidate");
+        thread.setDaemon(true);
+        thread.start();
+        super.invalidate();
     }
 
     @Override
@@ -39,12 +129,30 @@ public class InboxModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void connect(ReadableMap config, Promise promise) {
+        long start = System.nanoTime();
         try {
             String host = config.getString("host");
             int port = config.getInt("port");
             String username = config.getString("username");
             String password = config.getString("password");
             boolean useSSL = config.getBoolean("useSSL");
+            int poolSize = config.hasKey("connectionPoolSize")
+                ? Math.max(1, config.getInt("connectionPoolSize")) : StripedExecutor.DEFAULT_LANES;
+            String accountId = accountId(config);
+            Account account = accounts.computeIfAbsent(accountId, Account::new);
+
+            // A second connect replaces the first, whose watchers, folders
+            // and store would otherwise stay open with nothing to close them
+            if (account.imapStore != null) {
+                account.connected = false;
+                stopAllIdle(account);
+                drainExecutor();
+                try {
+                    closeStore(account.folderCache, account.imapStore);
+                } catch (MessagingException e) {
+                    Log.w(TAG, "Error closing previous connection: " + e.getMessage());
+                }
+            }
 
             // Set up SSL configuration
             Properties props = new Properties();
@@ -59,6 +167,37 @@ public class InboxModule extends ReactContextBaseJavaModule {
             props.put("mail.imap.auth.login.disable", "true");
             props.put("mail.imap.auth.plain.disable", "true");
 
+            // One authenticated connection per executor lane, plus one for
+            // LIST and other store commands so they never wait on a folder
+            props.put("mail.imap.connectionpoolsize", poolSize);
+            props.put("mail.imap.separatestoreconnection", "true");
+
+            // Folders may stay open READ_WRITE between calls, so reads must not set \Seen
+            props.put("mail.imap.peek", "true");
+
+            // COMPRESS=DEFLATE is only negotiated when the server offers it
+            account.compressEnabled = !config.hasKey("compress") || config.getBoolean("compress");
+            props.put("mail.imap.compress.enable", account.compressEnabled);
+            if (config.hasKey("compressLevel")) {
+                props.put("mail.imap.compress.level", config.getInt("compressLevel"));
+            }
+            account.fetchSize = config.hasKey("fetchSize") ? config.getInt("fetchSize") : 0;
+            if (account.fetchSize > 0) {
+                props.put("mail.imap.fetchsize", account.fetchSize);
+            }
+            if (config.hasKey("partialFetch")) {
+                props.put("mail.imap.partialfetch", config.getBoolean("partialFetch"));
+            }
+            if (config.hasKey("connectionTimeout")) {
+                props.put("mail.imap.connectiontimeout", config.getInt("connectionTimeout"));
+            }
+            if (config.hasKey("readTimeout")) {
+                props.put("mail.imap.timeout", config.getInt("readTimeout"));
+            }
+            if (config.hasKey("writeTimeout")) {
+                props.put("mail.imap.writetimeout", config.getInt("writeTimeout"));
+            }
+
             // Configure SSL context with custom trust manager
             javax.net.ssl.SSLContext sslContext = javax.net.ssl.SSLContext.getInstance("TLSv1.2");
 
@@ -92,448 +231,1315 @@ public class InboxModule extends ReactContextBaseJavaModule {
             javax.net.ssl.TrustManager[] trustManagers = new javax.net.ssl.TrustManager[] { customTrustManager };
             sslContext.init(null, trustManagers, new java.security.SecureRandom());
             javax.net.ssl.SSLSocketFactory sslSocketFactory = sslContext.getSocketFactory();
-            props.put("mail.imap.socketFactory", sslSocketFactory);
+            // Counts bytes for getTransferStats and sets the socket buffer sizes
+            account.socketFactory = new MeteredSocketFactory(sslSocketFactory,
+                config.hasKey("sendBufferSize") ? config.getInt("sendBufferSize") : 0,
+                config.hasKey("receiveBufferSize") ? config.getInt("receiveBufferSize") : 0);
+            props.put("mail.imap.socketFactory", account.socketFactory);
 
             Log.d(TAG, "Connecting to " + host + ":" + port + " with SSL: " + useSSL);
             Session session = Session.getInstance(props);
-            imapStore = (IMAPStore) session.getStore("imap");
-            imapStore.connect(host, port, username, password);
+            // Times every IMAP command for getMetrics
+            IMAPStore store = new MeteredStore(session, new URLName("imap", host, port, null, null, null), metrics);
+            store.connect(host, port, username, password);
+            account.imapStore = store;
+            account.connected = true;
+            // The first account to connect sizes the lanes and the body cache;
+            // accounts connecting while it is connected share them
+            boolean first = !othersConnected(account);
+            int lanes = first ? executor(poolSize).size() : executor().size();
+            int folderCacheSize = config.hasKey("folderCacheSize") ? config.getInt("folderCacheSize") : FolderCache.DEFAULT_SIZE;
+            account.folderCache = new FolderCache(store, folderCacheSize, lanes, Account.laneKey(accountId, ""));
+            account.name = username + "@" + host;
+            account.cacheEnabled = config.hasKey("cache") && config.getBoolean("cache");
+            account.indexEnabled = config.hasKey("searchIndex") && config.getBoolean("searchIndex");
+            account.folderTree = new FolderTree(store);
+            if (first) {
+                long bodyCacheSize = config.hasKey("bodyCacheSize")
+                    ? (long) config.getDouble("bodyCacheSize") : BodyCache.DEFAULT_MEMORY_BYTES;
+                long bodyDiskCacheSize = config.hasKey("bodyDiskCacheSize")
+                    ? (long) config.getDouble("bodyDiskCacheSize") : BodyCache.DEFAULT_DISK_BYTES;
+                bodyCache = bodyCacheSize > 0 || bodyDiskCacheSize > 0
+                    ? new BodyCache(new File(getReactApplicationContext().getCacheDir(), "inbox-bodies"),
+                        Math.max(0, bodyCacheSize), Math.max(0, bodyDiskCacheSize))
+                    : null;
+            }
+            int readAheadCount = config.hasKey("readAhead") ? config.getInt("readAhead") : 0;
+            account.readAhead = readAheadCount > 0
+                ? new ReadAhead(readAheadCount,
+                    config.hasKey("readAheadBytes") ? (long) config.getDouble("readAheadBytes") : ReadAhead.DEFAULT_BYTES,
+                    config.hasKey("readAheadOnMetered") && config.getBoolean("readAheadOnMetered"),
+                    (key, task) -> executor().execute(Account.laneKey(accountId, key), task),
+                    account.folderCache, bodyCache, this::isNetworkMetered)
+                : null;
             Log.d(TAG, "Successfully connected to IMAP server");
 
             promise.resolve(true);
         } catch (Exception e) {
             Log.e(TAG, "Connection error: " + e.getMessage(), e);
             promise.reject("INBOX_CONNECT_ERROR", e.getMessage());
+        } finally {
+            metrics.method("connect", System.nanoTime() - start);
         }
     }
 
     @ReactMethod
-    public void disconnect(Promise promise) {
+    public void disconnect(String accountId, Promise promise) {
+        Account account;
         try {
-            if (currentFolder != null && currentFolder.isOpen()) {
-                currentFolder.close(false);
-            }
-            if (imapStore != null && imapStore.isConnected()) {
-                imapStore.close();
-            }
-            promise.resolve(true);
+            account = account(accountId);
         } catch (Exception e) {
             Log.e(TAG, "Disconnect error: " + e.getMessage());
             promise.reject("INBOX_DISCONNECT_ERROR", e.getMessage());
+            return;
         }
+        account.connected = false;
+        stopAllIdle(account);
+        // What to close is taken now, so a connect made meanwhile is left open
+        FolderCache folders = account.folderCache;
+        IMAPStore store = account.imapStore;
+        // Draining can take DISCONNECT_TIMEOUT_MS, too long to hold the
+        // thread every other call of this module arrives on
+        Thread thread = new Thread(() -> {
+            try {
+                // Calls already queued run before the store closes under them;
+                // the lanes keep running while other accounts, or a connect
+                // made since, use them
+                if (account.isConnected() || othersConnected(account)) {
+                    drainExecutor();
+                } else {
+                    shutdownExecutor();
+                }
+                closeStore(folders, store);
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Disconnect error: " + e.getMessage());
+                promise.reject("INBOX_DISCONNECT_ERROR", e.getMessage());
+            }
+        }, "inbox-disconnect");
+        thread.setDaemon(true);
+        thread.start();
     }
 
+    /**
+     * Bytes read and written on the IMAP connections since connect, counted
+     * below compression, and whether the server agreed to COMPRESS=DEFLATE.
+     */
     @ReactMethod
-    public void getEmails(ReadableMap options, Promise promise) {
+    public void getTransferStats(String accountId, Promise promise) {
         try {
-            String folderName = options.getString("folder");
-            int limit = options.getInt("limit");
-
-            currentFolder = (IMAPFolder) imapStore.getFolder(folderName);
-            currentFolder.open(Folder.READ_ONLY);
+            Account account = account(accountId);
+            MeteredSocketFactory factory = account.socketFactory;
+            if (factory == null) {
+                throw new MessagingException("Not connected");
+            }
+            WritableMap stats = Arguments.createMap();
+            stats.putDouble("bytesRead", factory.bytesRead());
+            stats.putDouble("bytesWritten", factory.bytesWritten());
+            stats.putInt("connections", factory.sockets());
+            stats.putBoolean("compressed", account.compressEnabled && account.isConnected()
+                && account.imapStore.hasCapability("COMPRESS=DEFLATE"));
+            promise.resolve(stats);
+        } catch (Exception e) {
+            Log.e(TAG, "Transfer stats error: " + e.getMessage());
+            promise.reject("INBOX_STATS_ERROR", e.getMessage());
+        }
+    }
 
-            Message[] messages = currentFolder.getMessages();
-            int end = Math.min(messages.length, limit);
-            WritableArray emails = Arguments.createArray();
+    /**
+     * Hits and misses of the body cache by tier, and how full each tier is.
+     */
+    @ReactMethod
+    public void getBodyCacheStats(Promise promise) {
+        try {
+            BodyCache cache = bodyCache;
+            BodyCache.Stats stats = cache != null ? cache.stats() : new BodyCache.Stats();
+            WritableMap result = Arguments.createMap();
+            result.putDouble("memoryHits", stats.memoryHits);
+            result.putDouble("diskHits", stats.diskHits);
+            result.putDouble("misses", stats.misses);
+            result.putDouble("hitRate", stats.hitRate());
+            result.putDouble("evictions", stats.evictions);
+            result.putDouble("memoryBytes", stats.memoryBytes);
+            result.putInt("memoryEntries", stats.memoryEntries);
+            result.putDouble("maxMemoryBytes", stats.maxMemoryBytes);
+            result.putDouble("diskBytes", stats.diskBytes);
+            result.putInt("diskEntries", stats.diskEntries);
+            result.putDouble("maxDiskBytes", stats.maxDiskBytes);
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Body cache stats error: " + e.getMessage());
+            promise.reject("INBOX_BODY_CACHE_ERROR", e.getMessage());
+        }
+    }
 
-            for (int i = messages.length - end; i < messages.length; i++) {
-                Message message = messages[i];
-                WritableMap email = convertMessageToMap(message);
-                emails.pushMap(email);
+    @ReactMethod
+    public void clearBodyCache(Promise promise) {
+        execute(StripedExecutor.STORE_KEY, "clearBodyCache", () -> {
+            try {
+                BodyCache cache = bodyCache;
+                if (cache != null) {
+                    cache.clear();
+                }
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Clear body cache error: " + e.getMessage());
+                promise.reject("INBOX_BODY_CACHE_ERROR", e.getMessage());
             }
+        });
+    }
 
-            promise.resolve(emails);
+    /**
+     * Call counts and wall-time percentiles per bridge method, per IMAP
+     * command and for the load and convert stages of listings, since the
+     * module was created or resetMetrics was last called.
+     */
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        try {
+            promise.resolve(convertMetrics());
         } catch (Exception e) {
-            Log.e(TAG, "Download error: " + e.getMessage());
-            promise.reject("INBOX_DOWNLOAD_ERROR", e.getMessage());
+            Log.e(TAG, "Metrics error: " + e.getMessage());
+            promise.reject("INBOX_METRICS_ERROR", e.getMessage());
         }
     }
 
     @ReactMethod
-    public void getFolders(Promise promise) {
-        try {
-            Folder[] folders = imapStore.getDefaultFolder().list();
-            WritableArray folderList = Arguments.createArray();
+    public void resetMetrics(Promise promise) {
+        metrics.reset();
+        promise.resolve(true);
+    }
 
-            for (Folder folder : folders) {
-                folderList.pushString(folder.getName());
+    /**
+     * Emits getMetrics' result as inbox:metrics every intervalMs; 0 stops it.
+     */
+    @ReactMethod
+    public void setMetricsInterval(int intervalMs, Promise promise) {
+        synchronized (metrics) {
+            stopMetricsTimer();
+            if (intervalMs > 0) {
+                metricsTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "inbox-metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                metricsTimer.scheduleAtFixedRate(() -> {
+                    try {
+                        emit(Metrics.EVENT, convertMetrics());
+                    } catch (Exception e) {
+                        Log.e(TAG, "Metrics event error: " + e.getMessage());
+                    }
+                }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
             }
+        }
+        promise.resolve(true);
+    }
 
-            promise.resolve(folderList);
-        } catch (Exception e) {
-            Log.e(TAG, "Get folders error: " + e.getMessage());
-            promise.reject("INBOX_FOLDERS_ERROR", e.getMessage());
+    // Called holding the metrics lock
+    private void stopMetricsTimer() {
+        if (metricsTimer != null) {
+            metricsTimer.shutdownNow();
+            metricsTimer = null;
         }
     }
 
     @ReactMethod
-    public void searchEmails(ReadableMap options, Promise promise) {
-        try {
-            String folderName = options.getString("folder");
-            currentFolder = (IMAPFolder) imapStore.getFolder(folderName);
-            currentFolder.open(Folder.READ_ONLY);
+    public void getEmails(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "folder"), "getEmails", () -> {
+            try {
+                Account account = account(options);
+                String folderName = options.getString("folder");
+                int limit = options.getInt("limit");
+
+                IMAPFolder imapFolder = account.folderCache.open(folderName, Folder.READ_ONLY);
+
+                Message[] page = UidPager.pageBefore(imapFolder, 0, limit);
+                if (isStream(options)) {
+                    promise.resolve(streamPage(page, options, chunk -> convertPage(account, imapFolder, chunk, options, true)));
+                    return;
+                }
+                WritableArray emails = convertPage(account, imapFolder, page, options, true);
 
-            SearchTerm searchTerm = buildSearchTerm(options);
-            Message[] messages = currentFolder.search(searchTerm);
+                promise.resolve(emails);
+            } catch (Exception e) {
+                Log.e(TAG, "Download error: " + e.getMessage());
+                promise.reject("INBOX_DOWNLOAD_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            Integer limit = options.hasKey("limit") ? options.getInt("limit") : null;
-            int end = limit != null ? Math.min(messages.length, limit) : messages.length;
+    @ReactMethod
+    public void getEmailsPage(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "folder"), "getEmailsPage", () -> {
+            try {
+                Account account = account(options);
+                String folderName = options.getString("folder");
+                int limit = options.getInt("limit");
+                long beforeUid = options.hasKey("beforeUid") && !options.isNull("beforeUid") ? (long) options.getDouble("beforeUid") : 0;
+
+                IMAPFolder imapFolder = account.folderCache.open(folderName, Folder.READ_ONLY);
+
+                Message[] page = UidPager.pageBefore(imapFolder, beforeUid, limit);
+                WritableArray emails = convertPage(account, imapFolder, page, options, true);
+
+                WritableMap result = Arguments.createMap();
+                result.putArray("emails", emails);
+                result.putInt("total", imapFolder.getMessageCount());
+                // The oldest UID on the page is the cursor for the next (older) page
+                if (page.length > 0 && page[0].getMessageNumber() > 1) {
+                    result.putDouble("nextCursor", imapFolder.getUID(page[0]));
+                } else {
+                    result.putNull("nextCursor");
+                }
 
-            WritableArray emails = Arguments.createArray();
-            for (int i = messages.length - end; i < messages.length; i++) {
-                Message message = messages[i];
-                WritableMap email = convertMessageToMap(message);
-                emails.pushMap(email);
+                promise.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Get emails page error: " + e.getMessage());
+                promise.reject("INBOX_PAGE_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getCachedEmails(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "folder"), "getCachedEmails", () -> {
+            try {
+                Account account = account(options);
+                String folderName = options.getString("folder");
+                int limit = options.getInt("limit");
+                String cacheAccount = options.hasKey("account") ? options.getString("account") : account.name;
+                if (cacheAccount == null) {
+                    promise.resolve(Arguments.createArray());
+                    return;
+                }
+
+                MessageStore.FolderSnapshot snapshot = messageStore().get(cacheAccount, folderName);
+                WritableArray emails = Arguments.createArray();
+                synchronized (snapshot) {
+                    for (MessageRecord record : snapshot.newest(limit)) {
+                        emails.pushMap(convertRecordToMap(record, record.bodyLevel));
+                    }
+                }
+                promise.resolve(emails);
+            } catch (Exception e) {
+                Log.e(TAG, "Get cached emails error: " + e.getMessage());
+                promise.reject("INBOX_CACHE_ERROR", e.getMessage());
             }
+        });
+    }
 
-            promise.resolve(emails);
+    @ReactMethod
+    public void getAccounts(Promise promise) {
+        try {
+            WritableArray result = Arguments.createArray();
+            for (Account account : accounts.values()) {
+                WritableMap map = Arguments.createMap();
+                map.putString("accountId", account.id);
+                map.putString("account", account.name);
+                map.putBoolean("connected", account.isConnected());
+                map.putBoolean("smtpConnected", account.isSmtpConnected());
+                result.pushMap(map);
+            }
+            promise.resolve(result);
         } catch (Exception e) {
-            Log.e(TAG, "Search error: " + e.getMessage());
-            promise.reject("INBOX_SEARCH_ERROR", e.getMessage());
+            Log.e(TAG, "Get accounts error: " + e.getMessage());
+            promise.reject("INBOX_ACCOUNTS_ERROR", e.getMessage());
         }
     }
 
+    /**
+     * The newest emails of one folder across accounts, loaded in parallel on
+     * each account's lane and merged by date. Accounts that fail are listed
+     * under failed rather than failing the whole call.
+     */
     @ReactMethod
-    public void moveEmail(ReadableMap options, Promise promise) {
+    public void getUnifiedInbox(ReadableMap options, Promise promise) {
+        long start = System.nanoTime();
+        cancelReadAhead();
         try {
-            int uid = options.getInt("uid");
-            String fromFolder = options.getString("fromFolder");
-            String toFolder = options.getString("toFolder");
-
-            IMAPFolder sourceFolder = (IMAPFolder) imapStore.getFolder(fromFolder);
-            IMAPFolder destFolder = (IMAPFolder) imapStore.getFolder(toFolder);
+            String folderName = options.hasKey("folder") ? options.getString("folder") : UNIFIED_FOLDER;
+            int limit = options.hasKey("limit") ? options.getInt("limit") : 50;
+            int bodyLevel = bodyLevel(options.hasKey("includeBody") ? options.getString("includeBody") : BODY_FULL);
+            List<Account> targets = new ArrayList<>();
+            if (options.hasKey("accountIds") && !options.isNull("accountIds")) {
+                ReadableArray ids = options.getArray("accountIds");
+                for (int i = 0; i < ids.size(); i++) {
+                    targets.add(account(ids.getString(i)));
+                }
+            } else {
+                for (Account account : accounts.values()) {
+                    if (account.isConnected()) {
+                        targets.add(account);
+                    }
+                }
+            }
 
-            sourceFolder.open(Folder.READ_WRITE);
-            destFolder.open(Folder.READ_WRITE);
+            UnifiedInbox inbox = new UnifiedInbox(targets.size(), limit);
+            Runnable resolve = () -> {
+                long convertStart = System.nanoTime();
+                WritableArray emails = Arguments.createArray();
+                for (UnifiedInbox.Entry entry : inbox.merged()) {
+                    WritableMap email = convertRecordToMap(entry.record, bodyLevel);
+                    email.putString("accountId", entry.accountId);
+                    emails.pushMap(email);
+                }
+                metrics.stage(Metrics.STAGE_CONVERT, System.nanoTime() - convertStart);
+                WritableArray failed = Arguments.createArray();
+                for (Map.Entry<String, String> entry : inbox.failed().entrySet()) {
+                    WritableMap failure = Arguments.createMap();
+                    failure.putString("accountId", entry.getKey());
+                    failure.putString("error", entry.getValue());
+                    failed.pushMap(failure);
+                }
+                WritableMap result = Arguments.createMap();
+                result.putArray("emails", emails);
+                result.putArray("failed", failed);
+                promise.resolve(result);
+                metrics.method("getUnifiedInbox", System.nanoTime() - start);
+            };
+            if (targets.isEmpty()) {
+                resolve.run();
+                return;
+            }
+            for (Account account : targets) {
+                executor().execute(Account.laneKey(account.id, folderName), () -> {
+                    boolean last;
+                    try {
+                        if (!account.isConnected()) {
+                            throw new MessagingException("Not connected");
+                        }
+                        IMAPFolder imapFolder = account.folderCache.open(folderName, Folder.READ_ONLY);
+                        Message[] page = UidPager.pageBefore(imapFolder, 0, limit);
+                        last = inbox.add(account.id, loadPage(account, imapFolder, page, options, true));
+                    } catch (Exception e) {
+                        Log.e(TAG, "Unified inbox error for " + account.id + ": " + e.getMessage());
+                        last = inbox.fail(account.id, e.getMessage());
+                    }
+                    if (last) {
+                        resolve.run();
+                    }
+                });
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Unified inbox error: " + e.getMessage());
+            promise.reject("INBOX_UNIFIED_ERROR", e.getMessage());
+            metrics.method("getUnifiedInbox", System.nanoTime() - start);
+        }
+    }
 
-            Message message = sourceFolder.getMessageByUID(uid);
-            sourceFolder.copyMessages(new Message[]{message}, destFolder);
-            message.setFlag(Flags.Flag.DELETED, true);
+    @ReactMethod
+    public void syncFolder(String folderName, ReadableMap options, Promise promise) {
+        execute(Account.laneKey(accountId(options), folderName), "syncFolder", () -> {
+            try {
+                Account account = account(options);
+                long uidValidity = options.hasKey("uidValidity") && !options.isNull("uidValidity") ? (long) options.getDouble("uidValidity") : -1;
+                long sinceModSeq = options.hasKey("sinceModSeq") && !options.isNull("sinceModSeq") ? (long) options.getDouble("sinceModSeq") : -1;
+                long[] knownUids = options.hasKey("knownUids") ? UidSet.parse(options.getArray("knownUids").toArrayList()).toArray() : new long[0];
+                boolean useCache = options.hasKey("useCache") ? options.getBoolean("useCache") : account.cacheEnabled;
+
+                FolderSync.Result result;
+                if (useCache) {
+                    // Whatever the caller leaves out is taken from the cached
+                    // snapshot, which is then brought up to date
+                    MessageStore.FolderSnapshot snapshot = messageStore().get(account.name, folderName);
+                    synchronized (snapshot) {
+                        if (uidValidity < 0) {
+                            uidValidity = snapshot.uidValidity;
+                        }
+                        if (sinceModSeq < 0 && uidValidity == snapshot.uidValidity) {
+                            sinceModSeq = snapshot.highestModSeq;
+                        }
+                        if (!options.hasKey("knownUids")) {
+                            knownUids = new long[snapshot.records.size()];
+                            int i = 0;
+                            for (long uid : snapshot.records.keySet()) {
+                                knownUids[i++] = uid;
+                            }
+                        }
+
+                        result = FolderSync.sync(account.folderCache, folderName, Folder.READ_ONLY, uidValidity, sinceModSeq, knownUids);
+                        snapshot.validate(result.uidValidity);
+                        for (Map.Entry<Long, Integer> entry : result.changed.entrySet()) {
+                            MessageRecord record = snapshot.records.get(entry.getKey());
+                            if (record != null && record.flags != entry.getValue()) {
+                                record.flags = entry.getValue();
+                                snapshot.unsaved++;
+                            }
+                        }
+                        for (long uid : result.vanished) {
+                            if (snapshot.records.remove(uid) != null) {
+                                snapshot.unsaved++;
+                            }
+                        }
+                        if (result.uidNext > snapshot.uidNext) {
+                            snapshot.uidNext = result.uidNext;
+                            snapshot.unsaved++;
+                        }
+                        if (snapshot.highestModSeq != result.highestModSeq) {
+                            snapshot.highestModSeq = result.highestModSeq;
+                            snapshot.unsaved++;
+                        }
+                    }
+                    // Written outside the snapshot's lock, which saving takes
+                    messageStore().save(account.name, folderName);
+                } else {
+                    result = FolderSync.sync(account.folderCache, folderName, Folder.READ_ONLY, uidValidity, sinceModSeq, knownUids);
+                }
+                if (account.indexEnabled) {
+                    SearchIndex.FolderIndex index = searchIndex().get(account.name, folderName);
+                    synchronized (index) {
+                        index.validate(result.uidValidity);
+                        for (long uid : result.vanished) {
+                            index.remove(uid);
+                        }
+                    }
+                    searchIndex().save(account.name, folderName);
+                }
 
-            sourceFolder.close(false);
-            destFolder.close(false);
+                WritableMap sync = Arguments.createMap();
+                sync.putString("mode", result.mode);
+                sync.putDouble("uidValidity", result.uidValidity);
+                sync.putDouble("uidNext", result.uidNext);
+                if (result.highestModSeq > 0) {
+                    sync.putDouble("highestModSeq", result.highestModSeq);
+                } else {
+                    sync.putNull("highestModSeq");
+                }
+                sync.putBoolean("reset", result.reset);
+                WritableArray changed = Arguments.createArray();
+                for (Map.Entry<Long, Integer> entry : result.changed.entrySet()) {
+                    WritableMap change = Arguments.createMap();
+                    change.putDouble("uid", entry.getKey());
+                    change.putMap("flags", convertFlags(entry.getValue()));
+                    changed.pushMap(change);
+                }
+                sync.putArray("changed", changed);
+                WritableArray vanished = Arguments.createArray();
+                for (long uid : result.vanished) {
+                    vanished.pushDouble(uid);
+                }
+                sync.putArray("vanished", vanished);
+                promise.resolve(sync);
+            } catch (Exception e) {
+                Log.e(TAG, "Sync folder error: " + e.getMessage());
+                promise.reject("INBOX_SYNC_ERROR", e.getMessage());
+            }
+        });
+    }
 
+    @ReactMethod
+    public void startIdle(String folderName, ReadableMap options, Promise promise) {
+        try {
+            Account account = account(options);
+            if (!account.isConnected()) {
+                throw new MessagingException("Not connected");
+            }
+            long pollInterval = options != null && options.hasKey("pollInterval")
+                ? (long) options.getDouble("pollInterval") : IdleWatcher.DEFAULT_POLL_INTERVAL_MS;
+            synchronized (account.idleWatchers) {
+                if (!account.idleWatchers.containsKey(folderName)) {
+                    IdleWatcher watcher = new IdleWatcher(account.imapStore, folderName, pollInterval,
+                        IdleWatcher.IDLE_REISSUE_MS,
+                        (event, folder, uids, resync) -> emitUids(account, event, folder, uids, resync));
+                    account.idleWatchers.put(folderName, watcher);
+                    watcher.start();
+                }
+            }
             promise.resolve(true);
         } catch (Exception e) {
-            Log.e(TAG, "Move error: " + e.getMessage());
-            promise.reject("INBOX_MOVE_ERROR", e.getMessage());
+            Log.e(TAG, "Start idle error: " + e.getMessage());
+            promise.reject("INBOX_IDLE_ERROR", e.getMessage());
         }
     }
 
     @ReactMethod
-    public void deleteEmail(int uid, String folder, Promise promise) {
+    public void stopIdle(String folderName, String accountId, Promise promise) {
         try {
-            IMAPFolder imapFolder = (IMAPFolder) imapStore.getFolder(folder);
-            imapFolder.open(Folder.READ_WRITE);
-
-            Message message = imapFolder.getMessageByUID(uid);
-            message.setFlag(Flags.Flag.DELETED, true);
-
-            imapFolder.close(false);
-            promise.resolve(true);
+            Account account = account(accountId);
+            IdleWatcher watcher;
+            synchronized (account.idleWatchers) {
+                watcher = account.idleWatchers.remove(folderName);
+            }
+            if (watcher != null) {
+                watcher.stop();
+            }
+            promise.resolve(watcher != null);
         } catch (Exception e) {
-            Log.e(TAG, "Delete error: " + e.getMessage());
-            promise.reject("INBOX_DELETE_ERROR", e.getMessage());
+            Log.e(TAG, "Stop idle error: " + e.getMessage());
+            promise.reject("INBOX_IDLE_ERROR", e.getMessage());
         }
     }
 
     @ReactMethod
-    public void updateEmailFlags(ReadableMap options, Promise promise) {
-        try {
-            int uid = options.getInt("uid");
-            String folder = options.getString("folder");
-            ReadableMap flagsMap = options.getMap("flags");
+    public void ackChunk(String requestId) {
+        ResultStream stream = streams.get(requestId);
+        if (stream != null) {
+            stream.ack();
+        }
+    }
 
-            IMAPFolder imapFolder = (IMAPFolder) imapStore.getFolder(folder);
-            imapFolder.open(Folder.READ_WRITE);
+    @ReactMethod
+    public void cancelStream(String requestId, Promise promise) {
+        // Runs on the calling thread: the stream's own lane may be blocked
+        // waiting for an acknowledgement
+        ResultStream stream = streams.get(requestId);
+        if (stream != null) {
+            stream.cancel();
+        }
+        promise.resolve(stream != null);
+    }
 
-            Message message = imapFolder.getMessageByUID(uid);
-            Flags flags = new Flags();
+    @ReactMethod
+    public void getFolders(String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, StripedExecutor.STORE_KEY), "getFolders", () -> {
+            try {
+                Account account = account(accountId);
+                Folder[] folders = account.imapStore.getDefaultFolder().list();
+                WritableArray folderList = Arguments.createArray();
+
+                for (Folder folder : folders) {
+                    folderList.pushString(folder.getName());
+                }
 
-            if (flagsMap.hasKey("seen")) {
-                flags.add(Flags.Flag.SEEN);
+                promise.resolve(folderList);
+            } catch (Exception e) {
+                Log.e(TAG, "Get folders error: " + e.getMessage());
+                promise.reject("INBOX_FOLDERS_ERROR", e.getMessage());
             }
-            if (flagsMap.hasKey("answered")) {
-                flags.add(Flags.Flag.ANSWERED);
+        });
+    }
+
+    /**
+     * Every folder as a tree with full paths, delimiters and special-use
+     * attributes, and with withCounts the message, unseen and UID counts
+     * of each, fetched together rather than by selecting every folder.
+     */
+    @ReactMethod
+    public void getFolderTree(ReadableMap options, Promise promise) {
+        execute(Account.laneKey(accountId(options), StripedExecutor.STORE_KEY), "getFolderTree", () -> {
+            try {
+                Account account = account(options);
+                boolean withCounts = options != null && options.hasKey("withCounts") && options.getBoolean("withCounts");
+                long maxAge = options != null && options.hasKey("maxAge")
+                    ? (long) options.getDouble("maxAge") : FolderTree.DEFAULT_MAX_AGE_MS;
+                List<FolderTree.Entry> entries = account.folderTree.get(withCounts, maxAge);
+
+                Map<String, List<FolderTree.Entry>> children = new HashMap<>();
+                for (FolderTree.Entry entry : entries) {
+                    String parent = entry.parent();
+                    children.computeIfAbsent(parent != null ? parent : "", key -> new ArrayList<>()).add(entry);
+                }
+                promise.resolve(convertFolders(children.get(""), children, withCounts));
+            } catch (Exception e) {
+                Log.e(TAG, "Get folders error: " + e.getMessage());
+                promise.reject("INBOX_FOLDERS_ERROR", e.getMessage());
             }
-            if (flagsMap.hasKey("flagged")) {
-                flags.add(Flags.Flag.FLAGGED);
+        });
+    }
+
+    @ReactMethod
+    public void searchEmails(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "folder"), "searchEmails", () -> {
+            try {
+                Account account = account(options);
+                String folderName = options.getString("folder");
+                String source = options.hasKey("source") ? options.getString("source") : "server";
+                Integer limit = options.hasKey("limit") ? options.getInt("limit") : null;
+
+                Message[] page;
+                IMAPFolder imapFolder;
+                if (SOURCE_LOCAL.equals(source) || (SOURCE_AUTO.equals(source) && indexAnswers(account, folderName, options))) {
+                    for (String key : SearchPlanner.SERVER_ONLY) {
+                        if (options.hasKey(key)) {
+                            throw new MessagingException("Local search can't check " + key);
+                        }
+                    }
+                    long[] uids = searchLocal(account, folderName, options, limit != null ? limit : 0);
+                    List<MessageRecord> cached = cachedRecords(account, options, folderName, uids);
+                    if (cached != null && !isStream(options)) {
+                        int bodyLevel = bodyLevel(options.hasKey("includeBody") ? options.getString("includeBody") : BODY_FULL);
+                        promise.resolve(convertRecords(cached, bodyLevel));
+                        return;
+                    }
+                    // Results the cache can't show are loaded by UID
+                    if (account.folderCache == null) {
+                        throw new MessagingException("Not connected, and the results are not all cached");
+                    }
+                    imapFolder = account.folderCache.open(folderName, Folder.READ_ONLY);
+                    page = filterSeen(imapFolder, messagesByUid(imapFolder, uids), options, limit != null ? limit : 0);
+                } else {
+                    imapFolder = account.folderCache.open(folderName, Folder.READ_ONLY);
+                    SearchTerm searchTerm = SearchPlanner.build(options.toHashMap());
+                    String sort = options.hasKey("sort") ? options.getString("sort") : null;
+                    SearchPlanner.Result result = SearchPlanner.run(imapFolder, searchTerm, sort, limit != null ? limit : 0);
+                    page = messagesByUid(imapFolder, result.uids);
+                }
+
+                if (isStream(options)) {
+                    promise.resolve(streamPage(page, options, chunk -> convertPage(account, imapFolder, chunk, options, false)));
+                    return;
+                }
+                WritableArray emails = convertPage(account, imapFolder, page, options, false);
+
+                promise.resolve(emails);
+            } catch (Exception e) {
+                Log.e(TAG, "Search error: " + e.getMessage());
+                promise.reject("INBOX_SEARCH_ERROR", e.getMessage());
             }
-            if (flagsMap.hasKey("deleted")) {
-                flags.add(Flags.Flag.DELETED);
+        });
+    }
+
+    /**
+     * Runs the search on the server and returns only the number of matches
+     * and the UIDs of the newest limit of them, without loading any email.
+     */
+    @ReactMethod
+    public void searchUids(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "folder"), "searchUids", () -> {
+            try {
+                Account account = account(options);
+                IMAPFolder imapFolder = account.folderCache.open(options.getString("folder"), Folder.READ_ONLY);
+                SearchTerm searchTerm = SearchPlanner.build(options.toHashMap());
+                String sort = options.hasKey("sort") ? options.getString("sort") : null;
+                int limit = options.hasKey("limit") ? options.getInt("limit") : 0;
+                SearchPlanner.Result result = SearchPlanner.run(imapFolder, searchTerm, sort, limit);
+
+                WritableMap map = Arguments.createMap();
+                map.putInt("total", result.total);
+                WritableArray uids = Arguments.createArray();
+                for (long uid : result.uids) {
+                    uids.pushDouble(uid);
+                }
+                map.putArray("uids", uids);
+                promise.resolve(map);
+            } catch (Exception e) {
+                Log.e(TAG, "Search error: " + e.getMessage());
+                promise.reject("INBOX_SEARCH_ERROR", e.getMessage());
             }
-            if (flagsMap.hasKey("draft")) {
-                flags.add(Flags.Flag.DRAFT);
+        });
+    }
+
+    /**
+     * Groups the folder into conversations, newest first. Each has its UID
+     * tree, unread count and latest received date; without server THREAD
+     * support, headers are fetched only for messages new since the last call.
+     */
+    @ReactMethod
+    public void getThreads(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "folder"), "getThreads", () -> {
+            try {
+                Account account = account(options);
+                String folderName = options.getString("folder");
+                int limit = options.hasKey("limit") ? options.getInt("limit") : 0;
+                IMAPFolder imapFolder = account.folderCache.open(folderName, Folder.READ_ONLY);
+                Threader threader = threaders.computeIfAbsent(MessageStore.key(account.name, folderName), key -> new Threader());
+
+                WritableArray threads = Arguments.createArray();
+                for (Threader.Conversation conversation : Threader.list(imapFolder, threader, limit)) {
+                    WritableMap thread = Arguments.createMap();
+                    WritableArray uids = Arguments.createArray();
+                    for (long uid : conversation.uids) {
+                        uids.pushDouble(uid);
+                    }
+                    thread.putArray("uids", uids);
+                    thread.putArray("roots", convertNodes(conversation.roots));
+                    thread.putInt("count", conversation.uids.length);
+                    thread.putInt("unread", conversation.unread);
+                    thread.putDouble("newestUid", conversation.newestUid);
+                    if (conversation.latestDate >= 0) {
+                        thread.putDouble("latestDate", conversation.latestDate);
+                    } else {
+                        thread.putNull("latestDate");
+                    }
+                    threads.pushMap(thread);
+                }
+                promise.resolve(threads);
+            } catch (Exception e) {
+                Log.e(TAG, "Thread error: " + e.getMessage());
+                promise.reject("INBOX_THREAD_ERROR", e.getMessage());
             }
+        });
+    }
 
-            message.setFlags(flags, true);
-            imapFolder.close(false);
+    @ReactMethod
+    public void moveEmail(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "fromFolder"), "moveEmail", () -> {
+            try {
+                Account account = account(options);
+                int uid = options.getInt("uid");
+                String fromFolder = options.getString("fromFolder");
+                String toFolder = options.getString("toFolder");
+
+                // MOVE and COPY only need the destination to exist, not to be selected
+                IMAPFolder sourceFolder = account.folderCache.open(fromFolder, Folder.READ_WRITE);
+                Folder destFolder = account.imapStore.getFolder(toFolder);
+
+                BatchResult result = MessageMover.move(sourceFolder, destFolder, UidSet.of(uid));
+                if (!result.failedUids.isEmpty()) {
+                    throw new MessagingException(result.failedErrors.get(0));
+                }
+                countsChanged(account, fromFolder, toFolder);
+                forgetPrefetched(account, fromFolder, uid);
 
-            promise.resolve(true);
-        } catch (Exception e) {
-            Log.e(TAG, "Update flags error: " + e.getMessage());
-            promise.reject("INBOX_UPDATE_FLAGS_ERROR", e.getMessage());
-        }
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Move error: " + e.getMessage());
+                promise.reject("INBOX_MOVE_ERROR", e.getMessage());
+            }
+        });
     }
 
     @ReactMethod
-    public void getEmailByUid(int uid, String folder, Promise promise) {
-        try {
-            IMAPFolder imapFolder = (IMAPFolder) imapStore.getFolder(folder);
-            imapFolder.open(Folder.READ_ONLY);
+    public void moveEmails(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "fromFolder"), "moveEmails", () -> {
+            try {
+                Account account = account(options);
+                UidSet uids = UidSet.parse(options.getArray("uids").toArrayList());
+                String fromFolder = options.getString("fromFolder");
+                String toFolder = options.getString("toFolder");
+
+                IMAPFolder sourceFolder = account.folderCache.open(fromFolder, Folder.READ_WRITE);
+                Folder destFolder = account.imapStore.getFolder(toFolder);
+
+                BatchResult result = MessageMover.move(sourceFolder, destFolder, uids);
+                countsChanged(account, fromFolder, toFolder);
+                forgetPrefetched(account, fromFolder);
+                promise.resolve(convertBatchResult(result, "moved"));
+            } catch (Exception e) {
+                Log.e(TAG, "Move error: " + e.getMessage());
+                promise.reject("INBOX_MOVE_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            Message message = imapFolder.getMessageByUID(uid);
-            if (message != null) {
-                WritableMap email = convertMessageToMap(message);
-                promise.resolve(email);
-            } else {
-                promise.resolve(null);
+    @ReactMethod
+    public void deleteEmail(int uid, String folder, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, folder), "deleteEmail", () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_WRITE);
+
+                Message message = imapFolder.getMessageByUID(uid);
+                message.setFlag(Flags.Flag.DELETED, true);
+                countsChanged(account, folder);
+                forgetPrefetched(account, folder, uid);
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Delete error: " + e.getMessage());
+                promise.reject("INBOX_DELETE_ERROR", e.getMessage());
             }
+        });
+    }
 
-            imapFolder.close(false);
-        } catch (Exception e) {
-            Log.e(TAG, "Get email by UID error: " + e.getMessage());
-            promise.reject("INBOX_GET_EMAIL_ERROR", e.getMessage());
-        }
+    @ReactMethod
+    public void deleteEmails(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "folder"), "deleteEmails", () -> {
+            try {
+                Account account = account(options);
+                UidSet uids = UidSet.parse(options.getArray("uids").toArrayList());
+                IMAPFolder imapFolder = account.folderCache.open(options.getString("folder"), Folder.READ_WRITE);
+
+                BatchResult result = new BatchResult();
+                boolean expunged = MessageMover.delete(imapFolder, uids, result);
+                countsChanged(account, options.getString("folder"));
+                forgetPrefetched(account, options.getString("folder"));
+
+                WritableMap map = convertBatchResult(result, "deleted");
+                map.putBoolean("expunged", expunged);
+                promise.resolve(map);
+            } catch (Exception e) {
+                Log.e(TAG, "Delete error: " + e.getMessage());
+                promise.reject("INBOX_DELETE_ERROR", e.getMessage());
+            }
+        });
     }
 
     @ReactMethod
-    public void markAsRead(int uid, String folder, Promise promise) {
-        try {
-            IMAPFolder imapFolder = (IMAPFolder) imapStore.getFolder(folder);
-            imapFolder.open(Folder.READ_WRITE);
+    public void updateEmailFlags(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "folder"), "updateEmailFlags", () -> {
+            try {
+                Account account = account(options);
+                String folder = options.getString("folder");
+                ReadableMap flagsMap = options.getMap("flags");
+
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_WRITE);
+
+                Flags setFlags = new Flags();
+                Flags clearFlags = new Flags();
+                addFlagIfPresent(flagsMap, "seen", Flags.Flag.SEEN, setFlags, clearFlags);
+                addFlagIfPresent(flagsMap, "answered", Flags.Flag.ANSWERED, setFlags, clearFlags);
+                addFlagIfPresent(flagsMap, "flagged", Flags.Flag.FLAGGED, setFlags, clearFlags);
+                addFlagIfPresent(flagsMap, "deleted", Flags.Flag.DELETED, setFlags, clearFlags);
+                addFlagIfPresent(flagsMap, "draft", Flags.Flag.DRAFT, setFlags, clearFlags);
+
+                if (options.hasKey("uids")) {
+                    UidSet uids = UidSet.parse(options.getArray("uids").toArrayList());
+                    BatchResult result = FlagUpdater.store(imapFolder, uids, setFlags, clearFlags);
+                    countsChanged(account, folder);
+                    forgetPrefetched(account, folder);
+                    promise.resolve(convertBatchResult(result, "updated"));
+                    return;
+                }
 
-            Message message = imapFolder.getMessageByUID(uid);
-            message.setFlag(Flags.Flag.SEEN, true);
+                Message message = imapFolder.getMessageByUID(options.getInt("uid"));
+                if (setFlags.getSystemFlags().length > 0) {
+                    message.setFlags(setFlags, true);
+                }
+                if (clearFlags.getSystemFlags().length > 0) {
+                    message.setFlags(clearFlags, false);
+                }
+                countsChanged(account, folder);
+                forgetPrefetched(account, folder, options.getInt("uid"));
 
-            imapFolder.close(false);
-            promise.resolve(true);
-        } catch (Exception e) {
-            Log.e(TAG, "Mark as read error: " + e.getMessage());
-            promise.reject("INBOX_MARK_READ_ERROR", e.getMessage());
-        }
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Update flags error: " + e.getMessage());
+                promise.reject("INBOX_UPDATE_FLAGS_ERROR", e.getMessage());
+            }
+        });
     }
 
     @ReactMethod
-    public void markAsUnread(int uid, String folder, Promise promise) {
-        try {
-            IMAPFolder imapFolder = (IMAPFolder) imapStore.getFolder(folder);
-            imapFolder.open(Folder.READ_WRITE);
-
-            Message message = imapFolder.getMessageByUID(uid);
-            message.setFlag(Flags.Flag.SEEN, false);
+    public void getEmailByUid(int uid, String folder, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, folder), "getEmailByUid", () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_ONLY);
+
+                MessageRecord prefetched = prefetched(account, imapFolder, folder, uid);
+                if (prefetched != null) {
+                    promise.resolve(convertRecordToMap(prefetched, MessageRecord.BODY_FULL));
+                    return;
+                }
 
-            imapFolder.close(false);
-            promise.resolve(true);
-        } catch (Exception e) {
-            Log.e(TAG, "Mark as unread error: " + e.getMessage());
-            promise.reject("INBOX_MARK_UNREAD_ERROR", e.getMessage());
-        }
+                Message message = imapFolder.getMessageByUID(uid);
+                if (message != null) {
+                    WritableArray emails = convertPage(imapFolder, new Message[]{message}, BODY_FULL, 0);
+                    promise.resolve(emails.getMap(0));
+                } else {
+                    promise.resolve(null);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Get email by UID error: " + e.getMessage());
+                promise.reject("INBOX_GET_EMAIL_ERROR", e.getMessage());
+            }
+        });
     }
 
     @ReactMethod
-    public void addFlags(int uid, String folder, ReadableArray flagsArray, Promise promise) {
-        try {
-            IMAPFolder imapFolder = (IMAPFolder) imapStore.getFolder(folder);
-            imapFolder.open(Folder.READ_WRITE);
-
-            Message message = imapFolder.getMessageByUID(uid);
-            Flags flags = new Flags();
-
-            for (int i = 0; i < flagsArray.size(); i++) {
-                String flagName = flagsArray.getString(i).toUpperCase();
-                switch (flagName) {
-                    case "SEEN":
-                        flags.add(Flags.Flag.SEEN);
-                        break;
-                    case "ANSWERED":
-                        flags.add(Flags.Flag.ANSWERED);
-                        break;
-                    case "FLAGGED":
-                        flags.add(Flags.Flag.FLAGGED);
-                        break;
-                    case "DELETED":
-                        flags.add(Flags.Flag.DELETED);
-                        break;
-                    case "DRAFT":
-                        flags.add(Flags.Flag.DRAFT);
-                        break;
-                }
-            }
-
-            message.setFlags(flags, true);
-            imapFolder.close(false);
+    public void getEmailBody(int uid, String folder, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, folder), "getEmailBody", () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_ONLY);
+
+                MessageRecord cached = prefetched(account, imapFolder, folder, uid);
+                if (cached == null && account.cacheEnabled) {
+                    cached = cachedRecord(account, imapFolder, folder, uid);
+                }
+                if (cached != null && cached.bodyLevel == MessageRecord.BODY_FULL) {
+                    WritableMap body = Arguments.createMap();
+                    body.putDouble("uid", uid);
+                    body.putString("body", cached.body);
+                    body.putBoolean("isHtml", Boolean.TRUE.equals(cached.isHtml));
+                    promise.resolve(body);
+                    return;
+                }
 
-            promise.resolve(true);
-        } catch (Exception e) {
-            Log.e(TAG, "Add flags error: " + e.getMessage());
-            promise.reject("INBOX_ADD_FLAGS_ERROR", e.getMessage());
-        }
+                Message message = imapFolder.getMessageByUID(uid);
+                if (message != null) {
+                    Message[] single = new Message[]{message};
+                    MimeStructure structure = MessageLoader.fetchMimeStructures(imapFolder, single).get(message.getMessageNumber());
+                    MimeStructure.Part part = structure != null ? structure.bodyPart() : null;
+
+                    WritableMap body = Arguments.createMap();
+                    body.putDouble("uid", uid);
+                    if (part != null) {
+                        Map<Integer, List<MimeStructure.Part>> parts = Collections.singletonMap(message.getMessageNumber(), structure.bodyParts());
+                        String text = BodyFetcher.fetchBodies(imapFolder, parts, 0, bodyCache).get(message.getMessageNumber());
+                        body.putString("body", text != null ? text : "");
+                        body.putBoolean("isHtml", part.isHtml());
+                    } else {
+                        body.putString("body", structure == null ? MessageLoader.extractBody(message) : "");
+                        body.putBoolean("isHtml", structure == null && message.isMimeType("text/html"));
+                    }
+                    promise.resolve(body);
+                } else {
+                    promise.resolve(null);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Get email body error: " + e.getMessage());
+                promise.reject("INBOX_GET_BODY_ERROR", e.getMessage());
+            }
+        });
     }
 
     @ReactMethod
-    public void removeFlags(int uid, String folder, ReadableArray flagsArray, Promise promise) {
-        try {
-            IMAPFolder imapFolder = (IMAPFolder) imapStore.getFolder(folder);
-            imapFolder.open(Folder.READ_WRITE);
-
-            Message message = imapFolder.getMessageByUID(uid);
-            Flags flags = new Flags();
-
-            for (int i = 0; i < flagsArray.size(); i++) {
-                String flagName = flagsArray.getString(i).toUpperCase();
-                switch (flagName) {
-                    case "SEEN":
-                        flags.add(Flags.Flag.SEEN);
-                        break;
-                    case "ANSWERED":
-                        flags.add(Flags.Flag.ANSWERED);
-                        break;
-                    case "FLAGGED":
-                        flags.add(Flags.Flag.FLAGGED);
-                        break;
-                    case "DELETED":
-                        flags.add(Flags.Flag.DELETED);
-                        break;
-                    case "DRAFT":
-                        flags.add(Flags.Flag.DRAFT);
-                        break;
-                }
-            }
-
-            message.setFlags(flags, false);
-            imapFolder.close(false);
+    public void downloadAttachment(ReadableMap options, Promise promise) {
+        execute(folderKey(options, "folder"), "downloadAttachment", () -> {
+            try {
+                Account account = account(options);
+                String folderName = options.getString("folder");
+                long uid = (long) options.getDouble("uid");
+                String section = options.getString("section");
+                String destPath = options.getString("destPath");
+                if (destPath.startsWith("file://")) {
+                    destPath = destPath.substring("file://".length());
+                }
+                int chunkBytes = options.hasKey("chunkBytes") ? options.getInt("chunkBytes")
+                    : account.fetchSize > 0 ? account.fetchSize : AttachmentDownloader.DEFAULT_CHUNK_BYTES;
+                String path = destPath;
+
+                IMAPFolder imapFolder = account.folderCache.open(folderName, Folder.READ_ONLY);
+                int[] lastPercent = {-1};
+                long size = AttachmentDownloader.download(imapFolder, uid, section, new File(path), chunkBytes, (received, total) -> {
+                    // At most one event per percent, so a large file does not
+                    // flood the bridge
+                    int percent = total > 0 ? (int) Math.min(100, received * 100 / total) : -1;
+                    if (percent == lastPercent[0] && total > 0) {
+                        return;
+                    }
+                    lastPercent[0] = percent;
+                    WritableMap event = Arguments.createMap();
+                    event.putString("destPath", path);
+                    event.putDouble("uid", uid);
+                    event.putString("section", section);
+                    event.putDouble("received", received);
+                    event.putDouble("total", total);
+                    emit("inbox:downloadProgress", event);
+                });
+
+                WritableMap result = Arguments.createMap();
+                result.putString("path", path);
+                result.putDouble("size", size);
+                promise.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Download attachment error: " + e.getMessage());
+                promise.reject("INBOX_ATTACHMENT_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            promise.resolve(true);
-        } catch (Exception e) {
-            Log.e(TAG, "Remove flags error: " + e.getMessage());
-            promise.reject("INBOX_REMOVE_FLAGS_ERROR", e.getMessage());
-        }
+    @ReactMethod
+    public void markAsRead(int uid, String folder, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, folder), "markAsRead", () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_WRITE);
+
+                Message message = imapFolder.getMessageByUID(uid);
+                message.setFlag(Flags.Flag.SEEN, true);
+                countsChanged(account, folder);
+                forgetPrefetched(account, folder, uid);
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Mark as read error: " + e.getMessage());
+                promise.reject("INBOX_MARK_READ_ERROR", e.getMessage());
+            }
+        });
     }
 
     @ReactMethod
-    public void connectSmtp(ReadableMap config, Promise promise) {
-        try {
-            String host = config.getString("host");
-            int port = config.getInt("port");
-            String username = config.getString("username");
-            String password = config.getString("password");
-            boolean useSSL = config.getBoolean("useSSL");
-            boolean useTLS = config.hasKey("useTLS") && config.getBoolean("useTLS");
+    public void markAsUnread(int uid, String folder, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, folder), "markAsUnread", () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_WRITE);
+
+                Message message = imapFolder.getMessageByUID(uid);
+                message.setFlag(Flags.Flag.SEEN, false);
+                countsChanged(account, folder);
+                forgetPrefetched(account, folder, uid);
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Mark as unread error: " + e.getMessage());
+                promise.reject("INBOX_MARK_UNREAD_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            Properties props = new Properties();
-            props.put("mail.transport.protocol", "smtp");
-            props.put("mail.smtp.host", host);
-            props.put("mail.smtp.port", port);
-            props.put("mail.smtp.auth", "true");
-            props.put("mail.smtp.starttls.enable", useTLS);
+    @ReactMethod
+    public void addFlags(int uid, String folder, ReadableArray flagsArray, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, folder), "addFlags", () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_WRITE);
+
+                Message message = imapFolder.getMessageByUID(uid);
+                Flags flags = FlagUpdater.parse(convertReadableArrayToStringArray(flagsArray));
+
+                message.setFlags(flags, true);
+                countsChanged(account, folder);
+                forgetPrefetched(account, folder, uid);
+
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Add flags error: " + e.getMessage());
+                promise.reject("INBOX_ADD_FLAGS_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            if (useSSL) {
-                props.put("mail.smtp.ssl.enable", "true");
-                props.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
-                props.put("mail.smtp.socketFactory.fallback", "false");
+    @ReactMethod
+    public void removeFlags(int uid, String folder, ReadableArray flagsArray, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, folder), "removeFlags", () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_WRITE);
+
+                Message message = imapFolder.getMessageByUID(uid);
+                Flags flags = FlagUpdater.parse(convertReadableArrayToStringArray(flagsArray));
+
+                message.setFlags(flags, false);
+                countsChanged(account, folder);
+                forgetPrefetched(account, folder, uid);
+
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Remove flags error: " + e.getMessage());
+                promise.reject("INBOX_REMOVE_FLAGS_ERROR", e.getMessage());
             }
+        });
+    }
 
-            smtpSession = Session.getInstance(props);
-            smtpTransport = smtpSession.getTransport("smtp");
-            smtpTransport.connect(host, username, password);
+    @ReactMethod
+    public void markAsReadBulk(ReadableArray uids, String folder, String accountId, Promise promise) {
+        storeFlagsBulk("markAsReadBulk", uids, folder, accountId, new Flags(Flags.Flag.SEEN), true, promise);
+    }
 
-            promise.resolve(true);
-        } catch (Exception e) {
-            Log.e(TAG, "SMTP connection error: " + e.getMessage());
-            promise.reject("SMTP_CONNECT_ERROR", e.getMessage());
-        }
+    @ReactMethod
+    public void markAsUnreadBulk(ReadableArray uids, String folder, String accountId, Promise promise) {
+        storeFlagsBulk("markAsUnreadBulk", uids, folder, accountId, new Flags(Flags.Flag.SEEN), false, promise);
     }
 
     @ReactMethod
-    public void disconnectSmtp(Promise promise) {
+    public void addFlagsBulk(ReadableArray uids, String folder, ReadableArray flagsArray, String accountId, Promise promise) {
         try {
-            if (smtpTransport != null && smtpTransport.isConnected()) {
-                smtpTransport.close();
-            }
-            promise.resolve(true);
+            storeFlagsBulk("addFlagsBulk", uids, folder, accountId, FlagUpdater.parse(convertReadableArrayToStringArray(flagsArray)), true, promise);
         } catch (Exception e) {
-            Log.e(TAG, "SMTP disconnect error: " + e.getMessage());
-            promise.reject("SMTP_DISCONNECT_ERROR", e.getMessage());
+            Log.e(TAG, "Bulk flag update error: " + e.getMessage());
+            promise.reject("INBOX_BULK_FLAGS_ERROR", e.getMessage());
         }
     }
 
     @ReactMethod
-    public void sendEmail(ReadableMap options, Promise promise) {
+    public void removeFlagsBulk(ReadableArray uids, String folder, ReadableArray flagsArray, String accountId, Promise promise) {
         try {
-            String[] to = convertReadableArrayToStringArray(options.getArray("to"));
-            String[] cc = options.hasKey("cc") ? convertReadableArrayToStringArray(options.getArray("cc")) : null;
-            String[] bcc = options.hasKey("bcc") ? convertReadableArrayToStringArray(options.getArray("bcc")) : null;
-            String subject = options.getString("subject");
-            String body = options.getString("body");
-            boolean isHtml = options.hasKey("isHtml") && options.getBoolean("isHtml");
-
-            Message message = new MimeMessage(smtpSession);
-            message.setFrom(new InternetAddress(smtpSession.getProperty("mail.user")));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(String.join(",", to)));
+            storeFlagsBulk("removeFlagsBulk", uids, folder, accountId, FlagUpdater.parse(convertReadableArrayToStringArray(flagsArray)), false, promise);
+        } catch (Exception e) {
+            Log.e(TAG, "Bulk flag update error: " + e.getMessage());
+            promise.reject("INBOX_BULK_FLAGS_ERROR", e.getMessage());
+        }
+    }
 
-            if (cc != null && cc.length > 0) {
-                message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(String.join(",", cc)));
-            }
-            if (bcc != null && bcc.length > 0) {
-                message.setRecipients(Message.RecipientType.BCC, InternetAddress.parse(String.join(",", bcc)));
+    private void storeFlagsBulk(String method, ReadableArray uids, String folder, String accountId, Flags flags, boolean set, Promise promise) {
+        execute(Account.laneKey(accountId, folder), method, () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_WRITE);
+                UidSet parsed = UidSet.parse(uids.toArrayList());
+                BatchResult result = FlagUpdater.store(imapFolder, parsed, flags, set);
+                countsChanged(account, folder);
+                forgetPrefetched(account, folder);
+                promise.resolve(convertBatchResult(result, "updated"));
+            } catch (Exception e) {
+                Log.e(TAG, "Bulk flag update error: " + e.getMessage());
+                promise.reject("INBOX_BULK_FLAGS_ERROR", e.getMessage());
             }
+        });
+    }
 
-            message.setSubject(subject);
-            message.setSentDate(new Date());
+    @ReactMethod
+    public void connectSmtp(ReadableMap config, Promise promise) {
+        execute(Account.laneKey(accountId(config), StripedExecutor.SMTP_KEY), "connectSmtp", () -> {
+            try {
+                // SMTP-only accounts need no IMAP connect first
+                Account account = accounts.computeIfAbsent(accountId(config), Account::new);
+                String host = config.getString("host");
+                int port = config.getInt("port");
+                String username = config.getString("username");
+                String password = config.getString("password");
+                boolean useSSL = config.getBoolean("useSSL");
+                boolean useTLS = config.hasKey("useTLS") && config.getBoolean("useTLS");
+
+                Properties props = new Properties();
+                props.put("mail.transport.protocol", "smtp");
+                props.put("mail.smtp.host", host);
+                props.put("mail.smtp.port", port);
+                props.put("mail.smtp.auth", "true");
+                props.put("mail.smtp.starttls.enable", useTLS);
+                // The From address of composed messages
+                props.put("mail.user", username);
+                // Don't wait for the reply to QUIT when closing
+                props.put("mail.smtp.quitwait", "false");
+
+                if (useSSL) {
+                    props.put("mail.smtp.ssl.enable", "true");
+                    props.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
+                    props.put("mail.smtp.socketFactory.fallback", "false");
+                }
 
-            if (isHtml) {
-                message.setContent(body, "text/html");
-            } else {
-                message.setText(body);
+                account.smtpSession = Session.getInstance(props);
+                account.smtpTransport = account.smtpSession.getTransport("smtp");
+                account.smtpTransport.connect(host, username, password);
+                account.smtpHost = host;
+                account.smtpUsername = username;
+                account.smtpPassword = password;
+                outbox(account).start(account.smtpSession, host, username, password);
+
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "SMTP connection error: " + e.getMessage());
+                promise.reject("SMTP_CONNECT_ERROR", e.getMessage());
             }
-
-            smtpTransport.sendMessage(message, message.getAllRecipients());
-            promise.resolve(true);
-        } catch (Exception e) {
-            Log.e(TAG, "Send email error: " + e.getMessage());
-            promise.reject("SMTP_SEND_ERROR", e.getMessage());
-        }
+        });
     }
 
     @ReactMethod
-    public void saveDraft(ReadableMap options, Promise promise) {
-        try {
-            // For now, we'll just save as a regular email in Drafts folder
-            // In a real implementation, you'd want proper draft management
-            String[] to = convertReadableArrayToStringArray(options.getArray("to"));
-            String[] cc = options.hasKey("cc") ? convertReadableArrayToStringArray(options.getArray("cc")) : null;
-            String[] bcc = options.hasKey("bcc") ? convertReadableArrayToStringArray(options.getArray("bcc")) : null;
-            String subject = options.getString("subject");
-            String body = options.getString("body");
+    public void disconnectSmtp(String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, StripedExecutor.SMTP_KEY), "disconnectSmtp", () -> {
+            try {
+                Account account = account(accountId);
+                if (account.outbox != null) {
+                    // Messages still queued are sent after the next connectSmtp
+                    account.outbox.stop();
+                }
+                if (account.smtpTransport != null && account.smtpTransport.isConnected()) {
+                    account.smtpTransport.close();
+                }
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "SMTP disconnect error: " + e.getMessage());
+                promise.reject("SMTP_DISCONNECT_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            IMAPFolder draftsFolder = (IMAPFolder) imapStore.getFolder("Drafts");
-            draftsFolder.open(Folder.READ_WRITE);
+    @ReactMethod
+    public void sendEmail(ReadableMap options, Promise promise) {
+        execute(Account.laneKey(accountId(options), StripedExecutor.SMTP_KEY), "sendEmail", () -> {
+            try {
+                Account account = account(options);
+                Message message = composeMessage(account, options);
+                // isConnected checks with a NOOP; servers drop idle clients
+                if (!account.smtpTransport.isConnected()) {
+                    account.smtpTransport.connect(account.smtpHost, account.smtpUsername, account.smtpPassword);
+                }
+                account.smtpTransport.sendMessage(message, message.getAllRecipients());
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Send email error: " + e.getMessage());
+                promise.reject("SMTP_SEND_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            Message message = new MimeMessage(smtpSession);
-            message.setFrom(new InternetAddress(smtpSession.getProperty("mail.user")));
-            if (to.length > 0) {
-                message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(String.join(",", to)));
+    /**
+     * Writes the email to the on-disk outbox and resolves with its id once
+     * it is safely stored; the outbox sends it in the background.
+     */
+    @ReactMethod
+    public void queueEmail(ReadableMap options, Promise promise) {
+        execute(Account.laneKey(accountId(options), StripedExecutor.OUTBOX_KEY), "queueEmail", () -> {
+            try {
+                Account account = account(options);
+                promise.resolve(outbox(account).enqueue(composeMessage(account, options)));
+            } catch (Exception e) {
+                Log.e(TAG, "Queue email error: " + e.getMessage());
+                promise.reject("SMTP_OUTBOX_ERROR", e.getMessage());
             }
-            if (cc != null && cc.length > 0) {
-                message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(String.join(",", cc)));
+        });
+    }
+
+    @ReactMethod
+    public void queueEmails(ReadableArray emails, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, StripedExecutor.OUTBOX_KEY), "queueEmails", () -> {
+            try {
+                Account account = account(accountId);
+                Outbox queue = outbox(account);
+                WritableArray ids = Arguments.createArray();
+                for (int i = 0; i < emails.size(); i++) {
+                    ids.pushString(queue.enqueue(composeMessage(account, emails.getMap(i))));
+                }
+                promise.resolve(ids);
+            } catch (Exception e) {
+                Log.e(TAG, "Queue email error: " + e.getMessage());
+                promise.reject("SMTP_OUTBOX_ERROR", e.getMessage());
             }
-            if (bcc != null && bcc.length > 0) {
-                message.setRecipients(Message.RecipientType.BCC, InternetAddress.parse(String.join(",", bcc)));
+        });
+    }
+
+    @ReactMethod
+    public void getOutbox(String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, StripedExecutor.OUTBOX_KEY), "getOutbox", () -> {
+            try {
+                Account account = account(accountId);
+                WritableArray result = Arguments.createArray();
+                for (Outbox.Entry entry : outbox(account).entries()) {
+                    WritableMap map = Arguments.createMap();
+                    map.putString("id", entry.id);
+                    map.putString("status", entry.status);
+                    map.putInt("attempts", entry.attempts);
+                    result.pushMap(map);
+                }
+                promise.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Get outbox error: " + e.getMessage());
+                promise.reject("SMTP_OUTBOX_ERROR", e.getMessage());
             }
+        });
+    }
 
-            message.setSubject(subject);
-            message.setText(body);
-            message.setFlag(Flags.Flag.DRAFT, true);
+    @ReactMethod
+    public void removeFromOutbox(String id, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, StripedExecutor.OUTBOX_KEY), "removeFromOutbox", () -> {
+            try {
+                Account account = account(accountId);
+                promise.resolve(outbox(account).remove(id));
+            } catch (Exception e) {
+                Log.e(TAG, "Remove from outbox error: " + e.getMessage());
+                promise.reject("SMTP_OUTBOX_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            draftsFolder.appendMessages(new Message[]{message});
-            draftsFolder.close(false);
+    @ReactMethod
+    public void retryOutbox(String id, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, StripedExecutor.OUTBOX_KEY), "retryOutbox", () -> {
+            try {
+                Account account = account(accountId);
+                promise.resolve(outbox(account).retry(id));
+            } catch (Exception e) {
+                Log.e(TAG, "Retry outbox error: " + e.getMessage());
+                promise.reject("SMTP_OUTBOX_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            promise.resolve(true);
-        } catch (Exception e) {
-            Log.e(TAG, "Save draft error: " + e.getMessage());
-            promise.reject("SMTP_SAVE_DRAFT_ERROR", e.getMessage());
-        }
+    @ReactMethod
+    public void saveDraft(ReadableMap options, Promise promise) {
+        execute(Account.laneKey(accountId(options), "Drafts"), "saveDraft", () -> {
+            try {
+                Account account = account(options);
+                // For now, we'll just save as a regular email in Drafts folder
+                // In a real implementation, you'd want proper draft management
+                // APPEND works on an unselected folder
+                Folder draftsFolder = account.imapStore.getFolder("Drafts");
+
+                // With no append buffer JavaMail sizes the literal in one
+                // pass and streams it in a second, so attachments stay on disk
+                Message message = composeMessage(account, options);
+                message.setFlag(Flags.Flag.DRAFT, true);
+
+                draftsFolder.appendMessages(new Message[]{message});
+                countsChanged(account, "Drafts");
+
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Save draft error: " + e.getMessage());
+                promise.reject("SMTP_SAVE_DRAFT_ERROR", e.getMessage());
+            }
+        });
     }
 
     @ReactMethod
@@ -549,213 +1555,788 @@ public class InboxModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void getDrafts(Promise promise) {
-        try {
-            IMAPFolder draftsFolder = (IMAPFolder) imapStore.getFolder("Drafts");
-            draftsFolder.open(Folder.READ_ONLY);
+    public void getDrafts(ReadableMap options, Promise promise) {
+        execute(Account.laneKey(accountId(options), "Drafts"), "getDrafts", () -> {
+            try {
+                Account account = account(options);
+                IMAPFolder draftsFolder = account.folderCache.open("Drafts", Folder.READ_ONLY);
+
+                // Only flags are needed to pick the drafts; their envelopes
+                // are fetched with their bodies
+                Message[] messages = draftsFolder.getMessages();
+                FetchProfile flagsOnly = new FetchProfile();
+                flagsOnly.add(FetchProfile.Item.FLAGS);
+                draftsFolder.fetch(messages, flagsOnly);
+
+                List<Message> draftMessages = new ArrayList<>();
+                for (Message message : messages) {
+                    if (message.isSet(Flags.Flag.DRAFT)) {
+                        draftMessages.add(message);
+                    }
+                }
+                Message[] page = draftMessages.toArray(new Message[0]);
+                if (isStream(options)) {
+                    promise.resolve(streamPage(page, options, chunk -> convertPage(draftsFolder, chunk, BODY_FULL, 0)));
+                    return;
+                }
+                WritableArray drafts = convertPage(draftsFolder, page, BODY_FULL, 0);
+                promise.resolve(drafts);
+            } catch (Exception e) {
+                Log.e(TAG, "Get drafts error: " + e.getMessage());
+                promise.reject("SMTP_GET_DRAFTS_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            Message[] messages = draftsFolder.getMessages();
-            WritableArray drafts = Arguments.createArray();
+    @ReactMethod
+    public void getEmailSize(int uid, String folder, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, folder), "getEmailSize", () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_ONLY);
+
+                Message message = imapFolder.getMessageByUID(uid);
+                int size = message.getSize();
+                promise.resolve(size);
+            } catch (Exception e) {
+                Log.e(TAG, "Get email size error: " + e.getMessage());
+                promise.reject("INBOX_GET_SIZE_ERROR", e.getMessage());
+            }
+        });
+    }
 
-            for (Message message : messages) {
-                if (message.isSet(Flags.Flag.DRAFT)) {
-                    WritableMap email = convertMessageToMap(message);
-                    drafts.pushMap(email);
-                }
+    @ReactMethod
+    public void getQuota(String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, StripedExecutor.STORE_KEY), "getQuota", () -> {
+            try {
+                // This is a simplified implementation
+                // Real quota support would require QUOTA extension
+                WritableMap quota = Arguments.createMap();
+                quota.putInt("used", 0);
+                quota.putInt("total", 0);
+                promise.resolve(quota);
+            } catch (Exception e) {
+                Log.e(TAG, "Get quota error: " + e.getMessage());
+                promise.reject("INBOX_QUOTA_ERROR", e.getMessage());
             }
+        });
+    }
 
-            draftsFolder.close(false);
-            promise.resolve(drafts);
-        } catch (Exception e) {
-            Log.e(TAG, "Get drafts error: " + e.getMessage());
-            promise.reject("SMTP_GET_DRAFTS_ERROR", e.getMessage());
+    @ReactMethod
+    public void expunge(String folder, String accountId, Promise promise) {
+        execute(Account.laneKey(accountId, folder), "expunge", () -> {
+            try {
+                Account account = account(accountId);
+                IMAPFolder imapFolder = account.folderCache.open(folder, Folder.READ_WRITE);
+                imapFolder.expunge();
+                countsChanged(account, folder);
+                forgetPrefetched(account, folder);
+
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Expunge error: " + e.getMessage());
+                promise.reject("INBOX_EXPUNGE_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    // Records each call's time from the bridge to the end of its task, queueing included
+    private void execute(String key, String method, Runnable task) {
+        long start = System.nanoTime();
+        cancelReadAhead();
+        executor().execute(key, () -> {
+            try {
+                task.run();
+            } finally {
+                metrics.method(method, System.nanoTime() - start);
+            }
+        });
+    }
+
+    // Read-ahead still queued would only delay this call; the lanes are
+    // shared, so that goes for every account's read-ahead
+    private void cancelReadAhead() {
+        for (Account account : accounts.values()) {
+            ReadAhead ahead = account.readAhead;
+            if (ahead != null) {
+                ahead.cancel();
+            }
         }
     }
 
-    @ReactMethod
-    public void getEmailSize(int uid, String folder, Promise promise) {
-        try {
-            IMAPFolder imapFolder = (IMAPFolder) imapStore.getFolder(folder);
-            imapFolder.open(Folder.READ_ONLY);
+    private static String accountId(ReadableMap options) {
+        return options != null && options.hasKey("accountId") && !options.isNull("accountId")
+            ? options.getString("accountId") : Account.DEFAULT_ID;
+    }
 
-            Message message = imapFolder.getMessageByUID(uid);
-            int size = message.getSize();
+    private Account account(ReadableMap options) throws MessagingException {
+        return account(accountId(options));
+    }
 
-            imapFolder.close(false);
-            promise.resolve(size);
-        } catch (Exception e) {
-            Log.e(TAG, "Get email size error: " + e.getMessage());
-            promise.reject("INBOX_GET_SIZE_ERROR", e.getMessage());
+    private Account account(String accountId) throws MessagingException {
+        Account account = accounts.get(Account.id(accountId));
+        if (account == null) {
+            throw new MessagingException("Unknown account " + accountId);
         }
+        return account;
     }
 
-    @ReactMethod
-    public void getQuota(Promise promise) {
-        try {
-            // This is a simplified implementation
-            // Real quota support would require QUOTA extension
-            WritableMap quota = Arguments.createMap();
-            quota.putInt("used", 0);
-            quota.putInt("total", 0);
-            promise.resolve(quota);
-        } catch (Exception e) {
-            Log.e(TAG, "Get quota error: " + e.getMessage());
-            promise.reject("INBOX_QUOTA_ERROR", e.getMessage());
+    private boolean othersConnected(Account account) {
+        for (Account other : accounts.values()) {
+            if (other != account && other.isConnected()) {
+                return true;
+            }
         }
+        return false;
     }
 
-    @ReactMethod
-    public void expunge(String folder, Promise promise) {
-        try {
-            IMAPFolder imapFolder = (IMAPFolder) imapStore.getFolder(folder);
-            imapFolder.open(Folder.READ_WRITE);
-            imapFolder.expunge();
-            imapFolder.close(false);
+    // Spilling writes files, so it stays off the main thread the callbacks run on
+    private static void trimBodyCache(BodyCache cache, long targetBytes) {
+        Thread thread = new Thread(() -> cache.trim(targetBytes), "inbox-body-trim");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
-            promise.resolve(true);
-        } catch (Exception e) {
-            Log.e(TAG, "Expunge error: " + e.getMessage());
-            promise.reject("INBOX_EXPUNGE_ERROR", e.getMessage());
+    private synchronized StripedExecutor executor() {
+        if (executor == null) {
+            executor = new StripedExecutor(StripedExecutor.DEFAULT_LANES);
         }
+        return executor;
     }
 
-    private WritableMap convertMessageToMap(Message message) throws MessagingException, IOException {
-        WritableMap email = Arguments.createMap();
+    private synchronized StripedExecutor executor(int lanes) {
+        if (executor != null && executor.size() != lanes) {
+            executor.shutdown(DISCONNECT_TIMEOUT_MS);
+            executor = null;
+        }
+        if (executor == null) {
+            executor = new StripedExecutor(lanes);
+        }
+        return executor;
+    }
 
-        // Basic fields
-        email.putString("subject", message.getSubject() != null ? message.getSubject() : "");
-        email.putString("from", message.getFrom() != null && message.getFrom().length > 0 ?
-            message.getFrom()[0].toString() : "");
+    private void drainExecutor() {
+        StripedExecutor lanes;
+        synchronized (this) {
+            lanes = executor;
+        }
+        if (lanes != null) {
+            lanes.drain(DISCONNECT_TIMEOUT_MS);
+        }
+    }
 
-        // Recipients
-        Address[] toAddresses = message.getRecipients(Message.RecipientType.TO);
-        if (toAddresses != null && toAddresses.length > 0) {
-            WritableArray toArray = Arguments.createArray();
-            for (Address addr : toAddresses) {
-                toArray.pushString(addr.toString());
+    private synchronized void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdown(DISCONNECT_TIMEOUT_MS);
+            executor = null;
+        }
+    }
+
+    // Calls for the same account and folder share a lane and keep their order
+    private static String folderKey(ReadableMap options, String key) {
+        return Account.laneKey(accountId(options), options != null && options.hasKey(key) && !options.isNull(key)
+            ? options.getString(key) : StripedExecutor.STORE_KEY);
+    }
+
+    private void closeStore(FolderCache folders, IMAPStore store) throws MessagingException {
+        if (folders != null) {
+            folders.closeAll();
+        }
+        if (searchIndex != null) {
+            searchIndex.saveAll();
+        }
+        if (messageStore != null) {
+            messageStore.saveAll();
+        }
+        if (store != null && store.isConnected()) {
+            store.close();
+        }
+    }
+
+    private void stopAllIdle(Account account) {
+        List<IdleWatcher> watchers;
+        synchronized (account.idleWatchers) {
+            watchers = new ArrayList<>(account.idleWatchers.values());
+            account.idleWatchers.clear();
+        }
+        for (IdleWatcher watcher : watchers) {
+            watcher.stop();
+        }
+    }
+
+    private void emitUids(Account account, String event, String folderName, List<Long> uids,
+                          boolean resync) {
+        countsChanged(account, folderName);
+        long[] changed = new long[uids.size()];
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = uids.get(i);
+        }
+        forgetPrefetched(account, folderName, changed);
+        WritableMap params = Arguments.createMap();
+        params.putString("accountId", account.id);
+        params.putString("folder", folderName);
+        WritableArray uidArray = Arguments.createArray();
+        for (long uid : uids) {
+            uidArray.pushDouble(uid);
+        }
+        params.putArray("uids", uidArray);
+        params.putBoolean("resync", resync);
+        emit(event, params);
+    }
+
+    // Flag changes, moves and new mail leave a folder's counts in the tree out of date
+    private void countsChanged(Account account, String... folders) {
+        FolderTree tree = account.folderTree;
+        if (tree != null) {
+            for (String folder : folders) {
+                tree.invalidate(folder);
             }
-            email.putArray("to", toArray);
-        } else {
-            email.putArray("to", Arguments.createArray());
         }
+    }
+
+    private void emit(String event, WritableMap params) {
+        getReactApplicationContext()
+            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+            .emit(event, params);
+    }
+
+    private interface PageConverter {
+        WritableArray convert(Message[] chunk) throws MessagingException;
+    }
+
+    private static boolean isStream(ReadableMap options) {
+        return options != null && options.hasKey("stream") && options.getBoolean("stream");
+    }
+
+    /**
+     * Converts and emits page as inbox:chunk events of chunkSize emails, so
+     * only one chunk is held in native memory at a time and JS can render the
+     * first chunk before the rest are loaded. Resolves to a summary once the
+     * last chunk is sent or the stream is cancelled.
+     */
+    private WritableMap streamPage(Message[] page, ReadableMap options, PageConverter converter) throws MessagingException, InterruptedException {
+        String requestId = options.getString("requestId");
+        int chunkSize = options.hasKey("chunkSize") ? Math.max(1, options.getInt("chunkSize")) : ResultStream.DEFAULT_CHUNK_SIZE;
+        int window = options.hasKey("chunkWindow") ? options.getInt("chunkWindow") : 0;
+
+        ResultStream stream = new ResultStream(window);
+        streams.put(requestId, stream);
+        int sent = 0;
+        int index = 0;
+        try {
+            do {
+                if (!stream.awaitCredit()) {
+                    break;
+                }
+                int end = Math.min(page.length, sent + chunkSize);
+                WritableMap chunk = Arguments.createMap();
+                chunk.putString("requestId", requestId);
+                chunk.putInt("index", index++);
+                chunk.putArray("emails", converter.convert(Arrays.copyOfRange(page, sent, end)));
+                chunk.putBoolean("done", end == page.length);
+                emit(ResultStream.EVENT_CHUNK, chunk);
+                sent = end;
+            } while (sent < page.length);
+        } finally {
+            streams.remove(requestId);
+        }
+
+        WritableMap summary = Arguments.createMap();
+        summary.putString("requestId", requestId);
+        summary.putInt("count", sent);
+        summary.putInt("chunks", index);
+        summary.putBoolean("cancelled", sent < page.length);
+        return summary;
+    }
 
-        // CC recipients
-        Address[] ccAddresses = message.getRecipients(Message.RecipientType.CC);
-        if (ccAddresses != null && ccAddresses.length > 0) {
-            WritableArray ccArray = Arguments.createArray();
-            for (Address addr : ccAddresses) {
-                ccArray.pushString(addr.toString());
+    private WritableArray convertPage(Account account, IMAPFolder folder, Message[] page, ReadableMap options, boolean contiguous) throws MessagingException {
+        int bodyLevel = bodyLevel(options.hasKey("includeBody") ? options.getString("includeBody") : BODY_FULL);
+        return convertRecords(loadPage(account, folder, page, options, contiguous), bodyLevel);
+    }
+
+    private List<MessageRecord> loadPage(Account account, IMAPFolder folder, Message[] page, ReadableMap options, boolean contiguous) throws MessagingException {
+        int bodyLevel = bodyLevel(options.hasKey("includeBody") ? options.getString("includeBody") : BODY_FULL);
+        int previewBytes = options.hasKey("previewBytes") ? options.getInt("previewBytes") : BodyFetcher.DEFAULT_PREVIEW_BYTES;
+        boolean useCache = options.hasKey("useCache") ? options.getBoolean("useCache") : account.cacheEnabled;
+        if (!useCache) {
+            long start = System.nanoTime();
+            List<MessageRecord> records = MessageLoader.load(folder, page, bodyLevel, previewBytes, bodyCache);
+            metrics.stage(Metrics.STAGE_LOAD, System.nanoTime() - start);
+            indexRecords(account, folder, records);
+            scheduleReadAhead(account, folder, records, options);
+            return records;
+        }
+
+        MessageStore.FolderSnapshot snapshot = messageStore().get(account.name, folder.getFullName());
+        List<MessageRecord> records;
+        boolean save;
+        synchronized (snapshot) {
+            long start = System.nanoTime();
+            records = CacheSync.resolve(folder, snapshot, page, contiguous, bodyLevel, previewBytes, bodyCache);
+            metrics.stage(Metrics.STAGE_LOAD, System.nanoTime() - start);
+            save = snapshot.unsaved >= MessageStore.SAVE_EVERY;
+        }
+        // Listings change a few records at a time, so the whole snapshot is
+        // only rewritten once enough have; disconnect writes the rest
+        if (save) {
+            messageStore().save(account.name, folder.getFullName());
+        }
+        indexRecords(account, folder, records);
+        scheduleReadAhead(account, folder, records, options);
+        return records;
+    }
+
+    // Streams deliver in chunks as JS asks, so only whole listings read ahead
+    private void scheduleReadAhead(Account account, IMAPFolder folder, List<MessageRecord> records, ReadableMap options) {
+        ReadAhead ahead = account.readAhead;
+        if (ahead != null && !isStream(options)) {
+            ahead.schedule(folder.getFullName(), records);
+        }
+    }
+
+    private MessageRecord prefetched(Account account, IMAPFolder folder, String folderName, long uid) throws MessagingException {
+        ReadAhead ahead = account.readAhead;
+        return ahead != null ? ahead.get(folderName, folder.getUIDValidity(), uid) : null;
+    }
+
+    // A prefetched email whose flags changed or that was moved or deleted is
+    // stale; bulk calls forget the whole folder rather than list their ranges
+    private void forgetPrefetched(Account account, String folder, long... uids) {
+        ReadAhead ahead = account.readAhead;
+        if (ahead != null) {
+            ahead.forget(folder, uids);
+        }
+    }
+
+    // Unknown counts as metered, so read-ahead errs on the side of the data plan
+    private boolean isNetworkMetered() {
+        try {
+            ConnectivityManager connectivity = (ConnectivityManager) getReactApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+            return connectivity == null || connectivity.isActiveNetworkMetered();
+        } catch (SecurityException e) {
+            Log.w(TAG, "Cannot read network state: " + e.getMessage());
+            return true;
+        }
+    }
+
+    private synchronized SearchIndex searchIndex() {
+        if (searchIndex == null) {
+            searchIndex = new SearchIndex(new File(getReactApplicationContext().getFilesDir(), "inbox-index"));
+        }
+        return searchIndex;
+    }
+
+    // Every listing feeds the index, so it grows with what the user browses
+    private void indexRecords(Account account, IMAPFolder folder, List<MessageRecord> records) throws MessagingException {
+        if (!account.indexEnabled || records.isEmpty()) {
+            return;
+        }
+        SearchIndex.FolderIndex index = searchIndex().get(account.name, folder.getFullName());
+        boolean save;
+        synchronized (index) {
+            index.validate(folder.getUIDValidity());
+            for (MessageRecord record : records) {
+                index.add(record);
             }
-            email.putArray("cc", ccArray);
+            save = index.unsaved >= SearchIndex.SAVE_EVERY;
         }
+        if (save) {
+            searchIndex().save(account.name, folder.getFullName());
+        }
+    }
 
-        // BCC recipients
-        Address[] bccAddresses = message.getRecipients(Message.RecipientType.BCC);
-        if (bccAddresses != null && bccAddresses.length > 0) {
-            WritableArray bccArray = Arguments.createArray();
-            for (Address addr : bccAddresses) {
-                bccArray.pushString(addr.toString());
+    /**
+     * Whether source 'auto' can search the index: when offline, or when the
+     * index holds every message in the folder and the query has no criteria
+     * it can't check.
+     */
+    private boolean indexAnswers(Account account, String folderName, ReadableMap options) throws MessagingException {
+        String indexAccount = options.hasKey("account") ? options.getString("account") : account.name;
+        if (indexAccount == null) {
+            return false;
+        }
+        SearchIndex.FolderIndex index = searchIndex().get(indexAccount, folderName);
+        if (!account.isConnected()) {
+            synchronized (index) {
+                return index.size() > 0;
             }
-            email.putArray("bcc", bccArray);
         }
+        if (options.hasKey("seen")) {
+            return false;
+        }
+        for (String key : SearchPlanner.SERVER_ONLY) {
+            if (options.hasKey(key)) {
+                return false;
+            }
+        }
+        IMAPFolder folder = account.folderCache.open(folderName, Folder.READ_ONLY);
+        synchronized (index) {
+            index.validate(folder.getUIDValidity());
+            return index.size() > 0 && index.size() >= folder.getMessageCount();
+        }
+    }
 
-        email.putString("date", message.getSentDate() != null ? message.getSentDate().toString() : "");
+    private long[] searchLocal(Account account, String folderName, ReadableMap options, int limit) throws java.text.ParseException {
+        SearchIndex.Query query = new SearchIndex.Query();
+        query.text = options.hasKey("query") ? options.getString("query") : null;
+        query.from = options.hasKey("from") ? options.getString("from") : null;
+        query.to = options.hasKey("to") ? options.getString("to") : null;
+        query.subject = options.hasKey("subject") ? options.getString("subject") : null;
+        if (options.hasKey("since") && !options.getString("since").isEmpty()) {
+            query.since = SearchPlanner.parseDay(options.getString("since")).getTime();
+        }
+        if (options.hasKey("before") && !options.getString("before").isEmpty()) {
+            // Like the server search, the before day itself is included
+            query.before = SearchPlanner.parseDay(options.getString("before")).getTime() + DAY_MS;
+        }
+        String indexAccount = options.hasKey("account") ? options.getString("account") : account.name;
+        if (indexAccount == null) {
+            return new long[0];
+        }
+        SearchIndex.FolderIndex index = searchIndex().get(indexAccount, folderName);
+        // The index has no flags, so seen is checked against the results
+        boolean filterSeen = options.hasKey("seen");
+        synchronized (index) {
+            return index.search(query, filterSeen ? 0 : limit);
+        }
+    }
 
-        // Message content
-        StringBuilder body = new StringBuilder();
-        try {
-            Object content = message.getContent();
-            if (content instanceof String) {
-                body.append((String) content);
-            } else if (content instanceof Multipart) {
-                Multipart multipart = (Multipart) content;
-                for (int i = 0; i < multipart.getCount(); i++) {
-                    BodyPart bodyPart = multipart.getBodyPart(i);
-                    if (bodyPart.getContentType().toLowerCase().startsWith("text/plain")) {
-                        body.append(bodyPart.getContent().toString());
-                    }
+    private static WritableArray convertFolders(List<FolderTree.Entry> entries,
+                                                Map<String, List<FolderTree.Entry>> children, boolean withCounts) {
+        WritableArray array = Arguments.createArray();
+        if (entries == null) {
+            return array;
+        }
+        for (FolderTree.Entry entry : entries) {
+            WritableMap folder = Arguments.createMap();
+            folder.putString("path", entry.path);
+            folder.putString("name", entry.name());
+            folder.putString("delimiter", entry.delimiter != '\0' ? String.valueOf(entry.delimiter) : null);
+            WritableArray attributes = Arguments.createArray();
+            for (String attribute : entry.attributes) {
+                attributes.pushString(attribute);
+            }
+            folder.putArray("attributes", attributes);
+            folder.putString("specialUse", entry.specialUse);
+            folder.putBoolean("selectable", entry.selectable);
+            if (withCounts && entry.messages >= 0) {
+                folder.putInt("messages", entry.messages);
+                folder.putInt("unseen", entry.unseen);
+                folder.putDouble("uidNext", entry.uidNext);
+                folder.putDouble("uidValidity", entry.uidValidity);
+                if (entry.highestModSeq >= 0) {
+                    folder.putDouble("highestModSeq", entry.highestModSeq);
                 }
             }
-        } catch (Exception e) {
-            Log.w(TAG, "Error reading message content: " + e.getMessage());
+            folder.putArray("children", convertFolders(children.get(entry.path), children, withCounts));
+            array.pushMap(folder);
         }
-        email.putString("body", body.toString());
+        return array;
+    }
 
-        // Message ID and UID
-        try {
-            if (message instanceof javax.mail.internet.MimeMessage) {
-                String[] messageIdHeaders = message.getHeader("Message-ID");
-                if (messageIdHeaders != null && messageIdHeaders.length > 0) {
-                    email.putString("messageId", messageIdHeaders[0]);
+    private static WritableArray convertNodes(List<Threader.Node> nodes) {
+        WritableArray array = Arguments.createArray();
+        for (Threader.Node node : nodes) {
+            WritableMap map = Arguments.createMap();
+            map.putDouble("uid", node.uid);
+            map.putArray("children", convertNodes(node.children));
+            array.pushMap(map);
+        }
+        return array;
+    }
+
+    // In the order of uids, without those expunged since they were found
+    private static Message[] messagesByUid(IMAPFolder folder, long[] uids) throws MessagingException {
+        List<Message> found = new ArrayList<>(uids.length);
+        for (Message message : folder.getMessagesByUID(uids)) {
+            if (message != null) {
+                found.add(message);
+            }
+        }
+        return found.toArray(new Message[0]);
+    }
+
+    private static Message[] filterSeen(IMAPFolder folder, Message[] messages, ReadableMap options, int limit) throws MessagingException {
+        List<Message> found = new ArrayList<>(Arrays.asList(messages));
+        if (options.hasKey("seen")) {
+            FetchProfile flags = new FetchProfile();
+            flags.add(FetchProfile.Item.FLAGS);
+            folder.fetch(messages, flags);
+            found.clear();
+            for (Message message : messages) {
+                if (message.isSet(Flags.Flag.SEEN) == options.getBoolean("seen")) {
+                    found.add(message);
                 }
             }
+        }
+        int start = limit > 0 ? Math.max(0, found.size() - limit) : 0;
+        return found.subList(start, found.size()).toArray(new Message[0]);
+    }
 
-            if (currentFolder != null) {
-                email.putInt("uid", currentFolder.getUID(message));
+    /**
+     * The cached records for uids, or null when any is missing and must be
+     * loaded from the server. Applies the seen filter and limit that
+     * searchLocal could not.
+     */
+    private List<MessageRecord> cachedRecords(Account account, ReadableMap options, String folderName, long[] uids) {
+        boolean filterSeen = options.hasKey("seen");
+        String cacheAccount = options.hasKey("account") ? options.getString("account") : account.name;
+        if (cacheAccount == null || (!account.cacheEnabled && !options.hasKey("account"))) {
+            return null;
+        }
+        MessageStore.FolderSnapshot snapshot = messageStore().get(cacheAccount, folderName);
+        List<MessageRecord> records = new ArrayList<>(uids.length);
+        synchronized (snapshot) {
+            for (long uid : uids) {
+                MessageRecord record = snapshot.records.get(uid);
+                if (record == null) {
+                    return null;
+                }
+                if (!filterSeen || record.hasFlag(MessageRecord.SEEN) == options.getBoolean("seen")) {
+                    records.add(record);
+                }
             }
-        } catch (Exception e) {
-            Log.w(TAG, "Error getting message metadata: " + e.getMessage());
         }
+        int limit = options.hasKey("limit") ? options.getInt("limit") : 0;
+        if (limit > 0 && records.size() > limit) {
+            return new ArrayList<>(records.subList(records.size() - limit, records.size()));
+        }
+        return records;
+    }
 
-        // Flags
-        Flags flags = message.getFlags();
-        WritableMap flagsMap = Arguments.createMap();
-        flagsMap.putBoolean("seen", flags.contains(Flags.Flag.SEEN));
-        flagsMap.putBoolean("answered", flags.contains(Flags.Flag.ANSWERED));
-        flagsMap.putBoolean("flagged", flags.contains(Flags.Flag.FLAGGED));
-        flagsMap.putBoolean("deleted", flags.contains(Flags.Flag.DELETED));
-        flagsMap.putBoolean("draft", flags.contains(Flags.Flag.DRAFT));
-        email.putMap("flags", flagsMap);
+    private WritableArray convertPage(IMAPFolder folder, Message[] page, String includeBody, int previewBytes) throws MessagingException {
+        int bodyLevel = bodyLevel(includeBody);
+        long start = System.nanoTime();
+        List<MessageRecord> records = MessageLoader.load(folder, page, bodyLevel, previewBytes, bodyCache);
+        metrics.stage(Metrics.STAGE_LOAD, System.nanoTime() - start);
+        return convertRecords(records, bodyLevel);
+    }
 
-        return email;
+    private static int bodyLevel(String includeBody) {
+        if (BODY_FULL.equals(includeBody)) {
+            return MessageRecord.BODY_FULL;
+        }
+        return BODY_PREVIEW.equals(includeBody) ? MessageRecord.BODY_PREVIEW : MessageRecord.BODY_NONE;
     }
 
-    private SearchTerm buildSearchTerm(ReadableMap options) throws Exception {
-        List<SearchTerm> terms = new ArrayList<>();
+    private synchronized MessageStore messageStore() {
+        if (messageStore == null) {
+            messageStore = new MessageStore(new File(getReactApplicationContext().getFilesDir(), "inbox-cache"));
+        }
+        return messageStore;
+    }
 
-        if (options.hasKey("query") && !options.getString("query").isEmpty()) {
-            String query = options.getString("query");
-            SearchTerm subjectTerm = new SubjectTerm(query);
-            SearchTerm bodyTerm = new BodyTerm(query);
-            terms.add(new OrTerm(subjectTerm, bodyTerm));
+    private MessageRecord cachedRecord(Account account, IMAPFolder folder, String folderName, long uid) throws MessagingException {
+        MessageStore.FolderSnapshot snapshot = messageStore().get(account.name, folderName);
+        synchronized (snapshot) {
+            snapshot.validate(folder.getUIDValidity());
+            return snapshot.records.get(uid);
         }
+    }
 
-        if (options.hasKey("from") && !options.getString("from").isEmpty()) {
-            terms.add(new FromStringTerm(options.getString("from")));
+    private WritableArray convertRecords(List<MessageRecord> records, int bodyLevel) {
+        long start = System.nanoTime();
+        WritableArray emails = Arguments.createArray();
+        for (MessageRecord record : records) {
+            emails.pushMap(convertRecordToMap(record, bodyLevel));
         }
+        metrics.stage(Metrics.STAGE_CONVERT, System.nanoTime() - start);
+        return emails;
+    }
+
+    private WritableMap convertRecordToMap(MessageRecord record, int bodyLevel) {
+        WritableMap email = Arguments.createMap();
+
+        // Basic fields
+        email.putString("subject", record.subject);
+        email.putString("from", record.from);
 
-        if (options.hasKey("to") && !options.getString("to").isEmpty()) {
-            terms.add(new RecipientStringTerm(Message.RecipientType.TO, options.getString("to")));
+        // Recipients
+        email.putArray("to", Arguments.fromList(record.to));
+        if (!record.cc.isEmpty()) {
+            email.putArray("cc", Arguments.fromList(record.cc));
         }
+        if (!record.bcc.isEmpty()) {
+            email.putArray("bcc", Arguments.fromList(record.bcc));
+        }
+
+        email.putString("date", record.sentDate >= 0 ? new Date(record.sentDate).toString() : "");
 
-        if (options.hasKey("subject") && !options.getString("subject").isEmpty()) {
-            terms.add(new SubjectTerm(options.getString("subject")));
+        // Message content, left empty for envelope-only listings
+        email.putString("body", bodyLevel == MessageRecord.BODY_FULL ? record.body : "");
+        if (bodyLevel == MessageRecord.BODY_PREVIEW) {
+            email.putString("preview", record.preview);
+        }
+        if (record.isHtml != null) {
+            email.putBoolean("isHtml", record.isHtml);
+        }
+        if (record.attachments != null) {
+            WritableArray attachments = Arguments.createArray();
+            for (MessageRecord.Attachment part : record.attachments) {
+                WritableMap attachment = Arguments.createMap();
+                attachment.putString("filename", part.filename);
+                attachment.putString("contentType", part.contentType);
+                attachment.putInt("size", part.size);
+                attachment.putString("section", part.section);
+                attachment.putBoolean("inline", part.inline);
+                if (part.contentId != null) {
+                    attachment.putString("contentId", part.contentId);
+                }
+                attachments.pushMap(attachment);
+            }
+            email.putArray("attachments", attachments);
         }
 
-        if (options.hasKey("since") && !options.getString("since").isEmpty()) {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-            Date sinceDate = sdf.parse(options.getString("since"));
-            terms.add(new SentDateTerm(ComparisonTerm.GE, sinceDate));
+        // Message ID and UID
+        if (record.messageId != null) {
+            email.putString("messageId", record.messageId);
         }
+        email.putDouble("uid", record.uid);
 
-        if (options.hasKey("before") && !options.getString("before").isEmpty()) {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-            Date beforeDate = sdf.parse(options.getString("before"));
-            terms.add(new SentDateTerm(ComparisonTerm.LE, beforeDate));
+        // Flags
+        email.putMap("flags", convertFlags(record.flags));
+
+        return email;
+    }
+
+    private static WritableMap convertFlags(int flags) {
+        WritableMap flagsMap = Arguments.createMap();
+        flagsMap.putBoolean("seen", (flags & MessageRecord.SEEN) != 0);
+        flagsMap.putBoolean("answered", (flags & MessageRecord.ANSWERED) != 0);
+        flagsMap.putBoolean("flagged", (flags & MessageRecord.FLAGGED) != 0);
+        flagsMap.putBoolean("deleted", (flags & MessageRecord.DELETED) != 0);
+        flagsMap.putBoolean("draft", (flags & MessageRecord.DRAFT) != 0);
+        return flagsMap;
+    }
+
+    private static void addFlagIfPresent(ReadableMap flagsMap, String key, Flags.Flag flag, Flags setFlags, Flags clearFlags) {
+        if (flagsMap.hasKey(key)) {
+            (flagsMap.getBoolean(key) ? setFlags : clearFlags).add(flag);
         }
+    }
 
-        if (options.hasKey("seen")) {
-            boolean seen = options.getBoolean("seen");
-            terms.add(new FlagTerm(new Flags(Flags.Flag.SEEN), seen));
+    private WritableMap convertMetrics() {
+        WritableMap result = Arguments.createMap();
+        result.putDouble("since", metrics.since());
+        WritableMap methods = Arguments.createMap();
+        for (Map.Entry<String, Metrics.Histogram> entry : metrics.methods().entrySet()) {
+            if (entry.getValue().count() > 0) {
+                methods.putMap(entry.getKey(), convertHistogram(entry.getValue()));
+            }
         }
+        result.putMap("methods", methods);
+        WritableMap commands = Arguments.createMap();
+        for (int i = 0; i <= Metrics.COMMANDS.length; i++) {
+            Metrics.Histogram histogram = metrics.command(i);
+            if (histogram.count() > 0) {
+                commands.putMap(Metrics.commandName(i), convertHistogram(histogram));
+            }
+        }
+        result.putMap("commands", commands);
+        WritableMap stages = Arguments.createMap();
+        stages.putMap(Metrics.STAGE_LOAD, convertHistogram(metrics.stage(Metrics.STAGE_LOAD)));
+        stages.putMap(Metrics.STAGE_CONVERT, convertHistogram(metrics.stage(Metrics.STAGE_CONVERT)));
+        result.putMap("stages", stages);
+        long bytesRead = 0;
+        long bytesWritten = 0;
+        for (Account account : accounts.values()) {
+            MeteredSocketFactory factory = account.socketFactory;
+            if (factory != null) {
+                bytesRead += factory.bytesRead();
+                bytesWritten += factory.bytesWritten();
+            }
+        }
+        result.putDouble("bytesRead", bytesRead);
+        result.putDouble("bytesWritten", bytesWritten);
+        return result;
+    }
+
+    private static WritableMap convertHistogram(Metrics.Histogram histogram) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("count", histogram.count());
+        map.putDouble("errors", histogram.errors());
+        map.putDouble("meanMs", histogram.meanMs());
+        map.putDouble("maxMs", histogram.maxMs());
+        map.putDouble("p50Ms", histogram.percentileMs(0.5));
+        map.putDouble("p90Ms", histogram.percentileMs(0.9));
+        map.putDouble("p99Ms", histogram.percentileMs(0.99));
+        return map;
+    }
 
-        if (terms.size() == 1) {
-            return terms.get(0);
-        } else if (terms.size() > 1) {
-            return new AndTerm(terms.toArray(new SearchTerm[0]));
-        } else {
-            return new SubjectTerm("*"); // Match all if no criteria
+    private WritableMap convertBatchResult(BatchResult result, String countKey) {
+        WritableMap map = Arguments.createMap();
+        map.putInt(countKey, result.succeeded);
+        WritableArray failed = Arguments.createArray();
+        for (int i = 0; i < result.failedUids.size(); i++) {
+            WritableMap failure = Arguments.createMap();
+            failure.putDouble("uid", result.failedUids.get(i));
+            failure.putString("error", result.failedErrors.get(i));
+            failed.pushMap(failure);
+        }
+        map.putArray("failed", failed);
+        return map;
+    }
+
+    private MimeMessage composeMessage(Account account, ReadableMap options) throws MessagingException {
+        String[] to = options.hasKey("to") ? convertReadableArrayToStringArray(options.getArray("to")) : null;
+        String[] cc = options.hasKey("cc") ? convertReadableArrayToStringArray(options.getArray("cc")) : null;
+        String[] bcc = options.hasKey("bcc") ? convertReadableArrayToStringArray(options.getArray("bcc")) : null;
+        String subject = options.getString("subject");
+        String body = options.getString("body");
+        boolean isHtml = options.hasKey("isHtml") && options.getBoolean("isHtml");
+        List<MimeBodyPart> attachments = options.hasKey("attachments")
+            ? buildAttachments(options.getArray("attachments")) : null;
+        Session session = account.smtpSession;
+        return MessageComposer.compose(session, session != null ? session.getProperty("mail.user") : null,
+            to, cc, bcc, subject, body, isHtml, attachments);
+    }
+
+    private Outbox outbox(Account account) {
+        synchronized (account) {
+            if (account.outbox == null) {
+                account.outbox = new Outbox(account.dir(getReactApplicationContext().getFilesDir(), "inbox-outbox"),
+                    (id, status, attempts, error) -> {
+                        WritableMap params = Arguments.createMap();
+                        params.putString("accountId", account.id);
+                        params.putString("id", id);
+                        params.putString("status", status);
+                        params.putInt("attempts", attempts);
+                        if (error != null) {
+                            params.putString("error", error);
+                        }
+                        emit(Outbox.EVENT_STATUS, params);
+                    });
+            }
+            return account.outbox;
+        }
+    }
+
+    private List<MimeBodyPart> buildAttachments(ReadableArray array) throws MessagingException {
+        List<MimeBodyPart> parts = new ArrayList<>();
+        if (array == null) {
+            return parts;
+        }
+        for (int i = 0; i < array.size(); i++) {
+            ReadableMap attachment = array.getMap(i);
+            String filename = attachment.hasKey("filename") ? attachment.getString("filename") : null;
+            String contentType = attachment.hasKey("contentType") ? attachment.getString("contentType") : null;
+            if (attachment.hasKey("uri") && attachment.getString("uri").startsWith("content://")) {
+                parts.add(MessageComposer.uriAttachment(getReactApplicationContext().getContentResolver(),
+                    attachment.getString("uri"), filename, contentType));
+            } else if (attachment.hasKey("path") || attachment.hasKey("uri")) {
+                String path = attachment.hasKey("path") ? attachment.getString("path") : attachment.getString("uri");
+                if (path.startsWith("file://")) {
+                    path = path.substring("file://".length());
+                }
+                parts.add(MessageComposer.fileAttachment(new File(path), filename, contentType));
+            } else if (attachment.hasKey("data")) {
+                parts.add(MessageComposer.dataAttachment(attachment.getString("data"), filename, contentType));
+            } else {
+                throw new MessagingException("Attachment " + i + " has no path, uri or data");
+            }
         }
+        return parts;
     }
 
     private String[] convertReadableArrayToStringArray(ReadableArray array) {
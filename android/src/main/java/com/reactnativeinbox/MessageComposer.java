@@ -0,0 +1,191 @@
+package com.reactnativeinbox;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.util.Base64;
+
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
+import javax.activation.FileDataSource;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.util.ByteArrayDataSource;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds outgoing messages. Attachments given as files or content URIs are
+ * backed by DataSources that open the file only when the message is written,
+ * so each attachment is read and base64-encoded straight onto the SMTP socket
+ * (or APPEND literal) and never held in memory.
+ */
+final class MessageComposer {
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private MessageComposer() {
+    }
+
+    static MimeMessage compose(Session session, String from, String[] to, String[] cc, String[] bcc,
+                               String subject, String body, boolean isHtml,
+                               List<MimeBodyPart> attachments) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        if (from != null) {
+            message.setFrom(new InternetAddress(from));
+        }
+        if (to != null && to.length > 0) {
+            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(String.join(",", to)));
+        }
+        if (cc != null && cc.length > 0) {
+            message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(String.join(",", cc)));
+        }
+        if (bcc != null && bcc.length > 0) {
+            message.setRecipients(Message.RecipientType.BCC, InternetAddress.parse(String.join(",", bcc)));
+        }
+        message.setSubject(subject);
+        message.setSentDate(new Date());
+
+        if (attachments == null || attachments.isEmpty()) {
+            setBody(message, body, isHtml);
+            return message;
+        }
+
+        MimeMultipart multipart = new MimeMultipart();
+        MimeBodyPart text = new MimeBodyPart();
+        setBody(text, body, isHtml);
+        multipart.addBodyPart(text);
+        for (MimeBodyPart attachment : attachments) {
+            multipart.addBodyPart(attachment);
+        }
+        message.setContent(multipart);
+        return message;
+    }
+
+    static MimeBodyPart fileAttachment(File file, String filename, String contentType) throws MessagingException {
+        if (!file.isFile()) {
+            throw new MessagingException("Attachment not found: " + file);
+        }
+        FileDataSource source = new FileDataSource(file);
+        String type = contentType != null ? contentType : source.getContentType();
+        return attachment(new TypedDataSource(source, type), filename != null ? filename : file.getName());
+    }
+
+    static MimeBodyPart uriAttachment(ContentResolver resolver, String uri, String filename,
+                                      String contentType) throws MessagingException {
+        Uri parsed = Uri.parse(uri);
+        String type = contentType != null ? contentType : resolver.getType(parsed);
+        String name = filename != null ? filename : parsed.getLastPathSegment();
+        return attachment(new ContentUriDataSource(resolver, parsed, type, name), name);
+    }
+
+    /**
+     * Base64 content from JS. Kept for small inline content; it is decoded
+     * into memory, so large files should be passed as a path or URI.
+     */
+    static MimeBodyPart dataAttachment(String base64, String filename, String contentType) throws MessagingException {
+        byte[] bytes = Base64.decode(base64, Base64.DEFAULT);
+        return attachment(new ByteArrayDataSource(bytes, contentType != null ? contentType : DEFAULT_CONTENT_TYPE), filename);
+    }
+
+    private static MimeBodyPart attachment(DataSource source, String filename) throws MessagingException {
+        MimeBodyPart part = new MimeBodyPart();
+        part.setDataHandler(new DataHandler(source));
+        if (filename != null) {
+            part.setFileName(filename);
+        }
+        part.setDisposition(MimeBodyPart.ATTACHMENT);
+        // Without an explicit encoding JavaMail reads the whole source once
+        // just to choose one before the real write
+        part.setHeader("Content-Transfer-Encoding", "base64");
+        return part;
+    }
+
+    private static void setBody(javax.mail.Part part, String body, boolean isHtml) throws MessagingException {
+        if (isHtml) {
+            part.setContent(body, "text/html; charset=utf-8");
+        } else if (part instanceof MimeBodyPart) {
+            ((MimeBodyPart) part).setText(body, "utf-8");
+        } else {
+            ((MimeMessage) part).setText(body, "utf-8");
+        }
+    }
+
+    // FileDataSource guesses its type from the file name; a type given by the
+    // caller wins
+    private static final class TypedDataSource implements DataSource {
+        private final DataSource source;
+        private final String contentType;
+
+        TypedDataSource(DataSource source, String contentType) {
+            this.source = source;
+            this.contentType = contentType != null ? contentType : DEFAULT_CONTENT_TYPE;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return source.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("Attachments are read-only");
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public String getName() {
+            return source.getName();
+        }
+    }
+
+    private static final class ContentUriDataSource implements DataSource {
+        private final ContentResolver resolver;
+        private final Uri uri;
+        private final String contentType;
+        private final String name;
+
+        ContentUriDataSource(ContentResolver resolver, Uri uri, String contentType, String name) {
+            this.resolver = resolver;
+            this.uri = uri;
+            this.contentType = contentType != null ? contentType : DEFAULT_CONTENT_TYPE;
+            this.name = name;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream in = resolver.openInputStream(uri);
+            if (in == null) {
+                throw new FileNotFoundException("Cannot open " + uri);
+            }
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("Attachments are read-only");
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
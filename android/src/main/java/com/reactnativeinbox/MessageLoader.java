@@ -0,0 +1,164 @@
+package com.reactnativeinbox;
+
+import android.util.Log;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.protocol.BODYSTRUCTURE;
+
+import javax.mail.Address;
+import javax.mail.BodyPart;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Multipart;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a page of messages into MessageRecords: envelopes, flags and UIDs in
+ * one FETCH, then, when a body is wanted, BODYSTRUCTURE and the chosen text
+ * section of each message.
+ */
+final class MessageLoader {
+    private static final String TAG = "InboxModule";
+
+    private MessageLoader() {
+    }
+
+    /**
+     * Texts come from bodies, which may be null, when it has them.
+     */
+    static List<MessageRecord> load(IMAPFolder folder, Message[] page, int bodyLevel, int previewBytes,
+                                    BodyCache bodies) throws MessagingException {
+        MessagePrefetcher.prefetch(folder, page);
+
+        Map<Integer, MimeStructure> structures = bodyLevel != MessageRecord.BODY_NONE
+            ? fetchMimeStructures(folder, page) : Collections.emptyMap();
+
+        // Only the chosen text sections of each message are fetched
+        Map<Integer, String> texts = Collections.emptyMap();
+        if (!structures.isEmpty()) {
+            Map<Integer, List<MimeStructure.Part>> bodyParts = new HashMap<>();
+            for (Map.Entry<Integer, MimeStructure> entry : structures.entrySet()) {
+                List<MimeStructure.Part> parts = entry.getValue().bodyParts();
+                if (!parts.isEmpty()) {
+                    bodyParts.put(entry.getKey(), parts);
+                }
+            }
+            texts = bodyLevel == MessageRecord.BODY_PREVIEW
+                ? BodyFetcher.fetchPreviews(folder, bodyParts, previewBytes, bodies)
+                : BodyFetcher.fetchBodies(folder, bodyParts, 0, bodies);
+        }
+
+        List<MessageRecord> records = new ArrayList<>(page.length);
+        for (Message message : page) {
+            MimeStructure structure = structures.get(message.getMessageNumber());
+            String text = texts.get(message.getMessageNumber());
+
+            MessageRecord record = toRecord(folder, message, structure);
+            record.bodyLevel = bodyLevel;
+            if (bodyLevel == MessageRecord.BODY_FULL) {
+                record.body = text != null ? text : structure == null ? extractBody(message) : "";
+                // Lets a cached full record also answer preview listings
+                String preview = BodyFetcher.toPreview(record.body, Boolean.TRUE.equals(record.isHtml));
+                record.preview = preview.length() > BodyFetcher.DEFAULT_PREVIEW_BYTES
+                    ? preview.substring(0, BodyFetcher.DEFAULT_PREVIEW_BYTES) : preview;
+            } else if (bodyLevel == MessageRecord.BODY_PREVIEW) {
+                record.preview = text != null ? text : "";
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    static Map<Integer, MimeStructure> fetchMimeStructures(IMAPFolder folder, Message[] page) {
+        Map<Integer, MimeStructure> structures = new HashMap<>();
+        try {
+            for (Map.Entry<Integer, BODYSTRUCTURE> entry : BodyFetcher.fetchStructures(folder, page).entrySet()) {
+                structures.put(entry.getKey(), MimeStructure.parse(entry.getValue()));
+            }
+        } catch (MessagingException e) {
+            // Some servers send BODYSTRUCTUREs JavaMail cannot parse; fall
+            // back to reading bodies through getContent()
+            Log.w(TAG, "Error reading message structure: " + e.getMessage());
+        }
+        return structures;
+    }
+
+    static String extractBody(Message message) {
+        StringBuilder body = new StringBuilder();
+        try {
+            Object content = message.getContent();
+            if (content instanceof String) {
+                body.append((String) content);
+            } else if (content instanceof Multipart) {
+                Multipart multipart = (Multipart) content;
+                for (int i = 0; i < multipart.getCount(); i++) {
+                    BodyPart bodyPart = multipart.getBodyPart(i);
+                    if (bodyPart.getContentType().toLowerCase().startsWith("text/plain")) {
+                        body.append(bodyPart.getContent().toString());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Error reading message content: " + e.getMessage());
+        }
+        return body.toString();
+    }
+
+    private static MessageRecord toRecord(IMAPFolder folder, Message message, MimeStructure structure) throws MessagingException {
+        MessageRecord record = new MessageRecord();
+        record.subject = message.getSubject() != null ? message.getSubject() : "";
+        Address[] from = message.getFrom();
+        record.from = from != null && from.length > 0 ? from[0].toString() : "";
+        record.to = addresses(message.getRecipients(Message.RecipientType.TO));
+        record.cc = addresses(message.getRecipients(Message.RecipientType.CC));
+        record.bcc = addresses(message.getRecipients(Message.RecipientType.BCC));
+        record.sentDate = message.getSentDate() != null ? message.getSentDate().getTime() : -1;
+
+        if (structure != null) {
+            MimeStructure.Part bodyPart = structure.bodyPart();
+            record.isHtml = bodyPart != null && bodyPart.isHtml();
+
+            // Attachment metadata comes from BODYSTRUCTURE, no bytes are fetched
+            record.attachments = new ArrayList<>(structure.attachments.size());
+            for (MimeStructure.Part part : structure.attachments) {
+                MessageRecord.Attachment attachment = new MessageRecord.Attachment();
+                String filename = part.filename();
+                attachment.filename = filename != null ? filename : "";
+                attachment.contentType = part.contentType();
+                attachment.size = part.size();
+                attachment.section = part.section;
+                attachment.inline = part.isInline();
+                attachment.contentId = part.contentId();
+                record.attachments.add(attachment);
+            }
+        }
+
+        try {
+            if (message instanceof MimeMessage) {
+                // Served from the ENVELOPE rather than a separate header fetch
+                record.messageId = ((MimeMessage) message).getMessageID();
+            }
+            record.uid = folder.getUID(message);
+        } catch (Exception e) {
+            Log.w(TAG, "Error getting message metadata: " + e.getMessage());
+        }
+
+        record.flags = MessageRecord.flagBits(message.getFlags());
+        return record;
+    }
+
+    private static List<String> addresses(Address[] addresses) {
+        if (addresses == null || addresses.length == 0) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>(addresses.length);
+        for (Address address : addresses) {
+            values.add(address.toString());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,67 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+
+/**
+ * Moves and deletes batches of messages in a constant number of commands:
+ * UID MOVE when the server supports it, otherwise COPY, STORE \Deleted and a
+ * UID EXPUNGE limited to the batch, so other messages the user has marked
+ * deleted are never expunged behind their back.
+ */
+final class MessageMover {
+    private MessageMover() {
+    }
+
+    /**
+     * Moves the messages with the given uids from source to dest. When
+     * the server has neither MOVE nor UIDPLUS the originals are left flagged
+     * \Deleted in source.
+     */
+    static BatchResult move(IMAPFolder source, Folder dest, UidSet uids) throws MessagingException {
+        BatchResult result = new BatchResult();
+        Message[] found = uids.resolve(source, result);
+        if (found.length == 0) {
+            return result;
+        }
+
+        // moveMessages needs only MOVE; moveUIDMessages would also need
+        // UIDPLUS for the COPYUID response it returns
+        if (FolderCache.hasCapability(source, "MOVE")) {
+            source.moveMessages(found, dest);
+        } else {
+            source.copyMessages(found, dest);
+            removeMessages(source, found);
+        }
+        result.succeeded = found.length;
+        return result;
+    }
+
+    /**
+     * Flags the messages with the given uids \Deleted and, when the
+     * server supports UIDPLUS, expunges exactly those messages. Returns
+     * whether they were expunged.
+     */
+    static boolean delete(IMAPFolder folder, UidSet uids, BatchResult result) throws MessagingException {
+        Message[] found = uids.resolve(folder, result);
+        if (found.length == 0) {
+            return false;
+        }
+        boolean expunged = removeMessages(folder, found);
+        result.succeeded = found.length;
+        return expunged;
+    }
+
+    private static boolean removeMessages(IMAPFolder folder, Message[] messages) throws MessagingException {
+        folder.setFlags(messages, new Flags(Flags.Flag.DELETED), true);
+        if (!FolderCache.hasCapability(folder, "UIDPLUS")) {
+            return false;
+        }
+        folder.expunge(messages);
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+
+import javax.mail.FetchProfile;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.UIDFolder;
+
+/**
+ * Loads everything MessageLoader reads into a MessageRecord's envelope fields
+ * from a page of messages in a single FETCH, so the per-message getters are
+ * served from JavaMail's cache instead of each issuing their own round trip.
+ */
+final class MessagePrefetcher {
+    private static final FetchProfile ENVELOPE_PROFILE = new FetchProfile();
+
+    static {
+        // ENVELOPE covers subject, from, to, cc, bcc, sent date, Message-ID and
+        // RFC822.SIZE, so no separate header or size items are needed
+        ENVELOPE_PROFILE.add(FetchProfile.Item.ENVELOPE);
+        ENVELOPE_PROFILE.add(FetchProfile.Item.FLAGS);
+        ENVELOPE_PROFILE.add(UIDFolder.FetchProfileItem.UID);
+    }
+
+    private MessagePrefetcher() {
+    }
+
+    static void prefetch(IMAPFolder folder, Message[] messages) throws MessagingException {
+        if (messages.length == 0) {
+            return;
+        }
+        folder.fetch(messages, ENVELOPE_PROFILE);
+    }
+}
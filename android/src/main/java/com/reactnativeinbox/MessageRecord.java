@@ -0,0 +1,195 @@
+package com.reactnativeinbox;
+
+import javax.mail.Flags;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything a listing shows about one message, detached from JavaMail so it
+ * can be kept in the on-device cache and served without a server round trip.
+ */
+final class MessageRecord {
+    static final int BODY_NONE = 0;
+    static final int BODY_PREVIEW = 1;
+    static final int BODY_FULL = 2;
+
+    static final int SEEN = 1;
+    static final int ANSWERED = 1 << 1;
+    static final int FLAGGED = 1 << 2;
+    static final int DELETED = 1 << 3;
+    static final int DRAFT = 1 << 4;
+
+    long uid;
+    String subject = "";
+    String from = "";
+    List<String> to = Collections.emptyList();
+    List<String> cc = Collections.emptyList();
+    List<String> bcc = Collections.emptyList();
+    long sentDate = -1;
+    String messageId;
+    int flags;
+
+    /** How much of the body was fetched: BODY_NONE, BODY_PREVIEW or BODY_FULL. */
+    int bodyLevel = BODY_NONE;
+    String body = "";
+    String preview = "";
+    // Null when the structure was not read (envelope-only listings)
+    Boolean isHtml;
+    List<Attachment> attachments;
+
+    static final class Attachment {
+        String filename = "";
+        String contentType = "";
+        int size;
+        String section = "";
+        boolean inline;
+        String contentId;
+    }
+
+    static int flagBits(Flags flags) {
+        int bits = 0;
+        if (flags.contains(Flags.Flag.SEEN)) {
+            bits |= SEEN;
+        }
+        if (flags.contains(Flags.Flag.ANSWERED)) {
+            bits |= ANSWERED;
+        }
+        if (flags.contains(Flags.Flag.FLAGGED)) {
+            bits |= FLAGGED;
+        }
+        if (flags.contains(Flags.Flag.DELETED)) {
+            bits |= DELETED;
+        }
+        if (flags.contains(Flags.Flag.DRAFT)) {
+            bits |= DRAFT;
+        }
+        return bits;
+    }
+
+    boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(uid);
+        writeString(out, subject);
+        writeString(out, from);
+        writeStrings(out, to);
+        writeStrings(out, cc);
+        writeStrings(out, bcc);
+        out.writeLong(sentDate);
+        writeString(out, messageId);
+        out.writeInt(flags);
+        out.writeByte(bodyLevel);
+        writeString(out, body);
+        writeString(out, preview);
+        out.writeByte(isHtml == null ? -1 : isHtml ? 1 : 0);
+        out.writeInt(attachments == null ? -1 : attachments.size());
+        if (attachments != null) {
+            for (Attachment attachment : attachments) {
+                writeString(out, attachment.filename);
+                writeString(out, attachment.contentType);
+                out.writeInt(attachment.size);
+                writeString(out, attachment.section);
+                out.writeBoolean(attachment.inline);
+                writeString(out, attachment.contentId);
+            }
+        }
+    }
+
+    /**
+     * Reads a record written by writeTo from a file of fileBytes bytes; counts
+     * and lengths that could not fit in it mean the file is corrupt.
+     */
+    static MessageRecord readFrom(DataInputStream in, long fileBytes) throws IOException {
+        MessageRecord record = new MessageRecord();
+        record.uid = in.readLong();
+        record.subject = readString(in, fileBytes);
+        record.from = readString(in, fileBytes);
+        record.to = readStrings(in, fileBytes);
+        record.cc = readStrings(in, fileBytes);
+        record.bcc = readStrings(in, fileBytes);
+        record.sentDate = in.readLong();
+        record.messageId = readString(in, fileBytes);
+        record.flags = in.readInt();
+        record.bodyLevel = in.readByte();
+        record.body = readString(in, fileBytes);
+        record.preview = readString(in, fileBytes);
+        byte isHtml = in.readByte();
+        record.isHtml = isHtml < 0 ? null : isHtml == 1;
+        int attachmentCount = readCount(in, fileBytes);
+        if (attachmentCount >= 0) {
+            record.attachments = new ArrayList<>(attachmentCount);
+            for (int i = 0; i < attachmentCount; i++) {
+                Attachment attachment = new Attachment();
+                attachment.filename = readString(in, fileBytes);
+                attachment.contentType = readString(in, fileBytes);
+                attachment.size = in.readInt();
+                attachment.section = readString(in, fileBytes);
+                attachment.inline = in.readBoolean();
+                attachment.contentId = readString(in, fileBytes);
+                record.attachments.add(attachment);
+            }
+        }
+        return record;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in, long fileBytes) throws IOException {
+        int count = readCount(in, fileBytes);
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in, fileBytes));
+        }
+        return values;
+    }
+
+    // Every counted item takes at least the 4 bytes of its own length; -1 is
+    // an absent list
+    private static int readCount(DataInputStream in, long fileBytes) throws IOException {
+        int count = in.readInt();
+        if (count < -1 || count > fileBytes / 4) {
+            throw new IOException("Bad count " + count);
+        }
+        return count;
+    }
+
+    // Length-prefixed UTF-8, -1 for null; writeUTF caps strings at 64KB,
+    // which a full body can exceed
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long fileBytes) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > fileBytes) {
+            throw new IOException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
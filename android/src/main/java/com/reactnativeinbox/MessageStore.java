@@ -0,0 +1,218 @@
+package com.reactnativeinbox;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * On-device message cache, one file per account and folder. Records are keyed
+ * by UID and only valid for the folder's UIDVALIDITY; when the server reports
+ * a different UIDVALIDITY the folder's records are dropped.
+ */
+final class MessageStore {
+    private static final String TAG = "InboxModule";
+    private static final int FORMAT_VERSION = 2;
+    static final int MAX_RECORDS_PER_FOLDER = 5000;
+    // Changed records after which a listing writes the snapshot; the rest are
+    // written by saveAll
+    static final int SAVE_EVERY = 100;
+
+    private final File dir;
+    private final Map<String, FolderSnapshot> snapshots = new HashMap<>();
+
+    MessageStore(File dir) {
+        this.dir = dir;
+    }
+
+    static final class FolderSnapshot {
+        long uidValidity = -1;
+        long uidNext = -1;
+        long highestModSeq = -1;
+        final TreeMap<Long, MessageRecord> records = new TreeMap<>();
+        // Records added, changed or removed since the snapshot was written
+        int unsaved;
+        // Cleared from the store, so never written again
+        boolean dropped;
+
+        /**
+         * Drops every record if uidValidity differs from the one they were
+         * cached under, since their UIDs may now name other messages.
+         */
+        void validate(long uidValidity) {
+            if (this.uidValidity != uidValidity) {
+                this.uidValidity = uidValidity;
+                this.uidNext = -1;
+                this.highestModSeq = -1;
+                records.clear();
+                unsaved++;
+            }
+        }
+
+        /**
+         * The newest limit records, oldest first like a folder listing.
+         */
+        List<MessageRecord> newest(int limit) {
+            List<MessageRecord> page = new ArrayList<>(Math.min(limit, records.size()));
+            Iterator<MessageRecord> iterator = records.descendingMap().values().iterator();
+            while (page.size() < limit && iterator.hasNext()) {
+                page.add(iterator.next());
+            }
+            Collections.reverse(page);
+            return page;
+        }
+    }
+
+    synchronized FolderSnapshot get(String account, String folder) {
+        String key = key(account, folder);
+        FolderSnapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            snapshot = read(fileFor(key));
+            snapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes the folder's snapshot if it has changed, keeping only the newest
+     * MAX_RECORDS_PER_FOLDER records. The file is replaced atomically so a
+     * crash mid-write leaves the previous snapshot intact. Only the snapshot
+     * is locked while it is written, so other folders stay usable.
+     */
+    void save(String account, String folder) {
+        String key = key(account, folder);
+        FolderSnapshot snapshot;
+        synchronized (this) {
+            snapshot = snapshots.get(key);
+        }
+        write(key, snapshot);
+    }
+
+    void saveAll() {
+        List<Map.Entry<String, FolderSnapshot>> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(snapshots.entrySet());
+        }
+        for (Map.Entry<String, FolderSnapshot> entry : pending) {
+            write(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void write(String key, FolderSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        File file = fileFor(key);
+        File temp = new File(file.getPath() + ".tmp");
+        synchronized (snapshot) {
+            if (snapshot.dropped || snapshot.unsaved == 0) {
+                return;
+            }
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                Log.w(TAG, "Cannot create message cache directory " + dir);
+                return;
+            }
+            while (snapshot.records.size() > MAX_RECORDS_PER_FOLDER) {
+                snapshot.records.pollFirstEntry();
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(snapshot.uidValidity);
+                out.writeLong(snapshot.uidNext);
+                out.writeLong(snapshot.highestModSeq);
+                out.writeInt(snapshot.records.size());
+                for (MessageRecord record : snapshot.records.values()) {
+                    record.writeTo(out);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Error writing message cache: " + e.getMessage());
+                temp.delete();
+                return;
+            }
+            snapshot.unsaved = 0;
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Error replacing message cache file " + file);
+                temp.delete();
+            }
+        }
+    }
+
+    synchronized void clear(String account, String folder) {
+        String key = key(account, folder);
+        FolderSnapshot snapshot = snapshots.remove(key);
+        if (snapshot != null) {
+            // A save already under way finishes first
+            synchronized (snapshot) {
+                snapshot.dropped = true;
+            }
+        }
+        fileFor(key).delete();
+    }
+
+    private static FolderSnapshot read(File file) {
+        FolderSnapshot snapshot = new FolderSnapshot();
+        if (!file.isFile()) {
+            return snapshot;
+        }
+        long fileBytes = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return snapshot;
+            }
+            snapshot.uidValidity = in.readLong();
+            snapshot.uidNext = in.readLong();
+            snapshot.highestModSeq = in.readLong();
+            int count = in.readInt();
+            if (count < 0 || count > MAX_RECORDS_PER_FOLDER) {
+                throw new IOException("Bad record count " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                MessageRecord record = MessageRecord.readFrom(in, fileBytes);
+                snapshot.records.put(record.uid, record);
+            }
+        } catch (IOException e) {
+            // A corrupt cache is only a cache; start the folder over
+            Log.w(TAG, "Error reading message cache: " + e.getMessage());
+            snapshot.records.clear();
+            snapshot.uidValidity = -1;
+            snapshot.uidNext = -1;
+            snapshot.highestModSeq = -1;
+        }
+        return snapshot;
+    }
+
+    private File fileFor(String key) {
+        return new File(dir, key + ".cache");
+    }
+
+    // Folder names may contain any character, so files are named by a hash
+    static String key(String account, String folder) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest((account + "\n" + folder).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.iap.Argument;
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.iap.Response;
+import com.sun.mail.imap.IMAPStore;
+import com.sun.mail.imap.protocol.IMAPProtocol;
+import com.sun.mail.util.MailLogger;
+
+import javax.mail.Session;
+import javax.mail.URLName;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * IMAP store whose connections time every command into Metrics, by name,
+ * from writing it to reading its tagged answer. Pipelined STATUS and IDLE
+ * bypass command() and are not counted.
+ */
+final class MeteredStore extends IMAPStore {
+    private final Metrics metrics;
+
+    MeteredStore(Session session, URLName url, Metrics metrics) {
+        super(session, url);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected IMAPProtocol newIMAPProtocol(String host, int port) throws IOException, ProtocolException {
+        return new MeteredProtocol(name, host, port, session.getProperties(), isSSL, logger, metrics);
+    }
+
+    private static final class MeteredProtocol extends IMAPProtocol {
+        // Null while the superclass constructor sends the greeting's CAPABILITY
+        private final Metrics metrics;
+
+        MeteredProtocol(String name, String host, int port, Properties props, boolean isSSL,
+                        MailLogger logger, Metrics metrics) throws IOException, ProtocolException {
+            super(name, host, port, props, isSSL, logger);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public synchronized Response[] command(String command, Argument args) {
+            if (metrics == null) {
+                return super.command(command, args);
+            }
+            long start = System.nanoTime();
+            Response[] responses = super.command(command, args);
+            Response last = responses.length > 0 ? responses[responses.length - 1] : null;
+            metrics.command(command, System.nanoTime() - start, last == null || !last.isOK());
+            return responses;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.reactnativeinbox;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Wall-time histograms for bridge methods, IMAP commands and the load and
+ * convert stages of a listing. Recording only bumps atomics in histograms
+ * created up front or on a method's first call, so the hot paths allocate
+ * nothing to be measured.
+ */
+final class Metrics {
+    static final String EVENT = "inbox:metrics";
+    static final String STAGE_LOAD = "load";
+    static final String STAGE_CONVERT = "convert";
+
+    // Longer names first, so "UID FETCH" is not counted as "UID"
+    static final String[] COMMANDS = {
+        "UID EXPUNGE", "UID SEARCH", "UID THREAD", "UID FETCH", "UID STORE", "UID COPY", "UID MOVE", "UID SORT",
+        "AUTHENTICATE", "GETQUOTAROOT", "CAPABILITY", "NAMESPACE", "UNSELECT", "COMPRESS", "EXAMINE", "EXPUNGE",
+        "GETQUOTA", "STARTTLS", "SEARCH", "SELECT", "STATUS", "APPEND", "ENABLE", "LOGOUT", "CREATE", "DELETE",
+        "RENAME", "THREAD", "LOGIN", "CLOSE", "FETCH", "STORE", "LSUB", "LIST", "NOOP", "COPY", "MOVE", "SORT",
+        "ID",
+    };
+    static final String OTHER = "OTHER";
+
+    /**
+     * Counts durations into power-of-two microsecond buckets; bucket i holds
+     * durations below 2^i microseconds, the last everything longer.
+     */
+    static final class Histogram {
+        static final int BUCKETS = 28;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos, boolean failed) {
+            long micros = Math.max(0, nanos / 1000);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            if (failed) {
+                errors.incrementAndGet();
+            }
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        long errors() {
+            return errors.get();
+        }
+
+        double meanMs() {
+            long n = count.get();
+            return n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+        }
+
+        double maxMs() {
+            return maxNanos.get() / 1e6;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given fraction of calls, in
+         * milliseconds, capped at the longest call seen.
+         */
+        double percentileMs(double fraction) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(n * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return Math.min((1L << i) / 1000.0, maxMs());
+                }
+            }
+            return maxMs();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            errors.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+        }
+    }
+
+    private final Map<String, Histogram> methods = new ConcurrentHashMap<>();
+    private final Histogram[] commands = new Histogram[COMMANDS.length + 1];
+    private final Histogram load = new Histogram();
+    private final Histogram convert = new Histogram();
+    private volatile long since = System.currentTimeMillis();
+
+    Metrics() {
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = new Histogram();
+        }
+    }
+
+    void method(String name, long nanos) {
+        Histogram histogram = methods.get(name);
+        if (histogram == null) {
+            histogram = methods.computeIfAbsent(name, key -> new Histogram());
+        }
+        histogram.record(nanos, false);
+    }
+
+    void command(String command, long nanos, boolean failed) {
+        commands[commandIndex(command)].record(nanos, failed);
+    }
+
+    void stage(String stage, long nanos) {
+        (STAGE_LOAD.equals(stage) ? load : convert).record(nanos, false);
+    }
+
+    /**
+     * Index into COMMANDS of the command the line starts with, ignoring case
+     * and anything after the name, or COMMANDS.length for any other.
+     */
+    static int commandIndex(String command) {
+        if (command == null) {
+            return COMMANDS.length;
+        }
+        for (int i = 0; i < COMMANDS.length; i++) {
+            String name = COMMANDS[i];
+            if (command.regionMatches(true, 0, name, 0, name.length())
+                && (command.length() == name.length() || command.charAt(name.length()) == ' ')) {
+                return i;
+            }
+        }
+        return COMMANDS.length;
+    }
+
+    long since() {
+        return since;
+    }
+
+    Map<String, Histogram> methods() {
+        return methods;
+    }
+
+    Histogram command(int index) {
+        return commands[index];
+    }
+
+    static String commandName(int index) {
+        return index < COMMANDS.length ? COMMANDS[index] : OTHER;
+    }
+
+    Histogram stage(String stage) {
+        return STAGE_LOAD.equals(stage) ? load : convert;
+    }
+
+    void reset() {
+        for (Histogram histogram : methods.values()) {
+            histogram.reset();
+        }
+        for (Histogram histogram : commands) {
+            histogram.reset();
+        }
+        load.reset();
+        convert.reset();
+        since = System.currentTimeMillis();
+    }
+}
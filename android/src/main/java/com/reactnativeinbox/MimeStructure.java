@@ -0,0 +1,184 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.protocol.BODYSTRUCTURE;
+
+import javax.mail.internet.MimeUtility;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Walks a message's BODYSTRUCTURE tree and records the IMAP sections of its
+ * inline text/plain and text/html parts plus metadata for every
+ * attachment, so the caller can fetch only the text sections and never touch
+ * attachment bytes.
+ */
+final class MimeStructure {
+    // In message order; a body split around inline images has several
+    final List<Part> plainParts;
+    final List<Part> htmlParts;
+    final List<Part> attachments;
+
+    private MimeStructure(List<Part> plainParts, List<Part> htmlParts, List<Part> attachments) {
+        this.plainParts = Collections.unmodifiableList(plainParts);
+        this.htmlParts = Collections.unmodifiableList(htmlParts);
+        this.attachments = Collections.unmodifiableList(attachments);
+    }
+
+    static MimeStructure parse(BODYSTRUCTURE root) {
+        Walker walker = new Walker();
+        if (root.isMulti()) {
+            walker.walkChildren(root, "");
+        } else {
+            // A single-part message has exactly one section, "1"
+            walker.visitLeaf(root, "1");
+        }
+        return new MimeStructure(walker.plain, walker.html, walker.attachments);
+    }
+
+    /**
+     * Finds the part with the given IMAP section number, stepping into
+     * forwarded messages the way IMAP numbers them. Returns null when the
+     * message has no such section.
+     */
+    static Part find(BODYSTRUCTURE root, String section) {
+        BODYSTRUCTURE current = root;
+        try {
+            for (String token : section.split("\\.")) {
+                int index = Integer.parseInt(token) - 1;
+                if (current.isNested() && current.bodies != null && current.bodies.length > 0) {
+                    current = current.bodies[0];
+                }
+                if (current.isMulti()) {
+                    if (current.bodies == null || index < 0 || index >= current.bodies.length) {
+                        return null;
+                    }
+                    current = current.bodies[index];
+                } else if (index != 0) {
+                    // A single part has only section 1
+                    return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new Part(section, current);
+    }
+
+    /**
+     * The first part of the message body: plain text when the message has
+     * it, otherwise HTML.
+     */
+    Part bodyPart() {
+        List<Part> parts = bodyParts();
+        return !parts.isEmpty() ? parts.get(0) : null;
+    }
+
+    /**
+     * The parts whose texts, joined in order, make the message body: every
+     * inline plain text part, otherwise every inline HTML part.
+     */
+    List<Part> bodyParts() {
+        return !plainParts.isEmpty() ? plainParts : htmlParts;
+    }
+
+    static final class Part {
+        final String section;
+        final BODYSTRUCTURE structure;
+
+        Part(String section, BODYSTRUCTURE structure) {
+            this.section = section;
+            this.structure = structure;
+        }
+
+        String contentType() {
+            return (structure.type + "/" + structure.subtype).toLowerCase();
+        }
+
+        boolean isHtml() {
+            return "html".equalsIgnoreCase(structure.subtype);
+        }
+
+        String charset() {
+            return structure.cParams != null ? structure.cParams.get("charset") : null;
+        }
+
+        String filename() {
+            String name = structure.dParams != null ? structure.dParams.get("filename") : null;
+            if (name == null && structure.cParams != null) {
+                name = structure.cParams.get("name");
+            }
+            if (name == null) {
+                return null;
+            }
+            try {
+                return MimeUtility.decodeText(name);
+            } catch (Exception e) {
+                return name;
+            }
+        }
+
+        boolean isInline() {
+            return "inline".equalsIgnoreCase(structure.disposition);
+        }
+
+        String contentId() {
+            return structure.id;
+        }
+
+        /**
+         * Approximate decoded size; BODYSTRUCTURE reports the transfer-encoded
+         * size, which for base64 is about a third larger than the content.
+         */
+        int size() {
+            if (structure.size < 0) {
+                return 0;
+            }
+            return "base64".equalsIgnoreCase(structure.encoding) ? structure.size / 4 * 3 : structure.size;
+        }
+    }
+
+    private static final class Walker {
+        final List<Part> plain = new ArrayList<>();
+        final List<Part> html = new ArrayList<>();
+        final List<Part> attachments = new ArrayList<>();
+
+        void walkChildren(BODYSTRUCTURE multipart, String prefix) {
+            if (multipart.bodies == null) {
+                return;
+            }
+            for (int i = 0; i < multipart.bodies.length; i++) {
+                BODYSTRUCTURE child = multipart.bodies[i];
+                String section = prefix + (i + 1);
+                if (child.isMulti()) {
+                    walkChildren(child, section + ".");
+                } else {
+                    visitLeaf(child, section);
+                }
+            }
+        }
+
+        void visitLeaf(BODYSTRUCTURE part, String section) {
+            // Forwarded messages (message/rfc822) are reported as attachments
+            // rather than walked, so their bodies never replace ours
+            boolean isText = "text".equalsIgnoreCase(part.type) && !part.isNested();
+            boolean isAttachment = "attachment".equalsIgnoreCase(part.disposition)
+                || (part.dParams != null && part.dParams.get("filename") != null);
+
+            if (isText && !isAttachment) {
+                if ("plain".equalsIgnoreCase(part.subtype)) {
+                    plain.add(new Part(section, part));
+                    return;
+                }
+                if ("html".equalsIgnoreCase(part.subtype)) {
+                    html.add(new Part(section, part));
+                    return;
+                }
+                // Other text subtypes (calendar, csv, ...) are files to the user
+                attachments.add(new Part(section, part));
+                return;
+            }
+            attachments.add(new Part(section, part));
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.reactnativeinbox;
+
+import android.util.Log;
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.ParseException;
+import javax.mail.util.SharedFileInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A durable queue of outgoing messages. Each message is written to its own
+ * .eml file when queued and deleted only once the server accepts it, so
+ * queued mail survives a dropped connection or a restart of the app. One
+ * worker thread sends the queue in order over a single SMTP connection,
+ * reconnecting with backoff when it is lost. Messages the server rejects
+ * outright are kept as .failed files until retried or removed.
+ */
+final class Outbox {
+    private static final String TAG = "InboxModule";
+    static final String EVENT_STATUS = "inbox:outbox";
+    static final String STATUS_QUEUED = "queued";
+    static final String STATUS_SENT = "sent";
+    static final String STATUS_RETRYING = "retrying";
+    static final String STATUS_FAILED = "failed";
+    static final int MAX_ATTEMPTS = 8;
+    private static final long MAX_RETRY_DELAY_MS = 60 * 1000L;
+    private static final long CHECK_AFTER_IDLE_MS = 30 * 1000L;
+    private static final String PENDING = ".eml";
+    private static final String FAILED = ".failed";
+
+    interface Listener {
+        void onStatus(String id, String status, int attempts, String error);
+    }
+
+    static final class Entry {
+        final String id;
+        final String status;
+        final int attempts;
+
+        Entry(String id, String status, int attempts) {
+            this.id = id;
+            this.status = status;
+            this.attempts = attempts;
+        }
+    }
+
+    private final File dir;
+    private final Listener listener;
+    private final LinkedBlockingDeque<String> queue = new LinkedBlockingDeque<>();
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private volatile Thread worker;
+    private volatile Session session;
+    private volatile String host;
+    private volatile String username;
+    private volatile String password;
+    private Transport transport;
+    private long lastUsed;
+
+    Outbox(File dir, Listener listener) {
+        this.dir = dir;
+        this.listener = listener;
+        File[] files = dir.listFiles((d, name) -> name.endsWith(PENDING));
+        if (files != null) {
+            // Ids start with the time they were queued, so name order is
+            // queue order
+            Arrays.sort(files);
+            for (File file : files) {
+                queue.add(idOf(file));
+            }
+        }
+    }
+
+    /**
+     * Writes message to disk and queues it. File attachments are streamed
+     * into the .eml file, which the sender later reads part by part.
+     */
+    String enqueue(MimeMessage message) throws MessagingException, IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create outbox " + dir);
+        }
+        message.saveChanges();
+        String id = String.format("%013d-%06d", System.currentTimeMillis(), sequence.incrementAndGet() % 1000000);
+        File temp = new File(dir, id + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            message.writeTo(out);
+        } catch (IOException | MessagingException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(pendingFile(id))) {
+            temp.delete();
+            throw new IOException("Cannot write outbox message " + id);
+        }
+        queue.add(id);
+        listener.onStatus(id, STATUS_QUEUED, 0, null);
+        return id;
+    }
+
+    List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(PENDING) || name.endsWith(FAILED));
+        if (files == null) {
+            return entries;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String id = idOf(file);
+            Integer count = attempts.get(id);
+            entries.add(new Entry(id, file.getName().endsWith(FAILED) ? STATUS_FAILED : STATUS_QUEUED,
+                count != null ? count : 0));
+        }
+        return entries;
+    }
+
+    boolean remove(String id) {
+        queue.remove(id);
+        attempts.remove(id);
+        boolean removed = pendingFile(id).delete();
+        return new File(dir, id + FAILED).delete() || removed;
+    }
+
+    /**
+     * Queues a failed message again, at the back of the queue.
+     */
+    boolean retry(String id) {
+        if (!new File(dir, id + FAILED).renameTo(pendingFile(id))) {
+            return false;
+        }
+        attempts.remove(id);
+        queue.add(id);
+        listener.onStatus(id, STATUS_QUEUED, 0, null);
+        return true;
+    }
+
+    /**
+     * Starts sending with the given SMTP settings, or switches a running
+     * sender over to them.
+     */
+    synchronized void start(Session session, String host, String username, String password) {
+        this.session = session;
+        this.host = host;
+        this.username = username;
+        this.password = password;
+        closeTransport();
+        if (worker == null) {
+            worker = new Thread(this::run, "inbox-outbox");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Stops sending. Queued messages stay on disk for the next start.
+     */
+    void stop() {
+        Thread stopping;
+        synchronized (this) {
+            stopping = worker;
+            worker = null;
+        }
+        if (stopping != null) {
+            stopping.interrupt();
+            try {
+                stopping.join(MAX_RETRY_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeTransport();
+    }
+
+    private void run() {
+        int failures = 0;
+        // A stopped worker may still be finishing a send when a new one
+        // starts; it leaves as soon as it sees it was replaced
+        while (worker == Thread.currentThread()) {
+            String id;
+            try {
+                id = queue.takeFirst();
+            } catch (InterruptedException e) {
+                break;
+            }
+            File file = pendingFile(id);
+            if (!file.exists()) {
+                // Removed while queued
+                continue;
+            }
+            int attempt = attempts.merge(id, 1, Integer::sum);
+            try {
+                send(file);
+                file.delete();
+                attempts.remove(id);
+                failures = 0;
+                listener.onStatus(id, STATUS_SENT, attempt, null);
+            } catch (Exception e) {
+                if (isPermanent(e) || attempt >= MAX_ATTEMPTS) {
+                    Log.e(TAG, "Outbox send error: " + e.getMessage());
+                    file.renameTo(new File(dir, id + FAILED));
+                    listener.onStatus(id, STATUS_FAILED, attempt, e.getMessage());
+                    continue;
+                }
+                // The connection is the likely culprit; the message goes back
+                // to the front so the queue keeps its order
+                closeTransport();
+                queue.addFirst(id);
+                long delay = Math.min(MAX_RETRY_DELAY_MS, 1000L << Math.min(failures++, 6));
+                Log.w(TAG, "Outbox send error, retrying in " + delay + "ms: " + e.getMessage());
+                listener.onStatus(id, STATUS_RETRYING, attempt, e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void send(File file) throws MessagingException, IOException {
+        Transport connected = connectedTransport();
+        SharedFileInputStream in = new SharedFileInputStream(file);
+        try {
+            // Parts of a message read from a SharedInputStream are views
+            // onto the file, so attachments are not loaded into memory
+            MimeMessage message = new MimeMessage(session, in);
+            Address[] recipients = message.getAllRecipients();
+            if (recipients == null || recipients.length == 0) {
+                throw new SendFailedException("Message has no recipients");
+            }
+            connected.sendMessage(message, recipients);
+            synchronized (this) {
+                lastUsed = System.currentTimeMillis();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private synchronized Transport connectedTransport() throws MessagingException {
+        // isConnected costs a NOOP round trip, so it is only asked after a
+        // quiet spell in which the server may have dropped us; a connection
+        // lost mid-batch shows up as a failed send instead
+        boolean stale = transport != null && System.currentTimeMillis() - lastUsed > CHECK_AFTER_IDLE_MS
+            && !transport.isConnected();
+        if (transport == null || stale) {
+            closeTransport();
+            Transport fresh = session.getTransport("smtp");
+            fresh.connect(host, username, password);
+            transport = fresh;
+            lastUsed = System.currentTimeMillis();
+        }
+        return transport;
+    }
+
+    private synchronized void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                Log.w(TAG, "Error closing outbox transport: " + e.getMessage());
+            }
+            transport = null;
+        }
+    }
+
+    /**
+     * 5xx replies and bad addresses will fail the same way again; anything
+     * else, such as a dropped connection or a 4xx reply, is worth a retry.
+     */
+    static boolean isPermanent(Exception e) {
+        if (e instanceof SMTPSendFailedException) {
+            return ((SMTPSendFailedException) e).getReturnCode() >= 500;
+        }
+        if (e instanceof SMTPAddressFailedException) {
+            return ((SMTPAddressFailedException) e).getReturnCode() >= 500;
+        }
+        if (e instanceof SendFailedException) {
+            // The per-address failures are chained behind it
+            Exception next = ((SendFailedException) e).getNextException();
+            return next == null || isPermanent(next);
+        }
+        return e instanceof ParseException;
+    }
+
+    private File pendingFile(String id) {
+        return new File(dir, id + PENDING);
+    }
+
+    private static String idOf(File file) {
+        String name = file.getName();
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+}
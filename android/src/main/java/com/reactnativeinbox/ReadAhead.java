@@ -0,0 +1,339 @@
+package com.reactnativeinbox;
+
+import android.util.Log;
+import com.sun.mail.imap.IMAPFolder;
+
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads the full text of the newest unread emails of a listing after it
+ * has been returned, so opening one of them needs no round trip. The work is
+ * queued on the folder's lane in small batches behind the listing, and every
+ * foreground call cancels whatever is still queued, so read-ahead never
+ * delays a request by more than one batch in flight. Bodies are fetched
+ * with BODY.PEEK and do not mark emails read.
+ *
+ * Texts are kept only in the body cache, which bounds them by bytes; read
+ * ahead itself holds the envelope of each email and rebuilds the record from
+ * it and the cached text, or misses once the cache has evicted the text.
+ */
+final class ReadAhead {
+    private static final String TAG = "InboxModule";
+    static final long DEFAULT_BYTES = 1024 * 1024;
+    // Emails fetched per lane task; a foreground call waits for at most one
+    static final int BATCH = 4;
+    static final int MAX_RECORDS = 200;
+
+    interface Lanes {
+        void execute(String key, Runnable task);
+    }
+
+    interface Network {
+        boolean isMetered();
+    }
+
+    static final class Stats {
+        long fetched;
+        long fetchedBytes;
+        long hits;
+        // Queued tasks dropped by cancel()
+        long cancelled;
+        int records;
+    }
+
+    private final int count;
+    private final long maxBytes;
+    private final boolean onMetered;
+    private final Lanes lanes;
+    private final FolderCache folders;
+    private final BodyCache bodies;
+    private final Network network;
+    private final AtomicLong generation = new AtomicLong();
+    // Access-ordered, so the least recently used envelope goes first
+    private final LinkedHashMap<String, Prefetched> records = new LinkedHashMap<>(64, 0.75f, true);
+    private long fetched;
+    private long fetchedBytes;
+    private long hits;
+    private long cancelled;
+
+    /**
+     * Reads ahead the newest count unread emails of each listing, at most
+     * maxBytes of text per listing, and not on a metered network unless
+     * onMetered. Without bodies there is nowhere to keep the texts, so
+     * nothing is read ahead.
+     */
+    ReadAhead(int count, long maxBytes, boolean onMetered, Lanes lanes, FolderCache folders,
+              BodyCache bodies, Network network) {
+        this.count = count;
+        this.maxBytes = maxBytes;
+        this.onMetered = onMetered;
+        this.lanes = lanes;
+        this.folders = folders;
+        this.bodies = bodies;
+        this.network = network;
+    }
+
+    /**
+     * Queues read-ahead for page, a listing of folder as returned to JS.
+     * Call it from the folder's lane once the listing has been resolved.
+     */
+    void schedule(String folder, List<MessageRecord> page) {
+        if (count <= 0 || bodies == null || (!onMetered && network.isMetered())) {
+            return;
+        }
+        List<Long> uids = new ArrayList<>();
+        for (int i = page.size() - 1; i >= 0 && uids.size() < count; i--) {
+            MessageRecord record = page.get(i);
+            if ((record.flags & MessageRecord.SEEN) == 0 && record.bodyLevel < MessageRecord.BODY_FULL && record.uid > 0) {
+                uids.add(record.uid);
+            }
+        }
+        if (uids.isEmpty()) {
+            return;
+        }
+        long scheduledAt = generation.get();
+        lanes.execute(folder, () -> plan(folder, toArray(uids), scheduledAt));
+    }
+
+    /**
+     * Drops queued read-ahead; called for every foreground request.
+     */
+    void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * The prefetched record, or null. Its flags are those at read-ahead time
+     * unless changed since through forget.
+     */
+    MessageRecord get(String folder, long uidValidity, long uid) {
+        String key = key(folder, uidValidity, uid);
+        Prefetched prefetched;
+        synchronized (records) {
+            prefetched = records.get(key);
+        }
+        if (prefetched == null) {
+            return null;
+        }
+        String text = prefetched.text(bodies);
+        synchronized (records) {
+            if (text == null) {
+                records.remove(key);
+                return null;
+            }
+            hits++;
+        }
+        return prefetched.withBody(text);
+    }
+
+    /**
+     * Forgets the given emails of folder, or all of the folder when uids is
+     * empty, after their flags changed or they were moved or deleted.
+     */
+    void forget(String folder, long... uids) {
+        String prefix = folder + "\n";
+        synchronized (records) {
+            Iterator<Map.Entry<String, Prefetched>> iterator = records.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Prefetched> entry = iterator.next();
+                if (entry.getKey().startsWith(prefix)
+                    && (uids.length == 0 || contains(uids, entry.getValue().envelope.uid))) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    Stats stats() {
+        synchronized (records) {
+            Stats stats = new Stats();
+            stats.fetched = fetched;
+            stats.fetchedBytes = fetchedBytes;
+            stats.hits = hits;
+            stats.cancelled = cancelled;
+            stats.records = records.size();
+            return stats;
+        }
+    }
+
+    // Sizes up the candidates with one BODYSTRUCTURE fetch and queues the
+    // ones that fit the byte budget in batches
+    private void plan(String folder, long[] uids, long scheduledAt) {
+        if (isCancelled(scheduledAt)) {
+            return;
+        }
+        try {
+            IMAPFolder imapFolder = folders.open(folder, Folder.READ_ONLY);
+            Message[] messages = present(imapFolder.getMessagesByUID(uids));
+            Map<Integer, MimeStructure> structures = MessageLoader.fetchMimeStructures(imapFolder, messages);
+
+            long budget = maxBytes;
+            List<Long> chosen = new ArrayList<>();
+            // The body cache keys the fetched texts will have
+            Map<Long, String[]> textKeys = new HashMap<>();
+            String folderUrl = imapFolder.getURLName().toString();
+            long uidValidity = imapFolder.getUIDValidity();
+            for (Message message : messages) {
+                MimeStructure structure = structures.get(message.getMessageNumber());
+                List<MimeStructure.Part> parts = structure != null ? structure.bodyParts() : Collections.emptyList();
+                // Texts read without a structure never reach the body cache
+                if (parts.isEmpty()) {
+                    continue;
+                }
+                long size = 0;
+                for (MimeStructure.Part part : parts) {
+                    size += Math.max(0, part.structure.size);
+                }
+                if (size > budget) {
+                    continue;
+                }
+                budget -= size;
+                long uid = imapFolder.getUID(message);
+                chosen.add(uid);
+                String[] keys = new String[parts.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = BodyCache.key(folderUrl, uidValidity, uid, parts.get(i).section, 0);
+                }
+                textKeys.put(uid, keys);
+            }
+            for (int start = 0; start < chosen.size(); start += BATCH) {
+                long[] batch = toArray(chosen.subList(start, Math.min(chosen.size(), start + BATCH)));
+                lanes.execute(folder, () -> fetch(folder, batch, textKeys, scheduledAt));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Read-ahead error: " + e.getMessage());
+        }
+    }
+
+    private void fetch(String folder, long[] uids, Map<Long, String[]> textKeys, long scheduledAt) {
+        if (isCancelled(scheduledAt)) {
+            return;
+        }
+        try {
+            IMAPFolder imapFolder = folders.open(folder, Folder.READ_ONLY);
+            Message[] messages = present(imapFolder.getMessagesByUID(uids));
+            List<MessageRecord> loaded = MessageLoader.load(imapFolder, messages, MessageRecord.BODY_FULL, 0, bodies);
+            long uidValidity = imapFolder.getUIDValidity();
+            synchronized (records) {
+                for (MessageRecord record : loaded) {
+                    String[] keys = textKeys.get(record.uid);
+                    if (keys == null) {
+                        continue;
+                    }
+                    fetched++;
+                    fetchedBytes += record.body != null ? record.body.length() : 0;
+                    record.body = "";
+                    record.preview = "";
+                    records.put(key(folder, uidValidity, record.uid), new Prefetched(record, keys));
+                }
+                Iterator<String> eldest = records.keySet().iterator();
+                while (records.size() > MAX_RECORDS && eldest.hasNext()) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Read-ahead error: " + e.getMessage());
+        }
+    }
+
+    private boolean isCancelled(long scheduledAt) {
+        if (generation.get() == scheduledAt) {
+            return false;
+        }
+        synchronized (records) {
+            cancelled++;
+        }
+        return true;
+    }
+
+    private static Message[] present(Message[] messages) throws MessagingException {
+        List<Message> present = new ArrayList<>(messages.length);
+        for (Message message : messages) {
+            if (message != null && !message.isExpunged()) {
+                present.add(message);
+            }
+        }
+        return present.toArray(new Message[0]);
+    }
+
+    private static String key(String folder, long uidValidity, long uid) {
+        return folder + "\n" + uidValidity + "\n" + uid;
+    }
+
+    private static long[] toArray(List<Long> uids) {
+        long[] array = new long[uids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = uids.get(i);
+        }
+        Arrays.sort(array);
+        return array;
+    }
+
+    // A record without its text, and where the texts of its body parts are
+    // in the body cache
+    private static final class Prefetched {
+        final MessageRecord envelope;
+        final String[] textKeys;
+
+        Prefetched(MessageRecord envelope, String[] textKeys) {
+            this.envelope = envelope;
+            this.textKeys = textKeys;
+        }
+
+        // Null once the cache has evicted any of the parts
+        String text(BodyCache bodies) {
+            StringBuilder text = new StringBuilder();
+            for (String key : textKeys) {
+                String part = bodies.get(key);
+                if (part == null) {
+                    return null;
+                }
+                BodyFetcher.append(text, part);
+            }
+            return text.toString();
+        }
+
+        // Mirrors the preview MessageLoader gives full records
+        MessageRecord withBody(String text) {
+            MessageRecord record = new MessageRecord();
+            record.uid = envelope.uid;
+            record.subject = envelope.subject;
+            record.from = envelope.from;
+            record.to = envelope.to;
+            record.cc = envelope.cc;
+            record.bcc = envelope.bcc;
+            record.sentDate = envelope.sentDate;
+            record.messageId = envelope.messageId;
+            record.flags = envelope.flags;
+            record.bodyLevel = MessageRecord.BODY_FULL;
+            record.isHtml = envelope.isHtml;
+            record.attachments = envelope.attachments;
+            record.body = text;
+            String preview = BodyFetcher.toPreview(text, Boolean.TRUE.equals(envelope.isHtml));
+            record.preview = preview.length() > BodyFetcher.DEFAULT_PREVIEW_BYTES
+                ? preview.substring(0, BodyFetcher.DEFAULT_PREVIEW_BYTES) : preview;
+            return record;
+        }
+    }
+
+    private static boolean contains(long[] uids, long uid) {
+        for (long candidate : uids) {
+            if (candidate == uid) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
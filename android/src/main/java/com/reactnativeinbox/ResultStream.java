@@ -0,0 +1,63 @@
+package com.reactnativeinbox;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flow control for one streamed listing. Results go to JS in chunks; with a
+ * window the producer may run at most that many chunks ahead of the chunks JS
+ * has acknowledged, so native memory holds a bounded number of chunks however
+ * large the listing. JS can cancel at any time.
+ */
+final class ResultStream {
+    static final String EVENT_CHUNK = "inbox:chunk";
+    static final int DEFAULT_CHUNK_SIZE = 25;
+    // How long a producer waits for an acknowledgement before giving up
+    static final long ACK_TIMEOUT_MS = 60000;
+
+    private final int window;
+    private final Semaphore credits;
+    private volatile boolean cancelled;
+
+    /**
+     * A window of 0 or less sends chunks as fast as they are produced.
+     */
+    ResultStream(int window) {
+        this.window = window;
+        this.credits = new Semaphore(Math.max(0, window));
+    }
+
+    /**
+     * Blocks until another chunk may be sent. Returns false when the stream
+     * was cancelled, or JS stopped acknowledging, and nothing more should be
+     * produced.
+     */
+    boolean awaitCredit() throws InterruptedException {
+        if (cancelled) {
+            return false;
+        }
+        if (window <= 0) {
+            return true;
+        }
+        if (!credits.tryAcquire(ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            cancelled = true;
+        }
+        return !cancelled;
+    }
+
+    void ack() {
+        if (window > 0) {
+            credits.release();
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+        // Wakes a producer waiting for credit
+        credits.release();
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+}
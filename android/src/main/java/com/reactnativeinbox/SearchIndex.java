@@ -0,0 +1,448 @@
+package com.reactnativeinbox;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * On-device full-text index of the messages listings have loaded, one file
+ * per account and folder, so searches can be answered without the server.
+ * Each word of a message's subject, sender, recipients and text is a term
+ * prefixed with its field; a term's postings are the ids of the documents
+ * holding it, delta-encoded as varints. Query words match as prefixes, found
+ * by walking the sorted term dictionary.
+ */
+final class SearchIndex {
+    private static final String TAG = "InboxModule";
+    private static final int FORMAT_VERSION = 1;
+    // Enough of a body to find it by, without letting long bodies (or
+    // base64 pasted into one) dominate the dictionary
+    static final int MAX_BODY_CHARS = 4096;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 24;
+    // New documents between writes of a folder's index file
+    static final int SAVE_EVERY = 500;
+
+    static final char SUBJECT = 's';
+    static final char FROM = 'f';
+    static final char TO = 't';
+    static final char BODY = 'b';
+
+    private final File dir;
+    private final Map<String, FolderIndex> indexes = new HashMap<>();
+
+    SearchIndex(File dir) {
+        this.dir = dir;
+    }
+
+    static final class Query {
+        String text;
+        String from;
+        String to;
+        String subject;
+        long since = -1;
+        long before = -1;
+    }
+
+    static final class FolderIndex {
+        long uidValidity = -1;
+        private long[] uids = new long[64];
+        private long[] dates = new long[64];
+        private byte[] levels = new byte[64];
+        private int docCount;
+        private final BitSet deleted = new BitSet();
+        private final Map<Long, Integer> docs = new HashMap<>();
+        private final TreeMap<String, Postings> terms = new TreeMap<>();
+        int unsaved;
+
+        /**
+         * Drops every document if uidValidity differs from the one they were
+         * indexed under, since their UIDs may now name other messages.
+         */
+        void validate(long uidValidity) {
+            if (this.uidValidity != uidValidity) {
+                this.uidValidity = uidValidity;
+                clear();
+            }
+        }
+
+        int size() {
+            return docs.size();
+        }
+
+        boolean contains(long uid) {
+            return docs.containsKey(uid);
+        }
+
+        /**
+         * Indexes record, unless it is already indexed with at least as much
+         * of its body.
+         */
+        void add(MessageRecord record) {
+            Integer existing = docs.get(record.uid);
+            if (existing != null) {
+                if (levels[existing] >= record.bodyLevel) {
+                    return;
+                }
+                deleted.set(existing);
+            }
+            int doc = docCount++;
+            if (doc == uids.length) {
+                int capacity = uids.length * 2;
+                uids = Arrays.copyOf(uids, capacity);
+                dates = Arrays.copyOf(dates, capacity);
+                levels = Arrays.copyOf(levels, capacity);
+            }
+            uids[doc] = record.uid;
+            dates[doc] = record.sentDate;
+            levels[doc] = (byte) record.bodyLevel;
+            docs.put(record.uid, doc);
+
+            indexText(SUBJECT, record.subject, doc, Integer.MAX_VALUE);
+            indexText(FROM, record.from, doc, Integer.MAX_VALUE);
+            for (String address : record.to) {
+                indexText(TO, address, doc, Integer.MAX_VALUE);
+            }
+            for (String address : record.cc) {
+                indexText(TO, address, doc, Integer.MAX_VALUE);
+            }
+            String text = record.bodyLevel == MessageRecord.BODY_FULL ? record.body : record.preview;
+            indexText(BODY, text, doc, MAX_BODY_CHARS);
+            unsaved++;
+            compactIfSparse();
+        }
+
+        void remove(long uid) {
+            Integer doc = docs.remove(uid);
+            if (doc != null) {
+                deleted.set(doc);
+                unsaved++;
+                compactIfSparse();
+            }
+        }
+
+        /**
+         * UIDs of the newest limit documents matching query, oldest first
+         * like a folder listing. Every word of each field must match.
+         */
+        long[] search(Query query, int limit) {
+            BitSet matches = null;
+            matches = matchAll(matches, query.text, new char[]{SUBJECT, BODY});
+            matches = matchAll(matches, query.from, new char[]{FROM});
+            matches = matchAll(matches, query.to, new char[]{TO});
+            matches = matchAll(matches, query.subject, new char[]{SUBJECT});
+            if (matches == null) {
+                matches = new BitSet(docCount);
+                matches.set(0, docCount);
+            }
+            matches.andNot(deleted);
+
+            long[] found = new long[matches.cardinality()];
+            int count = 0;
+            for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1)) {
+                long date = dates[doc];
+                if ((query.since >= 0 && date < query.since) || (query.before >= 0 && (date < 0 || date >= query.before))) {
+                    continue;
+                }
+                found[count++] = uids[doc];
+            }
+            // UIDs grow with arrival, so the highest are the newest
+            Arrays.sort(found, 0, count);
+            int start = limit > 0 ? Math.max(0, count - limit) : 0;
+            return Arrays.copyOfRange(found, start, count);
+        }
+
+        private BitSet matchAll(BitSet matches, String text, char[] fields) {
+            if (text == null || text.isEmpty()) {
+                return matches;
+            }
+            for (String word : tokenize(text, Integer.MAX_VALUE)) {
+                BitSet docsForWord = new BitSet(docCount);
+                for (char field : fields) {
+                    String prefix = field + word;
+                    for (Postings postings : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                        postings.orInto(docsForWord);
+                    }
+                }
+                if (matches == null) {
+                    matches = docsForWord;
+                } else {
+                    matches.and(docsForWord);
+                }
+            }
+            return matches;
+        }
+
+        private void indexText(char field, String text, int doc, int maxChars) {
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+            for (String word : tokenize(text, maxChars)) {
+                if (word.length() < MIN_TERM_LENGTH) {
+                    continue;
+                }
+                String term = field + word;
+                Postings postings = terms.get(term);
+                if (postings == null) {
+                    postings = new Postings();
+                    terms.put(term, postings);
+                }
+                postings.add(doc);
+            }
+        }
+
+        // Rewrites the postings without deleted documents once they make up
+        // half the index; the surviving ids keep their order
+        private void compactIfSparse() {
+            int dead = deleted.cardinality();
+            if (dead < 1024 || dead * 2 < docCount) {
+                return;
+            }
+            int[] remap = new int[docCount];
+            int next = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                if (deleted.get(doc)) {
+                    remap[doc] = -1;
+                } else {
+                    remap[doc] = next;
+                    uids[next] = uids[doc];
+                    dates[next] = dates[doc];
+                    levels[next] = levels[doc];
+                    docs.put(uids[next], next);
+                    next++;
+                }
+            }
+            docCount = next;
+            deleted.clear();
+            terms.values().removeIf(postings -> !postings.remap(remap));
+        }
+
+        private void clear() {
+            docCount = 0;
+            deleted.clear();
+            docs.clear();
+            terms.clear();
+            unsaved++;
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(uidValidity);
+            out.writeInt(docCount);
+            for (int doc = 0; doc < docCount; doc++) {
+                out.writeLong(uids[doc]);
+                out.writeLong(dates[doc]);
+                out.writeByte(levels[doc]);
+                out.writeBoolean(deleted.get(doc));
+            }
+            out.writeInt(terms.size());
+            for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+                out.writeUTF(entry.getKey());
+                Postings postings = entry.getValue();
+                out.writeInt(postings.lastDoc);
+                out.writeInt(postings.length);
+                out.write(postings.bytes, 0, postings.length);
+            }
+        }
+
+        private void readFrom(DataInputStream in) throws IOException {
+            uidValidity = in.readLong();
+            int count = in.readInt();
+            uids = new long[Math.max(64, count)];
+            dates = new long[uids.length];
+            levels = new byte[uids.length];
+            for (int doc = 0; doc < count; doc++) {
+                uids[doc] = in.readLong();
+                dates[doc] = in.readLong();
+                levels[doc] = in.readByte();
+                if (in.readBoolean()) {
+                    deleted.set(doc);
+                } else {
+                    docs.put(uids[doc], doc);
+                }
+            }
+            docCount = count;
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                Postings postings = new Postings();
+                postings.lastDoc = in.readInt();
+                postings.length = in.readInt();
+                postings.bytes = new byte[postings.length];
+                in.readFully(postings.bytes);
+                terms.put(term, postings);
+            }
+        }
+    }
+
+    /**
+     * Ascending document ids as varint gaps; ids are only ever appended in
+     * increasing order, so adding one never rewrites the list.
+     */
+    static final class Postings {
+        byte[] bytes = new byte[4];
+        int length;
+        int lastDoc = -1;
+
+        void add(int doc) {
+            if (doc <= lastDoc) {
+                return;
+            }
+            int gap = doc - lastDoc;
+            lastDoc = doc;
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + 5, bytes.length * 2));
+            }
+            while ((gap & ~0x7f) != 0) {
+                bytes[length++] = (byte) ((gap & 0x7f) | 0x80);
+                gap >>>= 7;
+            }
+            bytes[length++] = (byte) gap;
+        }
+
+        void orInto(BitSet docs) {
+            int doc = -1;
+            int pos = 0;
+            while (pos < length) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[pos++];
+                    gap |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += gap;
+                docs.set(doc);
+            }
+        }
+
+        // Returns false when no document is left
+        boolean remap(int[] remap) {
+            BitSet old = new BitSet();
+            orInto(old);
+            bytes = new byte[4];
+            length = 0;
+            lastDoc = -1;
+            for (int doc = old.nextSetBit(0); doc >= 0; doc = old.nextSetBit(doc + 1)) {
+                if (remap[doc] >= 0) {
+                    add(remap[doc]);
+                }
+            }
+            if (length > 0 && bytes.length > length * 2) {
+                bytes = Arrays.copyOf(bytes, length);
+            }
+            return length > 0;
+        }
+    }
+
+    /**
+     * The distinct lower-cased words of text, split on anything that is not
+     * a letter or digit, reading at most maxChars characters.
+     */
+    static Set<String> tokenize(String text, int maxChars) {
+        Set<String> words = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder();
+        int end = Math.min(text.length(), maxChars);
+        for (int i = 0; i <= end; i++) {
+            char c = i < end ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (word.length() < MAX_TERM_LENGTH) {
+                    word.append(c);
+                }
+            } else if (word.length() > 0) {
+                words.add(word.toString().toLowerCase(Locale.ROOT));
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    synchronized FolderIndex get(String account, String folder) {
+        String key = MessageStore.key(account, folder);
+        FolderIndex index = indexes.get(key);
+        if (index == null) {
+            index = read(fileFor(key));
+            indexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Writes the folder's index if it has changed. The file is replaced
+     * atomically so a crash mid-write leaves the previous index intact.
+     */
+    synchronized void save(String account, String folder) {
+        write(MessageStore.key(account, folder));
+    }
+
+    synchronized void saveAll() {
+        for (String key : indexes.keySet()) {
+            write(key);
+        }
+    }
+
+    private void write(String key) {
+        FolderIndex index = indexes.get(key);
+        if (index == null || index.unsaved == 0) {
+            return;
+        }
+        File file = fileFor(key);
+        File temp = new File(file.getPath() + ".tmp");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create search index directory " + dir);
+            return;
+        }
+        synchronized (index) {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                index.writeTo(out);
+            } catch (IOException e) {
+                Log.w(TAG, "Error writing search index: " + e.getMessage());
+                temp.delete();
+                return;
+            }
+            index.unsaved = 0;
+        }
+        if (!temp.renameTo(file)) {
+            Log.w(TAG, "Error replacing search index file " + file);
+            temp.delete();
+        }
+    }
+
+    private static FolderIndex read(File file) {
+        FolderIndex index = new FolderIndex();
+        if (!file.isFile()) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return index;
+            }
+            index.readFrom(in);
+        } catch (IOException e) {
+            // Like the message cache, a corrupt index is rebuilt as messages load
+            Log.w(TAG, "Error reading search index: " + e.getMessage());
+            index = new FolderIndex();
+        }
+        return index;
+    }
+
+    private File fileFor(String key) {
+        return new File(dir, key + ".index");
+    }
+}
@@ -0,0 +1,409 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.iap.Argument;
+import com.sun.mail.iap.Response;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.protocol.IMAPProtocol;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.SearchSequence;
+
+import javax.mail.FetchProfile;
+import javax.mail.Flags;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.UIDFolder;
+import javax.mail.search.AndTerm;
+import javax.mail.search.BodyTerm;
+import javax.mail.search.ComparisonTerm;
+import javax.mail.search.FlagTerm;
+import javax.mail.search.FromStringTerm;
+import javax.mail.search.NotTerm;
+import javax.mail.search.OrTerm;
+import javax.mail.search.ReceivedDateTerm;
+import javax.mail.search.RecipientStringTerm;
+import javax.mail.search.SearchException;
+import javax.mail.search.SearchTerm;
+import javax.mail.search.SentDateTerm;
+import javax.mail.search.SizeTerm;
+import javax.mail.search.SubjectTerm;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns searchEmails options into one IMAP command and reads back UIDs only.
+ * A query without criteria needs no SEARCH at all; otherwise the criteria go
+ * to UID SORT when a date order is asked for and the server has SORT, to
+ * UID SEARCH RETURN (COUNT ALL) on ESEARCH servers, whose answer is a count
+ * and a compact UID set, and to plain UID SEARCH elsewhere. Only the top
+ * limit UIDs are ever turned into messages, except that without SORT a date
+ * order takes the envelopes of the newest LOCAL_SORT_WINDOW matches; older
+ * matches are left out rather than every match's envelope fetched.
+ */
+final class SearchPlanner {
+    static final String SORT_DATE = "date";
+    static final String SORT_ARRIVAL = "arrival";
+    static final String DATE_SENT = "sent";
+    static final int LOCAL_SORT_WINDOW = 500;
+
+    // Criteria the on-device index can't evaluate. It keeps neither flags
+    // nor INTERNALDATE, and lists in UID order
+    static final List<String> SERVER_ONLY = Arrays.asList(
+        "flagged", "answered", "draft", "deleted", "keyword", "larger", "smaller", "or", "not",
+        "sort", "dateField");
+
+    private static final Pattern ESEARCH_ITEM = Pattern.compile("\\b(COUNT|ALL)\\s+([0-9:,]+)", Pattern.CASE_INSENSITIVE);
+    private static final ThreadLocal<SimpleDateFormat> DAY = ThreadLocal.withInitial(() -> {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        format.setLenient(false);
+        return format;
+    });
+
+    private static final FetchProfile ENVELOPE = new FetchProfile();
+
+    static {
+        ENVELOPE.add(FetchProfile.Item.ENVELOPE);
+        ENVELOPE.add(UIDFolder.FetchProfileItem.UID);
+    }
+
+    static final class Result {
+        final int total;
+        // Oldest first, or in sort order; at most limit of them
+        final long[] uids;
+        final String strategy;
+
+        Result(int total, long[] uids, String strategy) {
+            this.total = total;
+            this.uids = uids;
+            this.strategy = strategy;
+        }
+    }
+
+    private SearchPlanner() {
+    }
+
+    static Date parseDay(String day) throws ParseException {
+        return DAY.get().parse(day);
+    }
+
+    /**
+     * The search term for options, or null when they have no criteria and
+     * every message matches.
+     */
+    @SuppressWarnings("unchecked")
+    static SearchTerm build(Map<String, Object> options) throws ParseException {
+        List<SearchTerm> terms = new ArrayList<>();
+
+        String query = string(options, "query");
+        if (query != null) {
+            terms.add(new OrTerm(new SubjectTerm(query), new BodyTerm(query)));
+        }
+        String from = string(options, "from");
+        if (from != null) {
+            terms.add(new FromStringTerm(from));
+        }
+        String to = string(options, "to");
+        if (to != null) {
+            terms.add(new RecipientStringTerm(Message.RecipientType.TO, to));
+        }
+        String subject = string(options, "subject");
+        if (subject != null) {
+            terms.add(new SubjectTerm(subject));
+        }
+
+        // INTERNALDATE (SINCE/BEFORE) is what servers index; the Date header
+        // (SENTSINCE/SENTBEFORE) usually means parsing every message
+        boolean sentDate = DATE_SENT.equals(options.get("dateField"));
+        String since = string(options, "since");
+        if (since != null) {
+            Date date = parseDay(since);
+            terms.add(sentDate ? new SentDateTerm(ComparisonTerm.GE, date) : new ReceivedDateTerm(ComparisonTerm.GE, date));
+        }
+        String before = string(options, "before");
+        if (before != null) {
+            Date date = parseDay(before);
+            terms.add(sentDate ? new SentDateTerm(ComparisonTerm.LE, date) : new ReceivedDateTerm(ComparisonTerm.LE, date));
+        }
+
+        addFlag(terms, options, "seen", Flags.Flag.SEEN);
+        addFlag(terms, options, "flagged", Flags.Flag.FLAGGED);
+        addFlag(terms, options, "answered", Flags.Flag.ANSWERED);
+        addFlag(terms, options, "draft", Flags.Flag.DRAFT);
+        addFlag(terms, options, "deleted", Flags.Flag.DELETED);
+
+        Object keyword = options.get("keyword");
+        if (keyword instanceof String) {
+            terms.add(new FlagTerm(new Flags((String) keyword), true));
+        } else if (keyword instanceof List) {
+            for (Object item : (List<Object>) keyword) {
+                terms.add(new FlagTerm(new Flags(item.toString()), true));
+            }
+        }
+
+        if (options.get("larger") instanceof Number) {
+            terms.add(new SizeTerm(ComparisonTerm.GT, ((Number) options.get("larger")).intValue()));
+        }
+        if (options.get("smaller") instanceof Number) {
+            terms.add(new SizeTerm(ComparisonTerm.LT, ((Number) options.get("smaller")).intValue()));
+        }
+
+        if (options.get("or") instanceof List) {
+            List<SearchTerm> alternatives = new ArrayList<>();
+            boolean matchesAll = false;
+            for (Object item : (List<Object>) options.get("or")) {
+                SearchTerm alternative = item instanceof Map ? build((Map<String, Object>) item) : null;
+                if (alternative == null) {
+                    // One alternative without criteria makes the OR match everything
+                    matchesAll = true;
+                    break;
+                }
+                alternatives.add(alternative);
+            }
+            if (!matchesAll && alternatives.size() == 1) {
+                terms.add(alternatives.get(0));
+            } else if (!matchesAll && !alternatives.isEmpty()) {
+                terms.add(new OrTerm(alternatives.toArray(new SearchTerm[0])));
+            }
+        }
+        if (options.get("not") instanceof Map) {
+            SearchTerm negated = build((Map<String, Object>) options.get("not"));
+            if (negated != null) {
+                terms.add(new NotTerm(negated));
+            }
+        }
+
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return terms.size() == 1 ? terms.get(0) : new AndTerm(terms.toArray(new SearchTerm[0]));
+    }
+
+    /**
+     * Runs term (null for every message) on folder and returns the match
+     * count and the last limit UIDs in the requested order; sort is null
+     * (UID order), SORT_DATE (Date header) or SORT_ARRIVAL (INTERNALDATE).
+     */
+    static Result run(IMAPFolder folder, SearchTerm term, String sort, int limit) throws MessagingException {
+        if (term == null && sort == null) {
+            return newest(folder, limit);
+        }
+        boolean hasSort = hasCapability(folder, "SORT");
+        if (sort != null && hasSort) {
+            long[] uids = uidCommand(folder, "UID SORT", sortArguments(sort), term, true, "SORT");
+            return new Result(uids.length, tail(uids, limit), "sort");
+        }
+        // Arrival order is UID order; a date order is looked for in a window
+        int window = SORT_DATE.equals(sort) && limit > 0 ? Math.max(limit, LOCAL_SORT_WINDOW) : limit;
+        if (hasCapability(folder, "ESEARCH")) {
+            Argument returns = new Argument().writeAtom("RETURN")
+                .writeArgument(new Argument().writeAtom("COUNT").writeAtom("ALL"));
+            Result result = esearch(folder, returns, term, window);
+            if (sort == null) {
+                return result;
+            }
+            return sortLocally(folder, result.total, result.uids, sort, limit, window);
+        }
+        long[] uids = uidCommand(folder, "UID SEARCH", null, term, false, "SEARCH");
+        Arrays.sort(uids);
+        if (sort != null) {
+            return sortLocally(folder, uids.length, uids, sort, limit, window);
+        }
+        return new Result(uids.length, tail(uids, limit), "search");
+    }
+
+    /**
+     * The top limit UIDs of an ESEARCH answer such as
+     * "(TAG "A5") UID COUNT 17 ALL 4:18,21,28", without expanding the rest
+     * of the set.
+     */
+    static Result parseEsearch(String data, int limit) {
+        int total = 0;
+        String all = null;
+        Matcher matcher = ESEARCH_ITEM.matcher(data);
+        while (matcher.find()) {
+            if ("COUNT".equalsIgnoreCase(matcher.group(1))) {
+                total = Integer.parseInt(matcher.group(2));
+            } else {
+                all = matcher.group(2);
+            }
+        }
+        if (all == null) {
+            return new Result(total, new long[0], "esearch");
+        }
+
+        String[] ranges = all.split(",");
+        long[][] bounds = new long[ranges.length][];
+        long count = 0;
+        for (int i = 0; i < ranges.length; i++) {
+            int colon = ranges[i].indexOf(':');
+            long start = Long.parseLong(colon < 0 ? ranges[i] : ranges[i].substring(0, colon));
+            long end = colon < 0 ? start : Long.parseLong(ranges[i].substring(colon + 1));
+            bounds[i] = start <= end ? new long[]{start, end} : new long[]{end, start};
+            count += bounds[i][1] - bounds[i][0] + 1;
+        }
+        Arrays.sort(bounds, (a, b) -> Long.compare(a[0], b[0]));
+        if (total == 0) {
+            total = (int) count;
+        }
+
+        int size = (int) (limit > 0 ? Math.min(limit, count) : count);
+        long[] uids = new long[size];
+        int next = size;
+        for (int i = bounds.length - 1; i >= 0 && next > 0; i--) {
+            for (long uid = bounds[i][1]; uid >= bounds[i][0] && next > 0; uid--) {
+                uids[--next] = uid;
+            }
+        }
+        return new Result(total, uids, "esearch");
+    }
+
+    // Without criteria the newest messages are simply the last ones
+    private static Result newest(IMAPFolder folder, int limit) throws MessagingException {
+        int count = folder.getMessageCount();
+        if (count == 0) {
+            return new Result(0, new long[0], "all");
+        }
+        int start = limit > 0 ? Math.max(1, count - limit + 1) : 1;
+        Message[] messages = folder.getMessages(start, count);
+        FetchProfile uid = new FetchProfile();
+        uid.add(UIDFolder.FetchProfileItem.UID);
+        folder.fetch(messages, uid);
+        long[] uids = new long[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            uids[i] = folder.getUID(messages[i]);
+        }
+        return new Result(count, uids, "all");
+    }
+
+    private static Result esearch(IMAPFolder folder, Argument prefix, SearchTerm term, int limit) throws MessagingException {
+        return (Result) folder.doCommand(protocol -> {
+            Response[] responses = protocol.command("UID SEARCH", arguments(protocol, prefix, term, false));
+            Result result = null;
+            for (int i = 0; i < responses.length; i++) {
+                if (responses[i] instanceof IMAPResponse && ((IMAPResponse) responses[i]).keyEquals("ESEARCH")) {
+                    result = parseEsearch(responses[i].getRest(), limit);
+                    responses[i] = null;
+                }
+            }
+            dispatch(protocol, responses);
+            // No ESEARCH response at all means nothing matched
+            return result != null ? result : new Result(0, new long[0], "esearch");
+        });
+    }
+
+    private static long[] uidCommand(IMAPFolder folder, String command, Argument prefix, SearchTerm term,
+                                     boolean charsetRequired, String key) throws MessagingException {
+        return (long[]) folder.doCommand(protocol -> {
+            Response[] responses = protocol.command(command, arguments(protocol, prefix, term, charsetRequired));
+            long[] uids = new long[16];
+            int size = 0;
+            for (int i = 0; i < responses.length; i++) {
+                if (responses[i] instanceof IMAPResponse && ((IMAPResponse) responses[i]).keyEquals(key)) {
+                    IMAPResponse response = (IMAPResponse) responses[i];
+                    long uid;
+                    while ((uid = response.readLong()) != -1) {
+                        if (size == uids.length) {
+                            uids = Arrays.copyOf(uids, size * 2);
+                        }
+                        uids[size++] = uid;
+                    }
+                    responses[i] = null;
+                }
+            }
+            dispatch(protocol, responses);
+            return Arrays.copyOf(uids, size);
+        });
+    }
+
+    // SORT always names a charset; SEARCH only needs one for non-ASCII text
+    private static Argument arguments(IMAPProtocol protocol, Argument prefix, SearchTerm term, boolean charsetRequired)
+        throws com.sun.mail.iap.ProtocolException {
+        Argument args = new Argument();
+        if (prefix != null) {
+            args.append(prefix);
+        }
+        boolean ascii = term == null || SearchSequence.isAscii(term);
+        String charset = ascii ? null : "UTF-8";
+        if (charsetRequired) {
+            args.writeAtom(ascii ? "US-ASCII" : "UTF-8");
+        } else if (charset != null) {
+            args.writeAtom("CHARSET");
+            args.writeAtom(charset);
+        }
+        if (term == null) {
+            args.writeAtom("ALL");
+            return args;
+        }
+        try {
+            args.append(new SearchSequence(protocol).generateSequence(term, charset));
+        } catch (SearchException | IOException e) {
+            throw new com.sun.mail.iap.ProtocolException(e.getMessage(), e);
+        }
+        return args;
+    }
+
+    private static Argument sortArguments(String sort) {
+        return new Argument().writeArgument(new Argument().writeAtom(SORT_ARRIVAL.equals(sort) ? "ARRIVAL" : "DATE"));
+    }
+
+    // Servers without SORT: arrival order is UID order, and the Date
+    // header comes with the envelope of each of the newest window UIDs
+    static Result sortLocally(IMAPFolder folder, int total, long[] uids, String sort, int limit, int window)
+        throws MessagingException {
+        if (SORT_ARRIVAL.equals(sort) || uids.length == 0) {
+            return new Result(total, tail(uids, limit), "search");
+        }
+        Message[] messages = folder.getMessagesByUID(tail(uids, window));
+        List<Message> present = new ArrayList<>(messages.length);
+        for (Message message : messages) {
+            if (message != null) {
+                present.add(message);
+            }
+        }
+        Message[] found = present.toArray(new Message[0]);
+        folder.fetch(found, ENVELOPE);
+        long[][] keyed = new long[found.length][];
+        for (int i = 0; i < found.length; i++) {
+            Date sent = found[i].getSentDate();
+            keyed[i] = new long[]{sent != null ? sent.getTime() : 0, folder.getUID(found[i])};
+        }
+        Arrays.sort(keyed, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        long[] sorted = new long[keyed.length];
+        for (int i = 0; i < keyed.length; i++) {
+            sorted[i] = keyed[i][1];
+        }
+        return new Result(total, tail(sorted, limit), "search");
+    }
+
+    private static long[] tail(long[] uids, int limit) {
+        return limit > 0 && uids.length > limit ? Arrays.copyOfRange(uids, uids.length - limit, uids.length) : uids;
+    }
+
+    private static void dispatch(IMAPProtocol protocol, Response[] responses) throws com.sun.mail.iap.ProtocolException {
+        protocol.notifyResponseHandlers(responses);
+        protocol.handleResult(responses[responses.length - 1]);
+    }
+
+    private static boolean hasCapability(IMAPFolder folder, String capability) throws MessagingException {
+        return (Boolean) folder.doCommand(protocol -> protocol.hasCapability(capability));
+    }
+
+    private static void addFlag(List<SearchTerm> terms, Map<String, Object> options, String key, Flags.Flag flag) {
+        if (options.get(key) instanceof Boolean) {
+            terms.add(new FlagTerm(new Flags(flag), (Boolean) options.get(key)));
+        }
+    }
+
+    private static String string(Map<String, Object> options, String key) {
+        Object value = options.get(key);
+        return value instanceof String && !((String) value).isEmpty() ? (String) value : null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.reactnativeinbox;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs IMAP calls off the React native-modules thread on a fixed set of
+ * single-threaded lanes. Calls with the same key (a folder name) always land
+ * on the same lane and so run in the order they were made; calls for folders
+ * on different lanes run in parallel.
+ */
+final class StripedExecutor {
+    static final int DEFAULT_LANES = 3;
+    // Keys for calls that touch no folder
+    static final String STORE_KEY = "\u0000store";
+    static final String SMTP_KEY = "\u0000smtp";
+    static final String OUTBOX_KEY = "\u0000outbox";
+
+    private final ExecutorService[] lanes;
+
+    StripedExecutor(int lanes) {
+        this.lanes = new ExecutorService[Math.max(1, lanes)];
+        for (int i = 0; i < this.lanes.length; i++) {
+            String name = "inbox-imap-" + i;
+            this.lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    int size() {
+        return lanes.length;
+    }
+
+    static int lane(String key, int lanes) {
+        return Math.floorMod(key != null ? key.hashCode() : 0, lanes);
+    }
+
+    void execute(String key, Runnable task) {
+        lanes[lane(key, lanes.length)].execute(task);
+    }
+
+    /**
+     * Waits, at most timeoutMs, until the calls queued so far have run,
+     * leaving the lanes running for later calls.
+     */
+    void drain(long timeoutMs) {
+        CountDownLatch drained = new CountDownLatch(lanes.length);
+        for (ExecutorService lane : lanes) {
+            lane.execute(drained::countDown);
+        }
+        try {
+            drained.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lets queued calls finish, waiting at most timeoutMs, and stops the
+     * lanes.
+     */
+    void shutdown(long timeoutMs) {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        try {
+            for (ExecutorService lane : lanes) {
+                lane.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
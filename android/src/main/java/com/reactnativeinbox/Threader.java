@@ -0,0 +1,494 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.iap.Argument;
+import com.sun.mail.iap.Response;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.protocol.IMAPResponse;
+
+import javax.mail.FetchProfile;
+import javax.mail.Flags;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.UIDFolder;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeUtility;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Groups a folder's messages into conversations. Servers with
+ * THREAD=REFERENCES do the work in one UID THREAD command; elsewhere an
+ * instance keeps a JWZ-style container tree built from Message-ID,
+ * In-Reply-To and References, and each sync fetches those headers only
+ * for messages that arrived since the last one.
+ */
+final class Threader {
+    private static final String[] HEADERS = {"Message-ID", "In-Reply-To", "References", "Subject"};
+    private static final Pattern MESSAGE_ID = Pattern.compile("<[^<>\\s]+>");
+    private static final Pattern REPLY_PREFIX = Pattern.compile(
+        "^\\s*(?:(?:re|fwd?|aw|sv)(?:\\[\\d+\\])?\\s*:|\\[[^\\]]*\\])\\s*", Pattern.CASE_INSENSITIVE);
+
+    private static final FetchProfile HEADER_FIELDS = new FetchProfile();
+    private static final FetchProfile UID = new FetchProfile();
+    private static final FetchProfile SUMMARY = new FetchProfile();
+
+    static {
+        for (String header : HEADERS) {
+            HEADER_FIELDS.add(header);
+        }
+        HEADER_FIELDS.add(UIDFolder.FetchProfileItem.UID);
+        UID.add(UIDFolder.FetchProfileItem.UID);
+        SUMMARY.add(UIDFolder.FetchProfileItem.UID);
+        SUMMARY.add(FetchProfile.Item.FLAGS);
+        SUMMARY.add(IMAPFolder.FetchProfileItem.INTERNALDATE);
+    }
+
+    static final class Node {
+        final long uid;
+        final List<Node> children = new ArrayList<>();
+
+        Node(long uid) {
+            this.uid = uid;
+        }
+    }
+
+    static final class Conversation {
+        // Usually one; several when the message they all reply to is missing
+        final List<Node> roots;
+        final long[] uids;
+        final long newestUid;
+        long latestDate = -1;
+        int unread;
+
+        Conversation(List<Node> roots) {
+            this.roots = roots;
+            List<Long> all = new ArrayList<>();
+            collect(roots, all);
+            uids = new long[all.size()];
+            for (int i = 0; i < uids.length; i++) {
+                uids[i] = all.get(i);
+            }
+            Arrays.sort(uids);
+            newestUid = uids.length > 0 ? uids[uids.length - 1] : 0;
+        }
+
+        private static void collect(List<Node> nodes, List<Long> into) {
+            for (Node node : nodes) {
+                into.add(node.uid);
+                collect(node.children, into);
+            }
+        }
+    }
+
+    private static final class Container {
+        final String id;
+        long uid;
+        String subject = "";
+        boolean reply;
+        Container parent;
+        final List<Container> children = new ArrayList<>(2);
+
+        Container(String id) {
+            this.id = id;
+        }
+    }
+
+    private final Map<String, Container> byId = new HashMap<>();
+    private final Map<Long, Container> byUid = new HashMap<>();
+    private long uidValidity = -1;
+    private long lastUid;
+
+    /**
+     * The newest limit conversations of folder (all of them for limit 0),
+     * newest first, with their unread count and latest received date.
+     */
+    static List<Conversation> list(IMAPFolder folder, Threader local, int limit) throws MessagingException {
+        List<List<Node>> threads = hasCapability(folder, "THREAD=REFERENCES")
+            ? serverThreads(folder) : local.sync(folder).threads();
+
+        List<Conversation> conversations = new ArrayList<>(threads.size());
+        for (List<Node> roots : threads) {
+            conversations.add(new Conversation(roots));
+        }
+        // UIDs grow with arrival, so the newest UID orders by latest message
+        conversations.sort((a, b) -> Long.compare(b.newestUid, a.newestUid));
+        if (limit > 0 && conversations.size() > limit) {
+            conversations = new ArrayList<>(conversations.subList(0, limit));
+        }
+        summarize(folder, conversations);
+        return conversations;
+    }
+
+    /**
+     * Parses the data of a THREAD response such as
+     * "(2)(3 6 (4 23)(44 7 96))" into one list of root nodes per thread.
+     */
+    static List<List<Node>> parse(String data) {
+        List<List<Node>> threads = new ArrayList<>();
+        int[] position = {0};
+        while (true) {
+            skipSpaces(data, position);
+            if (position[0] >= data.length() || data.charAt(position[0]) != '(') {
+                return threads;
+            }
+            position[0]++;
+            List<Node> roots = parseList(data, position);
+            if (!roots.isEmpty()) {
+                threads.add(roots);
+            }
+        }
+    }
+
+    // Reads up to the closing parenthesis: a chain of UIDs, each the child of
+    // the one before, then the nested lists that branch from the last
+    private static List<Node> parseList(String data, int[] position) {
+        List<Node> roots = new ArrayList<>();
+        Node last = null;
+        while (position[0] < data.length()) {
+            char c = data.charAt(position[0]);
+            if (c == ')') {
+                position[0]++;
+                break;
+            } else if (c == '(') {
+                position[0]++;
+                List<Node> branch = parseList(data, position);
+                (last != null ? last.children : roots).addAll(branch);
+            } else if (Character.isDigit(c)) {
+                int start = position[0];
+                while (position[0] < data.length() && Character.isDigit(data.charAt(position[0]))) {
+                    position[0]++;
+                }
+                Node node = new Node(Long.parseLong(data.substring(start, position[0])));
+                (last != null ? last.children : roots).add(node);
+                last = node;
+            } else {
+                position[0]++;
+            }
+        }
+        return roots;
+    }
+
+    private static void skipSpaces(String data, int[] position) {
+        while (position[0] < data.length() && data.charAt(position[0]) == ' ') {
+            position[0]++;
+        }
+    }
+
+    /**
+     * Brings the tree up to date with folder: headers are fetched only for
+     * messages newer than the last sync, and expunged messages are dropped
+     * when the message count no longer matches.
+     */
+    Threader sync(IMAPFolder folder) throws MessagingException {
+        // The folder may have sat open in the cache; NOOP brings its count up to date
+        folder.doCommand(protocol -> {
+            protocol.noop();
+            return null;
+        });
+        long validity = folder.getUIDValidity();
+        if (validity != uidValidity) {
+            byId.clear();
+            byUid.clear();
+            lastUid = 0;
+            uidValidity = validity;
+        }
+        if (folder.getMessageCount() == 0) {
+            byId.clear();
+            byUid.clear();
+            return this;
+        }
+
+        Message[] added = folder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID);
+        folder.fetch(added, HEADER_FIELDS);
+        for (Message message : added) {
+            long uid = folder.getUID(message);
+            // n:* always matches the last message, even when it's older than n
+            if (uid > lastUid) {
+                MimeMessage mime = (MimeMessage) message;
+                add(uid, mime.getHeader("Message-ID", null), mime.getHeader("In-Reply-To", null),
+                    mime.getHeader("References", " "), decode(mime.getHeader("Subject", null)));
+            }
+        }
+
+        if (byUid.size() != folder.getMessageCount()) {
+            Message[] all = folder.getMessages();
+            folder.fetch(all, UID);
+            Set<Long> present = new HashSet<>(all.length * 2);
+            for (Message message : all) {
+                present.add(folder.getUID(message));
+            }
+            for (Long uid : new ArrayList<>(byUid.keySet())) {
+                if (!present.contains(uid)) {
+                    remove(uid);
+                }
+            }
+        }
+        return this;
+    }
+
+    void add(long uid, String messageId, String inReplyTo, String references, String subject) {
+        List<String> parents = ids(references);
+        List<String> replyTo = ids(inReplyTo);
+        if (!replyTo.isEmpty() && (parents.isEmpty() || !parents.get(parents.size() - 1).equals(replyTo.get(0)))) {
+            parents.add(replyTo.get(0));
+        }
+
+        List<String> own = ids(messageId);
+        Container self = own.isEmpty() ? null : byId.get(own.get(0));
+        if (self == null || self.uid != 0) {
+            // No Message-ID, or a duplicate one: the message stands alone
+            self = new Container(own.isEmpty() || self != null ? "uid:" + uid : own.get(0));
+            byId.put(self.id, self);
+        }
+        self.uid = uid;
+        self.reply = subject != null && REPLY_PREFIX.matcher(subject).find();
+        self.subject = baseSubject(subject);
+        byUid.put(uid, self);
+        lastUid = Math.max(lastUid, uid);
+
+        // Each reference is the parent of the next, unless that is already
+        // known or would make a loop
+        Container previous = null;
+        for (String id : parents) {
+            if (id.equals(self.id)) {
+                continue;
+            }
+            Container next = byId.get(id);
+            if (next == null) {
+                next = new Container(id);
+                byId.put(id, next);
+            }
+            if (previous != null && next.parent == null && !descends(previous, next)) {
+                link(previous, next);
+            }
+            previous = next;
+        }
+        // The message's own headers are the best word on its parent
+        if (previous != null && !descends(previous, self)) {
+            unlink(self);
+            link(previous, self);
+        }
+    }
+
+    void remove(long uid) {
+        Container container = byUid.remove(uid);
+        if (container == null) {
+            return;
+        }
+        container.uid = 0;
+        // Placeholders that no longer lead to a message go too
+        while (container != null && container.uid == 0 && container.children.isEmpty()) {
+            Container parent = container.parent;
+            unlink(container);
+            byId.remove(container.id);
+            container = parent;
+        }
+    }
+
+    int size() {
+        return byUid.size();
+    }
+
+    /**
+     * The current conversations, each as its list of root nodes. Placeholder
+     * containers for missing messages are left out and their children moved
+     * up. A root whose subject is a reply to another root's subject joins
+     * that conversation; same-subject threads that aren't replies, such as
+     * recurring notifications, stay apart.
+     */
+    List<List<Node>> threads() {
+        List<Container> roots = new ArrayList<>();
+        for (Container container : byId.values()) {
+            if (container.parent == null) {
+                roots.add(container);
+            }
+        }
+
+        List<long[]> order = new ArrayList<>();
+        List<List<Node>> threads = new ArrayList<>();
+        for (Container root : roots) {
+            List<Node> nodes = nodes(root);
+            if (!nodes.isEmpty()) {
+                threads.add(nodes);
+                order.add(new long[]{nodes.get(0).uid, threads.size() - 1});
+            }
+        }
+        order.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        Map<String, List<Node>> bySubject = new HashMap<>();
+        List<List<Node>> merged = new ArrayList<>();
+        for (long[] entry : order) {
+            List<Node> thread = threads.get((int) entry[1]);
+            Container first = byUid.get(thread.get(0).uid);
+            List<Node> original = first.subject.isEmpty() ? null : bySubject.get(first.subject);
+            if (original != null && first.reply) {
+                Container head = byUid.get(original.get(0).uid);
+                if (original.size() == 1 && !head.reply) {
+                    original.get(0).children.addAll(thread);
+                    sort(original.get(0).children);
+                } else {
+                    original.addAll(thread);
+                    sort(original);
+                }
+                continue;
+            }
+            if (original == null && !first.subject.isEmpty()) {
+                bySubject.put(first.subject, thread);
+            }
+            merged.add(thread);
+        }
+        return merged;
+    }
+
+    // A message becomes one node; a placeholder hands over its children
+    private static List<Node> nodes(Container container) {
+        List<Node> children = new ArrayList<>();
+        for (Container child : container.children) {
+            children.addAll(nodes(child));
+        }
+        sort(children);
+        if (container.uid == 0) {
+            return children;
+        }
+        Node node = new Node(container.uid);
+        node.children.addAll(children);
+        List<Node> self = new ArrayList<>(1);
+        self.add(node);
+        return self;
+    }
+
+    private static void sort(List<Node> nodes) {
+        nodes.sort((a, b) -> Long.compare(a.uid, b.uid));
+    }
+
+    private static boolean descends(Container container, Container ancestor) {
+        for (Container c = container; c != null; c = c.parent) {
+            if (c == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void link(Container parent, Container child) {
+        child.parent = parent;
+        parent.children.add(child);
+    }
+
+    private static void unlink(Container child) {
+        if (child.parent != null) {
+            child.parent.children.remove(child);
+            child.parent = null;
+        }
+    }
+
+    private static List<String> ids(String header) {
+        List<String> ids = new ArrayList<>();
+        if (header != null) {
+            Matcher matcher = MESSAGE_ID.matcher(header);
+            while (matcher.find()) {
+                ids.add(matcher.group());
+            }
+        }
+        return ids;
+    }
+
+    static String baseSubject(String subject) {
+        if (subject == null) {
+            return "";
+        }
+        String base = subject;
+        Matcher matcher;
+        while ((matcher = REPLY_PREFIX.matcher(base)).find()) {
+            base = base.substring(matcher.end());
+        }
+        return base.trim().toLowerCase();
+    }
+
+    private static String decode(String subject) {
+        if (subject == null) {
+            return null;
+        }
+        try {
+            return MimeUtility.decodeText(MimeUtility.unfold(subject));
+        } catch (UnsupportedEncodingException e) {
+            return subject;
+        }
+    }
+
+    private static List<List<Node>> serverThreads(IMAPFolder folder) throws MessagingException {
+        @SuppressWarnings("unchecked")
+        List<List<Node>> threads = (List<List<Node>>) folder.doCommand(protocol -> {
+            Argument args = new Argument().writeAtom("REFERENCES").writeAtom("UTF-8").writeAtom("ALL");
+            Response[] responses = protocol.command("UID THREAD", args);
+            List<List<Node>> parsed = new ArrayList<>();
+            for (int i = 0; i < responses.length; i++) {
+                if (responses[i] instanceof IMAPResponse && ((IMAPResponse) responses[i]).keyEquals("THREAD")) {
+                    parsed.addAll(parse(responses[i].getRest()));
+                    responses[i] = null;
+                }
+            }
+            protocol.notifyResponseHandlers(responses);
+            protocol.handleResult(responses[responses.length - 1]);
+            return parsed;
+        });
+        return threads;
+    }
+
+    // One FETCH of flags and received dates for every message shown
+    private static void summarize(IMAPFolder folder, List<Conversation> conversations) throws MessagingException {
+        int count = 0;
+        for (Conversation conversation : conversations) {
+            count += conversation.uids.length;
+        }
+        if (count == 0) {
+            return;
+        }
+        long[] uids = new long[count];
+        int size = 0;
+        for (Conversation conversation : conversations) {
+            System.arraycopy(conversation.uids, 0, uids, size, conversation.uids.length);
+            size += conversation.uids.length;
+        }
+        Message[] messages = folder.getMessagesByUID(uids);
+        List<Message> present = new ArrayList<>(messages.length);
+        for (Message message : messages) {
+            if (message != null) {
+                present.add(message);
+            }
+        }
+        Message[] found = present.toArray(new Message[0]);
+        folder.fetch(found, SUMMARY);
+
+        Map<Long, Message> byUid = new HashMap<>(found.length * 2);
+        for (Message message : found) {
+            byUid.put(folder.getUID(message), message);
+        }
+        for (Conversation conversation : conversations) {
+            for (long uid : conversation.uids) {
+                Message message = byUid.get(uid);
+                if (message == null) {
+                    continue;
+                }
+                if (!message.isSet(Flags.Flag.SEEN)) {
+                    conversation.unread++;
+                }
+                if (message.getReceivedDate() != null) {
+                    conversation.latestDate = Math.max(conversation.latestDate, message.getReceivedDate().getTime());
+                }
+            }
+        }
+    }
+
+    private static boolean hasCapability(IMAPFolder folder, String capability) throws MessagingException {
+        return (Boolean) folder.doCommand(protocol -> protocol.hasCapability(capability));
+    }
+}
@@ -0,0 +1,55 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+
+/**
+ * Locates a page of messages by message-number range, so only the messages on
+ * the page are ever materialised no matter how large the folder is. Pages are
+ * addressed by UID cursor because UIDs, unlike message numbers, survive
+ * expunges between calls.
+ */
+final class UidPager {
+    private UidPager() {
+    }
+
+    /**
+     * Returns up to limit messages whose UID is below beforeUid, oldest first.
+     * A beforeUid of 0 or less returns the newest messages in the folder.
+     */
+    static Message[] pageBefore(IMAPFolder folder, long beforeUid, int limit) throws MessagingException {
+        int count = folder.getMessageCount();
+        int end = beforeUid > 0 ? lastMessageBelow(folder, beforeUid, count) : count;
+        if (end <= 0 || limit <= 0) {
+            return new Message[0];
+        }
+        int start = Math.max(1, end - limit + 1);
+        return folder.getMessages(start, end);
+    }
+
+    // Message number of the last message whose UID is below uid, or 0
+    private static int lastMessageBelow(IMAPFolder folder, long uid, int count) throws MessagingException {
+        Message cursor = folder.getMessageByUID(uid);
+        if (cursor != null) {
+            return cursor.getMessageNumber() - 1;
+        }
+
+        // The cursor message is gone (expunged or moved), but UIDs still
+        // ascend with message numbers, so binary search for the boundary
+        int low = 1;
+        int high = count;
+        int result = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (folder.getUID(folder.getMessage(mid)) < uid) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,181 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.UIDFolder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The UID lists accepted from JS, which may mix numbers and "start:end" range
+ * strings, where either end may be "*" for the highest UID in the folder.
+ * Ranges are never expanded: they are sent to the server as they are, so
+ * "1:*" costs no more memory than "1:2".
+ */
+final class UidSet {
+    // Stands for "*"; a range ending with it runs to the highest UID
+    static final long LAST = UIDFolder.LASTUID;
+    // Most UIDs toArray expands, about 8 MB
+    static final int MAX_EXPANDED = 1_000_000;
+
+    // Sorted and de-duplicated
+    private final long[] uids;
+    // Sorted by start; {LAST, LAST} is "*" alone
+    private final long[][] ranges;
+
+    private UidSet(long[] uids, long[][] ranges) {
+        this.uids = uids;
+        this.ranges = ranges;
+    }
+
+    static UidSet of(long... uids) {
+        return new UidSet(unique(uids.clone(), uids.length), new long[0][]);
+    }
+
+    /**
+     * Parses numbers and "start:end" ranges. Numbers and single-UID ranges
+     * are listed; wider ranges are kept as ranges.
+     */
+    static UidSet parse(List<Object> items) {
+        long[] uids = new long[items.size()];
+        int size = 0;
+        List<long[]> ranges = new ArrayList<>();
+        for (Object item : items) {
+            if (item instanceof Number) {
+                uids[size++] = ((Number) item).longValue();
+            } else if (item instanceof String) {
+                long[] range = parseRange((String) item);
+                if (range[0] == range[1] && range[0] != LAST) {
+                    uids[size++] = range[0];
+                } else {
+                    ranges.add(range);
+                }
+            }
+        }
+        ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+        return new UidSet(unique(uids, size), ranges.toArray(new long[0][]));
+    }
+
+    boolean isEmpty() {
+        return uids.length == 0 && ranges.length == 0;
+    }
+
+    /**
+     * The listed UIDs and every UID in the ranges, for callers that need
+     * them one by one. Throws for "*" and for more than MAX_EXPANDED UIDs.
+     */
+    long[] toArray() {
+        long count = uids.length;
+        for (long[] range : ranges) {
+            if (range[1] == LAST) {
+                throw new IllegalArgumentException("UID ranges with * cannot be listed");
+            }
+            count += range[1] - range[0] + 1;
+        }
+        if (count > MAX_EXPANDED) {
+            throw new IllegalArgumentException("Too many UIDs: " + count);
+        }
+        long[] all = Arrays.copyOf(uids, (int) count);
+        int size = uids.length;
+        for (long[] range : ranges) {
+            for (long uid = range[0]; uid <= range[1]; uid++) {
+                all[size++] = uid;
+            }
+        }
+        return unique(all, size);
+    }
+
+    /**
+     * The messages that still exist, with one UID FETCH for the listed UIDs
+     * and one per range, oldest first. A listed UID that no longer exists is
+     * recorded as a failure in result; gaps within ranges are not.
+     */
+    Message[] resolve(IMAPFolder folder, BatchResult result) throws MessagingException {
+        List<Message> found = new ArrayList<>();
+        if (uids.length > 0) {
+            Message[] resolved = folder.getMessagesByUID(uids);
+            for (int i = 0; i < resolved.length; i++) {
+                if (resolved[i] == null || resolved[i].isExpunged()) {
+                    result.fail(uids[i], BatchResult.NOT_FOUND);
+                } else {
+                    found.add(resolved[i]);
+                }
+            }
+        }
+        for (long[] range : ranges) {
+            if (range[0] == LAST) {
+                int count = folder.getMessageCount();
+                if (count > 0) {
+                    found.add(folder.getMessage(count));
+                }
+                continue;
+            }
+            // "n:*" also matches the highest UID when it is below n
+            for (Message message : folder.getMessagesByUID(range[0], range[1])) {
+                if (message != null && !message.isExpunged() && folder.getUID(message) >= range[0]) {
+                    found.add(message);
+                }
+            }
+        }
+        Message[] messages = found.toArray(new Message[0]);
+        Arrays.sort(messages, (a, b) -> Integer.compare(a.getMessageNumber(), b.getMessageNumber()));
+        return distinct(messages);
+    }
+
+    private static long[] parseRange(String range) {
+        String trimmed = range.trim();
+        int colon = trimmed.indexOf(':');
+        if (colon < 0) {
+            long uid = parseUid(trimmed);
+            return new long[]{uid, uid};
+        }
+        long start = parseUid(trimmed.substring(0, colon));
+        long end = parseUid(trimmed.substring(colon + 1));
+        if (start == LAST && end == LAST) {
+            return new long[]{LAST, LAST};
+        }
+        if (start == LAST || end == LAST) {
+            return new long[]{Math.max(1, start == LAST ? end : start), LAST};
+        }
+        long high = Math.max(start, end);
+        return high < 1 ? new long[]{0, 0} : new long[]{Math.max(1, Math.min(start, end)), high};
+    }
+
+    private static long parseUid(String text) {
+        String trimmed = text.trim();
+        if ("*".equals(trimmed)) {
+            return LAST;
+        }
+        long uid = Long.parseLong(trimmed);
+        if (uid < 0) {
+            throw new IllegalArgumentException("Invalid UID: " + trimmed);
+        }
+        // UIDs start at 1; a listed 0 is dropped
+        return uid;
+    }
+
+    private static long[] unique(long[] uids, int size) {
+        Arrays.sort(uids, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (uids[i] > 0 && (unique == 0 || uids[i] != uids[unique - 1])) {
+                uids[unique++] = uids[i];
+            }
+        }
+        return Arrays.copyOf(uids, unique);
+    }
+
+    // Overlapping ranges resolve the same message more than once
+    private static Message[] distinct(Message[] sorted) {
+        int size = 0;
+        for (Message message : sorted) {
+            if (size == 0 || sorted[size - 1] != message) {
+                sorted[size++] = message;
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+}
@@ -0,0 +1,79 @@
+package com.reactnativeinbox;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the newest emails of a folder from several accounts, loaded in
+ * parallel on the accounts' own lanes, and merges them by date once the
+ * last account has answered. An account that fails is reported with its
+ * error instead of failing the whole listing.
+ */
+final class UnifiedInbox {
+    static final class Entry {
+        final String accountId;
+        final MessageRecord record;
+
+        Entry(String accountId, MessageRecord record) {
+            this.accountId = accountId;
+            this.record = record;
+        }
+    }
+
+    // Undated emails sort oldest; ties are broken by account and UID, so the
+    // order does not depend on which account answered first
+    private static final Comparator<Entry> BY_DATE = Comparator
+        .<Entry>comparingLong(entry -> entry.record.sentDate)
+        .thenComparing(entry -> entry.accountId)
+        .thenComparingLong(entry -> entry.record.uid);
+
+    private final int limit;
+    private int pending;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, String> failed = new LinkedHashMap<>();
+
+    /**
+     * Waits for the given number of accounts and keeps the newest limit
+     * emails of all of them, or all emails when limit is 0.
+     */
+    UnifiedInbox(int accounts, int limit) {
+        this.pending = accounts;
+        this.limit = limit;
+    }
+
+    /**
+     * Adds one account's emails; true when it was the last account to
+     * answer, so the caller can resolve the merged listing.
+     */
+    synchronized boolean add(String accountId, List<MessageRecord> records) {
+        for (MessageRecord record : records) {
+            entries.add(new Entry(accountId, record));
+        }
+        return --pending == 0;
+    }
+
+    synchronized boolean fail(String accountId, String error) {
+        failed.put(accountId, error != null ? error : "Unknown error");
+        return --pending == 0;
+    }
+
+    /**
+     * Oldest first, like getEmails, ending with the newest email of any
+     * account.
+     */
+    synchronized List<Entry> merged() {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(BY_DATE);
+        if (limit > 0 && sorted.size() > limit) {
+            return new ArrayList<>(sorted.subList(sorted.size() - limit, sorted.size()));
+        }
+        return sorted;
+    }
+
+    synchronized Map<String, String> failed() {
+        return new LinkedHashMap<>(failed);
+    }
+}
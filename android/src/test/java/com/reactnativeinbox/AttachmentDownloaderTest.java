@@ -0,0 +1,115 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.activation.DataHandler;
+import javax.mail.Folder;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.util.ByteArrayDataSource;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that an attachment is streamed to disk in partial FETCHes of the
+ * chunk size, decoded byte-for-byte, with progress reported per chunk.
+ */
+public class AttachmentDownloaderTest {
+    private static final int ATTACHMENT_SIZE = 1024 * 1024;
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    private ImapTestServer server;
+    private IMAPStore store;
+    private byte[] attachment;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("files");
+        attachment = new byte[ATTACHMENT_SIZE];
+        new Random(42).nextBytes(attachment);
+
+        MimeMessage message = server.message(0);
+        message.setSubject("Report");
+        MimeBodyPart text = new MimeBodyPart();
+        text.setText("See attached");
+        MimeBodyPart file = new MimeBodyPart();
+        file.setDataHandler(new DataHandler(new ByteArrayDataSource(attachment, "application/pdf")));
+        file.setFileName("report.pdf");
+        MimeMultipart multipart = new MimeMultipart(text, file);
+        message.setContent(multipart);
+        message.saveChanges();
+        server.deliver(message);
+        store = server.store();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void streamsAttachmentToFileInChunks() throws Exception {
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_ONLY);
+        long uid = folder.getUID(folder.getMessage(1));
+        File dest = new File(files.getRoot(), "downloads/report.pdf");
+
+        List<Long> progress = new ArrayList<>();
+        long[] total = {0};
+        long size = AttachmentDownloader.download(folder, uid, "2", dest, CHUNK_BYTES, (received, encoded) -> {
+            progress.add(received);
+            total[0] = encoded;
+        });
+
+        assertEquals(ATTACHMENT_SIZE, size);
+        assertArrayEquals(attachment, Files.readAllBytes(dest.toPath()));
+        assertFalse(new File(dest.getPath() + ".part").exists());
+
+        // Base64 makes the part about a third larger than the file
+        long chunks = (total[0] + CHUNK_BYTES - 1) / CHUNK_BYTES;
+        assertEquals(chunks, progress.size());
+        assertEquals(total[0], (long) progress.get(progress.size() - 1));
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i) > progress.get(i - 1));
+        }
+        folder.close(false);
+    }
+
+    @Test
+    public void rejectsMissingSection() throws Exception {
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_ONLY);
+        long uid = folder.getUID(folder.getMessage(1));
+        File dest = new File(files.getRoot(), "missing.bin");
+        try {
+            AttachmentDownloader.download(folder, uid, "3", dest, CHUNK_BYTES, null);
+            fail("Expected a missing part to be rejected");
+        } catch (MessagingException e) {
+            assertTrue(e.getMessage().contains("3"));
+        }
+        assertFalse(dest.exists());
+        folder.close(false);
+    }
+}
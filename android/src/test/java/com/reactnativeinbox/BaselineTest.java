@@ -0,0 +1,58 @@
+package com.reactnativeinbox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that benchmark results survive a save and load, and which changes
+ * against the baseline count as regressions.
+ */
+public class BaselineTest {
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    @Test
+    public void savesAndLoadsResults() throws Exception {
+        Map<String, Double> results = new HashMap<>();
+        results.put(Baseline.key("pageEnvelopes", 1000, Baseline.OPS), 120.5);
+        results.put(Baseline.key("pageEnvelopes", 1000, Baseline.ROUND_TRIPS), 1.0);
+        File file = new File(files.getRoot(), "nested/baseline.properties");
+
+        Baseline.save(results, file);
+
+        assertEquals(results, Baseline.load(file));
+        assertTrue(Baseline.load(new File(files.getRoot(), "missing.properties")).isEmpty());
+    }
+
+    @Test
+    public void flagsSlowerRunsMoreAllocationAndExtraRoundTrips() {
+        Map<String, Double> baseline = new HashMap<>();
+        baseline.put("pageFull.1000.opsPerSec", 100.0);
+        baseline.put("pageFull.1000.allocBytesPerOp", 1000.0);
+        baseline.put("pageFull.1000.roundTrips", 4.0);
+        baseline.put("searchSubject.1000.opsPerSec", 50.0);
+
+        Map<String, Double> current = new HashMap<>();
+        current.put("pageFull.1000.opsPerSec", 92.0);
+        current.put("pageFull.1000.allocBytesPerOp", 1200.0);
+        current.put("pageFull.1000.roundTrips", 5.0);
+        current.put("searchSubject.1000.opsPerSec", 40.0);
+        current.put("sendEmail.1000.opsPerSec", 1.0);
+
+        List<String> regressions = Baseline.regressions(current, baseline, 0.1);
+
+        assertEquals(3, regressions.size());
+        assertTrue(regressions.get(0).startsWith("pageFull.1000.allocBytesPerOp"));
+        assertTrue(regressions.get(1).startsWith("pageFull.1000.roundTrips"));
+        assertTrue(regressions.get(2).startsWith("searchSubject.1000.opsPerSec"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.Folder;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the memory tier is bounded by bytes and spills to disk, that
+ * spilled texts survive a restart, and that a cached body is not fetched
+ * again.
+ */
+public class BodyCacheTest {
+    @Rule
+    public TemporaryFolder cacheDir = new TemporaryFolder();
+
+    private ImapTestServer server;
+
+    @Before
+    public void setUp() {
+        server = new ImapTestServer("bodies");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void evictsByBytesAndSpillsToDisk() {
+        char[] text = new char[1000];
+        Arrays.fill(text, 'a');
+        String body = new String(text);
+        // Room for two bodies of about 2 KB each
+        BodyCache cache = new BodyCache(cacheDir.getRoot(), 5000, 1 << 20);
+
+        cache.put(key(1), body);
+        cache.put(key(2), body);
+        cache.get(key(1));
+        cache.put(key(3), body);
+
+        BodyCache.Stats stats = cache.stats();
+        assertEquals(2, stats.memoryEntries);
+        assertTrue(stats.memoryBytes <= 5000);
+        assertEquals(1, stats.evictions);
+        assertEquals(1, stats.diskEntries);
+
+        // 2 was least recently used, so it went to disk
+        assertEquals(body, cache.get(key(2)));
+        assertEquals(1, cache.stats().diskHits);
+        assertNull(cache.get(key(4)));
+        assertEquals(1, cache.stats().misses);
+    }
+
+    @Test
+    public void keepsSpilledTextsAcrossRestartsAndTrims() {
+        BodyCache cache = new BodyCache(cacheDir.getRoot(), 1 << 20, 1 << 20);
+        cache.put(key(1), "first body");
+        cache.put(key(2), "second body");
+        cache.trim(0);
+        assertEquals(0, cache.stats().memoryEntries);
+        assertEquals(2, cache.stats().diskEntries);
+
+        BodyCache restarted = new BodyCache(cacheDir.getRoot(), 1 << 20, 1 << 20);
+        assertEquals(2, restarted.stats().diskEntries);
+        assertEquals("second body", restarted.get(key(2)));
+        // Keys name the account through the folder URL, so another account's
+        // INBOX misses
+        assertNull(restarted.get(BodyCache.key("imap://other@localhost/INBOX", 1, 2, "1", 0)));
+
+        restarted.clear();
+        assertEquals(0, restarted.stats().diskEntries);
+        assertNull(new BodyCache(cacheDir.getRoot(), 1 << 20, 1 << 20).get(key(1)));
+    }
+
+    @Test
+    public void servesRepeatedBodiesWithoutFetching() throws Exception {
+        server.deliver(3);
+        Metrics metrics = new Metrics();
+        MeteredStore store = new MeteredStore(server.session, server.url(), metrics);
+        store.connect("localhost", server.port(), server.login, ImapTestServer.PASSWORD);
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_ONLY);
+        BodyCache cache = new BodyCache(cacheDir.getRoot(), 1 << 20, 1 << 20);
+
+        List<MessageRecord> first = MessageLoader.load(folder, folder.getMessages(), MessageRecord.BODY_FULL, 0, cache);
+        assertEquals("Body 2", first.get(2).body.trim());
+        assertEquals(3, cache.stats().misses);
+
+        // Reopened, so JavaMail's own message cache cannot answer
+        folder.close(false);
+        folder.open(Folder.READ_ONLY);
+        long fetchesBefore = fetches(metrics);
+        List<MessageRecord> second = MessageLoader.load(folder, folder.getMessages(), MessageRecord.BODY_FULL, 0, cache);
+        assertEquals("Body 2", second.get(2).body.trim());
+        assertEquals(3, cache.stats().memoryHits);
+        // Envelopes and BODYSTRUCTURE, but no BODY.PEEK of the text
+        assertEquals(2, fetches(metrics) - fetchesBefore);
+
+        folder.close(false);
+        store.close();
+    }
+
+    private static String key(long uid) {
+        return BodyCache.key("imap://bodies@localhost/INBOX", 1, uid, "1", 0);
+    }
+
+    private static long fetches(Metrics metrics) {
+        List<String> names = Arrays.asList(Metrics.COMMANDS);
+        return metrics.command(names.indexOf("FETCH")).count() + metrics.command(names.indexOf("UID FETCH")).count();
+    }
+}
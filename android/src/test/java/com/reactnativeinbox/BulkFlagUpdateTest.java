@@ -0,0 +1,131 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a bulk flag change over UID ranges costs one STORE, that
+ * missing UIDs are reported instead of failing the batch, and that wide and
+ * "*" ranges are sent as ranges.
+ */
+public class BulkFlagUpdateTest {
+    private static final int MAILBOX_SIZE = 120;
+
+    private ImapTestServer server;
+    private IMAPStore store;
+    private ImapTestServer.CommandCounter counter;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("bulk");
+        server.deliver(MAILBOX_SIZE);
+        counter = new ImapTestServer.CommandCounter();
+        store = server.countingStore(counter);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void parsesNumbersAndRanges() {
+        List<Object> items = new ArrayList<>(Arrays.asList(72.0, "90:95", "5:1", 3.0, 72.0));
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5, 72, 90, 91, 92, 93, 94, 95}, UidSet.parse(items).toArray());
+    }
+
+    @Test
+    public void parsesSystemFlagsAndKeywords() {
+        Flags flags = FlagUpdater.parse(new String[]{"seen", "\\Flagged", "$Important"});
+        assertTrue(flags.contains(Flags.Flag.SEEN));
+        assertTrue(flags.contains(Flags.Flag.FLAGGED));
+        assertTrue(flags.contains("$Important"));
+    }
+
+    @Test
+    public void marksRangesWithSingleStore() throws Exception {
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_WRITE);
+        long firstUid = folder.getUID(folder.getMessage(1));
+
+        List<Object> items = new ArrayList<>();
+        items.add(firstUid + ":" + (firstUid + 49));
+        items.add((double) (firstUid + 71));
+        items.add((firstUid + 89) + ":" + (firstUid + 119));
+        items.add((double) (firstUid + 1000));
+        UidSet uids = UidSet.parse(items);
+
+        counter.reset();
+        BatchResult result = FlagUpdater.store(folder, uids, new Flags(Flags.Flag.SEEN), true);
+        int stores = counter.commands("STORE");
+
+        assertEquals(1, stores);
+        assertEquals(82, result.succeeded);
+        assertEquals(Long.valueOf(firstUid + 1000), result.failedUids.get(0));
+        assertEquals(BatchResult.NOT_FOUND, result.failedErrors.get(0));
+
+        folder.close(false);
+        folder.open(Folder.READ_ONLY);
+        assertTrue(folder.getMessageByUID(firstUid + 49).isSet(Flags.Flag.SEEN));
+        assertTrue(folder.getMessageByUID(firstUid + 71).isSet(Flags.Flag.SEEN));
+        assertFalse(folder.getMessageByUID(firstUid + 50).isSet(Flags.Flag.SEEN));
+        folder.close(false);
+    }
+
+    @Test
+    public void sendsWideAndOpenRangesWithoutExpandingThem() throws Exception {
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_WRITE);
+        long lastUid = folder.getUID(folder.getMessage(MAILBOX_SIZE));
+
+        BatchResult wide = FlagUpdater.store(folder, UidSet.parse(Collections.singletonList("1:2000000000")),
+            new Flags(Flags.Flag.FLAGGED), true);
+        assertEquals(MAILBOX_SIZE, wide.succeeded);
+        assertTrue(wide.failedUids.isEmpty());
+
+        // "n:*" with n past the end still means the highest UID
+        BatchResult open = FlagUpdater.store(folder, UidSet.parse(Arrays.asList("*", (lastUid + 50) + ":*")),
+            new Flags(Flags.Flag.FLAGGED), false);
+        assertEquals(1, open.succeeded);
+        assertFalse(folder.getMessage(MAILBOX_SIZE).isSet(Flags.Flag.FLAGGED));
+        assertTrue(folder.getMessage(MAILBOX_SIZE - 1).isSet(Flags.Flag.FLAGGED));
+        folder.close(false);
+    }
+
+    @Test
+    public void setsAndClearsInOneResult() throws Exception {
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_WRITE);
+        long firstUid = folder.getUID(folder.getMessage(1));
+        UidSet uids = UidSet.parse(Arrays.asList(firstUid + ":" + (firstUid + 9), (double) (firstUid + 1000)));
+
+        BatchResult result = FlagUpdater.store(folder, uids, new Flags(Flags.Flag.FLAGGED), new Flags(Flags.Flag.SEEN));
+
+        assertEquals(10, result.succeeded);
+        assertEquals(1, result.failedUids.size());
+        assertTrue(folder.getMessage(10).isSet(Flags.Flag.FLAGGED));
+        folder.close(false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesToListOpenRanges() {
+        UidSet.parse(Collections.singletonList("1:*")).toArray();
+    }
+}
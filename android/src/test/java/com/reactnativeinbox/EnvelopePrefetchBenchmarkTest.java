@@ -0,0 +1,93 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.internet.MimeMessage;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the IMAP FETCH commands needed to read one page of envelopes from a
+ * local GreenMail server, with and without the prefetch stage.
+ */
+public class EnvelopePrefetchBenchmarkTest {
+    private static final int MAILBOX_SIZE = 250;
+    private static final int PAGE_SIZE = 200;
+
+    private ImapTestServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("bench");
+        for (int i = 0; i < MAILBOX_SIZE; i++) {
+            MimeMessage message = server.message(i);
+            message.setRecipients(Message.RecipientType.CC, "cc" + i + "@example.com");
+            message.setSentDate(new Date());
+            server.deliver(message);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void prefetchReadsPageInSingleFetch() throws Exception {
+        int lazyFetches = countFetchesForPage(false);
+        int prefetchedFetches = countFetchesForPage(true);
+
+        assertEquals(1, prefetchedFetches);
+        assertTrue(lazyFetches >= PAGE_SIZE);
+    }
+
+    private int countFetchesForPage(boolean prefetch) throws Exception {
+        ImapTestServer.CommandCounter counter = new ImapTestServer.CommandCounter();
+        IMAPStore store = server.countingStore(counter);
+        try {
+            IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+            folder.open(Folder.READ_ONLY);
+
+            Message[] messages = folder.getMessages();
+            Message[] page = Arrays.copyOfRange(messages, messages.length - PAGE_SIZE, messages.length);
+
+            counter.reset();
+            if (prefetch) {
+                MessagePrefetcher.prefetch(folder, page);
+            }
+            for (Message message : page) {
+                readEnvelopeFields(folder, message);
+            }
+            int fetches = counter.commands("FETCH");
+
+            folder.close(false);
+            return fetches;
+        } finally {
+            store.close();
+        }
+    }
+
+    // Mirrors the getters MessageLoader reads a MessageRecord's envelope with;
+    // MessageLoader.load itself always prefetches
+    private static void readEnvelopeFields(IMAPFolder folder, Message message) throws Exception {
+        message.getSubject();
+        message.getFrom();
+        message.getRecipients(Message.RecipientType.TO);
+        message.getRecipients(Message.RecipientType.CC);
+        message.getRecipients(Message.RecipientType.BCC);
+        message.getSentDate();
+        ((MimeMessage) message).getMessageID();
+        folder.getUID(message);
+        message.getFlags();
+    }
+}
@@ -0,0 +1,239 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+import javax.mail.Session;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the UID/FLAGS fallback of syncFolder, which is the path servers
+ * without CONDSTORE take: flag changes made elsewhere are reported even
+ * though the folder stayed open, and known UIDs that are gone are reported as
+ * vanished. A scripted CONDSTORE server checks that a delta sync on a folder
+ * kept open hands back a HIGHESTMODSEQ past the changes it reported.
+ */
+public class FolderSyncTest {
+    private static final int MAILBOX_SIZE = 20;
+
+    private ImapTestServer server;
+    private IMAPStore store;
+    private FolderCache folders;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("sync");
+        server.deliver(MAILBOX_SIZE);
+        store = server.store();
+        folders = new FolderCache(store, FolderCache.DEFAULT_SIZE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        folders.closeAll();
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void reportsChangedFlagsAndVanishedUids() throws Exception {
+        FolderSync.Result baseline = FolderSync.sync(folders, "INBOX", Folder.READ_ONLY, -1, -1, new long[0]);
+        assertEquals(FolderSync.MODE_FULL, baseline.mode);
+        assertEquals(MAILBOX_SIZE, baseline.changed.size());
+        assertEquals(-1, baseline.highestModSeq);
+        long[] known = new long[MAILBOX_SIZE];
+        int i = 0;
+        for (long uid : baseline.changed.keySet()) {
+            assertEquals(0, (int) baseline.changed.get(uid));
+            known[i++] = uid;
+        }
+
+        // Another client reads one message and deletes another
+        IMAPFolder other = (IMAPFolder) store.getFolder("INBOX");
+        other.open(Folder.READ_WRITE);
+        other.getMessageByUID(known[2]).setFlag(Flags.Flag.SEEN, true);
+        other.getMessageByUID(known[4]).setFlag(Flags.Flag.DELETED, true);
+        other.expunge();
+        other.close(false);
+
+        FolderSync.Result delta = FolderSync.sync(folders, "INBOX", Folder.READ_ONLY, baseline.uidValidity, -1, known);
+        assertFalse(delta.reset);
+        assertEquals(Collections.singletonList(known[4]), delta.vanished);
+        assertEquals(MessageRecord.SEEN, (int) delta.changed.get(known[2]));
+        assertEquals(0, (int) delta.changed.get(known[3]));
+        assertEquals(MAILBOX_SIZE - 1, delta.changed.size());
+    }
+
+    @Test
+    public void reportsResetOnUidValidityChange() throws Exception {
+        IMAPFolder folder = folders.open("INBOX", Folder.READ_ONLY);
+        long uidValidity = folder.getUIDValidity();
+
+        FolderSync.Result result = FolderSync.sync(folders, "INBOX", Folder.READ_ONLY, uidValidity + 1, 5, new long[]{1, 2});
+        assertTrue(result.reset);
+        assertEquals(uidValidity, result.uidValidity);
+        assertTrue(result.changed.isEmpty());
+        assertTrue(result.vanished.isEmpty());
+    }
+
+    @Test
+    public void condstoreDeltaMovesHighestModSeqPastReportedChanges() throws Exception {
+        try (CondstoreServer condstore = new CondstoreServer()) {
+            IMAPStore condstoreStore = (IMAPStore) Session.getInstance(new Properties()).getStore("imap");
+            condstoreStore.connect("localhost", condstore.port(), "sync", "secret");
+            FolderCache cache = new FolderCache(condstoreStore, FolderCache.DEFAULT_SIZE);
+            try {
+                FolderSync.Result baseline = FolderSync.sync(cache, "INBOX", Folder.READ_ONLY, -1, -1, new long[0]);
+                assertEquals(FolderSync.MODE_FULL, baseline.mode);
+                assertEquals(CondstoreServer.MODSEQ, baseline.highestModSeq);
+
+                condstore.markSeen(2);
+                FolderSync.Result delta = FolderSync.sync(cache, "INBOX", Folder.READ_ONLY,
+                    baseline.uidValidity, baseline.highestModSeq, new long[0]);
+                assertEquals(FolderSync.MODE_CONDSTORE, delta.mode);
+                assertEquals(Collections.singletonMap(2L, MessageRecord.SEEN), delta.changed);
+
+                // The folder stayed open, so no SELECT reported the new
+                // HIGHESTMODSEQ; the change must not come back
+                FolderSync.Result again = FolderSync.sync(cache, "INBOX", Folder.READ_ONLY,
+                    delta.uidValidity, delta.highestModSeq, new long[0]);
+                assertTrue(again.changed.isEmpty());
+                assertEquals(1, condstore.selects);
+            } finally {
+                cache.closeAll();
+                condstoreStore.close();
+            }
+        }
+    }
+
+    /**
+     * Just enough of a CONDSTORE server for FolderSync: two messages, ENABLE,
+     * EXAMINE, FETCH with MODSEQ and UID FETCH with CHANGEDSINCE.
+     */
+    private static final class CondstoreServer implements AutoCloseable {
+        static final long MODSEQ = 10;
+        private static final Pattern COMMAND = Pattern.compile("(\\S+) (?:UID )?(\\S+)(.*)");
+        private static final Pattern CHANGED_SINCE = Pattern.compile("CHANGEDSINCE (\\d+)");
+
+        private final ServerSocket socket = new ServerSocket(0);
+        private final long[] modSeqs = {MODSEQ - 1, MODSEQ};
+        private final boolean[] seen = new boolean[2];
+        private long highestModSeq = MODSEQ;
+        volatile int selects;
+
+        CondstoreServer() throws IOException {
+            Thread acceptor = new Thread(this::accept, "condstore-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        synchronized void markSeen(int uid) {
+            seen[uid - 1] = true;
+            modSeqs[uid - 1] = ++highestModSeq;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        private void accept() {
+            try {
+                while (true) {
+                    Socket client = socket.accept();
+                    Thread session = new Thread(() -> serve(client), "condstore-session");
+                    session.setDaemon(true);
+                    session.start();
+                }
+            } catch (IOException closed) {
+                // close() ends the test's server
+            }
+        }
+
+        private void serve(Socket client) {
+            try (Socket open = client;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(open.getInputStream(), StandardCharsets.US_ASCII));
+                 PrintWriter out = new PrintWriter(open.getOutputStream(), true)) {
+                out.print("* OK [CAPABILITY IMAP4rev1 ENABLE CONDSTORE] ready\r\n");
+                out.flush();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    Matcher command = COMMAND.matcher(line);
+                    if (!command.matches()) {
+                        continue;
+                    }
+                    String tag = command.group(1);
+                    String verb = command.group(2).toUpperCase();
+                    String reply = respond(verb, command.group(3));
+                    out.print(reply + tag + " OK done\r\n");
+                    out.flush();
+                    if ("LOGOUT".equals(verb)) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // The client hung up
+            }
+        }
+
+        private synchronized String respond(String verb, String arguments) {
+            StringBuilder reply = new StringBuilder();
+            switch (verb) {
+                case "CAPABILITY":
+                    reply.append("* CAPABILITY IMAP4rev1 ENABLE CONDSTORE\r\n");
+                    break;
+                case "ENABLE":
+                    reply.append("* ENABLED CONDSTORE\r\n");
+                    break;
+                case "SELECT":
+                case "EXAMINE":
+                    selects++;
+                    reply.append("* FLAGS (\\Seen)\r\n* 2 EXISTS\r\n* 0 RECENT\r\n")
+                        .append("* OK [UIDVALIDITY 7] ok\r\n* OK [UIDNEXT 3] ok\r\n")
+                        .append("* OK [HIGHESTMODSEQ ").append(highestModSeq).append("] ok\r\n");
+                    break;
+                case "FETCH":
+                    Matcher since = CHANGED_SINCE.matcher(arguments);
+                    long changedSince = since.find() ? Long.parseLong(since.group(1)) : -1;
+                    for (int i = 0; i < modSeqs.length; i++) {
+                        if (modSeqs[i] > changedSince) {
+                            reply.append("* ").append(i + 1).append(" FETCH (UID ").append(i + 1)
+                                .append(" FLAGS (").append(seen[i] ? "\\Seen" : "").append(") MODSEQ (")
+                                .append(modSeqs[i]).append("))\r\n");
+                        }
+                    }
+                    break;
+                case "LOGOUT":
+                    reply.append("* BYE\r\n");
+                    break;
+                default:
+                    break;
+            }
+            return reply.toString();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that nested folders come back with their parents and pipelined
+ * STATUS counts, and that cached counts change only once invalidated or
+ * expired.
+ */
+public class FolderTreeTest {
+    private ImapTestServer server;
+    private IMAPStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("tree");
+        store = server.store();
+
+        char delimiter = store.getDefaultFolder().getSeparator();
+        store.getFolder("Work").create(Folder.HOLDS_FOLDERS | Folder.HOLDS_MESSAGES);
+        store.getFolder("Work" + delimiter + "Projects").create(Folder.HOLDS_MESSAGES);
+        server.deliver(3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void listsNestedFoldersWithCounts() throws Exception {
+        List<FolderTree.Entry> entries = new FolderTree(store).get(true, FolderTree.DEFAULT_MAX_AGE_MS);
+        assertEquals("INBOX", entries.get(0).path);
+        assertEquals(3, entries.get(0).messages);
+        assertEquals(3, entries.get(0).unseen);
+        assertTrue(entries.get(0).uidNext > 0);
+
+        FolderTree.Entry projects = find(entries, "Projects");
+        assertEquals("Work", projects.parent());
+        assertEquals(0, projects.messages);
+        assertTrue(entries.indexOf(find(entries, "Work")) < entries.indexOf(projects));
+    }
+
+    @Test
+    public void leavesCountsOutUnlessAsked() throws Exception {
+        List<FolderTree.Entry> entries = new FolderTree(store).get(false, FolderTree.DEFAULT_MAX_AGE_MS);
+        assertEquals(-1, entries.get(0).messages);
+        assertNull(entries.get(0).specialUse);
+    }
+
+    @Test
+    public void refreshesInvalidatedFolders() throws Exception {
+        FolderTree tree = new FolderTree(store);
+        tree.get(true, FolderTree.DEFAULT_MAX_AGE_MS);
+
+        Folder inbox = store.getFolder("INBOX");
+        inbox.open(Folder.READ_WRITE);
+        inbox.getMessage(1).setFlag(Flags.Flag.SEEN, true);
+        inbox.close(false);
+
+        // Still cached
+        assertEquals(3, tree.get(true, FolderTree.DEFAULT_MAX_AGE_MS).get(0).unseen);
+        tree.invalidate("INBOX");
+        assertEquals(2, tree.get(true, FolderTree.DEFAULT_MAX_AGE_MS).get(0).unseen);
+
+        store.getFolder("Later").create(Folder.HOLDS_MESSAGES);
+        assertFalse(hasPath(tree.get(true, FolderTree.DEFAULT_MAX_AGE_MS), "Later"));
+        assertTrue(hasPath(tree.get(true, 0), "Later"));
+    }
+
+    private static FolderTree.Entry find(List<FolderTree.Entry> entries, String name) {
+        for (FolderTree.Entry entry : entries) {
+            if (entry.name().equals(name)) {
+                return entry;
+            }
+        }
+        throw new AssertionError("No folder " + name);
+    }
+
+    private static boolean hasPath(List<FolderTree.Entry> entries, String path) {
+        for (FolderTree.Entry entry : entries) {
+            if (entry.path.equals(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
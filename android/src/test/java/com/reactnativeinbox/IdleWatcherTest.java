@@ -0,0 +1,122 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that a watched folder reports new, re-flagged and expunged messages
+ * by UID, and that re-issuing IDLE loses none of them. GreenMail sends only
+ * EXISTS during IDLE and holds other updates for the next command, so the
+ * flag and expunge checks rely on the re-issue NOOP.
+ */
+public class IdleWatcherTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private ImapTestServer server;
+    private IMAPStore store;
+    private IdleWatcher watcher;
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("idle");
+        server.deliver(1);
+        store = server.store();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void reportsNewMessagesWhileIdle() throws Exception {
+        watch(IdleWatcher.DEFAULT_POLL_INTERVAL_MS, IdleWatcher.IDLE_REISSUE_MS);
+        server.deliver(server.message(1));
+        String added = events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        IMAPFolder other = (IMAPFolder) store.getFolder("INBOX");
+        other.open(Folder.READ_ONLY);
+        assertEquals(IdleWatcher.EVENT_NEW_MESSAGES + " " + Collections.singletonList(other.getUIDNext() - 1), added);
+        other.close(false);
+    }
+
+    @Test
+    public void reissuedIdleKeepsReporting() throws Exception {
+        // Re-issuing IDLE every 100ms must not lose the updates in between
+        watch(IdleWatcher.DEFAULT_POLL_INTERVAL_MS, 100);
+        Thread.sleep(500);
+
+        server.deliver(server.message(1));
+        String added = events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(added);
+        IMAPFolder other = (IMAPFolder) store.getFolder("INBOX");
+        other.open(Folder.READ_WRITE);
+        long firstUid = other.getUID(other.getMessage(1));
+        assertEquals(IdleWatcher.EVENT_NEW_MESSAGES + " " + Collections.singletonList(other.getUIDNext() - 1), added);
+
+        other.getMessage(1).setFlag(Flags.Flag.SEEN, true);
+        assertEquals(IdleWatcher.EVENT_FLAGS_CHANGED + " " + Collections.singletonList(firstUid),
+            events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        other.getMessage(1).setFlag(Flags.Flag.DELETED, true);
+        other.expunge();
+        assertEquals(IdleWatcher.EVENT_EXPUNGED + " " + Collections.singletonList(firstUid), nextExpunge());
+        other.close(false);
+    }
+
+    @Test
+    public void namesMessagesExpungedBeforeTheWatcherSawThem() throws Exception {
+        server.deliver(server.message(1));
+        server.deliver(server.message(2));
+        watch(IdleWatcher.DEFAULT_POLL_INTERVAL_MS, 100);
+
+        IMAPFolder other = (IMAPFolder) store.getFolder("INBOX");
+        other.open(Folder.READ_WRITE);
+        long firstUid = other.getUID(other.getMessage(1));
+        long secondUid = other.getUID(other.getMessage(2));
+        other.getMessage(1).setFlag(Flags.Flag.DELETED, true);
+        other.expunge();
+        assertEquals(IdleWatcher.EVENT_EXPUNGED + " " + Collections.singletonList(firstUid), nextExpunge());
+
+        // The second message is now number 1
+        other.getMessage(1).setFlag(Flags.Flag.DELETED, true);
+        other.expunge();
+        assertEquals(IdleWatcher.EVENT_EXPUNGED + " " + Collections.singletonList(secondUid), nextExpunge());
+        other.close(false);
+    }
+
+    // The \Deleted flag change is reported before the expunge
+    private String nextExpunge() throws InterruptedException {
+        String event;
+        do {
+            event = events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } while (event != null && !event.startsWith(IdleWatcher.EVENT_EXPUNGED));
+        return event;
+    }
+
+    private void watch(long pollIntervalMs, long reissueMs) throws Exception {
+        watcher = new IdleWatcher(store, "INBOX", pollIntervalMs, reissueMs,
+            (event, folder, uids, resync) -> events.add(event + " " + uids + (resync ? " resync" : "")));
+        watcher.start();
+        // Let the watcher open the folder before anything changes
+        Thread.sleep(500);
+    }
+}
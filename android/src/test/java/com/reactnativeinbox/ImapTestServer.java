@@ -0,0 +1,158 @@
+package com.reactnativeinbox;
+
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.sun.mail.imap.IMAPStore;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.URLName;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local GreenMail server with one user for the tests to deliver to and
+ * connect as. countingStore connects with JavaMail's protocol trace going to
+ * a CommandCounter, so a test can check how many commands a call costs.
+ */
+final class ImapTestServer {
+    static final String PASSWORD = "secret";
+
+    final GreenMail greenMail;
+    final GreenMailUser user;
+    final String login;
+    final String address;
+    final Session session = Session.getInstance(new Properties());
+    private final ServerSetup setup;
+
+    ImapTestServer(String login) {
+        this(login, ServerSetupTest.IMAP);
+    }
+
+    ImapTestServer(String login, ServerSetup setup) {
+        this.login = login;
+        this.address = login + "@localhost";
+        this.setup = setup;
+        greenMail = new GreenMail(setup);
+        greenMail.start();
+        user = greenMail.setUser(address, login, PASSWORD);
+    }
+
+    int port() {
+        return setup.getPort();
+    }
+
+    URLName url() {
+        return new URLName("imap", "localhost", port(), null, null, null);
+    }
+
+    /**
+     * Message i of a numbered mailbox: "Message i" from senderi@example.com
+     * with the text "Body i". Not yet delivered, so a test can change it.
+     */
+    MimeMessage message(int i) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("sender" + i + "@example.com"));
+        message.setRecipients(Message.RecipientType.TO, address);
+        message.setSubject("Message " + i);
+        message.setText("Body " + i);
+        return message;
+    }
+
+    void deliver(MimeMessage message) {
+        user.deliver(message);
+    }
+
+    // Messages first to first + count - 1
+    void deliver(int first, int count) throws MessagingException {
+        for (int i = first; i < first + count; i++) {
+            deliver(message(i));
+        }
+    }
+
+    void deliver(int count) throws MessagingException {
+        deliver(0, count);
+    }
+
+    IMAPStore store() throws MessagingException {
+        return store(new Properties());
+    }
+
+    IMAPStore store(Properties props) throws MessagingException {
+        IMAPStore store = (IMAPStore) Session.getInstance(props).getStore("imap");
+        store.connect("localhost", port(), login, PASSWORD);
+        return store;
+    }
+
+    IMAPStore countingStore(CommandCounter counter) throws MessagingException {
+        Session traced = Session.getInstance(new Properties());
+        traced.setDebugOut(new PrintStream(counter, true));
+        traced.setDebug(true);
+        IMAPStore store = (IMAPStore) traced.getStore("imap");
+        store.connect("localhost", port(), login, PASSWORD);
+        return store;
+    }
+
+    void stop() {
+        greenMail.stop();
+    }
+
+    /**
+     * Counts the commands in a protocol trace by name, "UID FETCH" counting
+     * as FETCH, and the FETCH responses that carry an ENVELOPE.
+     */
+    static final class CommandCounter extends OutputStream {
+        private static final Pattern COMMAND = Pattern.compile("^[A-Z]+\\d+ (?!OK |NO |BAD )(?:UID )?([A-Z]+).*");
+        private static final Pattern ENVELOPE_RESPONSE = Pattern.compile("^\\* \\d+ FETCH .*ENVELOPE.*");
+
+        private final StringBuilder line = new StringBuilder();
+        private final Map<String, Integer> counts = new HashMap<>();
+        private int commands;
+        private int envelopes;
+
+        void reset() {
+            counts.clear();
+            commands = 0;
+            envelopes = 0;
+        }
+
+        int commands() {
+            return commands;
+        }
+
+        int commands(String name) {
+            Integer count = counts.get(name);
+            return count != null ? count : 0;
+        }
+
+        int envelopes() {
+            return envelopes;
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                Matcher command = COMMAND.matcher(line);
+                if (command.matches()) {
+                    commands++;
+                    counts.merge(command.group(1), 1, Integer::sum);
+                } else if (ENVELOPE_RESPONSE.matcher(line).matches()) {
+                    envelopes++;
+                }
+                line.setLength(0);
+            } else if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+    }
+}
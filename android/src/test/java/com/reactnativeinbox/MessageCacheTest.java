@@ -0,0 +1,144 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.Folder;
+import javax.mail.Message;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a cached page is refreshed with a UID/FLAGS-only FETCH, that
+ * only new messages have their envelopes fetched, that the cache survives
+ * a restart, is only rewritten when it has changed, and reads a corrupt file
+ * as empty.
+ */
+public class MessageCacheTest {
+    private static final int MAILBOX_SIZE = 100;
+    private static final int PAGE_SIZE = 50;
+    private static final String ACCOUNT = "cache@localhost";
+
+    @Rule
+    public TemporaryFolder cacheDir = new TemporaryFolder();
+
+    private ImapTestServer server;
+    private IMAPStore store;
+    private ImapTestServer.CommandCounter counter;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("cache");
+        server.deliver(MAILBOX_SIZE);
+        counter = new ImapTestServer.CommandCounter();
+        store = server.countingStore(counter);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void refreshFetchesOnlyNewEnvelopes() throws Exception {
+        MessageStore messageStore = new MessageStore(cacheDir.getRoot());
+        MessageStore.FolderSnapshot snapshot = messageStore.get(ACCOUNT, "INBOX");
+
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_ONLY);
+        List<MessageRecord> first = CacheSync.resolve(folder, snapshot, UidPager.pageBefore(folder, 0, PAGE_SIZE),
+            true, MessageRecord.BODY_PREVIEW, BodyFetcher.DEFAULT_PREVIEW_BYTES, null);
+        messageStore.save(ACCOUNT, "INBOX");
+        assertEquals(PAGE_SIZE, first.size());
+        assertEquals("Message " + (MAILBOX_SIZE - 1), first.get(PAGE_SIZE - 1).subject);
+        folder.close(false);
+
+        server.deliver(MAILBOX_SIZE, 3);
+
+        folder.open(Folder.READ_ONLY);
+        counter.reset();
+        List<MessageRecord> refreshed = CacheSync.resolve(folder, snapshot, UidPager.pageBefore(folder, 0, PAGE_SIZE),
+            true, MessageRecord.BODY_PREVIEW, BodyFetcher.DEFAULT_PREVIEW_BYTES, null);
+        assertEquals(3, counter.envelopes());
+        assertEquals("Message " + (MAILBOX_SIZE + 2), refreshed.get(PAGE_SIZE - 1).subject);
+        assertEquals("Body " + (MAILBOX_SIZE + 2), refreshed.get(PAGE_SIZE - 1).preview);
+
+        counter.reset();
+        CacheSync.resolve(folder, snapshot, UidPager.pageBefore(folder, 0, PAGE_SIZE),
+            true, MessageRecord.BODY_PREVIEW, BodyFetcher.DEFAULT_PREVIEW_BYTES, null);
+        assertEquals(0, counter.envelopes());
+        assertTrue(counter.commands("FETCH") <= 1);
+        folder.close(false);
+    }
+
+    @Test
+    public void survivesRestartAndDropsOnUidValidityChange() throws Exception {
+        MessageStore messageStore = new MessageStore(cacheDir.getRoot());
+        MessageStore.FolderSnapshot snapshot = messageStore.get(ACCOUNT, "INBOX");
+
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_ONLY);
+        Message[] page = UidPager.pageBefore(folder, 0, PAGE_SIZE);
+        CacheSync.resolve(folder, snapshot, page, true, MessageRecord.BODY_FULL, 0, null);
+        messageStore.save(ACCOUNT, "INBOX");
+        long uidValidity = folder.getUIDValidity();
+        folder.close(false);
+
+        MessageStore.FolderSnapshot restored = new MessageStore(cacheDir.getRoot()).get(ACCOUNT, "INBOX");
+        List<MessageRecord> cached = restored.newest(PAGE_SIZE);
+        assertEquals(PAGE_SIZE, cached.size());
+        assertEquals("Body " + (MAILBOX_SIZE - 1), cached.get(PAGE_SIZE - 1).body);
+        assertEquals(MessageRecord.BODY_FULL, cached.get(0).bodyLevel);
+
+        restored.validate(uidValidity + 1);
+        assertTrue(restored.records.isEmpty());
+    }
+
+    @Test
+    public void writesOnlyChangesAndRejectsCorruptCounts() throws Exception {
+        MessageStore messageStore = new MessageStore(cacheDir.getRoot());
+        MessageStore.FolderSnapshot snapshot = messageStore.get(ACCOUNT, "INBOX");
+
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_ONLY);
+        CacheSync.resolve(folder, snapshot, UidPager.pageBefore(folder, 0, PAGE_SIZE),
+            true, MessageRecord.BODY_NONE, 0, null);
+        messageStore.save(ACCOUNT, "INBOX");
+        File file = cacheDir.getRoot().listFiles()[0];
+        byte[] saved = Files.readAllBytes(file.toPath());
+
+        // An unchanged listing leaves the file alone
+        assertTrue(file.delete());
+        CacheSync.resolve(folder, snapshot, UidPager.pageBefore(folder, 0, PAGE_SIZE),
+            true, MessageRecord.BODY_NONE, 0, null);
+        messageStore.save(ACCOUNT, "INBOX");
+        assertFalse(file.exists());
+        folder.close(false);
+
+        // Version, UIDVALIDITY, UIDNEXT and HIGHESTMODSEQ come before the
+        // record count, then the first record's UID and subject length
+        int countOffset = 4 + 8 + 8 + 8;
+        int subjectOffset = countOffset + 4 + 8;
+        for (int offset : new int[]{countOffset, subjectOffset}) {
+            byte[] corrupt = saved.clone();
+            ByteBuffer.wrap(corrupt).putInt(offset, Integer.MAX_VALUE);
+            Files.write(file.toPath(), corrupt);
+            MessageStore.FolderSnapshot restored = new MessageStore(cacheDir.getRoot()).get(ACCOUNT, "INBOX");
+            assertTrue(restored.records.isEmpty());
+            assertEquals(-1, restored.uidValidity);
+        }
+    }
+}
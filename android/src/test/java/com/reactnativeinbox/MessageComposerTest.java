@@ -0,0 +1,112 @@
+package com.reactnativeinbox;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that file attachments are sent over SMTP intact, with the caller's
+ * name and type and an explicit base64 encoding.
+ */
+public class MessageComposerTest {
+    private static final int ATTACHMENT_SIZE = 4 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    private GreenMail greenMail;
+    private Session session;
+
+    @Before
+    public void setUp() {
+        greenMail = new GreenMail(ServerSetupTest.SMTP);
+        greenMail.start();
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", String.valueOf(ServerSetupTest.SMTP.getPort()));
+        session = Session.getInstance(props);
+    }
+
+    @After
+    public void tearDown() {
+        greenMail.stop();
+    }
+
+    @Test
+    public void sendsFileAttachment() throws Exception {
+        byte[] content = new byte[ATTACHMENT_SIZE];
+        new Random(7).nextBytes(content);
+        File file = files.newFile("scan.bin");
+        Files.write(file.toPath(), content);
+
+        MimeBodyPart attachment = MessageComposer.fileAttachment(file, "scan.pdf", "application/pdf");
+        MimeMessage message = MessageComposer.compose(session, "sender@localhost",
+            new String[]{"to@localhost"}, null, null, "Scan", "Attached", false,
+            Collections.singletonList(attachment));
+        Transport.send(message);
+
+        assertTrue(greenMail.waitForIncomingEmail(5000, 1));
+        MimeMessage received = greenMail.getReceivedMessages()[0];
+        MimeMultipart multipart = (MimeMultipart) received.getContent();
+        assertEquals(2, multipart.getCount());
+        assertEquals("Attached", multipart.getBodyPart(0).getContent());
+
+        MimeBodyPart part = (MimeBodyPart) multipart.getBodyPart(1);
+        assertEquals("scan.pdf", part.getFileName());
+        assertTrue(part.getContentType().startsWith("application/pdf"));
+        assertEquals("base64", part.getEncoding());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = part.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        assertArrayEquals(content, out.toByteArray());
+    }
+
+    @Test
+    public void defaultsNameAndTypeFromFile() throws Exception {
+        File file = files.newFile("notes.unknownext");
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+
+        MimeBodyPart part = MessageComposer.fileAttachment(file, null, null);
+        assertEquals("notes.unknownext", part.getFileName());
+        assertEquals("application/octet-stream", part.getDataHandler().getContentType());
+    }
+
+    @Test
+    public void rejectsMissingFile() {
+        try {
+            MessageComposer.fileAttachment(new File(files.getRoot(), "gone.pdf"), null, null);
+            fail("Expected a missing file to be rejected");
+        } catch (MessagingException e) {
+            assertTrue(e.getMessage().contains("gone.pdf"));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.activation.DataHandler;
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.util.ByteArrayDataSource;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a body split into several inline text or HTML parts around an
+ * inline image is read whole, its parts joined in order, and not just its
+ * first part.
+ */
+public class MessageLoaderTest {
+    private ImapTestServer server;
+    private IMAPStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("loader");
+        MimeMessage message = server.message(0);
+        message.setSubject("Photo");
+        MimeBodyPart before = new MimeBodyPart();
+        before.setText("Before the photo.\n");
+        MimeBodyPart image = new MimeBodyPart();
+        image.setDataHandler(new DataHandler(new ByteArrayDataSource(new byte[]{1, 2, 3}, "image/png")));
+        image.setDisposition(MimeBodyPart.INLINE);
+        MimeBodyPart after = new MimeBodyPart();
+        after.setText("After the photo.\n");
+        message.setContent(new MimeMultipart(before, image, after));
+        message.saveChanges();
+        server.deliver(message);
+        store = server.store();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void joinsEveryInlineTextPart() throws Exception {
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_ONLY);
+
+        List<MessageRecord> full = MessageLoader.load(folder, folder.getMessages(), MessageRecord.BODY_FULL, 0, null);
+        List<MessageRecord> preview = MessageLoader.load(folder, folder.getMessages(), MessageRecord.BODY_PREVIEW,
+            BodyFetcher.DEFAULT_PREVIEW_BYTES, null);
+
+        assertEquals("Before the photo.\nAfter the photo.", full.get(0).body.replace("\r\n", "\n").trim());
+        assertFalse(full.get(0).isHtml);
+        assertEquals(1, full.get(0).attachments.size());
+        assertEquals("Before the photo. After the photo.", preview.get(0).preview);
+        folder.close(false);
+    }
+
+    @Test
+    public void joinsEveryInlineHtmlPartWithoutPlainText() throws Exception {
+        MimeMessage message = server.message(1);
+        MimeBodyPart before = new MimeBodyPart();
+        before.setText("<p>Before</p>", "utf-8", "html");
+        MimeBodyPart image = new MimeBodyPart();
+        image.setDataHandler(new DataHandler(new ByteArrayDataSource(new byte[]{1, 2, 3}, "image/png")));
+        image.setDisposition(MimeBodyPart.INLINE);
+        MimeBodyPart after = new MimeBodyPart();
+        after.setText("<p>After</p>", "utf-8", "html");
+        message.setContent(new MimeMultipart(before, image, after));
+        message.saveChanges();
+        server.deliver(message);
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_ONLY);
+
+        List<MessageRecord> full = MessageLoader.load(folder, new Message[]{folder.getMessage(2)},
+            MessageRecord.BODY_FULL, 0, null);
+
+        assertEquals("<p>Before</p><p>After</p>", full.get(0).body.replaceAll("\\s", ""));
+        assertTrue(full.get(0).isHtml);
+        folder.close(false);
+    }
+}
@@ -0,0 +1,83 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that batched moves and deletes cost a constant number of IMAP
+ * commands, and that a delete expunges only the batch.
+ */
+public class MessageMoverTest {
+    private static final int MAILBOX_SIZE = 100;
+
+    private ImapTestServer server;
+    private IMAPStore store;
+    private ImapTestServer.CommandCounter counter;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("mover");
+        server.deliver(MAILBOX_SIZE);
+        counter = new ImapTestServer.CommandCounter();
+        store = server.countingStore(counter);
+        store.getFolder("Archive").create(Folder.HOLDS_MESSAGES);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void movesBatchWithConstantCommands() throws Exception {
+        IMAPFolder inbox = (IMAPFolder) store.getFolder("INBOX");
+        inbox.open(Folder.READ_WRITE);
+        UidSet uids = uidRange(inbox, 1, 60);
+
+        counter.reset();
+        BatchResult result = MessageMover.move(inbox, store.getFolder("Archive"), uids);
+        int commands = counter.commands();
+
+        assertEquals(60, result.succeeded);
+        assertTrue(commands <= 2);
+        inbox.close(false);
+        assertEquals(MAILBOX_SIZE - 60, inbox.getMessageCount());
+        assertEquals(60, store.getFolder("Archive").getMessageCount());
+    }
+
+    @Test
+    public void deleteExpungesOnlyTheBatch() throws Exception {
+        IMAPFolder inbox = (IMAPFolder) store.getFolder("INBOX");
+        inbox.open(Folder.READ_WRITE);
+        inbox.getMessage(MAILBOX_SIZE).setFlag(Flags.Flag.DELETED, true);
+        UidSet uids = uidRange(inbox, 1, 10);
+
+        BatchResult result = new BatchResult();
+        boolean expunged = MessageMover.delete(inbox, uids, result);
+
+        assertTrue(expunged);
+        assertEquals(10, result.succeeded);
+        assertEquals(MAILBOX_SIZE - 10, inbox.getMessageCount());
+        assertTrue(inbox.getMessage(MAILBOX_SIZE - 10).isSet(Flags.Flag.DELETED));
+        inbox.close(false);
+    }
+
+    private static UidSet uidRange(IMAPFolder folder, int start, int end) throws Exception {
+        long[] uids = new long[end - start + 1];
+        for (int i = start; i <= end; i++) {
+            uids[i - start] = folder.getUID(folder.getMessage(i));
+        }
+        return UidSet.of(uids);
+    }
+}
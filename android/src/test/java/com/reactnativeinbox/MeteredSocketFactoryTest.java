@@ -0,0 +1,84 @@
+package com.reactnativeinbox;
+
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Folder;
+import javax.mail.Store;
+import javax.mail.internet.MimeMessage;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that sockets from the factory carry IMAP over TLS and count the
+ * bytes read and written.
+ */
+public class MeteredSocketFactoryTest {
+    private ImapTestServer server;
+
+    @Before
+    public void setUp() {
+        server = new ImapTestServer("metered", ServerSetupTest.IMAPS);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void countsBytesOverTls() throws Exception {
+        char[] body = new char[50000];
+        Arrays.fill(body, 'x');
+        MimeMessage message = server.message(0);
+        message.setSubject("Large");
+        message.setText(new String(body));
+        server.deliver(message);
+
+        SSLContext context = SSLContext.getInstance("TLSv1.2");
+        context.init(null, new TrustManager[]{new TrustAll()}, null);
+        MeteredSocketFactory factory = new MeteredSocketFactory(context.getSocketFactory(), 65536, 131072);
+
+        Properties props = new Properties();
+        props.put("mail.imap.ssl.enable", "true");
+        props.put("mail.imap.socketFactory", factory);
+        props.put("mail.imap.socketFactory.fallback", "false");
+        Store store = server.store(props);
+        Folder inbox = store.getFolder("INBOX");
+        inbox.open(Folder.READ_ONLY);
+        long beforeBody = factory.bytesRead();
+        assertEquals("Large", inbox.getMessage(1).getSubject());
+        assertTrue(((String) inbox.getMessage(1).getContent()).length() >= 50000);
+        inbox.close(false);
+        store.close();
+
+        assertTrue(factory.sockets() >= 1);
+        assertTrue(factory.bytesRead() - beforeBody >= 50000);
+        assertTrue(factory.bytesWritten() > 0);
+    }
+
+    private static final class TrustAll implements X509TrustManager {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.reactnativeinbox;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Folder;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the histogram percentiles, that command lines are counted under
+ * their command name, and that a MeteredStore times the commands it sends.
+ */
+public class MetricsTest {
+    private ImapTestServer server;
+
+    @Before
+    public void setUp() {
+        server = new ImapTestServer("metrics");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void reportsBucketBoundsAsPercentiles() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1_000_000, false);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(100_000_000, true);
+        }
+        assertEquals(100, histogram.count());
+        assertEquals(10, histogram.errors());
+        assertEquals(10.9, histogram.meanMs(), 0.001);
+        assertEquals(100.0, histogram.maxMs(), 0.001);
+        // 1 ms lands below 1.024 ms, 100 ms is capped at the longest call
+        assertEquals(1.024, histogram.percentileMs(0.5), 0.001);
+        assertEquals(1.024, histogram.percentileMs(0.9), 0.001);
+        assertEquals(100.0, histogram.percentileMs(0.99), 0.001);
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentileMs(0.5), 0);
+    }
+
+    @Test
+    public void countsCommandLinesUnderTheirName() {
+        assertEquals("UID FETCH", name("UID FETCH 1:5 (FLAGS)"));
+        assertEquals("UID FETCH", name("uid fetch 1 BODY.PEEK[]"));
+        assertEquals("FETCH", name("FETCH"));
+        assertEquals("COPY", name("COPY 1:2 Archive"));
+        assertEquals("STATUS", name("STATUS"));
+        assertEquals(Metrics.OTHER, name("XLIST"));
+        assertEquals(Metrics.OTHER, name("IDENTIFY"));
+        assertEquals(Metrics.OTHER, name(null));
+    }
+
+    @Test
+    public void timesCommandsSentByTheStore() throws Exception {
+        Metrics metrics = new Metrics();
+        MeteredStore store = new MeteredStore(server.session, server.url(), metrics);
+        store.connect("localhost", server.port(), server.login, ImapTestServer.PASSWORD);
+        Folder inbox = store.getFolder("INBOX");
+        inbox.open(Folder.READ_ONLY);
+        inbox.getMessageCount();
+        inbox.close(false);
+        try {
+            store.getFolder("Missing").open(Folder.READ_ONLY);
+        } catch (Exception expected) {
+            // Counted as a failed EXAMINE
+        }
+        store.close();
+
+        assertTrue(count(metrics, "LOGIN") >= 1);
+        assertTrue(count(metrics, "EXAMINE") >= 1);
+        assertTrue(metrics.command(index("EXAMINE")).errors() >= 1);
+        assertTrue(count(metrics, "NOOP") + count(metrics, "CLOSE") >= 1);
+    }
+
+    private static String name(String command) {
+        return Metrics.commandName(Metrics.commandIndex(command));
+    }
+
+    private static int index(String name) {
+        return Arrays.asList(Metrics.COMMANDS).indexOf(name);
+    }
+
+    private static long count(Metrics metrics, String name) {
+        return metrics.command(index(name)).count();
+    }
+}
@@ -0,0 +1,154 @@
+package com.reactnativeinbox;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the outbox sends queued messages in order over one connection,
+ * keeps them across a restart and retries while the server is unreachable.
+ */
+public class OutboxTest {
+    private static final String USER = "outbox@localhost";
+
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    private GreenMail greenMail;
+    private Session session;
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        greenMail = new GreenMail(ServerSetupTest.SMTP);
+        greenMail.start();
+        greenMail.setUser(USER, "outbox", "secret");
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", String.valueOf(ServerSetupTest.SMTP.getPort()));
+        props.put("mail.smtp.auth", "true");
+        session = Session.getInstance(props);
+    }
+
+    @After
+    public void tearDown() {
+        greenMail.stop();
+    }
+
+    @Test
+    public void sendsQueueInOrder() throws Exception {
+        Outbox outbox = newOutbox();
+        for (int i = 0; i < 20; i++) {
+            outbox.enqueue(message("Notification " + i));
+        }
+        outbox.start(session, "localhost", "outbox", "secret");
+
+        assertTrue(greenMail.waitForIncomingEmail(10000, 20));
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        for (int i = 0; i < 20; i++) {
+            assertEquals("Notification " + i, received[i].getSubject());
+        }
+        awaitStatus(Outbox.STATUS_SENT, 20);
+        outbox.stop();
+        assertTrue(outbox.entries().isEmpty());
+    }
+
+    @Test
+    public void keepsQueueAcrossRestart() throws Exception {
+        Outbox first = newOutbox();
+        String id = first.enqueue(message("Saved"));
+
+        Outbox second = newOutbox();
+        List<Outbox.Entry> entries = second.entries();
+        assertEquals(1, entries.size());
+        assertEquals(id, entries.get(0).id);
+
+        second.start(session, "localhost", "outbox", "secret");
+        assertTrue(greenMail.waitForIncomingEmail(5000, 1));
+        assertEquals("Saved", greenMail.getReceivedMessages()[0].getSubject());
+        second.stop();
+    }
+
+    @Test
+    public void retriesUntilServerIsBack() throws Exception {
+        greenMail.stop();
+        Outbox outbox = newOutbox();
+        outbox.enqueue(message("Eventually"));
+        outbox.start(session, "localhost", "outbox", "secret");
+
+        awaitStatus(Outbox.STATUS_RETRYING, 1);
+        greenMail = new GreenMail(ServerSetupTest.SMTP);
+        greenMail.start();
+        greenMail.setUser(USER, "outbox", "secret");
+
+        assertTrue(greenMail.waitForIncomingEmail(10000, 1));
+        awaitStatus(Outbox.STATUS_SENT, 1);
+        outbox.stop();
+        assertTrue(outbox.entries().isEmpty());
+    }
+
+    @Test
+    public void classifiesFailures() throws Exception {
+        InternetAddress address = new InternetAddress("nobody@example.com");
+        assertTrue(Outbox.isPermanent(new SMTPSendFailedException("DATA", 554, "rejected", null, null, null, null)));
+        assertFalse(Outbox.isPermanent(new SMTPSendFailedException("DATA", 451, "try later", null, null, null, null)));
+
+        SendFailedException badAddress = new SendFailedException("Invalid Addresses");
+        badAddress.setNextException(new SMTPAddressFailedException(address, "RCPT", 550, "no such user"));
+        assertTrue(Outbox.isPermanent(badAddress));
+
+        SendFailedException greylisted = new SendFailedException("Invalid Addresses");
+        greylisted.setNextException(new SMTPAddressFailedException(address, "RCPT", 450, "greylisted"));
+        assertFalse(Outbox.isPermanent(greylisted));
+
+        assertFalse(Outbox.isPermanent(new MessagingException("Can't send command to SMTP host")));
+    }
+
+    private Outbox newOutbox() {
+        return new Outbox(new File(files.getRoot(), "outbox"), (id, status, attempts, error) -> events.add(status));
+    }
+
+    private MimeMessage message(String subject) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("sender@localhost"));
+        message.setRecipients(MimeMessage.RecipientType.TO, USER);
+        message.setSubject(subject);
+        message.setText("Hello");
+        return message;
+    }
+
+    private void awaitStatus(String status, int count) throws InterruptedException {
+        int seen = 0;
+        while (seen < count) {
+            String next = events.poll(10, TimeUnit.SECONDS);
+            assertNotNull("Timed out waiting for " + status, next);
+            if (next.equals(status)) {
+                seen++;
+            }
+        }
+    }
+}
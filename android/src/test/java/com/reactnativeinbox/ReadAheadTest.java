@@ -0,0 +1,153 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that read-ahead fetches the newest unread emails of a listing
+ * without marking them read, that it stays within its byte budget and off
+ * metered networks, that texts live only in the body cache, and that
+ * cancelling drops the queued work.
+ */
+public class ReadAheadTest {
+    @Rule
+    public TemporaryFolder cacheDir = new TemporaryFolder();
+
+    private ImapTestServer server;
+    private IMAPStore store;
+    private FolderCache folders;
+    private BodyCache bodies;
+    private final Queue<Runnable> lane = new ArrayDeque<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("ahead");
+        server.deliver(6);
+        store = server.store();
+        folders = new FolderCache(store, FolderCache.DEFAULT_SIZE);
+        bodies = new BodyCache(cacheDir.getRoot(), 1 << 20, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        folders.closeAll();
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void prefetchesNewestUnreadWithoutMarkingThemRead() throws Exception {
+        IMAPFolder inbox = folders.open("INBOX", Folder.READ_WRITE);
+        inbox.getMessage(6).setFlag(Flags.Flag.SEEN, true);
+        inbox.getMessage(4).setFlag(Flags.Flag.SEEN, true);
+        ReadAhead ahead = readAhead(3, ReadAhead.DEFAULT_BYTES, false, false);
+
+        ahead.schedule("INBOX", listing(inbox));
+        drain();
+
+        long uidValidity = inbox.getUIDValidity();
+        // 6 and 4 are read, so the three newest unread are 5, 3 and 2
+        for (int number : new int[]{5, 3, 2}) {
+            MessageRecord record = ahead.get("INBOX", uidValidity, inbox.getUID(inbox.getMessage(number)));
+            assertNotNull(record);
+            assertEquals(MessageRecord.BODY_FULL, record.bodyLevel);
+            assertEquals("Body " + (number - 1), record.body.trim());
+        }
+        assertNull(ahead.get("INBOX", uidValidity, inbox.getUID(inbox.getMessage(6))));
+        assertNull(ahead.get("INBOX", uidValidity, inbox.getUID(inbox.getMessage(1))));
+        assertFalse(inbox.getMessage(5).isSet(Flags.Flag.SEEN));
+        assertEquals(3, ahead.stats().fetched);
+        assertEquals(3, ahead.stats().hits);
+
+        long forgotten = inbox.getUID(inbox.getMessage(5));
+        ahead.forget("INBOX", forgotten);
+        assertNull(ahead.get("INBOX", uidValidity, forgotten));
+        assertNotNull(ahead.get("INBOX", uidValidity, inbox.getUID(inbox.getMessage(3))));
+
+        // Once the body cache lets go of the text the record is gone too
+        long evicted = inbox.getUID(inbox.getMessage(2));
+        bodies.clear();
+        assertNull(ahead.get("INBOX", uidValidity, evicted));
+        assertEquals(1, ahead.stats().records);
+
+        ahead.forget("INBOX");
+        assertEquals(0, ahead.stats().records);
+    }
+
+    @Test
+    public void cancellingDropsQueuedWork() throws Exception {
+        IMAPFolder inbox = folders.open("INBOX", Folder.READ_ONLY);
+        ReadAhead ahead = readAhead(6, ReadAhead.DEFAULT_BYTES, false, false);
+
+        ahead.schedule("INBOX", listing(inbox));
+        ahead.cancel();
+        drain();
+
+        long uidValidity = inbox.getUIDValidity();
+        for (int number = 1; number <= 6; number++) {
+            assertNull(ahead.get("INBOX", uidValidity, inbox.getUID(inbox.getMessage(number))));
+        }
+        assertEquals(0, ahead.stats().fetched);
+        assertEquals(1, ahead.stats().cancelled);
+    }
+
+    @Test
+    public void keepsToTheByteBudgetAndOffMeteredNetworks() throws Exception {
+        char[] text = new char[4000];
+        Arrays.fill(text, 'a');
+        MimeMessage large = server.message(6);
+        large.setText(new String(text));
+        server.deliver(large);
+        IMAPFolder inbox = folders.open("INBOX", Folder.READ_ONLY);
+        List<MessageRecord> listing = listing(inbox);
+
+        ReadAhead metered = readAhead(3, ReadAhead.DEFAULT_BYTES, false, true);
+        metered.schedule("INBOX", listing);
+        assertEquals(0, lane.size());
+
+        // The large newest email does not fit, the two after it do
+        ReadAhead ahead = readAhead(3, 1000, true, true);
+        ahead.schedule("INBOX", listing);
+        drain();
+
+        long uidValidity = inbox.getUIDValidity();
+        assertNull(ahead.get("INBOX", uidValidity, inbox.getUID(inbox.getMessage(7))));
+        assertNotNull(ahead.get("INBOX", uidValidity, inbox.getUID(inbox.getMessage(6))));
+        assertNotNull(ahead.get("INBOX", uidValidity, inbox.getUID(inbox.getMessage(5))));
+        assertEquals(2, ahead.stats().fetched);
+    }
+
+    private ReadAhead readAhead(int count, long maxBytes, boolean onMetered, boolean metered) {
+        return new ReadAhead(count, maxBytes, onMetered, (key, task) -> lane.add(task), folders, bodies, () -> metered);
+    }
+
+    private List<MessageRecord> listing(IMAPFolder folder) throws Exception {
+        return MessageLoader.load(folder, folder.getMessages(), MessageRecord.BODY_NONE, 0, null);
+    }
+
+    private void drain() {
+        Runnable task;
+        while ((task = lane.poll()) != null) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.reactnativeinbox;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a windowed stream never runs more chunks ahead than its window,
+ * and that cancelling wakes a producer waiting for an acknowledgement.
+ */
+public class ResultStreamTest {
+
+    @Test
+    public void producerStopsAtWindowUntilAcknowledged() throws Exception {
+        ResultStream stream = new ResultStream(2);
+        AtomicInteger produced = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            try {
+                while (produced.get() < 5 && stream.awaitCredit()) {
+                    produced.incrementAndGet();
+                }
+            } catch (InterruptedException ignored) {
+                // Test over
+            }
+        });
+        producer.start();
+
+        Thread.sleep(200);
+        assertEquals(2, produced.get());
+
+        stream.ack();
+        Thread.sleep(200);
+        assertEquals(3, produced.get());
+
+        stream.ack();
+        stream.ack();
+        producer.join(2000);
+        assertEquals(5, produced.get());
+    }
+
+    @Test
+    public void cancelWakesWaitingProducer() throws Exception {
+        ResultStream stream = new ResultStream(1);
+        assertTrue(stream.awaitCredit());
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                if (!stream.awaitCredit()) {
+                    stopped.countDown();
+                }
+            } catch (InterruptedException ignored) {
+                // Test over
+            }
+        });
+        producer.start();
+
+        stream.cancel();
+        assertTrue(stopped.await(2, TimeUnit.SECONDS));
+        assertFalse(stream.awaitCredit());
+    }
+
+    @Test
+    public void noWindowNeverBlocks() throws Exception {
+        ResultStream stream = new ResultStream(0);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(stream.awaitCredit());
+        }
+    }
+}
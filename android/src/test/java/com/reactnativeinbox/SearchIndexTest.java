@@ -0,0 +1,167 @@
+package com.reactnativeinbox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks prefix and per-field matching, that re-indexed and removed messages
+ * stop matching, that the index survives a reload, and that a search of 100k
+ * messages stays well within a second.
+ */
+public class SearchIndexTest {
+    // Indexed searches take milliseconds; the bound leaves room for slow CI machines
+    private static final long MAX_SEARCH_MS = 1000;
+    private static final String[] WORDS = {
+        "invoice", "meeting", "report", "quarterly", "budget", "travel", "lunch", "release",
+        "deadline", "review", "contract", "update", "project", "launch", "design", "hiring",
+    };
+
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    @Test
+    public void matchesPrefixesPerField() {
+        SearchIndex.FolderIndex index = new SearchIndex.FolderIndex();
+        index.add(record(1, "Quarterly invoice", "billing@acme.com", "Please pay by Friday"));
+        index.add(record(2, "Lunch on Friday?", "sam@example.com", "Pizza or sushi"));
+        index.add(record(3, "Re: invoices", "sam@example.com", "Paid, thanks"));
+
+        assertArrayEquals(new long[]{1, 3}, index.search(query("invoice"), 0));
+        assertArrayEquals(new long[]{1, 2}, index.search(query("fri"), 0));
+        assertArrayEquals(new long[]{3}, index.search(query("invoice paid"), 0));
+
+        SearchIndex.Query fromSam = new SearchIndex.Query();
+        fromSam.from = "sam@example";
+        assertArrayEquals(new long[]{2, 3}, index.search(fromSam, 0));
+        fromSam.subject = "lunch";
+        assertArrayEquals(new long[]{2}, index.search(fromSam, 0));
+
+        // Body words don't match a subject-only query
+        SearchIndex.Query subject = new SearchIndex.Query();
+        subject.subject = "pizza";
+        assertEquals(0, index.search(subject, 0).length);
+
+        // The newest matches, oldest first
+        assertArrayEquals(new long[]{3}, index.search(query("invoice"), 1));
+    }
+
+    @Test
+    public void filtersByDate() {
+        SearchIndex.FolderIndex index = new SearchIndex.FolderIndex();
+        for (int i = 1; i <= 5; i++) {
+            MessageRecord record = record(i, "Daily report", "bot@example.com", "");
+            record.sentDate = i * 1000L;
+            index.add(record);
+        }
+        SearchIndex.Query query = query("report");
+        query.since = 2000;
+        query.before = 4000;
+        assertArrayEquals(new long[]{2, 3}, index.search(query, 0));
+    }
+
+    @Test
+    public void forgetsRemovedAndReplacedMessages() {
+        SearchIndex.FolderIndex index = new SearchIndex.FolderIndex();
+        MessageRecord preview = record(1, "Plans", "a@example.com", "");
+        preview.bodyLevel = MessageRecord.BODY_PREVIEW;
+        preview.preview = "short preview";
+        index.add(preview);
+        assertEquals(0, index.search(query("offsite"), 0).length);
+
+        MessageRecord full = record(1, "Plans", "a@example.com", "short preview and the offsite agenda");
+        index.add(full);
+        assertArrayEquals(new long[]{1}, index.search(query("offsite"), 0));
+        assertArrayEquals(new long[]{1}, index.search(query("plans"), 0));
+
+        index.remove(1);
+        assertEquals(0, index.search(query("plans"), 0).length);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void compactsAfterManyRemovals() {
+        SearchIndex.FolderIndex index = new SearchIndex.FolderIndex();
+        for (int uid = 1; uid <= 4000; uid++) {
+            index.add(record(uid, "Message " + (uid % 2 == 0 ? "even" : "odd"), "x@example.com", ""));
+        }
+        for (int uid = 1; uid <= 3000; uid++) {
+            index.remove(uid);
+        }
+        long[] even = index.search(query("even"), 0);
+        assertEquals(500, even.length);
+        assertEquals(3002, even[0]);
+        assertEquals(4000, even[even.length - 1]);
+    }
+
+    @Test
+    public void survivesReload() {
+        SearchIndex first = new SearchIndex(files.getRoot());
+        SearchIndex.FolderIndex index = first.get("me@host", "INBOX");
+        index.validate(7);
+        index.add(record(10, "Contract draft", "legal@example.com", "Signed copy attached"));
+        index.add(record(11, "Holiday", "hr@example.com", "Office closed"));
+        index.remove(11);
+        first.save("me@host", "INBOX");
+
+        SearchIndex.FolderIndex reloaded = new SearchIndex(files.getRoot()).get("me@host", "INBOX");
+        assertEquals(7, reloaded.uidValidity);
+        assertEquals(1, reloaded.size());
+        assertArrayEquals(new long[]{10}, reloaded.search(query("sign"), 0));
+        assertEquals(0, reloaded.search(query("holiday"), 0).length);
+
+        reloaded.validate(8);
+        assertEquals(0, reloaded.size());
+    }
+
+    @Test
+    public void searchesManyMessagesQuickly() {
+        Random random = new Random(1);
+        SearchIndex.FolderIndex index = new SearchIndex.FolderIndex();
+        for (int uid = 1; uid <= 100000; uid++) {
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < 40; i++) {
+                body.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(500)).append(' ');
+            }
+            index.add(record(uid, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)],
+                "user" + random.nextInt(1000) + "@example.com", body.toString()));
+        }
+
+        SearchIndex.Query query = query("budget rev");
+        long[] best = new long[5];
+        Arrays.fill(best, Long.MAX_VALUE);
+        long[] uids = null;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            uids = index.search(query, 50);
+            best[run] = (System.nanoTime() - start) / 1000000;
+        }
+        Arrays.sort(best);
+        assertTrue("Best search took " + best[0] + "ms", best[0] < MAX_SEARCH_MS);
+        assertEquals(50, uids.length);
+        assertTrue(uids[0] < uids[49]);
+    }
+
+    private static SearchIndex.Query query(String text) {
+        SearchIndex.Query query = new SearchIndex.Query();
+        query.text = text;
+        return query;
+    }
+
+    private static MessageRecord record(long uid, String subject, String from, String body) {
+        MessageRecord record = new MessageRecord();
+        record.uid = uid;
+        record.subject = subject;
+        record.from = from;
+        record.body = body;
+        record.bodyLevel = MessageRecord.BODY_FULL;
+        return record;
+    }
+}
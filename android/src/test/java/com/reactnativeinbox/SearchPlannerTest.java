@@ -0,0 +1,133 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+import com.sun.mail.imap.protocol.IMAPResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the commands the planner picks and the UIDs it returns: no SEARCH
+ * for an empty query, OR/NOT/flag criteria, SORT by date or a local sort of
+ * the newest matches, and reading only the top of an ESEARCH set.
+ */
+public class SearchPlannerTest {
+    private static final String[] SUBJECTS = {
+        "Invoice March", "Lunch", "Invoice April", "Offsite agenda", "Invoice May", "Newsletter",
+    };
+
+    private ImapTestServer server;
+    private IMAPStore store;
+    private IMAPFolder folder;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("search");
+        for (int i = 0; i < SUBJECTS.length; i++) {
+            MimeMessage message = server.message(i);
+            message.setFrom(new InternetAddress(i % 2 == 0 ? "billing@acme.com" : "friend@example.com"));
+            message.setSubject(SUBJECTS[i]);
+            // Sent dates run backwards, so date order is the reverse of UID order
+            message.setSentDate(new Date(1700000000000L - i * 86400000L));
+            message.saveChanges();
+            server.deliver(message);
+        }
+        store = server.store();
+        folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_WRITE);
+        folder.getMessage(3).setFlag(Flags.Flag.FLAGGED, true);
+        folder.getMessage(5).setFlag(Flags.Flag.FLAGGED, true);
+        folder.getMessage(5).setFlag(Flags.Flag.SEEN, true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        folder.close(false);
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void emptyQueryTakesNewestWithoutSearching() throws Exception {
+        assertNull(SearchPlanner.build(Collections.emptyMap()));
+        SearchPlanner.Result result = SearchPlanner.run(folder, null, null, 2);
+        assertEquals("all", result.strategy);
+        assertEquals(6, result.total);
+        assertArrayEquals(new long[]{uid(5), uid(6)}, result.uids);
+    }
+
+    @Test
+    public void combinesFlagOrAndNotCriteria() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put("subject", "invoice");
+        options.put("flagged", true);
+        Map<String, Object> seen = new HashMap<>();
+        seen.put("seen", true);
+        options.put("not", seen);
+        SearchPlanner.Result result = SearchPlanner.run(folder, SearchPlanner.build(options), null, 0);
+        assertEquals(1, result.total);
+        assertArrayEquals(new long[]{uid(3)}, result.uids);
+
+        Map<String, Object> lunch = new HashMap<>();
+        lunch.put("subject", "lunch");
+        Map<String, Object> offsite = new HashMap<>();
+        offsite.put("subject", "offsite");
+        Map<String, Object> either = new HashMap<>();
+        either.put("or", Arrays.asList(lunch, offsite));
+        result = SearchPlanner.run(folder, SearchPlanner.build(either), null, 0);
+        assertArrayEquals(new long[]{uid(2), uid(4)}, result.uids);
+    }
+
+    @Test
+    public void sortsByDate() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put("subject", "invoice");
+        SearchPlanner.Result result = SearchPlanner.run(folder, SearchPlanner.build(options), SearchPlanner.SORT_DATE, 2);
+        assertEquals(3, result.total);
+        // Oldest first: message 5 was sent first, then 3, then 1
+        assertArrayEquals(new long[]{uid(3), uid(1)}, result.uids);
+    }
+
+    @Test
+    public void sortsByDateLocallyWithinWindow() throws Exception {
+        long[] all = {uid(1), uid(2), uid(3), uid(4), uid(5), uid(6)};
+        SearchPlanner.Result result = SearchPlanner.sortLocally(folder, 6, all, SearchPlanner.SORT_DATE, 2, 3);
+        assertEquals(6, result.total);
+        // Only the newest 3 are sorted: 6 was sent first, then 5, then 4
+        assertArrayEquals(new long[]{uid(5), uid(4)}, result.uids);
+    }
+
+    @Test
+    public void readsTopOfEsearchSet() throws Exception {
+        IMAPResponse response = new IMAPResponse("* ESEARCH (TAG \"A5\") UID COUNT 17 ALL 4:18,21,28");
+        SearchPlanner.Result result = SearchPlanner.parseEsearch(response.getRest(), 4);
+        assertEquals(17, result.total);
+        assertArrayEquals(new long[]{17, 18, 21, 28}, result.uids);
+
+        result = SearchPlanner.parseEsearch("(TAG \"A6\") UID ALL 40:38,2", 0);
+        assertEquals(4, result.total);
+        assertArrayEquals(new long[]{2, 38, 39, 40}, result.uids);
+
+        assertEquals(0, SearchPlanner.parseEsearch("(TAG \"A7\") UID COUNT 0", 10).uids.length);
+    }
+
+    private long uid(int messageNumber) throws Exception {
+        return folder.getUID(folder.getMessage(messageNumber));
+    }
+}
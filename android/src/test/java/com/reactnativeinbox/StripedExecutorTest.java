@@ -0,0 +1,86 @@
+package com.reactnativeinbox;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that calls for one folder keep their order while a slow call on one
+ * folder does not hold up calls on a folder in another lane, and that
+ * draining leaves the lanes running.
+ */
+public class StripedExecutorTest {
+
+    @Test
+    public void keepsOrderWithinAFolder() throws Exception {
+        StripedExecutor executor = new StripedExecutor(4);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 100; i++) {
+            int index = i;
+            executor.execute("INBOX", () -> order.add(index));
+        }
+        executor.shutdown(5000);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, order);
+    }
+
+    @Test
+    public void slowFolderDoesNotBlockOtherLanes() throws Exception {
+        StripedExecutor executor = new StripedExecutor(4);
+        String slow = "INBOX";
+        String fast = otherLaneThan(slow, executor.size());
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+        executor.execute(slow, () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(fast, fastDone::countDown);
+
+        assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        executor.shutdown(5000);
+    }
+
+    @Test
+    public void drainWaitsForQueuedCallsAndKeepsRunning() throws Exception {
+        StripedExecutor executor = new StripedExecutor(4);
+        List<Integer> done = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 20; i++) {
+            int index = i;
+            executor.execute("Folder" + i, () -> done.add(index));
+        }
+        executor.drain(5000);
+        assertEquals(20, done.size());
+
+        CountDownLatch later = new CountDownLatch(1);
+        executor.execute("INBOX", later::countDown);
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        executor.shutdown(5000);
+    }
+
+    private static String otherLaneThan(String folder, int lanes) {
+        int lane = StripedExecutor.lane(folder, lanes);
+        for (int i = 0; ; i++) {
+            String candidate = "Folder" + i;
+            if (StripedExecutor.lane(candidate, lanes) != lane) {
+                return candidate;
+            }
+        }
+    }
+}
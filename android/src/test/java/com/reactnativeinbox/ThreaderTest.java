@@ -0,0 +1,156 @@
+package com.reactnativeinbox;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Flags;
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks THREAD response parsing, the local threader's handling of missing
+ * parents, reply subjects and removals, and that conversations stay right
+ * as messages arrive and are expunged.
+ */
+public class ThreaderTest {
+    private ImapTestServer server;
+    private IMAPStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ImapTestServer("threads");
+        store = server.store();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        server.stop();
+    }
+
+    @Test
+    public void parsesThreadResponse() {
+        List<List<Threader.Node>> threads = Threader.parse("(2)(3 6 (4 23)(44 7 96))((11)(12 13))");
+        assertEquals(3, threads.size());
+        assertEquals(2, threads.get(0).get(0).uid);
+
+        Threader.Node six = threads.get(1).get(0).children.get(0);
+        assertEquals(6, six.uid);
+        assertEquals(2, six.children.size());
+        assertEquals(23, six.children.get(0).children.get(0).uid);
+        assertEquals(96, six.children.get(1).children.get(0).children.get(0).uid);
+
+        // A missing root leaves its replies side by side
+        assertEquals(2, threads.get(2).size());
+        assertEquals(13, threads.get(2).get(1).children.get(0).uid);
+    }
+
+    @Test
+    public void linksRepliesAroundMissingMessages() {
+        Threader threader = new Threader();
+        threader.add(1, "<a@x>", null, null, "Plans");
+        // <b@x> was never received; both of these answer it
+        threader.add(2, "<c@x>", "<b@x>", "<a@x> <b@x>", "Re: Plans");
+        threader.add(3, "<d@x>", "<b@x>", null, "Re: Plans");
+        threader.add(4, "<e@x>", null, null, "Lunch");
+        threader.add(5, "<f@x>", null, null, "Re: Lunch");
+
+        List<List<Threader.Node>> threads = threader.threads();
+        assertEquals(2, threads.size());
+        Threader.Node plans = threads.get(0).get(0);
+        assertEquals(1, plans.uid);
+        assertEquals(2, plans.children.size());
+        assertEquals(2, plans.children.get(0).uid);
+        assertEquals(3, plans.children.get(1).uid);
+
+        // Joined by its subject, having no references
+        Threader.Node lunch = threads.get(1).get(0);
+        assertEquals(4, lunch.uid);
+        assertEquals(5, lunch.children.get(0).uid);
+
+        threader.remove(1);
+        threads = threader.threads();
+        Threader.Node rest = threads.get(0).get(0);
+        assertEquals(2, rest.uid);
+        assertEquals(3, threads.get(0).get(1).uid);
+        assertEquals(4, threader.size());
+    }
+
+    @Test
+    public void keepsUnrelatedSameSubjectsApart() {
+        Threader threader = new Threader();
+        threader.add(1, "<n1@x>", null, null, "Your weekly report");
+        threader.add(2, "<n2@x>", null, null, "Your weekly report");
+        threader.add(3, "<n2@x>", null, null, "Your weekly report");
+        assertEquals(3, threader.threads().size());
+        assertEquals("weekly report", Threader.baseSubject("Re: [team] FWD: Weekly report"));
+    }
+
+    @Test
+    public void followsFolderAsMessagesArrive() throws Exception {
+        deliver("<a@x>", null, "Plans");
+        deliver("<b@x>", "<a@x>", "Re: Plans");
+        deliver("<c@x>", null, "Lunch");
+
+        IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+        folder.open(Folder.READ_WRITE);
+        folder.getMessage(1).setFlag(Flags.Flag.SEEN, true);
+        Threader threader = new Threader();
+
+        List<Threader.Conversation> conversations = Threader.list(folder, threader, 0);
+        assertEquals(2, conversations.size());
+        assertArrayEquals(new long[]{uid(folder, 3)}, conversations.get(0).uids);
+        assertArrayEquals(new long[]{uid(folder, 1), uid(folder, 2)}, conversations.get(1).uids);
+        assertEquals(1, conversations.get(1).unread);
+        assertTrue(conversations.get(1).latestDate > 0);
+
+        // A new reply moves its conversation to the top
+        deliver("<d@x>", "<b@x>", "Re: Plans");
+        conversations = Threader.list(folder, threader, 1);
+        assertEquals(1, conversations.size());
+        assertEquals(3, conversations.get(0).uids.length);
+        assertEquals(2, conversations.get(0).unread);
+        assertEquals(4, threader.size());
+
+        folder.getMessage(3).setFlag(Flags.Flag.DELETED, true);
+        folder.expunge();
+        conversations = Threader.list(folder, threader, 0);
+        assertEquals(1, conversations.size());
+        assertEquals(3, threader.size());
+        folder.close(false);
+    }
+
+    private void deliver(String messageId, String inReplyTo, String subject) throws MessagingException {
+        MimeMessage message = new MimeMessage(server.session) {
+            @Override
+            protected void updateMessageID() throws MessagingException {
+                setHeader("Message-ID", messageId);
+            }
+        };
+        message.setFrom(new InternetAddress("friend@example.com"));
+        message.setRecipients(Message.RecipientType.TO, server.address);
+        message.setSubject(subject);
+        if (inReplyTo != null) {
+            message.setHeader("In-Reply-To", inReplyTo);
+        }
+        message.setText("Hello");
+        message.saveChanges();
+        server.deliver(message);
+    }
+
+    private static long uid(IMAPFolder folder, int messageNumber) throws MessagingException {
+        return folder.getUID(folder.getMessage(messageNumber));
+    }
+}
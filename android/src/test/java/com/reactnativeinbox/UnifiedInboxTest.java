@@ -0,0 +1,66 @@
+package com.reactnativeinbox;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the unified inbox merges accounts by date, keeps the newest
+ * emails, and completes once every account has answered or failed.
+ */
+public class UnifiedInboxTest {
+
+    @Test
+    public void mergesByDateAndKeepsTheNewest() {
+        UnifiedInbox inbox = new UnifiedInbox(2, 3);
+
+        assertFalse(inbox.add("work", Arrays.asList(record(1, 100), record(2, 400))));
+        assertTrue(inbox.add("home", Arrays.asList(record(7, 200), record(8, 300), record(9, 500))));
+
+        List<String> order = new ArrayList<>();
+        for (UnifiedInbox.Entry entry : inbox.merged()) {
+            order.add(entry.accountId + ":" + entry.record.uid);
+        }
+        assertEquals(Arrays.asList("home:8", "work:2", "home:9"), order);
+        assertTrue(inbox.failed().isEmpty());
+    }
+
+    @Test
+    public void reportsFailedAccountsWithoutDroppingTheOthers() {
+        UnifiedInbox inbox = new UnifiedInbox(3, 0);
+
+        assertFalse(inbox.fail("work", "Not connected"));
+        assertFalse(inbox.add("home", Collections.singletonList(record(1, 100))));
+        assertTrue(inbox.add("spare", Collections.emptyList()));
+
+        assertEquals(1, inbox.merged().size());
+        assertEquals("home", inbox.merged().get(0).accountId);
+        assertEquals(Collections.singletonMap("work", "Not connected"), inbox.failed());
+    }
+
+    @Test
+    public void breaksDateTiesByAccountAndUid() {
+        UnifiedInbox inbox = new UnifiedInbox(2, 0);
+        inbox.add("b", Arrays.asList(record(2, 100), record(1, 100)));
+        inbox.add("a", Collections.singletonList(record(5, 100)));
+
+        List<UnifiedInbox.Entry> merged = inbox.merged();
+        assertEquals("a", merged.get(0).accountId);
+        assertEquals(1, merged.get(1).record.uid);
+        assertEquals(2, merged.get(2).record.uid);
+    }
+
+    private static MessageRecord record(long uid, long sentDate) {
+        MessageRecord record = new MessageRecord();
+        record.uid = uid;
+        record.sentDate = sentDate;
+        return record;
+    }
+}
@@ -6,11 +6,158 @@ declare module 'react-native-inbox' {
     username: string;
     password: string;
     useSSL: boolean;
+    folderCacheSize?: number;
+    connectionPoolSize?: number;
+    cache?: boolean;
+    searchIndex?: boolean;
+    // Transfer tuning, Android only
+    compress?: boolean; // default true; used when the server offers COMPRESS=DEFLATE
+    compressLevel?: number; // 0-9
+    fetchSize?: number; // bytes per partial FETCH
+    partialFetch?: boolean; // default true
+    connectionTimeout?: number; // ms
+    readTimeout?: number; // ms
+    writeTimeout?: number; // ms
+    sendBufferSize?: number; // bytes
+    receiveBufferSize?: number; // bytes
+    bodyCacheSize?: number; // bytes of decoded bodies kept in memory, default 4 MB
+    bodyDiskCacheSize?: number; // bytes of gzipped bodies kept on disk, default 32 MB
+    readAhead?: number; // newest unread emails of each listing to download in the background, default 0 (off)
+    readAheadBytes?: number; // text bytes read ahead per listing, default 1 MB
+    readAheadOnMetered?: boolean; // also read ahead on metered networks, default false
+    accountId?: string; // Android: registers the connection under this id, default 'default'
   }
 
+  export interface TransferStats {
+    bytesRead: number;
+    bytesWritten: number;
+    connections: number;
+    compressed: boolean;
+  }
+
+  export interface BodyCacheStats {
+    memoryHits: number;
+    diskHits: number;
+    misses: number;
+    hitRate: number; // 0 to 1
+    evictions: number; // moved from memory to disk
+    memoryBytes: number;
+    memoryEntries: number;
+    maxMemoryBytes: number;
+    diskBytes: number;
+    diskEntries: number;
+    maxDiskBytes: number;
+  }
+
+  export interface LatencyStats {
+    count: number;
+    errors: number; // IMAP commands answered NO or BAD
+    meanMs: number;
+    maxMs: number;
+    // Upper bounds of power-of-two buckets
+    p50Ms: number;
+    p90Ms: number;
+    p99Ms: number;
+  }
+
+  export interface Metrics {
+    since: number; // ms since epoch
+    methods: Record<string, LatencyStats>; // queueing included
+    commands: Record<string, LatencyStats>; // e.g. 'UID FETCH', 'SELECT', 'OTHER'
+    stages: { load: LatencyStats; convert: LatencyStats };
+    bytesRead: number;
+    bytesWritten: number;
+  }
+
+  export type SearchSource = 'local' | 'server' | 'auto';
+  export type SearchSort = 'date' | 'arrival';
+
+  export type BodyMode = 'none' | 'preview' | 'full';
+
   export interface EmailOptions {
     folder: string;
     limit: number;
+    includeBody?: BodyMode;
+    previewBytes?: number;
+    useCache?: boolean;
+    accountId?: string;
+  }
+
+  export interface CachedEmailOptions {
+    folder: string;
+    limit: number;
+    account?: string; // 'username@host'; defaults to the connected account
+    accountId?: string;
+  }
+
+  export interface SyncOptions {
+    sinceModSeq?: number | null;
+    uidValidity?: number | null;
+    knownUids?: UidList;
+    useCache?: boolean;
+    accountId?: string;
+  }
+
+  export interface SyncResult {
+    mode: 'qresync' | 'condstore' | 'full';
+    uidValidity: number;
+    uidNext: number;
+    highestModSeq: number | null; // null when the server lacks CONDSTORE
+    reset: boolean; // UIDVALIDITY changed: drop every cached UID and resync
+    changed: { uid: number; flags: EmailFlags }[];
+    vanished: number[];
+  }
+
+  export type FolderEvent = 'inbox:newMessages' | 'inbox:expunged' | 'inbox:flagsChanged';
+
+  export interface FolderEventPayload {
+    folder: string;
+    uids: number[];
+    resync: boolean; // some expunged emails could not be named: uids is incomplete, call syncFolder
+    accountId: string; // Android
+  }
+
+  export interface IdleOptions {
+    pollInterval?: number; // ms between NOOPs when the server lacks IDLE
+    accountId?: string;
+  }
+
+  export interface StreamOptions {
+    chunkSize?: number; // emails per inbox:chunk event, default 25
+    chunkWindow?: number; // chunks sent ahead of those onChunk has finished
+    requestId?: string;
+  }
+
+  export interface StreamChunk {
+    requestId: string;
+    index: number;
+    emails: Email[];
+    done: boolean;
+  }
+
+  export interface StreamResult {
+    requestId: string;
+    count: number;
+    chunks: number;
+    cancelled: boolean;
+  }
+
+  export type ChunkHandler = (emails: Email[], chunk: StreamChunk) => void | Promise<void>;
+
+  export interface EmailPageOptions {
+    folder: string;
+    limit: number;
+    beforeUid?: number | null;
+    includeBody?: BodyMode;
+    previewBytes?: number;
+    useCache?: boolean;
+    accountId?: string;
+  }
+
+  export interface EmailPage {
+    emails: Email[];
+    total: number;
+    nextCursor: number | null;
   }
 
   export interface Email {
@@ -21,18 +168,63 @@ declare module 'react-native-inbox' {
     bcc?: string[];
     date: string;
     body: string;
+    isHtml?: boolean;
+    preview?: string;
     attachments?: EmailAttachment[];
     messageId: string;
     uid?: number;
     flags?: EmailFlags;
     headers?: { [key: string]: string };
+    accountId?: string; // set by getUnifiedInbox
   }
 
   export interface EmailAttachment {
     filename: string;
     contentType: string;
     size: number;
-    data?: string; // base64 encoded content
+    section?: string; // IMAP part number, e.g. '2' or '1.3'
+    inline?: boolean;
+    contentId?: string;
+    data?: string; // base64 encoded content; use downloadAttachment for received emails
+  }
+
+  export interface DownloadAttachmentOptions {
+    uid: number;
+    folder: string;
+    section: string; // from EmailAttachment.section
+    destPath: string;
+    chunkBytes?: number;
+    accountId?: string;
+  }
+
+  export interface DownloadAttachmentResult {
+    path: string;
+    size: number;
+  }
+
+  export interface DownloadProgress {
+    destPath: string;
+    uid: number;
+    section: string;
+    received: number; // transfer-encoded bytes received so far
+    total: number; // transfer-encoded size, -1 when unknown
+    accountId: string; // Android
+  }
+
+  export type OutboxStatus = 'queued' | 'sent' | 'retrying' | 'failed';
+
+  export interface OutboxEntry {
+    id: string;
+    status: 'queued' | 'failed';
+    attempts: number;
+  }
+
+  export interface OutboxEvent {
+    id: string;
+    status: OutboxStatus;
+    attempts: number;
+    error?: string;
+    accountId: string; // Android
   }
 
   export interface EmailFlags {
@@ -51,20 +243,156 @@ declare module 'react-native-inbox' {
     subject?: string;
     since?: string;
     before?: string;
+    dateField?: 'received' | 'sent'; // default 'received'; Android only
     seen?: boolean;
+    // Android only, server search only
+    flagged?: boolean;
+    answered?: boolean;
+    draft?: boolean;
+    deleted?: boolean;
+    keyword?: string | string[];
+    larger?: number;
+    smaller?: number;
+    or?: SearchCriteria[];
+    not?: SearchCriteria;
+    sort?: SearchSort; // without server SORT, 'date' orders only the newest 500 matches
     limit?: number;
+    includeBody?: BodyMode;
+    previewBytes?: number;
+    useCache?: boolean;
+    source?: SearchSource; // default 'server'; Android only
+    account?: string; // 'username@host' whose index and cache to search offline
+    accountId?: string;
+  }
+
+  export type SearchCriteria = Omit<SearchOptions,
+    'folder' | 'sort' | 'limit' | 'includeBody' | 'previewBytes' | 'useCache' | 'source' | 'account' | 'accountId'>;
+
+  export interface SearchUidsResult {
+    total: number;
+    uids: number[]; // the newest `limit` matches, oldest first or in sort order
+  }
+
+  export interface FolderTreeOptions {
+    withCounts?: boolean; // default false
+    maxAge?: number; // ms a cached listing may be reused, default 60000
+    accountId?: string;
+  }
+
+  export interface FolderNode {
+    path: string; // full path, e.g. 'Work/Projects'
+    name: string;
+    delimiter: string | null;
+    attributes: string[]; // e.g. ['\\HasNoChildren', '\\Sent']
+    specialUse: '\\All' | '\\Archive' | '\\Drafts' | '\\Flagged' | '\\Junk' | '\\Sent' | '\\Trash' | null;
+    selectable: boolean;
+    // With withCounts, for selectable folders
+    messages?: number;
+    unseen?: number;
+    uidNext?: number;
+    uidValidity?: number;
+    highestModSeq?: number; // servers with CONDSTORE
+    children: FolderNode[];
+  }
+
+  export interface ThreadOptions {
+    folder: string;
+    limit?: number; // default all conversations
+    accountId?: string;
+  }
+
+  export interface ThreadNode {
+    uid: number;
+    children: ThreadNode[];
+  }
+
+  export interface EmailThread {
+    uids: number[]; // ascending
+    roots: ThreadNode[]; // more than one when the first message is missing
+    count: number;
+    unread: number;
+    newestUid: number;
+    latestDate: number | null; // ms since epoch, received date of the newest message
+  }
+
+  export interface EmailBody {
+    uid: number;
+    body: string;
+    isHtml: boolean;
   }
 
   export interface EmailMoveOptions {
     uid: number;
     fromFolder: string;
     toFolder: string;
+    accountId?: string;
   }
 
   export interface EmailUpdateOptions {
     uid: number;
     folder: string;
     flags: Partial<EmailFlags>;
+    accountId?: string;
+  }
+
+  // UIDs, or 'start:end' UID ranges such as '1:50' or '90:*'
+  export type UidList = Array<number | string>;
+
+  export interface BulkEmailUpdateOptions {
+    uids: UidList;
+    folder: string;
+    flags: Partial<EmailFlags>;
+    accountId?: string;
+  }
+
+  export interface BulkFlagResult {
+    updated: number;
+    failed: { uid: number; error: string }[];
+  }
+
+  export interface BulkMoveOptions {
+    uids: UidList;
+    fromFolder: string;
+    toFolder: string;
+    accountId?: string;
+  }
+
+  export interface BulkMoveResult {
+    moved: number;
+    failed: { uid: number; error: string }[];
+  }
+
+  export interface BulkDeleteOptions {
+    uids: UidList;
+    folder: string;
+    accountId?: string;
+  }
+
+  export interface BulkDeleteResult {
+    deleted: number;
+    failed: { uid: number; error: string }[];
+    expunged: boolean;
+  }
+
+  export interface AccountInfo {
+    accountId: string;
+    account: string | null; // 'username@host', null before the first connect
+    connected: boolean;
+    smtpConnected: boolean;
+  }
+
+  export interface UnifiedInboxOptions {
+    accountIds?: string[]; // default every connected account
+    folder?: string; // default 'INBOX'
+    limit?: number; // emails in total, default 50
+    includeBody?: BodyMode;
+    previewBytes?: number;
+    useCache?: boolean;
+  }
+
+  export interface UnifiedInbox {
+    emails: Email[]; // oldest first, each with its accountId
+    failed: { accountId: string; error: string }[];
   }
 
   // SMTP interfaces
@@ -75,6 +403,7 @@ declare module 'react-native-inbox' {
     password: string;
     useSSL: boolean;
     useTLS?: boolean;
+    accountId?: string;
   }
 
   export interface SendEmailOptions {
@@ -85,45 +414,86 @@ declare module 'react-native-inbox' {
     body: string;
     attachments?: SendAttachment[];
     isHtml?: boolean;
+    accountId?: string;
   }
 
   export interface SendAttachment {
-    filename: string;
-    contentType: string;
-    data: string; // base64 encoded content
+    path?: string; // absolute path or file:// URI, streamed from disk (Android)
+    uri?: string; // content:// URI, streamed from the content provider (Android)
+    filename?: string; // defaults to the file's name
+    contentType?: string; // defaults to the file's or provider's type
+    data?: string; // base64 encoded content, for small generated attachments
   }
 
   // Enhanced InboxModule interface
   export interface InboxModule {
     // Existing methods
     connect(config: EmailConfig): Promise<boolean>;
-    disconnect(): Promise<boolean>;
+    disconnect(accountId?: string): Promise<boolean>;
+    getTransferStats(accountId?: string): Promise<TransferStats>;
+    getAccounts(): Promise<AccountInfo[]>;
+    getBodyCacheStats(): Promise<BodyCacheStats>;
+    clearBodyCache(): Promise<boolean>;
+    getMetrics(): Promise<Metrics>;
+    resetMetrics(): Promise<boolean>;
+    setMetricsInterval(intervalMs: number): Promise<boolean>;
     getEmails(options: EmailOptions): Promise<Email[]>;
-    getFolders(): Promise<string[]>;
+    streamEmails(options: EmailOptions & StreamOptions, onChunk: ChunkHandler): Promise<StreamResult>;
+    getEmailsPage(options: EmailPageOptions): Promise<EmailPage>;
+    getUnifiedInbox(options?: UnifiedInboxOptions): Promise<UnifiedInbox>;
+    getCachedEmails(options: CachedEmailOptions): Promise<Email[]>;
+    syncFolder(folder: string, options?: SyncOptions): Promise<SyncResult>;
+    startIdle(folder: string, options?: IdleOptions): Promise<boolean>;
+    stopIdle(folder: string, accountId?: string): Promise<boolean>;
+    addListener(event: FolderEvent, listener: (payload: FolderEventPayload) => void): { remove(): void };
+    addListener(event: 'inbox:downloadProgress', listener: (progress: DownloadProgress) => void): { remove(): void };
+    addListener(event: 'inbox:outbox', listener: (event: OutboxEvent) => void): { remove(): void };
+    addListener(event: 'inbox:metrics', listener: (metrics: Metrics) => void): { remove(): void };
+    getFolders(accountId?: string): Promise<string[]>;
+    getFolderTree(options?: FolderTreeOptions): Promise<FolderNode[]>;
 
     // Enhanced IMAP methods
     searchEmails(options: SearchOptions): Promise<Email[]>;
+    searchUids(options: SearchOptions): Promise<SearchUidsResult>;
+    getThreads(options: ThreadOptions): Promise<EmailThread[]>;
+    streamSearch(options: SearchOptions & StreamOptions, onChunk: ChunkHandler): Promise<StreamResult>;
+    cancelStream(requestId: string): Promise<boolean>;
     moveEmail(options: EmailMoveOptions): Promise<boolean>;
-    deleteEmail(uid: number, folder: string): Promise<boolean>;
+    deleteEmail(uid: number, folder: string, accountId?: string): Promise<boolean>;
+    moveEmails(options: BulkMoveOptions): Promise<BulkMoveResult>;
+    deleteEmails(options: BulkDeleteOptions): Promise<BulkDeleteResult>;
     updateEmailFlags(options: EmailUpdateOptions): Promise<boolean>;
-    getEmailByUid(uid: number, folder: string): Promise<Email | null>;
-    markAsRead(uid: number, folder: string): Promise<boolean>;
-    markAsUnread(uid: number, folder: string): Promise<boolean>;
-    addFlags(uid: number, folder: string, flags: string[]): Promise<boolean>;
-    removeFlags(uid: number, folder: string, flags: string[]): Promise<boolean>;
+    updateEmailFlags(options: BulkEmailUpdateOptions): Promise<BulkFlagResult>;
+    getEmailByUid(uid: number, folder: string, accountId?: string): Promise<Email | null>;
+    getEmailBody(uid: number, folder: string, accountId?: string): Promise<EmailBody | null>;
+    downloadAttachment(options: DownloadAttachmentOptions): Promise<DownloadAttachmentResult>;
+    markAsRead(uid: number, folder: string, accountId?: string): Promise<boolean>;
+    markAsUnread(uid: number, folder: string, accountId?: string): Promise<boolean>;
+    addFlags(uid: number, folder: string, flags: string[], accountId?: string): Promise<boolean>;
+    removeFlags(uid: number, folder: string, flags: string[], accountId?: string): Promise<boolean>;
+    markAsReadBulk(uids: UidList, folder: string, accountId?: string): Promise<BulkFlagResult>;
+    markAsUnreadBulk(uids: UidList, folder: string, accountId?: string): Promise<BulkFlagResult>;
+    addFlagsBulk(uids: UidList, folder: string, flags: string[], accountId?: string): Promise<BulkFlagResult>;
+    removeFlagsBulk(uids: UidList, folder: string, flags: string[], accountId?: string): Promise<BulkFlagResult>;
 
     // SMTP methods
     connectSmtp(config: SmtpConfig): Promise<boolean>;
-    disconnectSmtp(): Promise<boolean>;
+    disconnectSmtp(accountId?: string): Promise<boolean>;
     sendEmail(options: SendEmailOptions): Promise<boolean>;
+    queueEmail(options: SendEmailOptions): Promise<string>;
+    queueEmails(emails: SendEmailOptions[], accountId?: string): Promise<string[]>;
+    getOutbox(accountId?: string): Promise<OutboxEntry[]>;
+    removeFromOutbox(id: string, accountId?: string): Promise<boolean>;
+    retryOutbox(id: string, accountId?: string): Promise<boolean>;
     saveDraft(options: SendEmailOptions): Promise<boolean>;
     deleteDraft(messageId: string): Promise<boolean>;
-    getDrafts(): Promise<Email[]>;
+    getDrafts(accountId?: string): Promise<Email[]>;
+    streamDrafts(options: StreamOptions, onChunk: ChunkHandler): Promise<StreamResult>;
 
     // Utility methods
-    getEmailSize(uid: number, folder: string): Promise<number>;
-    getQuota(): Promise<{ used: number; total: number }>;
-    expunge(folder: string): Promise<boolean>;
+    getEmailSize(uid: number, folder: string, accountId?: string): Promise<number>;
+    getQuota(accountId?: string): Promise<{ used: number; total: number }>;
+    expunge(folder: string, accountId?: string): Promise<boolean>;
   }
 
   const Inbox: InboxModule;
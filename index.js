@@ -1,6 +1,25 @@
-import { NativeModules } from 'react-native';
+import { DeviceEventEmitter, NativeModules } from 'react-native';
 const { Inbox } = NativeModules;
 
+let nextStreamId = 0;
+
+// Calls a listing method in streaming mode, handing each inbox:chunk event for
+// this request to onChunk and acknowledging it once onChunk has finished
+function streamCall(method, options, onChunk) {
+  const requestId = options.requestId || `stream-${Date.now()}-${nextStreamId++}`;
+  const subscription = DeviceEventEmitter.addListener('inbox:chunk', chunk => {
+    if (chunk.requestId !== requestId) {
+      return;
+    }
+    Promise.resolve(onChunk(chunk.emails, chunk)).finally(() => {
+      if (options.chunkWindow > 0) {
+        Inbox.ackChunk(requestId);
+      }
+    });
+  });
+  return method({ ...options, stream: true, requestId }).finally(() => subscription.remove());
+}
+
 export default {
   /**
    * Connect to IMAP email server
@@ -10,6 +29,10 @@ export default {
    * @param {string} config.username - Email username
    * @param {string} config.password - Email password
    * @param {boolean} config.useSSL - Whether to use SSL
+   * @param {number} config.folderCacheSize - How many folders to keep open between calls (optional, default 4)
+   * @param {number} config.connectionPoolSize - How many IMAP connections serve calls in parallel (optional, default 3)
+   * @param {boolean} config.cache - Keep fetched emails in an on-device cache (optional, default false)
+   * @param {string} config.accountId - Registers the connection under this id; every call takes the same id (optional, default 'default'; Android)
    * @returns {Promise<boolean>} - Connection status
    */
   connect(config) {
@@ -18,10 +41,69 @@ export default {
 
   /**
    * Disconnect from IMAP email server
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<boolean>} - Disconnection status
    */
-  disconnect() {
-    return Inbox.disconnect();
+  disconnect(accountId = null) {
+    return Inbox.disconnect(accountId);
+  },
+
+  /**
+   * Bytes read and written on the IMAP connections since connect (Android)
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<Object>} - bytesRead, bytesWritten, connections and compressed
+   */
+  getTransferStats(accountId = null) {
+    return Inbox.getTransferStats(accountId);
+  },
+
+  /**
+   * Accounts registered by connect or connectSmtp and whether they are connected (Android)
+   * @returns {Promise<Array>} - Entries with accountId, account, connected and smtpConnected
+   */
+  getAccounts() {
+    return Inbox.getAccounts();
+  },
+
+  /**
+   * Hits, misses and sizes of the memory and disk tiers of the body cache (Android)
+   * @returns {Promise<Object>} - memoryHits, diskHits, misses, hitRate, evictions and tier sizes
+   */
+  getBodyCacheStats() {
+    return Inbox.getBodyCacheStats();
+  },
+
+  /**
+   * Empty both tiers of the body cache and reset its counters (Android)
+   * @returns {Promise<boolean>}
+   */
+  clearBodyCache() {
+    return Inbox.clearBodyCache();
+  },
+
+  /**
+   * Call counts and wall-time percentiles per method, IMAP command and listing stage (Android)
+   * @returns {Promise<Object>} - since, methods, commands, stages, bytesRead and bytesWritten
+   */
+  getMetrics() {
+    return Inbox.getMetrics();
+  },
+
+  /**
+   * Clear the counts returned by getMetrics (Android)
+   * @returns {Promise<boolean>}
+   */
+  resetMetrics() {
+    return Inbox.resetMetrics();
+  },
+
+  /**
+   * Emit getMetrics' result as an inbox:metrics event every intervalMs; 0 stops it (Android)
+   * @param {number} intervalMs - Milliseconds between events
+   * @returns {Promise<boolean>}
+   */
+  setMetricsInterval(intervalMs) {
+    return Inbox.setMetricsInterval(intervalMs);
   },
 
   /**
@@ -29,18 +111,137 @@ export default {
    * @param {Object} options - Download options
    * @param {string} options.folder - Folder name (e.g., 'INBOX')
    * @param {number} options.limit - Maximum number of emails to download
+   * @param {string} options.includeBody - 'none', 'preview' or 'full' (default 'full')
+   * @param {number} options.previewBytes - Bytes of the text part to fetch in 'preview' mode (default 512)
    * @returns {Promise<Array>} - Array of email objects
    */
   getEmails(options) {
     return Inbox.getEmails(options);
   },
 
+  /**
+   * Like getEmails, but delivers the emails in chunks as they are loaded, so
+   * the first chunk can be shown before the rest arrive
+   * @param {Object} options - getEmails options, plus:
+   * @param {number} options.chunkSize - Emails per chunk (optional, default 25)
+   * @param {number} options.chunkWindow - Chunks sent ahead of those onChunk has finished (optional, default unlimited)
+   * @param {string} options.requestId - ID for cancelStream (optional, generated when omitted)
+   * @param {Function} onChunk - Called with (emails, { requestId, index, done }); may return a promise
+   * @returns {Promise<Object>} - requestId, count, chunks and cancelled, once the last chunk is sent
+   */
+  streamEmails(options, onChunk) {
+    return streamCall(Inbox.getEmails, options, onChunk);
+  },
+
+  /**
+   * Download one page of emails, newest page first, using a UID cursor
+   * @param {Object} options - Page options
+   * @param {string} options.folder - Folder name (e.g., 'INBOX')
+   * @param {number} options.limit - Maximum number of emails in the page
+   * @param {number} options.beforeUid - Only return emails with a lower UID; pass the previous page's nextCursor (optional)
+   * @param {string} options.includeBody - 'none', 'preview' or 'full' (default 'full')
+   * @param {number} options.previewBytes - Bytes of the text part to fetch in 'preview' mode (default 512)
+   * @returns {Promise<Object>} - Page with emails, total and nextCursor (null on the last page)
+   */
+  getEmailsPage(options) {
+    return Inbox.getEmailsPage(options);
+  },
+
+  /**
+   * The newest emails of one folder across accounts, loaded in parallel and
+   * merged by date, each tagged with its accountId (Android)
+   * @param {Object} options - Unified inbox options
+   * @param {Array<string>} options.accountIds - Accounts to include (optional, default every connected account)
+   * @param {string} options.folder - Folder name in each account (optional, default 'INBOX')
+   * @param {number} options.limit - Maximum emails in total (optional, default 50)
+   * @param {string} options.includeBody - 'none', 'preview' or 'full' (default 'full')
+   * @param {number} options.previewBytes - Bytes of the text part to fetch in 'preview' mode (default 512)
+   * @returns {Promise<Object>} - emails, oldest first, and failed accounts with their error
+   */
+  getUnifiedInbox(options = {}) {
+    return Inbox.getUnifiedInbox(options);
+  },
+
+  /**
+   * Read emails from the on-device cache without contacting the server,
+   * e.g. to show the inbox instantly on app start
+   * @param {Object} options - Cache options
+   * @param {string} options.folder - Folder name (e.g., 'INBOX')
+   * @param {number} options.limit - Maximum number of emails to return
+   * @param {string} options.account - 'username@host' of the account (optional when connected)
+   * @returns {Promise<Array>} - Array of cached email objects, newest last
+   */
+  getCachedEmails(options) {
+    return Inbox.getCachedEmails(options);
+  },
+
+  /**
+   * Find what changed in a folder since the last sync: changed flags and
+   * vanished UIDs, using CONDSTORE/QRESYNC when the server supports them
+   * @param {string} folder - Folder name (e.g., 'INBOX')
+   * @param {Object} options - Sync options
+   * @param {number} options.sinceModSeq - highestModSeq returned by the previous sync (optional)
+   * @param {number} options.uidValidity - uidValidity returned by the previous sync (optional)
+   * @param {Array<number|string>} options.knownUids - UIDs the app holds, to detect vanished emails (optional)
+   * @param {boolean} options.useCache - Sync the on-device cache (defaults to the connect setting)
+   * @returns {Promise<Object>} - mode, uidValidity, uidNext, highestModSeq, reset, changed and vanished
+   */
+  syncFolder(folder, options = {}) {
+    return Inbox.syncFolder(folder, options);
+  },
+
+  /**
+   * Watch a folder for changes with IMAP IDLE on a dedicated connection.
+   * Changes arrive as 'inbox:newMessages', 'inbox:expunged' and
+   * 'inbox:flagsChanged' events carrying { folder, uids, resync }; resync is
+   * true when some expunged emails could not be named and syncFolder is needed
+   * @param {string} folder - Folder to watch (e.g., 'INBOX')
+   * @param {Object} options - Watch options
+   * @param {number} options.pollInterval - NOOP polling interval in ms for servers without IDLE (optional, default 60000)
+   * @returns {Promise<boolean>} - Success status
+   */
+  startIdle(folder, options = {}) {
+    return Inbox.startIdle(folder, options);
+  },
+
+  /**
+   * Stop watching a folder and close its connection
+   * @param {string} folder - Folder being watched
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<boolean>} - Whether the folder was being watched
+   */
+  stopIdle(folder, accountId = null) {
+    return Inbox.stopIdle(folder, accountId);
+  },
+
+  /**
+   * Subscribe to folder change events emitted while watching with startIdle
+   * @param {string} event - 'inbox:newMessages', 'inbox:expunged' or 'inbox:flagsChanged'
+   * @param {Function} listener - Called with { folder, uids, resync }
+   * @returns {Object} - Subscription; call remove() to unsubscribe
+   */
+  addListener(event, listener) {
+    return DeviceEventEmitter.addListener(event, listener);
+  },
+
   /**
    * Get list of available folders
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<Array>} - Array of folder names
    */
-  getFolders() {
-    return Inbox.getFolders();
+  getFolders(accountId = null) {
+    return Inbox.getFolders(accountId);
+  },
+
+  /**
+   * Get every folder as a tree, optionally with counts (Android)
+   * @param {Object} options - Tree options
+   * @param {boolean} options.withCounts - Include message, unseen and UID counts (default false)
+   * @param {number} options.maxAge - How long in ms a cached listing may be reused (default 60000)
+   * @returns {Promise<Array>} - Top-level folders, each with its children
+   */
+  getFolderTree(options = {}) {
+    return Inbox.getFolderTree(options);
   },
 
   /**
@@ -51,16 +252,67 @@ export default {
    * @param {string} options.from - Search by sender
    * @param {string} options.to - Search by recipient
    * @param {string} options.subject - Search by subject
-   * @param {string} options.since - Search emails since date (YYYY-MM-DD)
-   * @param {string} options.before - Search emails before date (YYYY-MM-DD)
+   * @param {string} options.since - Search emails received since date (YYYY-MM-DD)
+   * @param {string} options.before - Search emails received before date (YYYY-MM-DD)
+   * @param {string} options.dateField - 'received' (default) or 'sent' to compare since/before with the Date header (Android)
    * @param {boolean} options.seen - Filter by seen status
+   * @param {boolean} options.flagged - Filter by flagged status (Android); also answered, draft and deleted
+   * @param {string|Array} options.keyword - Only emails with these keywords (Android)
+   * @param {number} options.larger - Only emails larger than this many bytes (Android); also smaller
+   * @param {Array} options.or - Criteria objects of which any may match (Android)
+   * @param {Object} options.not - Criteria that must not match (Android)
+   * @param {string} options.sort - 'date' or 'arrival' to order by date instead of UID (Android)
    * @param {number} options.limit - Maximum results
+   * @param {string} options.includeBody - 'none', 'preview' or 'full' (default 'full')
+   * @param {number} options.previewBytes - Bytes of the text part to fetch in 'preview' mode (default 512)
+   * @param {string} options.source - 'server' (default), 'local' or 'auto' to search the on-device index (Android)
    * @returns {Promise<Array>} - Array of matching email objects
    */
   searchEmails(options) {
     return Inbox.searchEmails(options);
   },
 
+  /**
+   * Runs a searchEmails search on the server and returns the match count and
+   * UIDs only, without loading any email (Android)
+   * @param {Object} options - searchEmails criteria, sort and limit
+   * @returns {Promise<Object>} - total and the uids of the newest limit matches
+   */
+  searchUids(options) {
+    return Inbox.searchUids(options);
+  },
+
+  /**
+   * Groups a folder into conversations, newest first (Android)
+   * @param {Object} options - Thread options
+   * @param {string} options.folder - Folder to thread
+   * @param {number} options.limit - Maximum conversations (default all)
+   * @returns {Promise<Array>} - Conversations with uids, roots, count, unread and latestDate
+   */
+  getThreads(options) {
+    return Inbox.getThreads(options);
+  },
+
+  /**
+   * Like searchEmails, but delivers the results in chunks; takes the same
+   * chunk options as streamEmails
+   * @param {Object} options - searchEmails and chunk options
+   * @param {Function} onChunk - Called with (emails, { requestId, index, done })
+   * @returns {Promise<Object>} - requestId, count, chunks and cancelled
+   */
+  streamSearch(options, onChunk) {
+    return streamCall(Inbox.searchEmails, options, onChunk);
+  },
+
+  /**
+   * Stop a streamed listing; chunks already sent are still delivered
+   * @param {string} requestId - ID of the stream
+   * @returns {Promise<boolean>} - Whether the stream was still running
+   */
+  cancelStream(requestId) {
+    return Inbox.cancelStream(requestId);
+  },
+
   /**
    * Move email to different folder
    * @param {Object} options - Move options
@@ -77,19 +329,44 @@ export default {
    * Delete email
    * @param {number} uid - Email UID
    * @param {string} folder - Folder containing the email
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<boolean>} - Success status
    */
-  deleteEmail(uid, folder) {
-    return Inbox.deleteEmail(uid, folder);
+  deleteEmail(uid, folder, accountId = null) {
+    return Inbox.deleteEmail(uid, folder, accountId);
+  },
+
+  /**
+   * Move many emails to a different folder in a constant number of IMAP commands
+   * @param {Object} options - Move options
+   * @param {Array<number|string>} options.uids - UIDs or 'start:end' UID ranges
+   * @param {string} options.fromFolder - Source folder
+   * @param {string} options.toFolder - Destination folder
+   * @returns {Promise<Object>} - Moved count and per-UID failures
+   */
+  moveEmails(options) {
+    return Inbox.moveEmails(options);
+  },
+
+  /**
+   * Delete many emails and expunge just those emails
+   * @param {Object} options - Delete options
+   * @param {Array<number|string>} options.uids - UIDs or 'start:end' UID ranges
+   * @param {string} options.folder - Folder containing the emails
+   * @returns {Promise<Object>} - Deleted count, per-UID failures and whether they were expunged
+   */
+  deleteEmails(options) {
+    return Inbox.deleteEmails(options);
   },
 
   /**
    * Update email flags
    * @param {Object} options - Update options
    * @param {number} options.uid - Email UID
+   * @param {Array<number|string>} [options.uids] - UIDs or 'start:end' ranges to update instead of uid
    * @param {string} options.folder - Folder containing the email
-   * @param {Object} options.flags - Flags to update
-   * @returns {Promise<boolean>} - Success status
+   * @param {Object} options.flags - Flags to set (true) or clear (false)
+   * @returns {Promise<boolean|Object>} - Success status, or the bulk result when uids is given
    */
   updateEmailFlags(options) {
     return Inbox.updateEmailFlags(options);
@@ -99,30 +376,61 @@ export default {
    * Get specific email by UID
    * @param {number} uid - Email UID
    * @param {string} folder - Folder containing the email
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<Object|null>} - Email object or null if not found
    */
-  getEmailByUid(uid, folder) {
-    return Inbox.getEmailByUid(uid, folder);
+  getEmailByUid(uid, folder, accountId = null) {
+    return Inbox.getEmailByUid(uid, folder, accountId);
+  },
+
+  /**
+   * Get the full body of an email, e.g. when it is opened from an
+   * envelope-only or preview listing
+   * @param {number} uid - Email UID
+   * @param {string} folder - Folder containing the email
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<Object|null>} - Body object or null if not found
+   */
+  getEmailBody(uid, folder, accountId = null) {
+    return Inbox.getEmailBody(uid, folder, accountId);
+  },
+
+  /**
+   * Download an attachment straight to a file, without passing its bytes
+   * over the bridge. Progress is reported in 'inbox:downloadProgress' events
+   * carrying { destPath, uid, section, received, total }
+   * @param {Object} options - Download options
+   * @param {number} options.uid - Email UID
+   * @param {string} options.folder - Folder containing the email
+   * @param {string} options.section - Attachment section from the email's attachments list
+   * @param {string} options.destPath - File to write, e.g. in the app's documents directory
+   * @param {number} options.chunkBytes - Bytes per partial fetch (optional, default 65536)
+   * @returns {Promise<Object>} - Path and size in bytes of the written file
+   */
+  downloadAttachment(options) {
+    return Inbox.downloadAttachment(options);
   },
 
   /**
    * Mark email as read
    * @param {number} uid - Email UID
    * @param {string} folder - Folder containing the email
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<boolean>} - Success status
    */
-  markAsRead(uid, folder) {
-    return Inbox.markAsRead(uid, folder);
+  markAsRead(uid, folder, accountId = null) {
+    return Inbox.markAsRead(uid, folder, accountId);
   },
 
   /**
    * Mark email as unread
    * @param {number} uid - Email UID
    * @param {string} folder - Folder containing the email
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<boolean>} - Success status
    */
-  markAsUnread(uid, folder) {
-    return Inbox.markAsUnread(uid, folder);
+  markAsUnread(uid, folder, accountId = null) {
+    return Inbox.markAsUnread(uid, folder, accountId);
   },
 
   /**
@@ -130,10 +438,11 @@ export default {
    * @param {number} uid - Email UID
    * @param {string} folder - Folder containing the email
    * @param {Array} flags - Array of flags to add
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<boolean>} - Success status
    */
-  addFlags(uid, folder, flags) {
-    return Inbox.addFlags(uid, folder, flags);
+  addFlags(uid, folder, flags, accountId = null) {
+    return Inbox.addFlags(uid, folder, flags, accountId);
   },
 
   /**
@@ -141,10 +450,57 @@ export default {
    * @param {number} uid - Email UID
    * @param {string} folder - Folder containing the email
    * @param {Array} flags - Array of flags to remove
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<boolean>} - Success status
    */
-  removeFlags(uid, folder, flags) {
-    return Inbox.removeFlags(uid, folder, flags);
+  removeFlags(uid, folder, flags, accountId = null) {
+    return Inbox.removeFlags(uid, folder, flags, accountId);
+  },
+
+  /**
+   * Mark many emails as read with a single IMAP STORE
+   * @param {Array<number|string>} uids - UIDs or 'start:end' UID ranges
+   * @param {string} folder - Folder containing the emails
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<Object>} - Updated count and per-UID failures
+   */
+  markAsReadBulk(uids, folder, accountId = null) {
+    return Inbox.markAsReadBulk(uids, folder, accountId);
+  },
+
+  /**
+   * Mark many emails as unread with a single IMAP STORE
+   * @param {Array<number|string>} uids - UIDs or 'start:end' UID ranges
+   * @param {string} folder - Folder containing the emails
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<Object>} - Updated count and per-UID failures
+   */
+  markAsUnreadBulk(uids, folder, accountId = null) {
+    return Inbox.markAsUnreadBulk(uids, folder, accountId);
+  },
+
+  /**
+   * Add flags to many emails with a single IMAP STORE
+   * @param {Array<number|string>} uids - UIDs or 'start:end' UID ranges
+   * @param {string} folder - Folder containing the emails
+   * @param {Array} flags - System flags or custom keywords to add
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<Object>} - Updated count and per-UID failures
+   */
+  addFlagsBulk(uids, folder, flags, accountId = null) {
+    return Inbox.addFlagsBulk(uids, folder, flags, accountId);
+  },
+
+  /**
+   * Remove flags from many emails with a single IMAP STORE
+   * @param {Array<number|string>} uids - UIDs or 'start:end' UID ranges
+   * @param {string} folder - Folder containing the emails
+   * @param {Array} flags - System flags or custom keywords to remove
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<Object>} - Updated count and per-UID failures
+   */
+  removeFlagsBulk(uids, folder, flags, accountId = null) {
+    return Inbox.removeFlagsBulk(uids, folder, flags, accountId);
   },
 
   /**
@@ -164,10 +520,11 @@ export default {
 
   /**
    * Disconnect from SMTP server
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<boolean>} - Disconnection status
    */
-  disconnectSmtp() {
-    return Inbox.disconnectSmtp();
+  disconnectSmtp(accountId = null) {
+    return Inbox.disconnectSmtp(accountId);
   },
 
   /**
@@ -178,7 +535,7 @@ export default {
    * @param {Array} options.bcc - Array of BCC recipients (optional)
    * @param {string} options.subject - Email subject
    * @param {string} options.body - Email body content
-   * @param {Array} options.attachments - Array of attachments (optional)
+   * @param {Array} options.attachments - Attachments as { path | uri, filename, contentType } (optional)
    * @param {boolean} options.isHtml - Whether body is HTML (optional)
    * @returns {Promise<boolean>} - Success status
    */
@@ -186,6 +543,55 @@ export default {
     return Inbox.sendEmail(options);
   },
 
+  /**
+   * Queue an email in the on-disk outbox, which sends it in the background
+   * and reports progress in inbox:outbox events (Android)
+   * @param {Object} options - Email options (same as sendEmail)
+   * @returns {Promise<string>} - Outbox id of the queued email
+   */
+  queueEmail(options) {
+    return Inbox.queueEmail(options);
+  },
+
+  /**
+   * Queue several emails in the outbox with one call (Android)
+   * @param {Array} emails - Email options (same as sendEmail) for each email
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<Array>} - Outbox ids, in the order given
+   */
+  queueEmails(emails, accountId = null) {
+    return Inbox.queueEmails(emails, accountId);
+  },
+
+  /**
+   * List emails waiting in the outbox and those the server rejected (Android)
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<Array>} - Entries with id, status and attempts
+   */
+  getOutbox(accountId = null) {
+    return Inbox.getOutbox(accountId);
+  },
+
+  /**
+   * Remove an email from the outbox without sending it (Android)
+   * @param {string} id - Outbox id
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<boolean>} - Whether the email was in the outbox
+   */
+  removeFromOutbox(id, accountId = null) {
+    return Inbox.removeFromOutbox(id, accountId);
+  },
+
+  /**
+   * Queue a failed outbox email again (Android)
+   * @param {string} id - Outbox id
+   * @param {string} accountId - Account to use (optional, default account; Android)
+   * @returns {Promise<boolean>} - Whether a failed email was requeued
+   */
+  retryOutbox(id, accountId = null) {
+    return Inbox.retryOutbox(id, accountId);
+  },
+
   /**
    * Save email as draft
    * @param {Object} options - Email options (same as sendEmail)
@@ -206,36 +612,51 @@ export default {
 
   /**
    * Get all draft emails
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<Array>} - Array of draft email objects
    */
-  getDrafts() {
-    return Inbox.getDrafts();
+  getDrafts(accountId = null) {
+    return Inbox.getDrafts({ accountId });
+  },
+
+  /**
+   * Like getDrafts, but delivers the drafts in chunks; takes the same chunk
+   * options as streamEmails
+   * @param {Object} options - Chunk options
+   * @param {Function} onChunk - Called with (drafts, { requestId, index, done })
+   * @returns {Promise<Object>} - requestId, count, chunks and cancelled
+   */
+  streamDrafts(options, onChunk) {
+    return streamCall(Inbox.getDrafts, options, onChunk);
   },
 
   /**
    * Get email size in bytes
    * @param {number} uid - Email UID
    * @param {string} folder - Folder containing the email
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<number>} - Email size in bytes
    */
-  getEmailSize(uid, folder) {
-    return Inbox.getEmailSize(uid, folder);
+  getEmailSize(uid, folder, accountId = null) {
+    return Inbox.getEmailSize(uid, folder, accountId);
   },
 
   /**
    * Get mailbox quota information
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<Object>} - Object with used and total quota
    */
-  getQuota() {
-    return Inbox.getQuota();
+  getQuota(accountId = null) {
+    return Inbox.getQuota(accountId);
   },
 
   /**
    * Permanently remove deleted emails from folder
    * @param {string} folder - Folder to expunge
+   * @param {string} accountId - Account to use (optional, default account; Android)
    * @returns {Promise<boolean>} - Success status
    */
-  expunge(folder) {
-    return Inbox.expunge(folder);
+  expunge(folder, accountId = null) {
+    return Inbox.expunge(folder, accountId);
   }
 };